@@ -0,0 +1,81 @@
+package fifteen;
+
+import fifteen.HiddenKernelGenerator.IntKernel;
+import fifteen.HiddenKernelGenerator.Operation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Compares a leaf kernel generated as a hidden class by HiddenKernelGenerator with the ways a leaf would otherwise be written:
+ *
+ * - hiddenKernel: the generated class for the operation and unroll factor.
+ * - lambdaLoop: one generic loop shared by every operation, calling a lambda per element. Setup runs it with all three operations first, the way it
+ *   would be used by leaves doing different things, so its call site is megamorphic by the time it's measured.
+ * - stream: an IntStream over the leaf's range.
+ *
+ * unroll only changes the hidden kernel, the other two are there as the baseline for each operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HiddenKernelBenchmark {
+
+    private static final long P0 = 3, P1 = 5;
+
+    @Param({"1024", "65536", "1048576"})
+    private int size;
+
+    @Param
+    private Operation operation;
+
+    @Param({"1", "4", "8"})
+    private int unroll;
+
+    private int[] array;
+    private IntKernel kernel;
+    private IntToLongFunction lambda;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        array = new SplittableRandom(42).ints(size, -1000, 1000).toArray();
+        kernel = new HiddenKernelGenerator().intKernel(operation, unroll);
+
+        IntToLongFunction[] lambdas = { a -> a, a -> a > P0 ? 1 : 0, a -> a * P0 + P1 };
+        for(int i = 0; i < 20_000; i++) // pollute the profile of the shared loop
+            lambdaLoop(array, 0, Math.min(size, 1024), lambdas[i % lambdas.length]);
+        lambda = lambdas[operation.ordinal()];
+    }
+
+    private static long lambdaLoop(int[] a, int from, int to, IntToLongFunction step) {
+        long sum = 0;
+        for(int i = from; i < to; i++)
+            sum += step.applyAsLong(a[i]);
+        return sum;
+    }
+
+    @Benchmark
+    public long hiddenKernel() {
+        return kernel.apply(array, 0, array.length, P0, P1);
+    }
+
+    @Benchmark
+    public long lambdaLoop() {
+        return lambdaLoop(array, 0, array.length, lambda);
+    }
+
+    @Benchmark
+    public long stream() {
+        return switch(operation) {
+            case SUM -> Arrays.stream(array).asLongStream().sum();
+            case MASKED_COUNT -> Arrays.stream(array).filter(a -> a > P0).count();
+            case MAP_REDUCE -> Arrays.stream(array).asLongStream().map(a -> a * P0 + P1).sum();
+        };
+    }
+}
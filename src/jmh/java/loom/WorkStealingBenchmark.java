@@ -0,0 +1,64 @@
+package loom;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same fork/join sum in a ForkJoinPool (WorkStealingExecutor.ForkJoinRangeSum) and in a WorkStealingExecutor (WorkStealingExecutor.RangeSum), the
+ * same compute() line for line as a RecursiveTask and as a StealingTask, with no JFR events, adaptive leaf size or LeafKernel on either side, so that
+ * only the schedulers differ. From fine grained tasks of 16 elements, where scheduling overhead is all there is to measure, to coarse ones of 64K,
+ * where it hardly shows.
+ *
+ * idleStrategy only changes the WorkStealingExecutor, the forkJoinPool rows are the baseline for each combination of the other parameters. With
+ * parallelism 1 nothing can be stolen, which leaves the cost of pushing, popping and joining on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkStealingBenchmark {
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"16", "1024", "65536"})
+    private int leafSize;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param
+    private WorkStealingExecutor.IdleStrategy idleStrategy;
+
+    private int[] array;
+    private ForkJoinPool pool;
+    private WorkStealingExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        array = new SplittableRandom(42).ints(size, -1_000, 1_000).toArray();
+        pool = new ForkJoinPool(parallelism);
+        executor = new WorkStealingExecutor(parallelism, idleStrategy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long forkJoinPool() {
+        return pool.invoke(new WorkStealingExecutor.ForkJoinRangeSum(array, 0, array.length, leafSize));
+    }
+
+    @Benchmark
+    public long workStealingExecutor() {
+        return executor.invoke(new WorkStealingExecutor.RangeSum(array, 0, array.length, leafSize));
+    }
+}
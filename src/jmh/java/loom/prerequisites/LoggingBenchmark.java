@@ -0,0 +1,144 @@
+package loom.prerequisites;
+
+import loom.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Logs the same list of words in threshold sized chunks with ListLoggingRecursiveAction and with the usual alternatives, through each kind of LogSink.
+ *
+ * Nothing actually reaches the terminal. System.out is swapped for a stream that throws everything away, and the channel sinks write to a channel that does
+ * the same, so what's measured is formatting, contention on the PrintStream lock and buffering, not the speed of the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+    public enum Sink { DISCARDING, CONSOLE, BUFFERED, ORDERED }
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"3", "64", "4096"})
+    private int threshold;
+
+    @Param({"1", "4", "16"})
+    private int parallelism;
+
+    @Param
+    private Sink sink;
+
+    private List<String> list;
+    private ForkJoinPool pool;
+    private ExecutorService fanOutExecutor;
+    private PrintStream systemOut;
+
+    private static final WritableByteChannel NULL_CHANNEL = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            src.position(src.limit());
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> words = List.of("The", "Quick", "Brown", "Fox", "Jumped", "Over", "The", "Lazy", "Dog");
+        list = IntStream.range(0, size).mapToObj(i -> words.get(i % words.size())).toList();
+        pool = new ForkJoinPool(parallelism);
+
+        if(VirtualThreads.isSupported())
+            fanOutExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        else {
+            System.err.printf("Virtual threads unavailable on %s, fanning out to %d platform threads instead.%n", Runtime.version(), parallelism);
+            fanOutExecutor = Executors.newFixedThreadPool(parallelism);
+        }
+
+        systemOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(systemOut);
+        pool.shutdown();
+        fanOutExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void sequentialLoop() {
+        try(LogSink logSink = newSink()) {
+            for(int from = 0; from < size; from += threshold)
+                logChunk(logSink, from);
+        }
+    }
+
+    @Benchmark
+    public void intStreamParallel() {
+        try(LogSink logSink = newSink()) {
+            int chunks = (size + threshold - 1) / threshold;
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> logChunk(logSink, chunk * threshold))).join();
+        }
+    }
+
+    @Benchmark
+    public void listLoggingRecursiveAction() {
+        try(LogSink logSink = newSink()) {
+            pool.invoke(new ListLoggingRecursiveAction("LoggingBenchmark", list, logSink, threshold));
+        }
+    }
+
+    @Benchmark
+    public void virtualThreadFanOut() throws ExecutionException, InterruptedException {
+        try(LogSink logSink = newSink()) {
+            List<Future<?>> chunks = new ArrayList<>(size / threshold + 1);
+            for(int from = 0; from < size; from += threshold) {
+                int chunkFrom = from;
+                chunks.add(fanOutExecutor.submit(() -> logChunk(logSink, chunkFrom)));
+            }
+            for(Future<?> chunk : chunks)
+                chunk.get();
+        }
+    }
+
+    private void logChunk(LogSink logSink, int from) {
+        if(logSink.isEnabled())
+            logSink.log(from, String.format("LoggingBenchmark[%d] says %s.", from, list.subList(from, Math.min(from + threshold, size))));
+    }
+
+    private LogSink newSink() {
+        return switch(sink) {
+            case DISCARDING -> LogSink.discarding();
+            case CONSOLE -> LogSink.console();
+            case BUFFERED -> new ChannelLogSink(NULL_CHANNEL, false, ChannelLogSink.DEFAULT_BATCH_SIZE);
+            case ORDERED -> new ChannelLogSink(NULL_CHANNEL, true, ChannelLogSink.DEFAULT_BATCH_SIZE);
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package loom.prerequisites;
+
+import loom.prerequisites.PrefixSumRecursiveAction.Scan;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix sums of the same int and long arrays with PrefixSumRecursiveAction, Arrays.parallelPrefix and a sequential loop, across array sizes and
+ * pool parallelism. Arrays.parallelPrefix always runs in the common pool, so its rows only change with the size.
+ *
+ * Every benchmark scans its array in place, so each invocation scans what the previous one left behind. The values wrap around soon enough, which
+ * doesn't change how long a scan takes, and saves copying the array before every invocation, which would take about as long as the scan itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixSumBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"1", "4", "16"})
+    private int parallelism;
+
+    private int[] ints;
+    private long[] longs;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ints = new SplittableRandom(42).ints(size, -1_000, 1_000).toArray();
+        longs = Arrays.stream(ints).asLongStream().toArray();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] sequentialLoop() {
+        for(int i = 1; i < ints.length; i++)
+            ints[i] += ints[i - 1];
+        return ints;
+    }
+
+    @Benchmark
+    public int[] arraysParallelPrefix() {
+        Arrays.parallelPrefix(ints, Integer::sum);
+        return ints;
+    }
+
+    @Benchmark
+    public int[] inclusive() {
+        pool.invoke(new PrefixSumRecursiveAction(ints, Scan.INCLUSIVE));
+        return ints;
+    }
+
+    @Benchmark
+    public int[] exclusive() {
+        pool.invoke(new PrefixSumRecursiveAction(ints, Scan.EXCLUSIVE));
+        return ints;
+    }
+
+    @Benchmark
+    public long[] longArraysParallelPrefix() {
+        Arrays.parallelPrefix(longs, Long::sum);
+        return longs;
+    }
+
+    @Benchmark
+    public long[] longInclusive() {
+        pool.invoke(new PrefixSumRecursiveAction(longs, Scan.INCLUSIVE));
+        return longs;
+    }
+}
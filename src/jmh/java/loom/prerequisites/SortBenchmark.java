@@ -0,0 +1,134 @@
+package loom.prerequisites;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts of the same int and long arrays with MergeSortRecursiveAction, RadixSortRecursiveAction, Arrays.parallelSort and Arrays.sort, across array
+ * sizes and key distributions. All of them run in the common pool, like Arrays.parallelSort has to.
+ *
+ * Unlike a prefix sum, a sort of an already sorted array doesn't take as long as the first one, so every invocation copies the unsorted keys into a
+ * work array first. The copy is part of every row, and the same for all of them.
+ *
+ * The distributions are the cases the two engines react differently to: uniform keys over the whole range are the radix sort's worst case, all its
+ * passes needed, while keys in a small range let it skip most of them; sorted and reversed arrays are where the merge sort's leaves (and
+ * Arrays.parallelSort's) finish quickest, and few unique keys are plenty of equal elements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+
+    public enum Distribution {
+        UNIFORM, SMALL_RANGE, SORTED, REVERSED, FEW_UNIQUE;
+
+        int[] ints(int size) {
+            SplittableRandom random = new SplittableRandom(42);
+            int[] ints = switch(this) {
+                case UNIFORM -> random.ints(size).toArray();
+                case SMALL_RANGE -> random.ints(size, 0, 1 << 16).toArray();
+                case SORTED, REVERSED -> random.ints(size).sorted().toArray();
+                case FEW_UNIQUE -> random.ints(size, 0, 16).map(i -> i * 0x9E3779B9).toArray(); // 16 keys spread over the whole range
+            };
+            if(this == REVERSED)
+                for(int i = 0, j = size - 1; i < j; i++, j--) {
+                    int swap = ints[i];
+                    ints[i] = ints[j];
+                    ints[j] = swap;
+                }
+            return ints;
+        }
+
+        long[] longs(int size) {
+            SplittableRandom random = new SplittableRandom(42);
+            long[] longs = switch(this) {
+                case UNIFORM -> random.longs(size).toArray();
+                case SMALL_RANGE -> random.longs(size, 0, 1 << 16).toArray();
+                case SORTED, REVERSED -> random.longs(size).sorted().toArray();
+                case FEW_UNIQUE -> random.longs(size, 0, 16).map(l -> l * 0x9E3779B97F4A7C15L).toArray();
+            };
+            if(this == REVERSED)
+                for(int i = 0, j = size - 1; i < j; i++, j--) {
+                    long swap = longs[i];
+                    longs[i] = longs[j];
+                    longs[j] = swap;
+                }
+            return longs;
+        }
+    }
+
+    @Param({"10000", "1000000", "10000000"})
+    private int size;
+
+    @Param
+    private Distribution distribution;
+
+    private int[] ints;
+    private long[] longs;
+    private int[] intWork;
+    private long[] longWork;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ints = distribution.ints(size);
+        longs = distribution.longs(size);
+        intWork = new int[size];
+        longWork = new long[size];
+    }
+
+    @Benchmark
+    public int[] arraysSort() {
+        System.arraycopy(ints, 0, intWork, 0, size);
+        Arrays.sort(intWork);
+        return intWork;
+    }
+
+    @Benchmark
+    public int[] arraysParallelSort() {
+        System.arraycopy(ints, 0, intWork, 0, size);
+        Arrays.parallelSort(intWork);
+        return intWork;
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        System.arraycopy(ints, 0, intWork, 0, size);
+        ForkJoinPool.commonPool().invoke(new MergeSortRecursiveAction(intWork));
+        return intWork;
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        System.arraycopy(ints, 0, intWork, 0, size);
+        ForkJoinPool.commonPool().invoke(new RadixSortRecursiveAction(intWork));
+        return intWork;
+    }
+
+    @Benchmark
+    public long[] longArraysParallelSort() {
+        System.arraycopy(longs, 0, longWork, 0, size);
+        Arrays.parallelSort(longWork);
+        return longWork;
+    }
+
+    @Benchmark
+    public long[] longMergeSort() {
+        System.arraycopy(longs, 0, longWork, 0, size);
+        ForkJoinPool.commonPool().invoke(new MergeSortRecursiveAction(longWork));
+        return longWork;
+    }
+
+    @Benchmark
+    public long[] longRadixSort() {
+        System.arraycopy(longs, 0, longWork, 0, size);
+        ForkJoinPool.commonPool().invoke(new RadixSortRecursiveAction(longWork));
+        return longWork;
+    }
+}
@@ -0,0 +1,125 @@
+package loom.prerequisites;
+
+import loom.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Sums the same int array with the fork/join tasks in this package and with the usual alternatives, across array sizes, thresholds and pool parallelism.
+ *
+ * The sequential loop and Arrays.stream().sum() don't depend on the threshold or the pool, they are here so every row of the results has its baseline
+ * right next to it.
+ *
+ * The virtual thread fan-out starts one virtual thread per threshold sized chunk. Virtual threads need a Loom enabled JDK, on anything older the chunks
+ * go to a fixed pool of parallelism platform threads instead, and the setup says so on stderr.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummingBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"16", "1024", "65536"})
+    private int threshold;
+
+    @Param({"1", "4", "16"})
+    private int parallelism;
+
+    private int[] array;
+    private ForkJoinPool pool;
+    private ExecutorService fanOutExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        array = new SplittableRandom(42).ints(size, -1_000, 1_000).toArray();
+        pool = new ForkJoinPool(parallelism);
+
+        if(VirtualThreads.isSupported())
+            fanOutExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        else {
+            System.err.printf("Virtual threads unavailable on %s, fanning out to %d platform threads instead.%n", Runtime.version(), parallelism);
+            fanOutExecutor = Executors.newFixedThreadPool(parallelism);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        fanOutExecutor.shutdown();
+    }
+
+    @Benchmark
+    public long sequentialLoop() {
+        long sum = 0;
+        for(int value : array)
+            sum += value;
+        return sum;
+    }
+
+    @Benchmark
+    public int arraysStreamSum() {
+        return Arrays.stream(array).sum();
+    }
+
+    @Benchmark
+    public long intStreamParallel() {
+        // a parallel stream started from inside a ForkJoinPool runs in that pool rather than the common pool, so it gets the same parallelism as the tasks
+        return pool.submit(() -> IntStream.of(array).parallel().asLongStream().sum()).join();
+    }
+
+    @Benchmark
+    public int listSummingRecursiveTask() {
+        return pool.invoke(new ListSummingRecursiveTask("SummingBenchmark", array, LogSink.discarding(), threshold));
+    }
+
+    @Benchmark
+    public long rangeSummingRecursiveTask() {
+        return pool.invoke(new RangeSummingRecursiveTask(array, threshold));
+    }
+
+    @Benchmark
+    public long rangeSummingRecursiveTaskVector() {
+        return pool.invoke(new RangeSummingRecursiveTask(array, threshold, LeafKernel.VECTOR));
+    }
+
+    @Benchmark
+    public long rangeSummingRecursiveTaskAdaptive() {
+        return pool.invoke(new RangeSummingRecursiveTask(array));
+    }
+
+    @Benchmark
+    public long virtualThreadFanOut() throws ExecutionException, InterruptedException {
+        List<Future<Long>> chunks = new ArrayList<>(size / threshold + 1);
+        for(int from = 0; from < size; from += threshold) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + threshold, size);
+            chunks.add(fanOutExecutor.submit(() -> {
+                long sum = 0;
+                for(int i = chunkFrom; i < chunkTo; i++)
+                    sum += array[i];
+                return sum;
+            }));
+        }
+
+        long sum = 0;
+        for(Future<Long> chunk : chunks)
+            sum += chunk.get();
+        return sum;
+    }
+}
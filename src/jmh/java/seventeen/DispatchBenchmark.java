@@ -0,0 +1,112 @@
+package seventeen;
+
+import org.openjdk.jmh.annotations.*;
+import seventeen.InstrumentHierarchy.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the ways InstrumentDispatch has of dispatching on the class of an Instrument, over a large array of instruments with a given call site profile:
+ *
+ * - MONOMORPHIC: every instrument is a Guitar.
+ * - BIMORPHIC: Guitars and YamahaAltoSaxophones (the first and the last case of the pattern switch).
+ * - MEGAMORPHIC: all four classes.
+ *
+ * With a UNIFORM distribution every class in the profile is equally likely, SKEWED makes the first one 90% of the instruments and shares the rest out
+ * between the others. Instruments are allocated in random order, so the array doesn't have runs of the same class the branch predictor can learn.
+ *
+ * The pattern switch lives in InstrumentDispatch (compiled with --enable-preview on JDK 17) rather than in here, so this class can still be loaded by
+ * the JMH generator without preview features enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(DispatchBenchmark.SIZE)
+public class DispatchBenchmark {
+
+    static final int SIZE = 1 << 20;
+
+    public enum Profile {
+        MONOMORPHIC(Guitar::new),
+        BIMORPHIC(Guitar::new, YamahaAltoSaxophone::new),
+        MEGAMORPHIC(Guitar::new, YamahaAltoSaxophone::new, Saxophone::new, AltoSaxophone::new);
+
+        private final Supplier<Instrument>[] classes;
+
+        @SafeVarargs
+        Profile(Supplier<Instrument>... classes) {
+            this.classes = classes;
+        }
+    }
+
+    public enum Distribution { UNIFORM, SKEWED }
+
+    @Param
+    private Profile profile;
+
+    @Param
+    private Distribution distribution;
+
+    private Instrument[] instruments;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        int classes = profile.classes.length;
+        instruments = new Instrument[SIZE];
+
+        for(int i = 0; i < SIZE; i++) {
+            int pick;
+            if(distribution == Distribution.SKEWED && classes > 1)
+                pick = random.nextInt(10) < 9 ? 0 : 1 + random.nextInt(classes - 1);
+            else
+                pick = random.nextInt(classes);
+            instruments[i] = profile.classes[pick].get();
+        }
+    }
+
+    @Benchmark
+    public int patternSwitch() {
+        int sum = 0;
+        for(Instrument instrument : instruments)
+            sum += InstrumentDispatch.patternSwitch(instrument);
+        return sum;
+    }
+
+    @Benchmark
+    public int typeDispatcher() {
+        int sum = 0;
+        for(Instrument instrument : instruments)
+            sum += InstrumentDispatch.typeDispatcher(instrument);
+        return sum;
+    }
+
+    @Benchmark
+    public int instanceofChain() {
+        int sum = 0;
+        for(Instrument instrument : instruments)
+            sum += InstrumentDispatch.instanceofChain(instrument);
+        return sum;
+    }
+
+    @Benchmark
+    public int visitor() {
+        int sum = 0;
+        for(Instrument instrument : instruments)
+            sum += InstrumentDispatch.visitor(instrument);
+        return sum;
+    }
+
+    @Benchmark
+    public int virtualCall() {
+        int sum = 0;
+        for(Instrument instrument : instruments)
+            sum += InstrumentDispatch.virtualCall(instrument);
+        return sum;
+    }
+}
@@ -0,0 +1,152 @@
+package seventeen;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Measures nextInt(), nextLong() and nextDouble() for a RandomGenerator algorithm (JEP 356), and how each way of handing generators out to threads scales:
+ *
+ * - INDEPENDENT: every thread creates its own instance from the factory. Works for any algorithm, but nothing guarantees the streams don't overlap.
+ * - SPLIT: every thread gets a split of one shared SplittableGenerator. Statistically independent streams.
+ * - JUMP: every thread gets a copy of one shared JumpableGenerator, jumped ahead so the streams can't overlap.
+ * - THREAD_LOCAL_RANDOM: every thread uses ThreadLocalRandom.current(), whatever the algorithm parameter says.
+ *
+ * Running the benchmark through the jmh task only measures the default parameters. Run main() instead (./gradlew randomGeneratorTable) to go through
+ * every algorithm RandomGeneratorFactory.all() discovers, with every strategy it supports, at 1, 2, 4... threads up to the number of processors,
+ * finishing with a table to pick a generator from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomGeneratorBenchmark {
+
+    public enum Strategy { INDEPENDENT, SPLIT, JUMP, THREAD_LOCAL_RANDOM }
+
+    @Param({"L64X128MixRandom"})
+    private String algorithm;
+
+    @Param({"INDEPENDENT"})
+    private Strategy strategy;
+
+    private RandomGenerator root; // the generator threads split from or jump copies of
+
+    @Setup(Level.Trial)
+    public void setup() {
+        root = RandomGeneratorFactory.of(algorithm).create(42);
+    }
+
+    /**
+     * The generator belonging to one benchmark thread. Handing them out goes through the shared root, hence the lock, but only once per thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadGenerator {
+        private RandomGenerator generator;
+
+        @Setup(Level.Trial)
+        public void setup(RandomGeneratorBenchmark benchmark) {
+            synchronized(benchmark) {
+                generator = switch(benchmark.strategy) {
+                    case INDEPENDENT -> RandomGeneratorFactory.of(benchmark.algorithm).create();
+                    case SPLIT -> ((RandomGenerator.SplittableGenerator) benchmark.root).split();
+                    case JUMP -> ((RandomGenerator.JumpableGenerator) benchmark.root).copyAndJump();
+                    case THREAD_LOCAL_RANDOM -> ThreadLocalRandom.current();
+                };
+            }
+        }
+    }
+
+    @Benchmark
+    public int nextInt(ThreadGenerator thread) {
+        return thread.generator.nextInt();
+    }
+
+    @Benchmark
+    public long nextLong(ThreadGenerator thread) {
+        return thread.generator.nextLong();
+    }
+
+    @Benchmark
+    public double nextDouble(ThreadGenerator thread) {
+        return thread.generator.nextDouble();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<Integer> threadCounts = new ArrayList<>();
+        for(int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2)
+            threadCounts.add(threads);
+
+        List<RandomGeneratorFactory<RandomGenerator>> factories = RandomGeneratorFactory.all()
+                .sorted(Comparator.comparing(RandomGeneratorFactory::name))
+                .toList();
+
+        List<RunResult> results = new ArrayList<>();
+        for(RandomGeneratorFactory<RandomGenerator> factory : factories) {
+            List<String> strategies = new ArrayList<>(List.of(Strategy.INDEPENDENT.name()));
+            if(factory.isSplittable())
+                strategies.add(Strategy.SPLIT.name());
+            if(factory.isJumpable())
+                strategies.add(Strategy.JUMP.name());
+            results.addAll(run(factory.name(), strategies, threadCounts));
+        }
+        // ThreadLocalRandom doesn't depend on the algorithm, so it only needs measuring once
+        results.addAll(run(factories.get(0).name(), List.of(Strategy.THREAD_LOCAL_RANDOM.name()), threadCounts));
+
+        printTable(results);
+    }
+
+    private static List<RunResult> run(String algorithm, List<String> strategies, List<Integer> threadCounts) throws RunnerException {
+        List<RunResult> results = new ArrayList<>();
+        for(int threads : threadCounts) {
+            results.addAll(new Runner(new OptionsBuilder()
+                    .include(RandomGeneratorBenchmark.class.getName())
+                    .param("algorithm", algorithm)
+                    .param("strategy", strategies.toArray(String[]::new))
+                    .threads(threads)
+                    .warmupIterations(2)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(3)
+                    .measurementTime(TimeValue.seconds(1))
+                    .forks(1)
+                    .jvmArgsAppend("--enable-preview")
+                    .build()).run());
+        }
+        return results;
+    }
+
+    /**
+     * One row per algorithm, strategy and thread count. ns/op is the time per call seen by one thread, Mops/s is what all the threads generate together.
+     */
+    private static void printTable(List<RunResult> results) {
+        Map<String, Map<String, Double>> rows = new TreeMap<>();
+        for(RunResult result : results) {
+            String row = String.format("%-24s %-20s %7d", result.getParams().getParam("algorithm"), result.getParams().getParam("strategy"), result.getParams().getThreads());
+            String benchmark = result.getParams().getBenchmark();
+            rows.computeIfAbsent(row, r -> new TreeMap<>()).put(benchmark.substring(benchmark.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+        }
+
+        System.out.printf("%n%-24s %-20s %7s %12s %12s %12s %14s%n", "Algorithm", "Strategy", "Threads", "nextInt ns", "nextLong ns", "nextDouble ns", "nextLong Mops/s");
+        rows.forEach((row, scores) -> {
+            int threads = Integer.parseInt(row.substring(row.length() - 7).trim());
+            double nextLong = scores.getOrDefault("nextLong", Double.NaN);
+            System.out.printf("%s %12.2f %12.2f %12.2f %14.1f%n", row,
+                    scores.getOrDefault("nextInt", Double.NaN), nextLong, scores.getOrDefault("nextDouble", Double.NaN), threads * 1e3 / nextLong);
+        });
+    }
+}
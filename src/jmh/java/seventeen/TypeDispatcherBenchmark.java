@@ -0,0 +1,69 @@
+package seventeen;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ObjectDispatch's pattern switch over an Object with the same sixteen cases built as a TypeDispatcher, over a large array of objects
+ * matching:
+ *
+ * - FIRST: the first case, a String, where the switch does one type test.
+ * - LAST: the last case, a LocalDate, where it does sixteen.
+ * - DEFAULT: no case at all, sixteen type tests and then default.
+ * - MIXED: every case and default, in random order.
+ *
+ * The pattern switch should cost more the further down the matching case is. What this measures is whether the TypeDispatcher's cost stays flat
+ * from FIRST to LAST, and whether it is ever below the switch's: ObjectDispatch.main(), a rougher measurement, had the switch ahead on MIXED.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(TypeDispatcherBenchmark.SIZE)
+public class TypeDispatcherBenchmark {
+
+    static final int SIZE = 1 << 16;
+
+    public enum Cases { FIRST, LAST, DEFAULT, MIXED }
+
+    @Param
+    private Cases cases;
+
+    private Object[] objects;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        int objectCount = ObjectDispatch.OBJECTS.length; // the last one matches default
+        objects = new Object[SIZE];
+        for(int i = 0; i < SIZE; i++) {
+            int pick = switch(cases) {
+                case FIRST -> 0;
+                case LAST -> objectCount - 2;
+                case DEFAULT -> objectCount - 1;
+                case MIXED -> random.nextInt(objectCount);
+            };
+            objects[i] = ObjectDispatch.OBJECTS[pick].get();
+        }
+    }
+
+    @Benchmark
+    public int patternSwitch() {
+        int sum = 0;
+        for(Object obj : objects)
+            sum += ObjectDispatch.patternSwitch(obj);
+        return sum;
+    }
+
+    @Benchmark
+    public int typeDispatcher() {
+        int sum = 0;
+        for(Object obj : objects)
+            sum += ObjectDispatch.typeDispatcher(obj);
+        return sum;
+    }
+}
@@ -1,8 +1,193 @@
-import fifteen.JDK15;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import loom.LatencyHistogram;
+import loom.prerequisites.ChannelLogSink;
+import loom.prerequisites.ForkJoinEvents;
+import loom.prerequisites.ForkJoinPoolUsage;
+import loom.prerequisites.ListLoggingRecursiveAction;
+import loom.prerequisites.ListSummingRecursiveTask;
+import loom.prerequisites.LogSink;
+import loom.prerequisites.RangeSummingRecursiveTask;
 
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a demo under a JDK Flight Recorder recording, dumps the recording and prints a summary of the fork/join events in it (see ForkJoinEvents).
+ * Open the .jfr file in JDK Mission Control for the rest: the Leaf and Join Wait events per thread, and a flame graph of the execution samples the
+ * "profile" settings take every 10 ms.
+ *
+ * Usage: Main [demo] [args...], where demo is one of
+ *
+ * - forkjoin: the ForkJoinPoolUsage walkthrough.
+ * - range: RangeSummingRecursiveTask over 50M ints, with the adaptive leaf size and then with a fixed leaf size of 64 (over-split on purpose).
+ * - list: ListSummingRecursiveTask over 1M ints with its default threshold of 3, copying and splitting all the way down.
+ * - logging: ListLoggingRecursiveAction over 1M strings into a buffered, ordered sink.
+ * - the name of any class with a main method, which is run with the remaining arguments.
+ *
+ * The recording goes to build/jfr/[demo].jfr, or wherever -Djfr.file says.
+ */
 public class Main {
 
-    public static void main(String[] args) {
+    private static final Map<String, Runnable> DEMOS = Map.of(
+            "forkjoin", ForkJoinPoolUsage::ForkJoinPoolUsage,
+            "range", Main::range,
+            "list", Main::list,
+            "logging", Main::logging);
+
+    public static void main(String[] args) throws Exception {
+        String demo = args.length > 0 ? args[0] : "range";
+        String[] demoArgs = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0];
+        Runnable run = DEMOS.get(demo);
+        if(run == null) {
+            Method main = Class.forName(demo).getMethod("main", String[].class);
+            run = () -> {
+                try {
+                    main.invoke(null, (Object) demoArgs);
+                } catch(ReflectiveOperationException e) {
+                    throw new IllegalStateException("couldn't run " + demo, e);
+                }
+            };
+        }
+
+        Path file = Path.of(System.getProperty("jfr.file", "build/jfr/" + demo + ".jfr"));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try(Recording recording = new Recording(Configuration.getConfiguration("profile"))) {
+            recording.enable(ForkJoinEvents.PoolHealthEvent.class).withPeriod(Duration.ofMillis(100));
+            recording.start();
+            long start = System.nanoTime();
+            run.run();
+            long nanos = System.nanoTime() - start;
+            recording.stop();
+            recording.dump(file);
+            System.out.printf("%n%s ran for %.0f ms, recording written to %s%n", demo, nanos / 1e6, file);
+        }
+        summarize(file);
+    }
+
+    private static void range() {
+        int[] array = IntStream.range(0, 50_000_000).map(i -> i % 1000).toArray();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("adaptive leaf size: " + pool.invoke(new RangeSummingRecursiveTask(array)));
+        System.out.println("leaf size 64: " + pool.invoke(new RangeSummingRecursiveTask(array, 64)));
+    }
+
+    private static void list() {
+        int[] array = IntStream.range(0, 1_000_000).map(i -> i % 1000).toArray();
+        System.out.println("sum: " + ForkJoinPool.commonPool().invoke(new ListSummingRecursiveTask("Main", array, LogSink.discarding())));
+    }
+
+    private static void logging() {
+        List<String> list = IntStream.range(0, 1_000_000).mapToObj(i -> "line " + i).toList();
+        try(LogSink sink = new ChannelLogSink(Channels.newChannel(OutputStream.nullOutputStream()), true, 64 * 1024)) {
+            ForkJoinPool.commonPool().invoke(new ListLoggingRecursiveAction("Main", list, sink, 64));
+        }
+    }
+
+    private static final class TaskSummary {
+        long splits, leaves, leafElements, leafNanos, joins, joinsDoneBefore, joinNanos;
+        final LatencyHistogram leafTimes = new LatencyHistogram();
+        final LatencyHistogram joinTimes = new LatencyHistogram();
+    }
+
+    /**
+     * Per task type: how many splits and leaves there were, how big and how long the leaves were, and how long joins waited. Per pool: how many of its
+     * threads were running on average. Then the hottest methods of the execution samples, and what all of that hints at.
+     */
+    private static void summarize(Path file) throws Exception {
+        Map<String, TaskSummary> tasks = new TreeMap<>();
+        Map<String, long[]> pools = new TreeMap<>(); // samples, running threads summed, parallelism, max queued tasks, first steal count, last steal count
+        Map<String, Integer> hotMethods = new HashMap<>();
+
+        try(RecordingFile recording = new RecordingFile(file)) {
+            while(recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch(event.getEventType().getName()) {
+                    case "loom.ForkJoinSplit" -> tasks.computeIfAbsent(event.getString("task"), t -> new TaskSummary()).splits++;
+                    case "loom.ForkJoinLeaf" -> {
+                        TaskSummary task = tasks.computeIfAbsent(event.getString("task"), t -> new TaskSummary());
+                        long nanos = event.getDuration().toNanos();
+                        task.leaves++;
+                        task.leafElements += event.getLong("size");
+                        task.leafNanos += nanos;
+                        task.leafTimes.record(nanos);
+                    }
+                    case "loom.ForkJoinJoinWait" -> {
+                        TaskSummary task = tasks.computeIfAbsent(event.getString("task"), t -> new TaskSummary());
+                        long nanos = event.getDuration().toNanos();
+                        task.joins++;
+                        task.joinNanos += nanos;
+                        task.joinTimes.record(nanos);
+                        if(event.getBoolean("doneBeforeJoin"))
+                            task.joinsDoneBefore++;
+                    }
+                    case "loom.ForkJoinPoolHealth" -> {
+                        long[] pool = pools.computeIfAbsent(event.getString("pool"), p -> new long[] { 0, 0, 0, 0, event.getLong("stealCount"), 0 });
+                        pool[0]++;
+                        pool[1] += event.getInt("runningThreads");
+                        pool[2] = event.getInt("parallelism");
+                        pool[3] = Math.max(pool[3], event.getLong("queuedTasks"));
+                        pool[5] = event.getLong("stealCount");
+                    }
+                    case "jdk.ExecutionSample" -> {
+                        RecordedStackTrace stackTrace = event.getStackTrace();
+                        if(stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+                            RecordedFrame top = stackTrace.getFrames().get(0);
+                            hotMethods.merge(top.getMethod().getType().getName() + "." + top.getMethod().getName(), 1, Integer::sum);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        List<String> hints = new ArrayList<>();
+        System.out.printf("%n%-28s %10s %10s %12s %12s %12s %10s %12s %12s%n", "Task", "Splits", "Leaves", "Elem/leaf", "Leaf p50 us", "Leaf p99 us",
+                "Joins", "Done before", "Join wait ms");
+        tasks.forEach((name, task) -> {
+            System.out.printf("%-28s %,10d %,10d %,12d %12.1f %12.1f %,10d %11.0f%% %12.1f%n", name, task.splits, task.leaves,
+                    task.leafElements / Math.max(1, task.leaves), task.leafTimes.percentile(0.5) / 1e3, task.leafTimes.percentile(0.99) / 1e3,
+                    task.joins, 100.0 * task.joinsDoneBefore / Math.max(1, task.joins), task.joinNanos / 1e6);
+            if(task.leaves > 0 && task.leafNanos / task.leaves < 10_000)
+                hints.add(String.format("%s leaves take %.1f us on average, too little work to pay for a task each: it's probably over-split, try a bigger threshold",
+                        name, task.leafNanos / (double) task.leaves / 1e3));
+            if(task.joinNanos > task.leafNanos)
+                hints.add(String.format("%s spends longer waiting in join() (%.0f ms) than in its leaves (%.0f ms)", name, task.joinNanos / 1e6, task.leafNanos / 1e6));
+        });
+
+        pools.forEach((name, pool) -> {
+            double running = pool[1] / (double) pool[0];
+            System.out.printf("pool %s: %d samples, %.1f of %d threads running on average, at most %,d tasks queued, %,d steals%n",
+                    name, pool[0], running, pool[2], pool[3], pool[5] - pool[4]);
+            if(running < pool[2] / 2.0)
+                hints.add(String.format("pool %s had only %.1f of its %d threads running on average, the rest were idle or blocked", name, running, pool[2]));
+        });
+
+        System.out.println("\nHottest methods (execution samples):");
+        hotMethods.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed()).limit(5)
+                .forEach(method -> System.out.printf("%6d  %s%n", method.getValue(), method.getKey()));
 
+        if(!hints.isEmpty()) {
+            System.out.println("\nHints:");
+            hints.forEach(hint -> System.out.println("- " + hint));
+        }
     }
 }
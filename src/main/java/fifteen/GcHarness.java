@@ -0,0 +1,184 @@
+package fifteen;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compares the garbage collectors JDK 15 made production ready, ZGC (JEP 377) and Shenandoah (JEP 379), with G1 and Parallel, on the allocation heavy
+ * workloads in GcWorkload. Every workload runs in a fresh child JVM per collector and heap size, with -Xms and -Xmx both set to the heap size and the
+ * gc and gc+phases logs written to a file, and the results are printed side by side:
+ *
+ * - throughput: operations per second of the workload.
+ * - pauses: how many stop-the-world pauses there were, their 50th and 99th percentile and the longest, and their total as a share of the run time.
+ *   The concurrent collectors do most of their work while the application runs, so their pauses are short, but that work still takes CPU time from
+ *   the workload, which is where it shows up instead.
+ * - peak RSS: VmHWM of the child, which includes whatever the collector needs on top of the heap (remembered sets, forwarding tables, multi-mapping).
+ *
+ * A collector the JVM doesn't have (Shenandoah isn't built into every JDK 17 distribution) is skipped with a note.
+ *
+ * Usage: GcHarness [seconds per run] [workloads] [collectors] [heap sizes], lists comma separated, e.g. GcHarness 10 RECORD_CHURN G1,Z 256m,1g.
+ */
+public class GcHarness {
+
+    enum Collector {
+        G1("-XX:+UseG1GC"),
+        PARALLEL("-XX:+UseParallelGC"),
+        Z("-XX:+UseZGC"),
+        SHENANDOAH("-XX:+UseShenandoahGC");
+
+        final String option;
+
+        Collector(String option) {
+            this.option = option;
+        }
+    }
+
+    record Run(GcWorkload.Workload workload, Collector collector, String heap, long ops, long nanos, double[] pausesMillis, long peakRssKb) {
+
+        double opsPerSecond() {
+            return ops * 1e9 / nanos;
+        }
+
+        double pausePercentile(double fraction) {
+            if(pausesMillis.length == 0)
+                return 0;
+            return pausesMillis[(int) Math.min(pausesMillis.length - 1, Math.max(0, Math.ceil(fraction * pausesMillis.length) - 1))];
+        }
+
+        double totalPauseMillis() {
+            return Arrays.stream(pausesMillis).sum();
+        }
+    }
+
+    // a GC id, the name of the pause (every word up to the first parenthesis or number), what caused it, the heap before and after, and how long it took:
+    // "GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 3.456ms", "GC(0) Pause Mark End 0.011ms" (ZGC), "GC(5) Pause Final Mark
+    // (unload classes) 0.022ms" (Shenandoah), "GC(7) Pause Full (System.gc()) 33M->10M(55M) 5.799ms". The name has to take in every word, or ZGC's Mark
+    // Start and Mark End pauses would both be Pause Mark, and only one of them counted.
+    static final Pattern PAUSE = Pattern.compile("GC\\((\\d+)\\) (Pause(?: [A-Za-z]+)+)(?: \\(.*\\))?(?: \\d+[BKMGT]?->\\d+[BKMGT]?\\(\\d+[BKMGT]?\\))? (\\d+(?:\\.\\d+)?)ms$");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+        List<GcWorkload.Workload> workloads = parse(args, 1, name -> GcWorkload.Workload.valueOf(name.toUpperCase()), List.of(GcWorkload.Workload.values()));
+        List<Collector> collectors = parse(args, 2, name -> Collector.valueOf(name.toUpperCase()), List.of(Collector.values()));
+        List<String> heaps = parse(args, 3, heap -> heap, List.of("256m", "1g"));
+
+        List<Collector> supported = new ArrayList<>();
+        for(Collector collector : collectors)
+            if(isSupported(collector))
+                supported.add(collector);
+            else
+                System.out.printf("%s isn't available in this JVM (%s), skipping it%n", collector, Runtime.version());
+
+        List<Run> runs = new ArrayList<>();
+        for(GcWorkload.Workload workload : workloads)
+            for(String heap : heaps)
+                for(Collector collector : supported) {
+                    System.out.printf("running %s with %s and a %s heap for %.0f s%n", workload, collector, heap, seconds);
+                    Run run = run(workload, collector, heap, seconds);
+                    if(run != null)
+                        runs.add(run);
+                }
+
+        System.out.printf("%n%-18s %-10s %5s %10s %8s %9s %9s %9s %8s %9s%n", "Workload", "Collector", "Heap", "Ops/s", "Pauses", "p50 ms", "p99 ms",
+                "Max ms", "Paused", "Peak RSS");
+        for(Run run : runs)
+            System.out.printf("%-18s %-10s %5s %,10.1f %,8d %9.3f %9.3f %9.3f %7.2f%% %10s%n", run.workload(), run.collector(), run.heap(),
+                    run.opsPerSecond(), run.pausesMillis().length, run.pausePercentile(0.5), run.pausePercentile(0.99), run.pausePercentile(1),
+                    100 * run.totalPauseMillis() / (run.nanos() / 1e6), run.peakRssKb() < 0 ? "n/a" : String.format("%,d MB", run.peakRssKb() / 1024));
+    }
+
+    /**
+     * Runs the workload in a child JVM and parses its gc log, or returns null if it failed or hung, after printing why.
+     *
+     * The child writes its output and its gc log to files in a directory of their own, so nothing has to read its output while it runs (a blocking read
+     * would only return once the child exited, whatever the timeout), and so whatever the JVM adds to the log (it rotates an existing log file to
+     * gc.log.0 before writing a new one) is deleted along with the directory.
+     */
+    static Run run(GcWorkload.Workload workload, Collector collector, String heap, double seconds) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("gc-" + workload + "-" + collector + "-" + heap);
+        Path log = directory.resolve("gc.log");
+        Path outputFile = directory.resolve("output.txt");
+        try {
+            List<String> command = javaCommand(collector);
+            command.addAll(List.of("-Xms" + heap, "-Xmx" + heap, "-Xlog:gc,gc+phases:file=" + log + ":uptime",
+                    "-cp", System.getProperty("java.class.path"), GcWorkload.class.getName(), workload.name(), Double.toString(seconds)));
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(outputFile.toFile()).start();
+            boolean timedOut = !process.waitFor(Math.round(seconds) + 120, TimeUnit.SECONDS);
+            if(timedOut) {
+                process.destroyForcibly();
+                process.waitFor(); // destroyForcibly() only asks, exitValue() throws until the process has actually gone
+            }
+            List<String> output = Files.readAllLines(outputFile);
+
+            String result = output.stream().filter(line -> line.startsWith(GcWorkload.RESULT_PREFIX)).findFirst().orElse(null);
+            if(timedOut || process.exitValue() != 0 || result == null) {
+                System.out.printf("%s with %s and a %s heap %s (exit %d):%n", workload, collector, heap, timedOut ? "timed out" : "failed", process.exitValue());
+                output.forEach(line -> System.out.println("  " + line));
+                return null;
+            }
+            Map<String, Long> values = new LinkedHashMap<>();
+            for(String field : result.substring(GcWorkload.RESULT_PREFIX.length()).trim().split(" ")) {
+                String[] keyValue = field.split("=");
+                values.put(keyValue[0], Long.parseLong(keyValue[1]));
+            }
+            return new Run(workload, collector, heap, values.get("ops"), values.get("nanos"), pauses(Files.readAllLines(log)), values.get("peakRssKb"));
+        } finally {
+            try(Stream<Path> files = Files.list(directory)) {
+                for(Path file : files.toList())
+                    Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Every pause in the log, in milliseconds and sorted. A pause can be logged both by gc and gc+phases, so each one is only counted once per GC id.
+     */
+    static double[] pauses(List<String> log) {
+        Map<String, Double> pauses = new LinkedHashMap<>();
+        for(String line : log) {
+            Matcher matcher = PAUSE.matcher(line);
+            if(matcher.find())
+                pauses.putIfAbsent(matcher.group(1) + " " + matcher.group(2), Double.parseDouble(matcher.group(3)));
+        }
+        return pauses.values().stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    private static boolean isSupported(Collector collector) throws IOException, InterruptedException {
+        List<String> command = javaCommand(collector);
+        command.add("-version");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        return process.waitFor() == 0;
+    }
+
+    /**
+     * The java launcher running this JVM, with the collector and the preview and incubator options this JVM was started with, which the workloads need too.
+     */
+    private static List<String> javaCommand(Collector collector) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments())
+            if(argument.equals("--enable-preview") || argument.startsWith("--add-modules"))
+                command.add(argument);
+        command.add(collector.option);
+        return command;
+    }
+
+    private static <T> List<T> parse(String[] args, int index, Function<String, T> parser, List<T> defaults) {
+        if(args.length <= index)
+            return defaults;
+        return Arrays.stream(args[index].split(",")).map(String::trim).map(parser).toList();
+    }
+}
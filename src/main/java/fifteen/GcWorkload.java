@@ -0,0 +1,128 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+import loom.prerequisites.ListSummingRecursiveTask;
+import loom.prerequisites.LogSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * An allocation heavy workload for GcHarness to run in a child JVM under each collector. Runs the workload over and over for the given number of
+ * seconds, then prints one line the harness parses: how many operations were done, in how long, and the peak resident set size of the process.
+ *
+ * Usage: GcWorkload [workload] [seconds]
+ */
+public class GcWorkload {
+
+    static final String RESULT_PREFIX = "GcWorkload result:";
+
+    enum Workload {
+
+        /**
+         * ListSummingRecursiveTask over a million ints with a threshold of 64: every split copies both halves, so one sum allocates the array about
+         * twenty times over, all of it dead as soon as the subtask is done. Young garbage only, at the rate the pool can produce it.
+         */
+        COPYING_LIST_SUM {
+            private final int[] array = new SplittableRandom(42).ints(1_000_000, -1_000, 1_000).toArray();
+
+            @Override
+            long run() {
+                return ForkJoinPool.commonPool().invoke(new ListSummingRecursiveTask("GcWorkload", array, LogSink.discarding(), 64));
+            }
+        },
+
+        /**
+         * The JEP356 example at scale: random numbers from split generators boxed into a synchronized list, 250,000 per operation. The last 8 lists are
+         * kept, so there is always a couple of million boxed Integers live for the collector to trace and, eventually, promote.
+         */
+        BOXED_RANDOM_LIST {
+            private final RandomGenerator.SplittableGenerator generator = RandomGeneratorFactory.<RandomGenerator.SplittableGenerator>of("L64X128MixRandom").create(42);
+            private final List<List<Integer>> retained = new ArrayList<>();
+
+            @Override
+            long run() {
+                List<Integer> numbers = Collections.synchronizedList(new ArrayList<>());
+                generator.splits(4).parallel().forEach(split -> {
+                    for(int i = 0; i < 62_500; i++)
+                        numbers.add(split.nextInt(100));
+                });
+                long sum = 0;
+                for(Integer number : numbers)
+                    sum += number;
+                retained.add(numbers);
+                if(retained.size() > 8)
+                    retained.remove(0);
+                return sum;
+            }
+        },
+
+        /**
+         * JEP384 Persons: 100,000 new records per operation, half of them only used to add up ages and half replacing random entries of a table of a
+         * million that stays live. The replacements make old objects point at young ones, which is what the collectors' write barriers and remembered
+         * sets are for.
+         */
+        RECORD_CHURN {
+            private final String[] names = { "Dylan", "Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace" };
+            private final SplittableRandom random = new SplittableRandom(42);
+            private final Person[] table = new Person[1_000_000];
+
+            @Override
+            long run() {
+                long ages = 0;
+                for(int i = 0; i < 100_000; i++) {
+                    Person person = new Person(names[random.nextInt(names.length)] + i, random.nextInt(100), random.nextBoolean() ? Gender.MALE : Gender.FEMALE);
+                    ages += person.age();
+                    if((i & 1) == 0)
+                        table[random.nextInt(table.length)] = person;
+                }
+                return ages;
+            }
+        };
+
+        /**
+         * One operation, returning something computed from it so it can't be optimized away.
+         */
+        abstract long run();
+    }
+
+    public static void main(String[] args) {
+        Workload workload = Workload.valueOf(args.length > 0 ? args[0] : "RECORD_CHURN");
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+
+        long ops = 0, check = 0;
+        long start = System.nanoTime(), deadline = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            check += workload.run();
+            ops++;
+            now = System.nanoTime();
+        } while(now < deadline);
+
+        System.out.printf("%s ops=%d nanos=%d peakRssKb=%d check=%d%n", RESULT_PREFIX, ops, now - start, peakRssKb(), check);
+    }
+
+    /**
+     * VmHWM from /proc/self/status, the most memory the process has had resident at once, heap and everything else the JVM maps included. -1 where
+     * there's no /proc, which is anywhere but Linux.
+     */
+    static long peakRssKb() {
+        try {
+            for(String line : Files.readAllLines(Path.of("/proc/self/status")))
+                if(line.startsWith("VmHWM:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+        } catch(IOException | NumberFormatException e) {
+            // not Linux, or not a format we know
+        }
+        return -1;
+    }
+}
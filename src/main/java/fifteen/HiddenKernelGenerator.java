@@ -0,0 +1,214 @@
+package fifteen;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates leaf kernels at runtime as hidden classes (JEP 371), one class per (operation, element type, unroll factor), instead of running every leaf
+ * through the same generic loop and a lambda. A shared loop calling a lambda only gets inlined as long as it has seen one or two lambdas, once the
+ * summing, counting and mapping leaves all go through it the call site is megamorphic and every element costs a virtual call. A generated class has
+ * exactly one operation written into its loop, so the JIT sees a monomorphic call to a small method it can inline whole and unroll further.
+ *
+ * The kernel source is generated as Java, compiled in memory with the system compiler (javax.tools, so this needs a JDK rather than a JRE) and
+ * defined with Lookup.defineHiddenClass. Hidden classes can't be found by name and aren't kept alive by a class loader, so once the generator's cache
+ * and every kernel instance are dropped (clear()) the class can be unloaded like any other garbage.
+ *
+ * Operations, where p0 and p1 are the parameters passed with each call:
+ *
+ * - SUM: the sum of a[i].
+ * - MASKED_COUNT: how many a[i] are greater than p0, counted without a branch by adding the compare result.
+ * - MAP_REDUCE: the sum of a[i] * p0 + p1, the map and the reduction fused into one pass.
+ *
+ * int and long kernels return a long, double kernels a double.
+ */
+public final class HiddenKernelGenerator {
+
+    public enum Operation { SUM, MASKED_COUNT, MAP_REDUCE }
+
+    @FunctionalInterface
+    public interface IntKernel {
+        long apply(int[] a, int from, int to, long p0, long p1);
+    }
+
+    @FunctionalInterface
+    public interface LongKernel {
+        long apply(long[] a, int from, int to, long p0, long p1);
+    }
+
+    @FunctionalInterface
+    public interface DoubleKernel {
+        double apply(double[] a, int from, int to, double p0, double p1);
+    }
+
+    private record Signature(Operation operation, Class<?> elementType, int unroll) {
+        String className() {
+            return operation.name() + "_" + elementType.getName().toUpperCase() + "_x" + unroll;
+        }
+    }
+
+    private final Map<Signature, Object> kernels = new ConcurrentHashMap<>();
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup(); // hidden classes end up in this class's package, fifteen
+
+    public IntKernel intKernel(Operation operation, int unroll) {
+        return (IntKernel) kernel(new Signature(operation, int.class, unroll), IntKernel.class);
+    }
+
+    public LongKernel longKernel(Operation operation, int unroll) {
+        return (LongKernel) kernel(new Signature(operation, long.class, unroll), LongKernel.class);
+    }
+
+    public DoubleKernel doubleKernel(Operation operation, int unroll) {
+        return (DoubleKernel) kernel(new Signature(operation, double.class, unroll), DoubleKernel.class);
+    }
+
+    public int size() {
+        return kernels.size();
+    }
+
+    /**
+     * Forgets every kernel generated so far. Their classes can be unloaded as soon as nothing else holds on to a kernel instance.
+     */
+    public void clear() {
+        kernels.clear();
+    }
+
+    private Object kernel(Signature signature, Class<?> kernelInterface) {
+        if(signature.unroll() < 1 || signature.unroll() > 64)
+            throw new IllegalArgumentException("unroll factor must be between 1 and 64, was " + signature.unroll());
+        return kernels.computeIfAbsent(signature, s -> define(s, kernelInterface));
+    }
+
+    private Object define(Signature signature, Class<?> kernelInterface) {
+        byte[] bytes = compile(signature.className(), source(signature, kernelInterface));
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true); // no ClassOption.STRONG, so the class can be unloaded
+            return hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch(Throwable t) {
+            throw new IllegalStateException("couldn't define the hidden kernel " + signature.className(), t);
+        }
+    }
+
+    /**
+     * The source of one kernel. With an unroll factor of n the main loop handles n elements per iteration into n independent accumulators, so the
+     * additions don't all wait on one another, and a second loop handles the last few elements.
+     */
+    static String source(Signature signature, Class<?> kernelInterface) {
+        String element = signature.elementType().getName();
+        String scalar = element.equals("double") ? "double" : "long"; // the type of the accumulators, parameters and result
+        int unroll = signature.unroll();
+
+        StringBuilder source = new StringBuilder()
+                .append("package ").append(HiddenKernelGenerator.class.getPackageName()).append(";\n\n")
+                .append("final class ").append(signature.className()).append(" implements ").append(kernelInterface.getCanonicalName()).append(" {\n")
+                .append("    @Override\n")
+                .append("    public ").append(scalar).append(" apply(").append(element).append("[] a, int from, int to, ")
+                .append(scalar).append(" p0, ").append(scalar).append(" p1) {\n");
+
+        for(int lane = 0; lane < unroll; lane++)
+            source.append("        ").append(scalar).append(" acc").append(lane).append(" = 0;\n");
+        source.append("        int i = from;\n")
+                .append("        for(; i <= to - ").append(unroll).append("; i += ").append(unroll).append(") {\n");
+        for(int lane = 0; lane < unroll; lane++)
+            source.append("            acc").append(lane).append(" += ").append(step(signature.operation(), "a[i + " + lane + "]")).append(";\n");
+        source.append("        }\n")
+                .append("        for(; i < to; i++)\n")
+                .append("            acc0 += ").append(step(signature.operation(), "a[i]")).append(";\n")
+                .append("        return acc0");
+        for(int lane = 1; lane < unroll; lane++)
+            source.append(" + acc").append(lane);
+        return source.append(";\n    }\n}\n").toString();
+    }
+
+    private static String step(Operation operation, String element) {
+        return switch(operation) {
+            case SUM -> element;
+            case MASKED_COUNT -> "(" + element + " > p0 ? 1 : 0)";
+            case MAP_REDUCE -> element + " * p0 + p1";
+        };
+    }
+
+    private static byte[] compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler == null)
+            throw new UnsupportedOperationException("kernels are compiled with javax.tools, which needs a JDK rather than a JRE");
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null);
+
+        JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        ForwardingJavaFileManager<StandardJavaFileManager> inMemory = new ForwardingJavaFileManager<>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + ".class"), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classFile;
+                    }
+                };
+            }
+        };
+
+        // the kernel interfaces are found through the class path of this JVM
+        List<String> options = List.of("--release", String.valueOf(Runtime.version().feature()), "-classpath", System.getProperty("java.class.path"));
+        boolean compiled = compiler.getTask(null, inMemory, diagnostics, options, null, List.of(sourceFile)).call();
+        try {
+            inMemory.close();
+        } catch(IOException e) {
+            // nothing was written to disk, nothing to clean up
+        }
+        if(!compiled) {
+            StringBuilder errors = new StringBuilder("couldn't compile the kernel " + className + ":");
+            for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+                errors.append('\n').append(diagnostic.getMessage(null));
+            throw new IllegalStateException(errors + "\n" + source);
+        }
+        return classFile.toByteArray();
+    }
+
+    /**
+     * Generates every kernel, then drops them all and shows their classes being unloaded. HiddenKernelGeneratorTest checks the kernels against
+     * ScalarKernels and plain loops.
+     */
+    public static void main(String[] args) {
+        HiddenKernelGenerator generator = new HiddenKernelGenerator();
+        long start = System.nanoTime();
+        for(Operation operation : Operation.values()) {
+            for(int unroll : new int[] { 1, 2, 4, 8 }) {
+                generator.intKernel(operation, unroll);
+                generator.longKernel(operation, unroll);
+                generator.doubleKernel(operation, unroll);
+            }
+        }
+        System.out.printf("%d hidden kernels generated in %.0f ms%n", generator.size(), (System.nanoTime() - start) / 1e6);
+
+        WeakReference<Class<?>> kernelClass = new WeakReference<>(generator.intKernel(Operation.SUM, 4).getClass());
+        System.out.printf("%s is hidden: %b%n", kernelClass.get().getName(), kernelClass.get().isHidden());
+        generator.clear();
+        for(int attempt = 0; attempt < 10 && kernelClass.get() != null; attempt++)
+            System.gc();
+        System.out.printf("after clear() and a GC the kernel class is %s%n", kernelClass.get() == null ? "unloaded" : "still loaded");
+    }
+}
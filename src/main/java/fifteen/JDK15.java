@@ -8,6 +8,7 @@ public class JDK15 {
      *
      * JEP 371: Hidden Classes (Closed/Delivered) - Allows for runtime creation of classes that are not discoverable. Intended to be used by frameworks that dynamically
      * generate classes at runtime, and use them indirectly through reflection.
+     * See HiddenKernelGenerator, which generates fork/join leaf kernels as hidden classes.
      *
      * JEP 375: Pattern Matching for instanceof (Second Preview) - Introduce pattern matching for the instance of operator, allowing conditional extraction of components
      * from objects. Reduces boilerplate code allowing expressions to become more concise. Also see notes on pattern matching for switch in JDK 17 JEP 406.
@@ -17,6 +18,7 @@ public class JDK15 {
      *
      * Note about Garbage Collector: Both ZGC (JEP 377) and Shenandoah (JEP 379) are no longer experimental. G1 is still the
      * default. To use ZGCn use following GC options : -XX:+UseZGC -Xmx<size> -Xlog:gc
+     * See GcHarness, which runs allocation heavy workloads under each collector and compares their pauses, throughput and peak RSS.
      *
      * Other noteworthy changes in JDK 15:
      * - DatagramSocket API has been re-written, a needed pre-requisite for Project Loom. JEP 373.
@@ -35,6 +37,7 @@ public class JDK15 {
                         "    </body>\n" +
                         "</html>\n";
 
+        // See TextTemplate for text blocks like this one used as templates, with {{placeholders}} filled in without building Strings
         String htmlNew = """
                       <html>
                           <body>
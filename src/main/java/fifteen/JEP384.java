@@ -10,12 +10,16 @@ package fifteen;
  */
 public class JEP384 {
 
-    private enum Gender { MALE, FEMALE }
+    enum Gender { MALE, FEMALE }
 
 
-    private record Person(String name, int age, Gender gender){
+    record Person(String name, int age, Gender gender){
 
         public Person { // override default behaviour
+            requireValidAge(age);
+        }
+
+        static void requireValidAge(int age) { // shared with PersonTable, which stores people without constructing a Person
             if(age < 0)
                 throw new IllegalArgumentException("impossible, you must be some kind of alien");
         }
@@ -35,5 +39,14 @@ public class JEP384 {
 
         System.out.printf("%s, %d, %s%n", name, age, gender.name());
         System.out.println(person); // .toString()
+
+        // The same people stored column by column instead of one record object each, see PersonTable.
+        PersonTable table = new PersonTable();
+        table.append("Dylan", 21, Gender.MALE);
+        table.append("Alice", 34, Gender.FEMALE);
+        table.append("Dylan", 48, Gender.MALE);
+        System.out.printf("%d people, %d distinct names, %d older than 30, %d female, average age %.1f%n", table.size(), table.distinctNames(),
+                table.countAgeGreaterThan(30), table.countGender(Gender.FEMALE), table.averageAge());
+        table.ageGreaterThan(30).stream().mapToObj(table::get).forEach(System.out::println); // Person views of the matching rows
     }
 }
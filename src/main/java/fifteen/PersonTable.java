@@ -0,0 +1,262 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+import loom.prerequisites.LeafKernel;
+import loom.prerequisites.RangeSummingRecursiveTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * The people of JEP384 stored column by column (struct of arrays) instead of one Person record each. Every Person on the heap costs an object header
+ * and a reference to it, plus a String per name, which at tens of millions of rows is more than the data itself. Here a row is just:
+ *
+ * - its age, in an int[],
+ * - the ordinal of its gender, in a byte[],
+ * - the id of its name, in an int[]. Each distinct name is stored once in a dictionary, so a million Dylans cost one String.
+ *
+ * Appending checks the age with the same rule as the Person compact constructor, so a table never holds a row that couldn't be a Person, and get()
+ * still hands out a Person (a new one every call, built from the columns) for code that wants records.
+ *
+ * Filters return the matching rows as a BitSet and aggregations return a number. Both run on a ForkJoinPool over ranges of the columns, and the leaves
+ * count or sum with a LeafKernel, so LeafKernel.VECTOR turns them into Vector API loops over the primitive arrays.
+ *
+ * Appending isn't thread safe. Filters and aggregations can run from any number of threads as long as nothing is appended at the same time.
+ */
+public final class PersonTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LEAF_SIZE = 1 << 14; // rows per leaf task, a multiple of 64 so a filter leaf owns whole words of its BitSet
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final ForkJoinPool pool;
+    private final LeafKernel kernel;
+
+    private int[] ages;
+    private byte[] genders;
+    private int[] nameIds;
+    private int size;
+
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    public PersonTable() {
+        this(ForkJoinPool.commonPool(), LeafKernel.SCALAR);
+    }
+
+    public PersonTable(ForkJoinPool pool, LeafKernel kernel) {
+        this.pool = Objects.requireNonNull(pool);
+        this.kernel = Objects.requireNonNull(kernel);
+        this.ages = new int[INITIAL_CAPACITY];
+        this.genders = new byte[INITIAL_CAPACITY];
+        this.nameIds = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a row and returns its index.
+     */
+    public int append(String name, int age, Gender gender) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(gender, "gender");
+        Person.requireValidAge(age);
+
+        if(size == ages.length) {
+            int capacity = Math.multiplyExact(ages.length, 2);
+            ages = Arrays.copyOf(ages, capacity);
+            genders = Arrays.copyOf(genders, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        ages[size] = age;
+        genders[size] = (byte) gender.ordinal();
+        nameIds[size] = nameIndex.computeIfAbsent(name, n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int distinctNames() {
+        return names.size();
+    }
+
+    /**
+     * A Person view of a row. The record's name() override still applies, it's the same Person as in JEP384.
+     */
+    public Person get(int row) {
+        Objects.checkIndex(row, size);
+        return new Person(names.get(nameIds[row]), ages[row], GENDERS[genders[row]]);
+    }
+
+    public String name(int row) {
+        return names.get(nameIds[Objects.checkIndex(row, size)]);
+    }
+
+    public int age(int row) {
+        return ages[Objects.checkIndex(row, size)];
+    }
+
+    public Gender gender(int row) {
+        return GENDERS[genders[Objects.checkIndex(row, size)]];
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(int row, String name, int age, Gender gender);
+    }
+
+    /**
+     * Calls the consumer with rows from (inclusive) to to (exclusive), in order, without creating a Person for any of them.
+     */
+    public void scan(int from, int to, RowConsumer consumer) {
+        Objects.checkFromToIndex(from, to, size);
+        for(int row = from; row < to; row++)
+            consumer.accept(row, names.get(nameIds[row]), ages[row], GENDERS[genders[row]]);
+    }
+
+    // filters
+
+    public BitSet ageGreaterThan(int age) {
+        int[] ages = this.ages;
+        return filter(row -> ages[row] > age);
+    }
+
+    public BitSet genderIs(Gender gender) {
+        byte[] genders = this.genders;
+        byte ordinal = (byte) gender.ordinal();
+        return filter(row -> genders[row] == ordinal);
+    }
+
+    private BitSet filter(IntPredicate matches) {
+        long[] words = new long[(size + 63) >>> 6];
+        pool.invoke(new FilterTask(matches, words, 0, size));
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Sets the bits of the matching rows in [from, to). from is always a multiple of 64, as is the split point, so no two leaves write the same word.
+     */
+    private static final class FilterTask extends RecursiveAction {
+        private final IntPredicate matches;
+        private final long[] words;
+        private final int from;
+        private final int to;
+
+        FilterTask(IntPredicate matches, long[] words, int from, int to) {
+            this.matches = matches;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= LEAF_SIZE) {
+                for(int row = from; row < to; row++)
+                    if(matches.test(row))
+                        words[row >>> 6] |= 1L << row;
+                return;
+            }
+            int middle = (from + (to - from) / 2) & ~63;
+            invokeAll(new FilterTask(matches, words, from, middle), new FilterTask(matches, words, middle, to));
+        }
+    }
+
+    // aggregations
+
+    public long countAgeGreaterThan(int age) {
+        int[] ages = this.ages;
+        return count((from, to) -> kernel.countGreaterThan(ages, from, to, age));
+    }
+
+    public long countGender(Gender gender) {
+        byte[] genders = this.genders;
+        byte ordinal = (byte) gender.ordinal();
+        return count((from, to) -> kernel.countEqual(genders, from, to, ordinal));
+    }
+
+    public long sumAges() {
+        return pool.invoke(new RangeSummingRecursiveTask(ages, 0, size, kernel));
+    }
+
+    public double averageAge() {
+        return size == 0 ? Double.NaN : (double) sumAges() / size;
+    }
+
+    @FunctionalInterface
+    private interface RangeCount {
+        long count(int from, int to);
+    }
+
+    private long count(RangeCount leaf) {
+        return pool.invoke(new CountTask(leaf, 0, size));
+    }
+
+    private static final class CountTask extends RecursiveTask<Long> {
+        private final RangeCount leaf;
+        private final int from;
+        private final int to;
+
+        CountTask(RangeCount leaf, int from, int to) {
+            this.leaf = leaf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from <= LEAF_SIZE)
+                return leaf.count(from, to);
+            int middle = from + (to - from) / 2;
+            CountTask left = new CountTask(leaf, from, middle);
+            left.fork();
+            long right = new CountTask(leaf, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Fills a table with random people and times every filter and aggregation with each kernel the JVM can run, LeafKernel.VECTOR only with
+     * --add-modules jdk.incubator.vector. PersonTableTest checks their results against a plain loop over the rows.
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] firstNames = { "Dylan", "Alice", "Bob", "Chen", "Priya", "Olga", "Kofi", "Maria" };
+
+        for(LeafKernel kernel : LeafKernel.values()) {
+            if(!kernel.isAvailable()) {
+                System.out.printf("%s: skipped, needs --add-modules jdk.incubator.vector%n", kernel);
+                continue;
+            }
+            PersonTable table = new PersonTable(ForkJoinPool.commonPool(), kernel);
+            SplittableRandom random = new SplittableRandom(42);
+            for(int i = 0; i < rows; i++)
+                table.append(firstNames[random.nextInt(firstNames.length)], random.nextInt(100), GENDERS[random.nextInt(GENDERS.length)]);
+
+            for(int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                long over40 = table.countAgeGreaterThan(40), female = table.countGender(Gender.FEMALE), sum = table.sumAges();
+                long aggregated = System.nanoTime();
+                table.ageGreaterThan(40);
+                table.genderIs(Gender.FEMALE);
+                long end = System.nanoTime();
+                System.out.printf("%s: %,d rows, %d names, %,d over 40, %,d female, age sum %,d: counts and sum in %.1f ms, filters in %.1f ms%n", kernel,
+                        table.size(), table.distinctNames(), over40, female, sum, (aggregated - start) / 1e6, (end - aggregated) / 1e6);
+            }
+        }
+    }
+}
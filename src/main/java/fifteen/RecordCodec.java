@@ -0,0 +1,570 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+import seventeen.JEP409.OnlyChild;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes records to, and reads them back from, a ByteBuffer in a compact binary form. Everything needed to do that is worked out once per record class
+ * from its components (JEP 384/395) and cached, so there's no reflection per record, only MethodHandle calls:
+ *
+ * - Components are read straight from the record's private fields, not through the accessors, so an overridden accessor like Person.name() (which
+ *   returns "name -> " + name) doesn't leak into the encoding and a record always decodes to one equal to the original.
+ * - Records are created through the canonical constructor, so whatever checks it makes (the age check in Person) also apply to decoded records. The
+ *   constructor handle takes its arguments from a long[] and an Object[] the codec reuses on each thread, so primitives are never boxed on the way in.
+ *
+ * Supported component types are the primitives, String (UTF-8 with a length prefix, null allowed), enums (the ordinal, one byte when there are at most
+ * 256 constants, otherwise four) and other records (encoded in place, not null). Anything else is rejected when the codec is created, as are records
+ * that contain themselves.
+ *
+ * Each record is framed by a four byte length, which is how ChannelReader knows whether a whole record is in its buffer. Numbers use the byte order of
+ * the buffer they're written to, the buffers of ChannelWriter and ChannelReader are always big endian.
+ *
+ * Apart from the record itself and its Strings, decoding doesn't allocate, and encoding doesn't allocate at all.
+ *
+ * What it doesn't do is run at the speed of hand-written code. The handles sit in instance fields of the codec and its components, one codec shared by
+ * every record class, and the JIT only treats a MethodHandle as a constant it can inline through when it is read from a static final field (or is
+ * otherwise a constant at the call site). So every component costs a call through a handle the JIT can't see into, plus a virtual call to the
+ * component and a ThreadLocal lookup per record read, and main() gets tens of MB/s rather than the hundreds a codec written out by hand for Person
+ * would. Spinning a class per record type, holding its handles in static finals the way HiddenKernelGenerator spins a class per kernel, would let
+ * them fold; this codec stays generic instead, so measure it before putting it on a hot path.
+ */
+public final class RecordCodec<R extends Record> {
+
+    private static final ConcurrentMap<Class<?>, RecordCodec<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<R> type;
+    private final Component[] components;
+    private final MethodHandle constructor; // (long[], Object[])Object, not a constant to the JIT, see above
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * The codec for a record class, created on first use. The lookup is only used the first time, to get at the private fields and constructor of the
+     * record, so it needs private access to it: pass MethodHandles.lookup() from the class declaring the record or from its package.
+     */
+    public static <R extends Record> RecordCodec<R> of(Class<R> type, MethodHandles.Lookup lookup) {
+        return cached(type, lookup, new HashSet<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R extends Record> RecordCodec<R> cached(Class<R> type, MethodHandles.Lookup lookup, Set<Class<?>> deriving) {
+        RecordCodec<?> codec = CACHE.get(type);
+        if(codec == null) { // not computeIfAbsent(), deriving a record's codec also derives (and caches) the codecs of the records inside it
+            codec = derive(type, lookup, deriving);
+            RecordCodec<?> existing = CACHE.putIfAbsent(type, codec);
+            if(existing != null)
+                codec = existing;
+        }
+        return (RecordCodec<R>) codec;
+    }
+
+    private static <R extends Record> RecordCodec<R> derive(Class<R> type, MethodHandles.Lookup lookup, Set<Class<?>> deriving) {
+        if(!deriving.add(type))
+            throw new IllegalArgumentException(type.getName() + " contains itself, it can't be encoded");
+        try {
+            return new RecordCodec<>(type, MethodHandles.privateLookupIn(type, lookup), deriving);
+        } catch(IllegalAccessException | NoSuchFieldException | NoSuchMethodException e) {
+            throw new IllegalArgumentException("can't access the fields and canonical constructor of " + type.getName(), e);
+        } finally {
+            deriving.remove(type);
+        }
+    }
+
+    private RecordCodec(Class<R> type, MethodHandles.Lookup lookup, Set<Class<?>> deriving)
+            throws IllegalAccessException, NoSuchFieldException, NoSuchMethodException {
+        this.type = type;
+
+        RecordComponent[] recordComponents = type.getRecordComponents();
+        Class<?>[] parameterTypes = new Class<?>[recordComponents.length];
+        components = new Component[recordComponents.length];
+        int longSlots = 0, objectSlots = 0;
+
+        for(int i = 0; i < recordComponents.length; i++) {
+            RecordComponent component = recordComponents[i];
+            Class<?> componentType = component.getType();
+            parameterTypes[i] = componentType;
+            MethodHandle getter = lookup.findGetter(type, component.getName(), componentType); // the field, not the accessor
+
+            if(componentType.isPrimitive())
+                components[i] = new PrimitiveComponent(component.getName(), Primitive.of(componentType), getter, longSlots++);
+            else if(componentType == String.class)
+                components[i] = new StringComponent(component.getName(), getter, objectSlots++);
+            else if(componentType.isEnum())
+                components[i] = new EnumComponent(component.getName(), componentType.getEnumConstants(), getter, objectSlots++);
+            else if(componentType.isRecord())
+                components[i] = new RecordComponentCodec(component.getName(), cached(componentType.asSubclass(Record.class), lookup, deriving), getter, objectSlots++);
+            else
+                throw new IllegalArgumentException("component " + component.getName() + " of " + type.getName() + " has unsupported type " + componentType.getName());
+        }
+
+        constructor = spreadConstructor(lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes)), components);
+        int longs = longSlots, objects = objectSlots;
+        scratch = ThreadLocal.withInitial(() -> new Scratch(longs, objects));
+    }
+
+    /**
+     * Turns the canonical constructor (A, B, C...)R into (long[], Object[])Object, where each argument is taken from its component's slot in one of
+     * the two arrays. Primitives are stored in the long[] as raw bits and converted back without boxing.
+     */
+    private static MethodHandle spreadConstructor(MethodHandle constructor, Component[] components) {
+        int[] reorder = new int[components.length];
+        for(int i = 0; i < components.length; i++) {
+            Class<?> parameterType = constructor.type().parameterType(i);
+            MethodHandle argument;
+            if(components[i] instanceof PrimitiveComponent primitive) {
+                argument = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(long[].class), 1, primitive.slot);
+                argument = primitive.primitive.fromBits(argument);
+                reorder[i] = 0;
+            } else {
+                argument = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, components[i].slot);
+                argument = argument.asType(MethodType.methodType(parameterType, Object[].class));
+                reorder[i] = 1;
+            }
+            constructor = MethodHandles.filterArguments(constructor, i, argument);
+        }
+        return MethodHandles.permuteArguments(constructor.asType(constructor.type().changeReturnType(Object.class)),
+                MethodType.methodType(Object.class, long[].class, Object[].class), reorder);
+    }
+
+    public Class<R> type() {
+        return type;
+    }
+
+    /**
+     * Writes one framed record at the buffer's position. If it doesn't fit, a BufferOverflowException is thrown with the position put back where it
+     * was, so the caller can drain the buffer and try again.
+     */
+    public void write(R record, ByteBuffer out) {
+        int start = out.position();
+        try {
+            out.putInt(0);
+            writeBody(record, out);
+            out.putInt(start, out.position() - start - Integer.BYTES);
+        } catch(BufferOverflowException e) {
+            out.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads one framed record from the buffer's position. The whole frame must be in the buffer.
+     */
+    public R read(ByteBuffer in) {
+        int length = in.getInt();
+        int end = in.position() + length;
+        R record = readBody(in);
+        if(in.position() != end)
+            throw new IllegalStateException("corrupt frame, " + type.getName() + " used " + (in.position() - end + length) + " of its " + length + " bytes");
+        return record;
+    }
+
+    private void writeBody(Object record, ByteBuffer out) {
+        try {
+            for(Component component : components)
+                component.write(record, out);
+        } catch(RuntimeException | Error e) {
+            throw e;
+        } catch(Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    private R readBody(ByteBuffer in) {
+        Scratch scratch = this.scratch.get();
+        for(Component component : components)
+            component.read(in, scratch);
+        try {
+            return type.cast(constructor.invokeExact(scratch.longs, scratch.objects));
+        } catch(RuntimeException | Error e) {
+            throw e;
+        } catch(Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        } finally {
+            Arrays.fill(scratch.objects, null); // don't keep the last record's Strings alive
+        }
+    }
+
+    private static final class Scratch {
+        final long[] longs;
+        final Object[] objects;
+        byte[] bytes = new byte[64]; // Strings read from direct buffers are copied through this
+
+        Scratch(int longs, int objects) {
+            this.longs = new long[longs];
+            this.objects = new Object[objects];
+        }
+    }
+
+    // components
+
+    private abstract static class Component {
+        final String name;
+        final MethodHandle getter; // not a constant to the JIT either, so calls through it aren't inlined
+        final int slot;
+
+        Component(String name, MethodHandle getter, int slot) {
+            this.name = name;
+            this.getter = getter;
+            this.slot = slot;
+        }
+
+        abstract void write(Object record, ByteBuffer out) throws Throwable;
+
+        abstract void read(ByteBuffer in, Scratch scratch);
+    }
+
+    private enum Primitive {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE;
+
+        static Primitive of(Class<?> type) {
+            return valueOf(type.getName().toUpperCase());
+        }
+
+        /**
+         * Adapts a (long[])long slot getter into one returning this primitive, undoing how read() stored it.
+         */
+        MethodHandle fromBits(MethodHandle bits) {
+            try {
+                return switch(this) {
+                    case BOOLEAN -> MethodHandles.explicitCastArguments(bits, MethodType.methodType(boolean.class, long[].class)); // keeps the low bit
+                    case BYTE -> MethodHandles.explicitCastArguments(bits, MethodType.methodType(byte.class, long[].class));
+                    case SHORT -> MethodHandles.explicitCastArguments(bits, MethodType.methodType(short.class, long[].class));
+                    case CHAR -> MethodHandles.explicitCastArguments(bits, MethodType.methodType(char.class, long[].class));
+                    case INT -> MethodHandles.explicitCastArguments(bits, MethodType.methodType(int.class, long[].class));
+                    case LONG -> bits;
+                    case FLOAT -> MethodHandles.filterReturnValue(MethodHandles.explicitCastArguments(bits, MethodType.methodType(int.class, long[].class)),
+                            MethodHandles.lookup().findStatic(Float.class, "intBitsToFloat", MethodType.methodType(float.class, int.class)));
+                    case DOUBLE -> MethodHandles.filterReturnValue(bits,
+                            MethodHandles.lookup().findStatic(Double.class, "longBitsToDouble", MethodType.methodType(double.class, long.class)));
+                };
+            } catch(NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class PrimitiveComponent extends Component {
+        final Primitive primitive;
+
+        PrimitiveComponent(String name, Primitive primitive, MethodHandle getter, int slot) {
+            super(name, getter.asType(getter.type().changeParameterType(0, Object.class)), slot);
+            this.primitive = primitive;
+        }
+
+        @Override
+        void write(Object record, ByteBuffer out) throws Throwable {
+            switch(primitive) { // invokeExact with the field's own type, so nothing is boxed
+                case BOOLEAN -> out.put((boolean) getter.invokeExact(record) ? (byte) 1 : (byte) 0);
+                case BYTE -> out.put((byte) getter.invokeExact(record));
+                case SHORT -> out.putShort((short) getter.invokeExact(record));
+                case CHAR -> out.putChar((char) getter.invokeExact(record));
+                case INT -> out.putInt((int) getter.invokeExact(record));
+                case LONG -> out.putLong((long) getter.invokeExact(record));
+                case FLOAT -> out.putFloat((float) getter.invokeExact(record));
+                case DOUBLE -> out.putDouble((double) getter.invokeExact(record));
+            }
+        }
+
+        @Override
+        void read(ByteBuffer in, Scratch scratch) {
+            scratch.longs[slot] = switch(primitive) {
+                case BOOLEAN, BYTE -> in.get();
+                case SHORT -> in.getShort();
+                case CHAR -> in.getChar();
+                case INT -> in.getInt();
+                case LONG -> in.getLong();
+                case FLOAT -> Float.floatToRawIntBits(in.getFloat());
+                case DOUBLE -> Double.doubleToRawLongBits(in.getDouble());
+            };
+        }
+    }
+
+    private static final class StringComponent extends Component {
+
+        StringComponent(String name, MethodHandle getter, int slot) {
+            super(name, getter.asType(MethodType.methodType(String.class, Object.class)), slot);
+        }
+
+        @Override
+        void write(Object record, ByteBuffer out) throws Throwable {
+            String value = (String) getter.invokeExact(record);
+            if(value == null) {
+                out.putInt(-1);
+                return;
+            }
+            int start = out.position();
+            out.putInt(0);
+            encodeUtf8(value, out);
+            out.putInt(start, out.position() - start - Integer.BYTES);
+        }
+
+        @Override
+        void read(ByteBuffer in, Scratch scratch) {
+            int length = in.getInt();
+            if(length < 0) {
+                scratch.objects[slot] = null;
+                return;
+            }
+            if(in.hasArray()) {
+                scratch.objects[slot] = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            } else {
+                if(scratch.bytes.length < length)
+                    scratch.bytes = new byte[Math.max(length, scratch.bytes.length * 2)];
+                in.get(scratch.bytes, 0, length);
+                scratch.objects[slot] = new String(scratch.bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Straight into the buffer, instead of through getBytes() and a temporary array. Unpaired surrogates become '?', as they do with getBytes().
+         */
+        private static void encodeUtf8(String value, ByteBuffer out) {
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c < 0x80)
+                    out.put((byte) c);
+                else if(c < 0x800)
+                    out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+                else if(Character.isSurrogate(c)) {
+                    int codePoint = value.codePointAt(i);
+                    if(!Character.isSupplementaryCodePoint(codePoint) || Character.isLowSurrogate(c)) {
+                        out.put((byte) '?');
+                        continue;
+                    }
+                    out.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                            .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+                    i++;
+                } else
+                    out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static final class EnumComponent extends Component {
+        private final Object[] constants;
+        private final boolean wide;
+
+        EnumComponent(String name, Object[] constants, MethodHandle getter, int slot) {
+            super(name, getter.asType(MethodType.methodType(Enum.class, Object.class)), slot);
+            this.constants = constants;
+            this.wide = constants.length > 256;
+        }
+
+        @Override
+        void write(Object record, ByteBuffer out) throws Throwable {
+            Enum<?> value = (Enum<?>) getter.invokeExact(record);
+            int ordinal = Objects.requireNonNull(value, name).ordinal();
+            if(wide)
+                out.putInt(ordinal);
+            else
+                out.put((byte) ordinal);
+        }
+
+        @Override
+        void read(ByteBuffer in, Scratch scratch) {
+            scratch.objects[slot] = constants[wide ? in.getInt() : Byte.toUnsignedInt(in.get())];
+        }
+    }
+
+    private static final class RecordComponentCodec extends Component {
+        private final RecordCodec<?> codec;
+
+        RecordComponentCodec(String name, RecordCodec<?> codec, MethodHandle getter, int slot) {
+            super(name, getter.asType(MethodType.methodType(Object.class, Object.class)), slot);
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object record, ByteBuffer out) throws Throwable {
+            codec.writeBody(Objects.requireNonNull((Object) getter.invokeExact(record), name), out);
+        }
+
+        @Override
+        void read(ByteBuffer in, Scratch scratch) {
+            scratch.objects[slot] = codec.readBody(in);
+        }
+    }
+
+    // channels
+
+    public ChannelWriter<R> writer(WritableByteChannel channel, int bufferSize) {
+        return new ChannelWriter<>(this, channel, bufferSize);
+    }
+
+    public ChannelReader<R> reader(ReadableByteChannel channel, int bufferSize) {
+        return new ChannelReader<>(this, channel, bufferSize);
+    }
+
+    /**
+     * Batches records into a direct buffer and writes the buffer to the channel whenever the next record doesn't fit. A record bigger than the whole
+     * buffer can't be written. close() flushes but doesn't close the channel, which belongs to the caller.
+     */
+    public static final class ChannelWriter<R extends Record> implements AutoCloseable {
+        private final RecordCodec<R> codec;
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private long count;
+
+        private ChannelWriter(RecordCodec<R> codec, WritableByteChannel channel, int bufferSize) {
+            this.codec = codec;
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        public void write(R record) throws IOException {
+            try {
+                codec.write(record, buffer);
+            } catch(BufferOverflowException e) {
+                flush();
+                try {
+                    codec.write(record, buffer);
+                } catch(BufferOverflowException tooBig) {
+                    throw new IOException("record doesn't fit in a " + buffer.capacity() + " byte buffer: " + record);
+                }
+            }
+            count++;
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        public long count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Reads records back from a channel through a direct buffer, refilling it whenever the next frame isn't all there. read() returns null at the end
+     * of the channel and throws EOFException if it ends part way through a record.
+     */
+    public static final class ChannelReader<R extends Record> {
+        private final RecordCodec<R> codec;
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        private ChannelReader(RecordCodec<R> codec, ReadableByteChannel channel, int bufferSize) {
+            this.codec = codec;
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize).limit(0);
+        }
+
+        public R read() throws IOException {
+            if(!fill(Integer.BYTES)) {
+                if(buffer.hasRemaining())
+                    throw new EOFException("channel ended inside a frame header");
+                return null;
+            }
+            int frame = Integer.BYTES + buffer.getInt(buffer.position());
+            if(frame > buffer.capacity())
+                throw new IOException("record of " + frame + " bytes doesn't fit in a " + buffer.capacity() + " byte buffer");
+            if(!fill(frame))
+                throw new EOFException("channel ended inside a " + codec.type.getSimpleName() + " record");
+            return codec.read(buffer);
+        }
+
+        private boolean fill(int bytes) throws IOException {
+            while(buffer.remaining() < bytes) {
+                buffer.compact();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if(read < 0)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Streams people to a temporary file and back, and prints the throughput and how many bytes each record allocated on the way in and out (on JVMs
+     * that can tell). RecordCodecTest checks that they survive the round trip.
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        String[] names = { "Dylan", "Alice", "Zo\u00eb", "\u0141ukasz", "\u540d\u524d", "\ud83d\ude00 emoji" };
+        Gender[] genders = Gender.values();
+
+        RecordCodec<Person> people = RecordCodec.of(Person.class, MethodHandles.lookup());
+        RecordCodec<OnlyChild> children = RecordCodec.of(OnlyChild.class, MethodHandles.lookup());
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        Person dylan = new Person("Dylan", 21, Gender.MALE);
+        people.write(dylan, buffer);
+        children.write(new OnlyChild("Kim"), buffer);
+        buffer.flip();
+        Person decoded = people.read(buffer);
+        System.out.printf("%s -> %d bytes -> %s, name(): %s%n", dylan, buffer.position(), decoded, decoded.name());
+        System.out.println(children.read(buffer));
+
+        Path file = Files.createTempFile("people", ".bin");
+        try {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                ChannelWriter<Person> writer = people.writer(channel, 1 << 16)) {
+                for(int i = 0; i < count; i++)
+                    writer.write(new Person(names[i % names.length], i % 120, genders[i % genders.length]));
+            }
+            long writeNanos = System.nanoTime() - start;
+            long writeAllocated = allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            int read = 0;
+            long ages = 0;
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ChannelReader<Person> reader = people.reader(channel, 1 << 16);
+                for(Person person; (person = reader.read()) != null; read++)
+                    ages += person.age(); // so the records are used
+            }
+            long readNanos = System.nanoTime() - start;
+            long readAllocated = allocatedBytes() - allocated;
+
+            double megabytes = Files.size(file) / 1e6;
+            System.out.printf("wrote %,d people (%.1f MB) at %.0f MB/s, ~%d bytes allocated per record (including the Person being written)%n",
+                    count, megabytes, megabytes / (writeNanos / 1e9), writeAllocated / count);
+            System.out.printf("read %,d people at %.0f MB/s, ~%d bytes allocated per record (including the Person), ages add up to %d%n",
+                    read, megabytes / (readNanos / 1e9), readAllocated / Math.max(read, 1), ages);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return java.lang.management.ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                ? threads.getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+}
@@ -0,0 +1,520 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A template, typically a text block (JEP 378) like the htmlNew of JDK15, with {{name}} placeholders in it, compiled once into a plan: the literal text
+ * between the placeholders, already encoded as UTF-8 bytes (and kept as chars for Writers), and a slot for each placeholder. Rendering just walks the plan,
+ * copying the literals and asking the bound SlotWriter of each slot to write its value straight to the output, so a row of a report never becomes a
+ * String, never mind the string concatenations of the htmlOld way of doing it.
+ *
+ *   TextTemplate row = TextTemplate.compile("""
+ *           <tr><td>{{name}}</td><td>{{age}}</td></tr>
+ *           """, Escaping.HTML);
+ *   Renderer<Person> renderer = row.<Person>bind()
+ *           .slot("name", (person, out) -> out.text(person.name()))
+ *           .slot("age", (person, out) -> out.number(person.age()))
+ *           .build();
+ *   renderer.renderAll(people, outputStream, ForkJoinPool.commonPool());
+ *
+ * Values written with text() are escaped for the kind of document the template is (see Escaping), literals never are. Every placeholder must be bound,
+ * the same name can appear more than once in a template.
+ *
+ * Rendering to bytes (a ByteBuffer or an OutputStream) goes through a reusable per thread byte array, so the bytes are copied once into the target.
+ * renderAll() can render rows in parallel: chunks of rows are rendered on a ForkJoinPool, each into its own byte array, and written to the stream in
+ * row order as they complete, with only a bounded number of chunks held in memory at a time.
+ */
+public final class TextTemplate {
+
+    private static final String OPEN = "{{", CLOSE = "}}";
+    private static final int ROWS_PER_CHUNK = 256;
+
+    public enum Escaping {
+        NONE,
+        HTML, // & < > " ' as character references
+        JSON; // " \ and control characters, for values inside JSON strings
+
+        /**
+         * The replacement for c, or null if c is written as it is.
+         */
+        String escape(char c) {
+            return switch(this) {
+                case NONE -> null;
+                case HTML -> switch(c) {
+                    case '&' -> "&amp;";
+                    case '<' -> "&lt;";
+                    case '>' -> "&gt;";
+                    case '"' -> "&quot;";
+                    case '\'' -> "&#39;";
+                    default -> null;
+                };
+                case JSON -> switch(c) {
+                    case '"' -> "\\\"";
+                    case '\\' -> "\\\\";
+                    case '\n' -> "\\n";
+                    case '\r' -> "\\r";
+                    case '\t' -> "\\t";
+                    default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+                };
+            };
+        }
+    }
+
+    private final Escaping escaping;
+    private final char[][] literalChars; // literals[i] comes before slot i, the last literal after the last slot
+    private final byte[][] literalBytes;
+    private final String[] slotNames;
+    private final int literalLength; // UTF-8 bytes of all the literals together, a lower bound on the size of a rendered row
+
+    private TextTemplate(Escaping escaping, List<String> literals, List<String> slotNames) {
+        this.escaping = escaping;
+        this.literalChars = literals.stream().map(String::toCharArray).toArray(char[][]::new);
+        this.literalBytes = literals.stream().map(literal -> literal.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        this.slotNames = slotNames.toArray(String[]::new);
+        this.literalLength = Arrays.stream(literalBytes).mapToInt(bytes -> bytes.length).sum();
+    }
+
+    public static TextTemplate compile(String template, Escaping escaping) {
+        Objects.requireNonNull(escaping);
+        List<String> literals = new ArrayList<>();
+        List<String> slotNames = new ArrayList<>();
+
+        int from = 0;
+        for(int open; (open = template.indexOf(OPEN, from)) >= 0; ) {
+            int close = template.indexOf(CLOSE, open + OPEN.length());
+            if(close < 0)
+                throw new IllegalArgumentException("placeholder opened at " + open + " is never closed");
+            String name = template.substring(open + OPEN.length(), close).strip();
+            if(name.isEmpty())
+                throw new IllegalArgumentException("placeholder at " + open + " has no name");
+            literals.add(template.substring(from, open));
+            slotNames.add(name);
+            from = close + CLOSE.length();
+        }
+        literals.add(template.substring(from));
+        return new TextTemplate(escaping, literals, slotNames);
+    }
+
+    public List<String> slotNames() {
+        return List.of(slotNames);
+    }
+
+    public <T> Binder<T> bind() {
+        return new Binder<>();
+    }
+
+    /**
+     * Writes the value of one slot for one row.
+     */
+    @FunctionalInterface
+    public interface SlotWriter<T> {
+        void write(T row, Output out);
+    }
+
+    public final class Binder<T> {
+        private final Map<String, SlotWriter<? super T>> writers = new LinkedHashMap<>();
+
+        private Binder() {
+        }
+
+        public Binder<T> slot(String name, SlotWriter<? super T> writer) {
+            if(!Arrays.asList(slotNames).contains(name))
+                throw new IllegalArgumentException("the template has no placeholder called " + name);
+            writers.put(name, Objects.requireNonNull(writer));
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Renderer<T> build() {
+            SlotWriter<? super T>[] slots = (SlotWriter<? super T>[]) new SlotWriter<?>[slotNames.length];
+            for(int i = 0; i < slotNames.length; i++) {
+                slots[i] = writers.get(slotNames[i]);
+                if(slots[i] == null)
+                    throw new IllegalStateException("placeholder " + slotNames[i] + " isn't bound");
+            }
+            return new Renderer<>(TextTemplate.this, slots);
+        }
+    }
+
+    /**
+     * A template with a SlotWriter bound to every slot. Immutable, so it can render from any number of threads at once.
+     */
+    public static final class Renderer<T> {
+        private final TextTemplate template;
+        private final SlotWriter<? super T>[] slots;
+        private final ThreadLocal<ByteOutput> bytes;
+
+        private Renderer(TextTemplate template, SlotWriter<? super T>[] slots) {
+            this.template = template;
+            this.slots = slots;
+            this.bytes = ThreadLocal.withInitial(() -> new ByteOutput(template.escaping, 2 * template.literalLength + 64));
+        }
+
+        private void render(T row, Output out) {
+            for(int i = 0; i < slots.length; i++) {
+                out.literal(template, i);
+                slots[i].write(row, out);
+            }
+            out.literal(template, slots.length);
+        }
+
+        public void render(T row, Writer writer) throws IOException {
+            CharOutput out = new CharOutput(template.escaping, writer);
+            try {
+                render(row, out);
+                out.flush();
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Renders one row at the buffer's position. If it doesn't fit, a BufferOverflowException is thrown and the buffer is left as it was.
+         */
+        public void render(T row, ByteBuffer buffer) {
+            ByteOutput out = bytes.get().reset();
+            render(row, out);
+            if(out.size > buffer.remaining())
+                throw new BufferOverflowException();
+            buffer.put(out.bytes, 0, out.size);
+        }
+
+        public void render(T row, OutputStream stream) throws IOException {
+            ByteOutput out = bytes.get().reset();
+            render(row, out);
+            stream.write(out.bytes, 0, out.size);
+        }
+
+        public void renderAll(List<? extends T> rows, Writer writer) throws IOException {
+            CharOutput out = new CharOutput(template.escaping, writer);
+            try {
+                for(T row : rows)
+                    render(row, out);
+                out.flush();
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        public void renderAll(List<? extends T> rows, OutputStream stream) throws IOException {
+            ByteOutput out = bytes.get();
+            for(int from = 0; from < rows.size(); from += ROWS_PER_CHUNK) {
+                renderChunk(rows, from, Math.min(from + ROWS_PER_CHUNK, rows.size()), out.reset());
+                stream.write(out.bytes, 0, out.size);
+            }
+        }
+
+        /**
+         * Renders chunks of rows in parallel on the pool and writes them to the stream in row order. At most twice as many chunks as the pool has
+         * threads are rendered ahead of the one being written, so memory use doesn't grow with the number of rows.
+         */
+        public void renderAll(List<? extends T> rows, OutputStream stream, ForkJoinPool pool) throws IOException {
+            int window = 2 * pool.getParallelism();
+            Deque<ForkJoinTask<ByteOutput>> rendering = new ArrayDeque<>();
+            int from = 0;
+            while(from < rows.size() || !rendering.isEmpty()) {
+                while(from < rows.size() && rendering.size() < window) {
+                    int chunkFrom = from, chunkTo = Math.min(from + ROWS_PER_CHUNK, rows.size());
+                    rendering.add(pool.submit(() -> renderChunk(rows, chunkFrom, chunkTo,
+                            new ByteOutput(template.escaping, (chunkTo - chunkFrom) * (2 * template.literalLength + 64)))));
+                    from = chunkTo;
+                }
+                ByteOutput chunk = rendering.removeFirst().join();
+                stream.write(chunk.bytes, 0, chunk.size);
+            }
+        }
+
+        private ByteOutput renderChunk(List<? extends T> rows, int from, int to, ByteOutput out) {
+            for(int i = from; i < to; i++)
+                render(rows.get(i), out);
+            return out;
+        }
+    }
+
+    /**
+     * Where a SlotWriter writes its value.
+     */
+    public abstract static class Output {
+        final Escaping escaping;
+
+        Output(Escaping escaping) {
+            this.escaping = escaping;
+        }
+
+        abstract void literal(TextTemplate template, int index);
+
+        /**
+         * Writes the text escaped as the template asks, a null as an empty string.
+         */
+        public abstract Output text(CharSequence text);
+
+        /**
+         * Writes the text as it is, even in an escaping template. For values known to be safe, or already escaped.
+         */
+        public abstract Output raw(CharSequence text);
+
+        /**
+         * Writes the decimal digits of a number without turning it into a String first.
+         */
+        public abstract Output number(long number);
+    }
+
+    /**
+     * Renders into a growable byte array, encoding text as UTF-8 as it goes.
+     */
+    private static final class ByteOutput extends Output {
+        byte[] bytes;
+        int size;
+
+        ByteOutput(Escaping escaping, int capacity) {
+            super(escaping);
+            this.bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        ByteOutput reset() {
+            size = 0;
+            return this;
+        }
+
+        private void ensure(int more) {
+            if(size + more > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+        }
+
+        @Override
+        void literal(TextTemplate template, int index) {
+            byte[] literal = template.literalBytes[index];
+            ensure(literal.length);
+            System.arraycopy(literal, 0, bytes, size, literal.length);
+            size += literal.length;
+        }
+
+        @Override
+        public Output text(CharSequence text) {
+            if(text == null)
+                return this;
+            ensure(text.length() * 3); // the most UTF-8 bytes a char can need, escapes are handled as they come
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                String escape = escaping.escape(c);
+                if(escape != null) {
+                    raw(escape);
+                    ensure((text.length() - i) * 3);
+                } else
+                    i = encode(text, i, c);
+            }
+            return this;
+        }
+
+        @Override
+        public Output raw(CharSequence text) {
+            ensure(text.length() * 3);
+            for(int i = 0; i < text.length(); i++)
+                i = encode(text, i, text.charAt(i));
+            return this;
+        }
+
+        /**
+         * Encodes the char at i, and the one after it for a surrogate pair. Returns the index of the last char used. Room must have been ensure()d.
+         */
+        private int encode(CharSequence text, int i, char c) {
+            if(c < 0x80)
+                bytes[size++] = (byte) c;
+            else if(c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if(Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+                return i + 1;
+            } else if(Character.isSurrogate(c))
+                bytes[size++] = '?'; // unpaired, as String.getBytes() does
+            else {
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            }
+            return i;
+        }
+
+        @Override
+        public Output number(long number) {
+            ensure(20);
+            if(number == Long.MIN_VALUE)
+                return raw("-9223372036854775808"); // the one number that can't be negated
+            if(number < 0) {
+                bytes[size++] = '-';
+                number = -number;
+            }
+            int end = size + digits(number);
+            for(int i = end - 1; i >= size; i--, number /= 10)
+                bytes[i] = (byte) ('0' + number % 10);
+            size = end;
+            return this;
+        }
+    }
+
+    /**
+     * Renders through a char buffer into a Writer, so the Writer gets a few big writes rather than one per char.
+     */
+    private static final class CharOutput extends Output {
+        private final Writer writer;
+        private final char[] buffer = new char[8192];
+        private int size;
+
+        CharOutput(Escaping escaping, Writer writer) {
+            super(escaping);
+            this.writer = writer;
+        }
+
+        private void put(char c) {
+            if(size == buffer.length)
+                flush();
+            buffer[size++] = c;
+        }
+
+        void flush() {
+            try {
+                writer.write(buffer, 0, size);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            size = 0;
+        }
+
+        @Override
+        void literal(TextTemplate template, int index) {
+            char[] literal = template.literalChars[index];
+            if(literal.length > buffer.length - size) {
+                flush();
+                if(literal.length > buffer.length) {
+                    try {
+                        writer.write(literal);
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return;
+                }
+            }
+            System.arraycopy(literal, 0, buffer, size, literal.length);
+            size += literal.length;
+        }
+
+        @Override
+        public Output text(CharSequence text) {
+            if(text == null)
+                return this;
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                String escape = escaping.escape(c);
+                if(escape != null)
+                    raw(escape);
+                else
+                    put(c);
+            }
+            return this;
+        }
+
+        @Override
+        public Output raw(CharSequence text) {
+            for(int i = 0; i < text.length(); i++)
+                put(text.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Output number(long number) {
+            if(number == Long.MIN_VALUE)
+                return raw("-9223372036854775808");
+            if(number < 0) {
+                put('-');
+                number = -number;
+            }
+            if(buffer.length - size < 19)
+                flush();
+            int end = size + digits(number);
+            for(int i = end - 1; i >= size; i--, number /= 10)
+                buffer[i] = (char) ('0' + number % 10);
+            size = end;
+            return this;
+        }
+    }
+
+    private static int digits(long number) { // of a non negative number
+        int digits = 1;
+        for(long limit = 10; digits < 19 && number >= limit; limit *= 10)
+            digits++;
+        return digits;
+    }
+
+    /**
+     * Renders a table of people as HTML, by String.replace() on every row, sequentially and in parallel, and prints how fast each way went.
+     * TextTemplateTest checks that the renderers write the same bytes as the String.replace() way.
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] names = { "Dylan", "Alice & Bob", "<script>", "Zo\u00eb", "\u540d\u524d" };
+        Gender[] genders = Gender.values();
+        List<Person> people = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+            people.add(new Person(names[i % names.length], i % 120, genders[i % genders.length]));
+
+        String rowTemplate = """
+                        <tr><td>{{name}}</td><td>{{age}}</td><td>{{gender}}</td></tr>
+                """;
+        Renderer<Person> renderer = compile(rowTemplate, Escaping.HTML).<Person>bind()
+                .slot("name", (person, out) -> out.text(person.name()))
+                .slot("age", (person, out) -> out.number(person.age()))
+                .slot("gender", (person, out) -> out.raw(person.gender().name()))
+                .build();
+
+        Map<Character, String> html = new HashMap<>(Map.of('&', "&amp;", '<', "&lt;", '>', "&gt;", '"', "&quot;", '\'', "&#39;"));
+        long start = System.nanoTime();
+        StringBuilder concatenated = new StringBuilder();
+        for(Person person : people) {
+            StringBuilder name = new StringBuilder();
+            person.name().chars().forEach(c -> name.append(html.getOrDefault((char) c, String.valueOf((char) c))));
+            concatenated.append(rowTemplate.replace("{{name}}", name).replace("{{age}}", String.valueOf(person.age()))
+                    .replace("{{gender}}", person.gender().name()));
+        }
+        byte[] replaced = concatenated.toString().getBytes(StandardCharsets.UTF_8);
+        long replaceNanos = System.nanoTime() - start;
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream(replaced.length);
+        start = System.nanoTime();
+        renderer.renderAll(people, sequential);
+        long sequentialNanos = System.nanoTime() - start;
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream(replaced.length);
+        start = System.nanoTime();
+        renderer.renderAll(people, parallel, ForkJoinPool.commonPool());
+        long parallelNanos = System.nanoTime() - start;
+
+        System.out.printf("%,d rows, %.1f MB: String.replace %.0f ms, sequential %.0f ms, parallel %.0f ms%n", count, replaced.length / 1e6,
+                replaceNanos / 1e6, sequentialNanos / 1e6, parallelNanos / 1e6);
+    }
+}
@@ -0,0 +1,174 @@
+package footprint;
+
+import loom.prerequisites.ListSummingRecursiveTask;
+import loom.prerequisites.LogSink;
+import loom.prerequisites.RangeSummingRecursiveTask;
+import seventeen.ParallelRandomFill;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+
+/**
+ * Measures what the demos allocate: for each entry point, how many bytes one operation allocates, counted by the JVM per thread
+ * (com.sun.management.ThreadMXBean.getThreadAllocatedBytes()), and how big what it returns is, shallow and deep (see FootprintAgent). The record
+ * JEP384.Person against the mutable JEP394.Animal, the boxed Strings JEP356 builds per random number against ParallelRandomFill, and the array
+ * copies of ListSummingRecursiveTask against RangeSummingRecursiveTask.
+ *
+ * Allocations are counted across every thread of the JVM, not just the one running the operation, so what fork/join workers allocate is counted
+ * too. Each entry runs a fixed number of operations to warm up, so the JIT has compiled (and escape analysis has removed what it can) before the
+ * same number are measured. Allocation counts are exact, so unlike timings they hardly vary between runs, and the JSON report is written one entry
+ * per line with a fixed number of operations, to be diffed between changes. The baseline entry is what measuring an operation that allocates nothing
+ * costs, the harness's own noise.
+ *
+ * Run it with ./gradlew allocationReport, which loads the agent. Sizes are -1 without it.
+ */
+public final class AllocationHarness {
+
+    private static final int ARRAY_LENGTH = 1 << 16;
+
+    private static volatile Object sink; // where results go, so the JIT can't throw an operation away
+
+    private AllocationHarness() {
+    }
+
+    @FunctionalInterface
+    interface Operation {
+        Object run() throws Throwable; // the method handles below throw Throwable
+    }
+
+    /**
+     * An entry point, run ops times to warm up and ops times to measure. elementsPerOp is the number of array elements an operation handles, 1 for
+     * operations on a single object.
+     */
+    record Entry(String name, int ops, int elementsPerOp, Operation operation) {}
+
+    /**
+     * What was measured for an entry. bytesPerOp is averaged over every operation, shallow and deep sizes are of the last operation's result.
+     */
+    record Result(String name, int ops, int elementsPerOp, double bytesPerOp, long shallowBytes, long deepBytes) {
+        double bytesPerElement() {
+            return bytesPerOp / elementsPerOp;
+        }
+    }
+
+    static List<Entry> entries() throws Throwable {
+        // Person and Animal aren't public, the demos keep them to themselves, so they're reached through handles private to their own classes
+        Class<?> personClass = Class.forName("fifteen.JEP384$Person");
+        Class<?> genderClass = Class.forName("fifteen.JEP384$Gender");
+        MethodHandles.Lookup personLookup = MethodHandles.privateLookupIn(personClass, MethodHandles.lookup());
+        MethodHandle newPerson = personLookup.findConstructor(personClass, MethodType.methodType(void.class, String.class, int.class, genderClass))
+                .asType(MethodType.methodType(Object.class, String.class, int.class, Object.class));
+        MethodHandle personName = personLookup.findVirtual(personClass, "name", MethodType.methodType(String.class))
+                .asType(MethodType.methodType(String.class, Object.class));
+        Object male = genderClass.getEnumConstants()[0];
+        Object person = newPerson.invokeExact("Dylan", 21, male);
+
+        Class<?> animalClass = Class.forName("sixteen.JEP394$Animal");
+        MethodHandles.Lookup animalLookup = MethodHandles.privateLookupIn(animalClass, MethodHandles.lookup());
+        MethodHandle newAnimal = animalLookup.findConstructor(animalClass, MethodType.methodType(void.class, String.class, int.class))
+                .asType(MethodType.methodType(Object.class, String.class, int.class));
+        MethodHandle setAge = animalLookup.findVirtual(animalClass, "setAge", MethodType.methodType(void.class, int.class))
+                .asType(MethodType.methodType(void.class, Object.class, int.class));
+        Object animal = newAnimal.invokeExact("Chuck", 7);
+
+        RandomGenerator generator = RandomGenerator.of("L128X256MixRandom");
+        int[] array = new SplittableRandom(42).ints(ARRAY_LENGTH, 0, 1000).toArray();
+        int[] filled = new int[ARRAY_LENGTH];
+        ParallelRandomFill fill = new ParallelRandomFill("L128X256MixRandom", 42);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Object nothing = new Object();
+
+        return List.of(
+                new Entry("baseline", 100_000, 1, () -> nothing),
+                new Entry("JEP384.Person new", 100_000, 1, () -> (Object) newPerson.invokeExact("Dylan", 21, male)),
+                new Entry("JEP384.Person name()", 100_000, 1, () -> (String) personName.invokeExact(person)), // the overridden accessor builds a String
+                new Entry("JEP394.Animal new", 100_000, 1, () -> (Object) newAnimal.invokeExact("Chuck", 7)),
+                new Entry("JEP394.Animal setAge()", 100_000, 1, () -> {
+                    setAge.invokeExact(animal, 8);
+                    return animal;
+                }),
+                new Entry("JEP356 String.format per random number", 100_000, 1, () -> String.format("Random number up to 100: %s.", generator.nextInt(100))),
+                new Entry("ParallelRandomFill fill", 200, ARRAY_LENGTH, () -> {
+                    fill.fill(filled, 0, 100);
+                    return filled;
+                }),
+                new Entry("ListSummingRecursiveTask", 200, ARRAY_LENGTH, () -> pool.invoke(new ListSummingRecursiveTask("footprint", array, LogSink.discarding()))),
+                new Entry("RangeSummingRecursiveTask", 200, ARRAY_LENGTH, () -> pool.invoke(new RangeSummingRecursiveTask(array))));
+    }
+
+    static Result measure(Entry entry) throws Throwable {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Object result = null;
+        for(int i = 0; i < entry.ops(); i++)
+            sink = entry.operation().run();
+
+        Map<Long, Long> before = allocatedBytes(threads);
+        for(int i = 0; i < entry.ops(); i++)
+            sink = result = entry.operation().run();
+        Map<Long, Long> after = allocatedBytes(threads);
+
+        long allocated = 0;
+        for(Map.Entry<Long, Long> thread : after.entrySet()) // a thread started since counts from 0, one that died since is lost
+            allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        return new Result(entry.name(), entry.ops(), entry.elementsPerOp(), (double) allocated / entry.ops(), FootprintAgent.shallowSize(result),
+                FootprintAgent.deepSize(result));
+    }
+
+    private static Map<Long, Long> allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for(int i = 0; i < ids.length; i++)
+            if(bytes[i] >= 0) // -1 for a thread that died in between
+                allocated.put(ids[i], bytes[i]);
+        return allocated;
+    }
+
+    /**
+     * One entry per line and a fixed key order, so two reports diff line by line.
+     */
+    static String toJson(List<Result> results) {
+        String entries = results.stream()
+                .map(r -> String.format(Locale.ROOT, "    {\"name\": \"%s\", \"ops\": %d, \"elementsPerOp\": %d, \"bytesPerOp\": %.1f, \"bytesPerElement\": %.3f, "
+                        + "\"shallowBytes\": %d, \"deepBytes\": %d}", r.name(), r.ops(), r.elementsPerOp(), r.bytesPerOp(), r.bytesPerElement(), r.shallowBytes(), r.deepBytes()))
+                .collect(Collectors.joining(",\n"));
+        return String.format("{%n  \"jdk\": \"%s\",%n  \"agent\": %b,%n  \"entries\": [%n%s%n  ]%n}%n", Runtime.version(), FootprintAgent.isLoaded(), entries);
+    }
+
+    /**
+     * [report path] - measures every entry, prints a table and writes the JSON report, by default to
+     * build/reports/allocation/allocation-jdk[version].json.
+     */
+    public static void main(String[] args) throws Throwable {
+        Path report = Path.of(args.length > 0 ? args[0] : "build/reports/allocation/allocation-jdk" + Runtime.version().feature() + ".json");
+        if(!FootprintAgent.isLoaded())
+            System.out.println("FootprintAgent isn't loaded, object sizes are unknown (-1). Run with -javaagent:build/libs/footprint-agent.jar.");
+
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-40s %14s %16s %14s %12s%n", "entry", "bytes/op", "bytes/element", "shallow", "deep");
+        for(Entry entry : entries()) {
+            Result result = measure(entry);
+            results.add(result);
+            System.out.printf(Locale.ROOT, "%-40s %14.1f %16.3f %14d %12d%n", result.name(), result.bytesPerOp(), result.bytesPerElement(),
+                    result.shallowBytes(), result.deepBytes());
+        }
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.writeString(report, toJson(results));
+        System.out.println("report written to " + report);
+    }
+}
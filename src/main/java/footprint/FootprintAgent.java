@@ -0,0 +1,133 @@
+package footprint;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A java.lang.instrument agent that measures how much heap an object takes: its shallow size, the object alone as laid out by the JVM running it
+ * (headers, padding and compressed oops included), and its deep size, the object plus every object reachable from it. Only an agent gets to ask the
+ * JVM for the size of an object (Instrumentation.getObjectSize()), so the harness has to run with -javaagent:build/libs/footprint-agent.jar, which
+ * ./gradlew allocationReport takes care of. Without it, isLoaded() is false and sizes are reported as unknown.
+ *
+ * Walking an object graph means reading private fields of JDK classes (the byte[] inside a String), which strong encapsulation forbids even to
+ * reflection. Rather than needing an --add-opens per package, the agent opens every package of every named module to its own unnamed module when
+ * it starts, which only an agent can do (Instrumentation.redefineModule()).
+ *
+ * Deep sizes count what's reachable, not what's retained: objects shared with the rest of the heap, like an interned String literal, are counted in
+ * full every time. Class objects and enum constants, which belong to their class rather than to whatever refers to them, aren't counted or followed.
+ */
+public final class FootprintAgent {
+
+    private static volatile Instrumentation instrumentation;
+    private static final Map<Class<?>, Field[]> REFERENCE_FIELDS = new ConcurrentHashMap<>(); // per class, its instance fields holding references
+
+    private FootprintAgent() {
+    }
+
+    /**
+     * Called by the JVM before main() with -javaagent.
+     */
+    public static void premain(String args, Instrumentation instrumentation) {
+        FootprintAgent.instrumentation = instrumentation;
+        openModules(instrumentation);
+    }
+
+    /**
+     * Called when the agent is attached to a running JVM.
+     */
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        premain(args, instrumentation);
+    }
+
+    public static boolean isLoaded() {
+        return instrumentation != null;
+    }
+
+    /**
+     * The size of the object alone, in bytes, or -1 without the agent.
+     */
+    public static long shallowSize(Object object) {
+        Instrumentation instrumentation = FootprintAgent.instrumentation;
+        if(object == null)
+            return 0;
+        return instrumentation == null ? -1 : instrumentation.getObjectSize(object);
+    }
+
+    /**
+     * The size of the object and everything reachable from it, in bytes, or -1 without the agent. Iterative, so a long linked list doesn't overflow the
+     * stack.
+     */
+    public static long deepSize(Object root) {
+        Instrumentation instrumentation = FootprintAgent.instrumentation;
+        if(instrumentation == null)
+            return -1;
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        long size = 0;
+        if(root != null)
+            pending.push(root);
+        while(!pending.isEmpty()) {
+            Object object = pending.pop();
+            if(object instanceof Class<?> || object instanceof Enum<?> || !visited.add(object))
+                continue;
+            size += instrumentation.getObjectSize(object);
+
+            Class<?> type = object.getClass();
+            if(type.isArray()) {
+                if(!type.getComponentType().isPrimitive())
+                    for(int i = 0, length = Array.getLength(object); i < length; i++) {
+                        Object element = Array.get(object, i);
+                        if(element != null)
+                            pending.push(element);
+                    }
+                continue;
+            }
+            for(Field field : REFERENCE_FIELDS.computeIfAbsent(type, FootprintAgent::referenceFields))
+                try {
+                    Object value = field.get(object);
+                    if(value != null)
+                        pending.push(value);
+                } catch(IllegalAccessException e) {
+                    throw new IllegalStateException("can't read " + field + ", even though its field was made accessible", e);
+                }
+        }
+        return size;
+    }
+
+    private static Field[] referenceFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for(Class<?> c = type; c != null; c = c.getSuperclass())
+            for(Field field : c.getDeclaredFields())
+                if(!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive())
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch(InaccessibleObjectException e) {
+                        // without the agent's opened modules, the field is skipped and the deep size comes out smaller than it is
+                    }
+        return fields.toArray(new Field[0]);
+    }
+
+    private static void openModules(Instrumentation instrumentation) {
+        Module self = FootprintAgent.class.getModule();
+        for(Module module : ModuleLayer.boot().modules()) {
+            Map<String, Set<Module>> opens = new HashMap<>();
+            for(String packageName : module.getPackages())
+                opens.put(packageName, Set.of(self));
+            instrumentation.redefineModule(module, Set.of(), Map.of(), opens, Set.of(), Map.of());
+        }
+    }
+}
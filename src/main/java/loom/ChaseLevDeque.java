@@ -0,0 +1,118 @@
+package loom;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The lock-free work-stealing deque of Chase and Lev ("Dynamic Circular Work-Stealing Deque", SPAA 2005), with the memory orderings of Le, Pop,
+ * Cohen and Zappa Nardelli ("Correct and Efficient Work-Stealing for Weak Memory Models", PPoPP 2013) expressed with VarHandles.
+ *
+ * One thread, the owner, pushes and pops at the bottom, like a stack, so the task it forked last is the first it runs, while its data is still in
+ * cache. Any other thread can steal from the top, taking the oldest task, which in a divide and conquer computation is the biggest. Owner and thieves
+ * only contend over the last element, and settle it with a CAS on top. The circular array grows when it fills up and never shrinks.
+ *
+ * push() and pop() must only ever be called by the owner. A steal() that loses a race returns null rather than retrying, a thief is better off trying
+ * another victim. Slots are cleared once their element has been taken, so the deque doesn't keep finished tasks reachable (bar the odd element stolen
+ * from the old array while the owner was growing it, until its slot in the new one is reused).
+ */
+public final class ChaseLevDeque<T> {
+
+    private static final int INITIAL_CAPACITY = 1 << 8; // a power of two, so indexes wrap with a mask
+    private static final VarHandle TOP;
+    private static final VarHandle BOTTOM;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOP = lookup.findVarHandle(ChaseLevDeque.class, "top", long.class);
+            BOTTOM = lookup.findVarHandle(ChaseLevDeque.class, "bottom", long.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // top and bottom only ever grow, an element's slot is its index masked by the length of the array
+    @SuppressWarnings("unused") // through TOP
+    private volatile long top; // next to steal
+    @SuppressWarnings("unused") // through BOTTOM
+    private volatile long bottom; // next to push
+    private volatile Object[] array = new Object[INITIAL_CAPACITY];
+
+    /**
+     * Owner only.
+     */
+    public void push(T item) {
+        long b = (long) BOTTOM.getOpaque(this);
+        long t = (long) TOP.getAcquire(this);
+        Object[] a = array;
+        if(b - t > a.length - 1)
+            a = grow(a, t, b);
+        SLOT.setRelease(a, (int) b & (a.length - 1), item);
+        BOTTOM.setRelease(this, b + 1); // publishes the element to thieves, who read bottom with acquire
+    }
+
+    /**
+     * Owner only. The element pushed last, or null if the deque is empty or a thief took the last element first.
+     */
+    @SuppressWarnings("unchecked")
+    public T pop() {
+        long b = (long) BOTTOM.getOpaque(this) - 1;
+        Object[] a = array;
+        BOTTOM.setVolatile(this, b); // claims the bottom element before looking at top: the store has to be seen by thieves before the load below
+        long t = (long) TOP.getVolatile(this);
+        if(t > b) { // empty
+            BOTTOM.setOpaque(this, b + 1);
+            return null;
+        }
+        int slot = (int) b & (a.length - 1);
+        T item = (T) SLOT.getOpaque(a, slot);
+        if(t == b) { // the last element, a thief may be after it too
+            if(!TOP.compareAndSet(this, t, t + 1))
+                item = null; // the thief won, and clears the slot itself
+            BOTTOM.setOpaque(this, b + 1);
+        }
+        if(item != null)
+            SLOT.setOpaque(a, slot, null);
+        return item;
+    }
+
+    /**
+     * Any thread. The element pushed first, or null if the deque is empty or another thread took that element at the same time.
+     */
+    @SuppressWarnings("unchecked")
+    public T steal() {
+        long t = (long) TOP.getAcquire(this);
+        VarHandle.fullFence(); // top has to be read before bottom, the mirror image of the store and load in pop()
+        long b = (long) BOTTOM.getAcquire(this);
+        if(t >= b)
+            return null;
+        Object[] a = array;
+        int slot = (int) t & (a.length - 1);
+        T item = (T) SLOT.getAcquire(a, slot);
+        if(item == null || !TOP.compareAndSet(this, t, t + 1))
+            return null;
+        SLOT.compareAndSet(a, slot, item, null); // unless the owner has wrapped around and reused the slot already
+        return item;
+    }
+
+    /**
+     * An estimate of the number of elements, exact only when nobody is pushing, popping or stealing.
+     */
+    public int size() {
+        long size = (long) BOTTOM.getVolatile(this) - (long) TOP.getVolatile(this);
+        return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private Object[] grow(Object[] old, long t, long b) {
+        Object[] grown = new Object[old.length * 2];
+        for(long i = t; i < b; i++)
+            grown[(int) i & (grown.length - 1)] = old[(int) i & (old.length - 1)];
+        array = grown; // the old array keeps its elements, so a thief still reading from it gets the same element it would from the new one
+        return grown;
+    }
+}
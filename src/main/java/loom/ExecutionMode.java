@@ -0,0 +1,104 @@
+package loom;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ways LoopbackServer and LoadGenerator can run their blocking connection handlers.
+ *
+ * - PLATFORM: a fixed pool of platform threads, the classic thread-per-connection server where concurrency is capped by the size of the pool.
+ * - VIRTUAL: a new virtual thread per connection. Blocking socket calls unmount the virtual thread and free up its carrier. Needs a Loom enabled JDK.
+ * - FORK_JOIN: a dedicated ForkJoinPool in async (FIFO) mode, the same kind of scheduler the virtual threads are carried by. The public API doesn't let
+ * virtual threads be given a custom scheduler, so instead every blocking call is wrapped in ForkJoinPool.managedBlock(), which lets the pool start
+ * compensating threads while one of its workers is blocked, up to the given number of platform threads.
+ */
+public enum ExecutionMode {
+
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor(int platformThreads) {
+            return Executors.newFixedThreadPool(platformThreads);
+        }
+    },
+
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor(int platformThreads) {
+            return VirtualThreads.newVirtualThreadPerTaskExecutor();
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return VirtualThreads.isSupported();
+        }
+    },
+
+    FORK_JOIN {
+        @Override
+        public ExecutorService newExecutor(int platformThreads) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true,
+                    0, Math.max(parallelism, Math.min(platformThreads, MAX_FORK_JOIN_THREADS)), 1,
+                    pool -> true, // once every compensating thread is in use, block without compensating rather than reject the task
+                    60, TimeUnit.SECONDS);
+        }
+    };
+
+    private static final int MAX_FORK_JOIN_THREADS = 0x7fff; // the most threads a ForkJoinPool can have
+
+    public abstract ExecutorService newExecutor(int platformThreads);
+
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Runs a blocking call. On a ForkJoinPool worker the pool is told about it first, so it can keep its parallelism up while this worker is stuck,
+     * anywhere else (platform or virtual threads) the call is simply made.
+     */
+    static <T> T block(BlockingCall<T> call) throws Exception {
+        if(!(Thread.currentThread() instanceof ForkJoinWorkerThread))
+            return call.call();
+
+        BlockingCallBlocker<T> blocker = new BlockingCallBlocker<>(call);
+        ForkJoinPool.managedBlock(blocker);
+        if(blocker.failure != null)
+            throw blocker.failure;
+        return blocker.result;
+    }
+
+    @FunctionalInterface
+    interface BlockingCall<T> {
+        T call() throws Exception;
+    }
+
+    private static final class BlockingCallBlocker<T> implements ForkJoinPool.ManagedBlocker {
+        private final BlockingCall<T> call;
+        private boolean done;
+        private T result;
+        private Exception failure;
+
+        private BlockingCallBlocker(BlockingCall<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                result = call.call();
+            } catch(Exception e) {
+                failure = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+}
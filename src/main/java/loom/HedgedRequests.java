@@ -0,0 +1,106 @@
+package loom;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged requests, from Dean and Barroso's "The Tail at Scale": send a request, and if no answer has come back by the time most answers have (the
+ * 95th percentile of the latencies seen so far, say), send the same request again, and take whichever answer comes first. A request is only slow
+ * because it was unlucky (a GC pause, a queue, a cold cache on the replica it went to) often enough that the second try is very likely to be quick,
+ * so the tail latency drops to not much more than the percentile plus a typical latency, for only as many extra requests as the percentile lets
+ * through: about 5% more load at the 95th.
+ *
+ * Every attempt is a subtask of a StructuredScope.firstSuccess() scope, so the first answer cancels the others, a failed attempt leaves the others
+ * to answer, and the deadline of an enclosing scope, if the call is made from a subtask, bounds the whole call. Once every attempt made so far has
+ * failed there are no others left to answer, so the next attempt is made straight away rather than at the end of the delay: a request that fails
+ * fast is retried, up to maxAttempts in all, the same as one that is slow. Requests have to be idempotent, as more than one of them can be made,
+ * and interruptible, for the losers to be cancelled rather than left to run to completion.
+ *
+ * The latency of every attempt that answers is recorded in the histogram the delay is read from, so it follows the service as it speeds up or slows
+ * down. Attempts that were cancelled aren't recorded, they never finished, which leaves out some of the slowest and biases the percentile down a
+ * little: a few more hedges than the percentile promises. Until the histogram has MIN_SAMPLES latencies, there's no percentile to trust, and
+ * another attempt is only made when the ones before it have failed. A single instance can be shared by any number of threads.
+ */
+public class HedgedRequests {
+
+    public static final int MIN_SAMPLES = 100;
+
+    private final LatencyHistogram latencies;
+    private final double percentile;
+    private final int maxAttempts;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+
+    /**
+     * @param latencies where the latency of every attempt is recorded, and the hedging delay is read from
+     * @param percentile the fraction of attempts expected to have answered by the time the next one is sent, 0.95 for the 95th percentile
+     * @param maxAttempts how many attempts a call makes at most, 1 for no hedging at all
+     */
+    public HedgedRequests(LatencyHistogram latencies, double percentile, int maxAttempts) {
+        if(percentile <= 0 || percentile > 1)
+            throw new IllegalArgumentException("percentile must be between 0 (exclusive) and 1, was " + percentile);
+        if(maxAttempts < 1)
+            throw new IllegalArgumentException("max attempts must be positive, was " + maxAttempts);
+        this.latencies = latencies;
+        this.percentile = percentile;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Makes the request, hedged, within the deadline of the enclosing scope if there is one.
+     */
+    public <T> T call(Callable<? extends T> request) throws InterruptedException, ExecutionException, TimeoutException {
+        return call(request, null);
+    }
+
+    /**
+     * Makes the request, hedged, within the given timeout (and the deadline of the enclosing scope if there is one).
+     *
+     * @throws ExecutionException when every one of maxAttempts attempts failed, with the failure of the first as its cause and the others suppressed
+     * @throws TimeoutException when no attempt answered in time
+     */
+    public <T> T call(Callable<? extends T> request, Duration timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        calls.increment();
+        long delay = hedgeDelayNanos();
+        try(StructuredScope<T, T> scope = StructuredScope.firstSuccess(timeout)) {
+            scope.fork(() -> timed(request));
+            for(int attempt = 1; attempt < maxAttempts; attempt++) {
+                scope.awaitOutcome(delay, TimeUnit.NANOSECONDS); // returns early on an answer, or once every attempt so far has failed
+                if(scope.isShutdown() || scope.nanosUntilDeadline() == 0)
+                    break;
+                hedges.increment();
+                scope.fork(() -> timed(request));
+            }
+            return scope.join();
+        }
+    }
+
+    /**
+     * How long a call waits for an answer before making another attempt, Long.MAX_VALUE while there aren't enough latencies to go on.
+     */
+    public long hedgeDelayNanos() {
+        return latencies.count() < MIN_SAMPLES ? Long.MAX_VALUE : latencies.percentile(percentile);
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * The attempts made on top of the first of every call, after the delay or after a failure, the extra load hedging costs.
+     */
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    private <T> T timed(Callable<? extends T> request) throws Exception {
+        long start = System.nanoTime();
+        T result = request.call();
+        latencies.record(System.nanoTime() - start);
+        return result;
+    }
+}
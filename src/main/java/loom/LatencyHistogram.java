@@ -0,0 +1,77 @@
+package loom;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, log-linear histogram of latencies in nanoseconds that any number of threads can record into at once.
+ *
+ * Every power of two is split into 32 equal sub-buckets, so a percentile read back from it is within about 3% of the real value, whatever the scale.
+ * Each bucket is a LongAdder, so threads recording the same latency at the same time don't all fight over a single counter.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS; // every exponent from SUB_BUCKET_BITS up to 62, plus the exact values below SUB_BUCKETS
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+
+    public LatencyHistogram() {
+        for(int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        buckets[indexOf(Math.max(0, nanos))].increment();
+        count.increment();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * The latency in nanoseconds that the given fraction (0.5 for the median, 0.99 for p99) of recorded values are at or below, or 0 when nothing was recorded.
+     */
+    public long percentile(double fraction) {
+        if(fraction < 0 || fraction > 1)
+            throw new IllegalArgumentException("fraction must be between 0 and 1, was " + fraction);
+
+        long total = count();
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for(int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if(seen >= rank)
+                return highestValueIn(i);
+        }
+        return highestValueIn(buckets.length - 1);
+    }
+
+    public void reset() {
+        for(LongAdder bucket : buckets)
+            bucket.reset();
+        count.reset();
+    }
+
+    private static int indexOf(long value) {
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value); // at least SUB_BUCKET_BITS here
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueIn(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
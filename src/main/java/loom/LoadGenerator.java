@@ -0,0 +1,136 @@
+package loom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a LoopbackServer with a number of concurrent connections, each sending a number of requests one after the other and timing every round trip.
+ * The client connections run on the same ExecutionMode as the server, so a run shows what that mode does to both sides of a blocking workload.
+ *
+ * A single source address only has around 28k ephemeral ports to connect from, so connections are spread across source addresses in 127.0.0.0/8
+ * (all of which are local on Linux). Going past a few tens of thousands of connections also needs the open file limit raised (ulimit -n), as every
+ * connection costs a file descriptor on each side.
+ *
+ * A client gives up on a connect or a read after SOCKET_TIMEOUT_MILLIS and counts its connection as failed, so a server that stops answering can't
+ * hang a run. run() waits for every client as long as requests keep completing, and once a whole SOCKET_TIMEOUT_MILLIS goes by without any, stops
+ * the clients still running and reports them as unfinished.
+ */
+public class LoadGenerator {
+
+    private static final int CONNECTIONS_PER_SOURCE_ADDRESS = 20_000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 30_000; // far longer than any round trip of a healthy run, queueing for a handler included
+
+    private final ExecutionMode mode;
+    private final int platformThreads;
+    private final int frameSize;
+    private final long serviceMillis;
+
+    public record Report(ExecutionMode mode, int connections, long requests, long failedConnections, long unfinishedConnections, double seconds,
+                         long p50Nanos, long p99Nanos, int carrierThreads, int peakPlatformThreads) {
+
+        public double throughput() {
+            return requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s connections=%,d requests=%,d failed=%,d unfinished=%,d throughput=%,.0f req/s p50=%.2fms p99=%.2fms carriers=%d "
+                            + "peakPlatformThreads=%d", mode, connections, requests, failedConnections, unfinishedConnections, throughput(), p50Nanos / 1e6,
+                    p99Nanos / 1e6, carrierThreads, peakPlatformThreads);
+        }
+    }
+
+    public LoadGenerator(ExecutionMode mode, int platformThreads, int frameSize, long serviceMillis) {
+        if(!mode.isAvailable())
+            throw new UnsupportedOperationException(mode + " isn't available on " + Runtime.version());
+        this.mode = mode;
+        this.platformThreads = platformThreads;
+        this.frameSize = frameSize;
+        this.serviceMillis = serviceMillis;
+    }
+
+    public Report run(int connections, int requestsPerConnection) throws IOException, InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        LongAdder failedConnections = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(connections);
+
+        try(LoopbackServer server = new LoopbackServer(mode, platformThreads, frameSize, serviceMillis)) {
+            ExecutorService clients = mode.newExecutor(platformThreads);
+            long start = System.nanoTime();
+
+            for(int i = 0; i < connections; i++) {
+                InetSocketAddress source = new InetSocketAddress(sourceAddress(i), 0);
+                clients.execute(() -> {
+                    try {
+                        runConnection(server.address(), source, requestsPerConnection, latencies);
+                    } catch(Exception e) {
+                        failedConnections.increment();
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+
+            long progress = -1;
+            while(!finished.await(SOCKET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                long completed = latencies.count() + failedConnections.sum();
+                if(completed == progress)
+                    break; // nothing completed for a whole socket timeout, whatever is left is stuck somewhere a timeout doesn't reach
+                progress = completed;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long unfinished = finished.getCount();
+            if(unfinished > 0)
+                clients.shutdownNow();
+            else
+                clients.shutdown();
+            clients.awaitTermination(10, TimeUnit.SECONDS);
+
+            return new Report(mode, connections, latencies.count(), failedConnections.sum(), unfinished, seconds,
+                    latencies.percentile(0.5), latencies.percentile(0.99), server.carrierThreads().size(), threads.getPeakThreadCount());
+        }
+    }
+
+    private void runConnection(InetSocketAddress server, InetSocketAddress source, int requests, LatencyHistogram latencies) throws Exception {
+        try(Socket socket = new Socket()) {
+            socket.bind(source);
+            ExecutionMode.block(() -> { socket.connect(server, SOCKET_TIMEOUT_MILLIS); return null; });
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            byte[] frame = new byte[frameSize];
+
+            for(int r = 0; r < requests; r++) {
+                long sent = System.nanoTime();
+                ExecutionMode.block(() -> { out.write(frame); return null; });
+                if(!ExecutionMode.block(() -> LoopbackServer.readFrame(in, frame)))
+                    throw new IOException("server closed the connection");
+                latencies.record(System.nanoTime() - sent);
+            }
+        }
+    }
+
+    private static InetAddress sourceAddress(int connection) {
+        int block = connection / CONNECTIONS_PER_SOURCE_ADDRESS;
+        try {
+            return InetAddress.getByAddress(new byte[] {127, 0, (byte) (block / 250), (byte) (1 + block % 250)});
+        } catch(IOException e) {
+            throw new IllegalStateException(e); // only thrown for addresses of the wrong length
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package loom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking request/response server on the loopback interface, written the plain old way: one handler per connection, blocking reads, blocking writes,
+ * and a blocking "downstream call" (a sleep of serviceMillis) before each response. Exactly the kind of code virtual threads are meant to make cheap again.
+ *
+ * A request is a frame of frameSize bytes and the response echoes it back. Handlers run on an executor created by the given ExecutionMode, accepting
+ * connections is left to a single platform thread.
+ */
+public class LoopbackServer implements AutoCloseable {
+
+    private static final int BACKLOG = 65_535; // the OS will cap this at net.core.somaxconn
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1_000;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService handlers;
+    private final Thread acceptor;
+    private final int frameSize;
+    private final long serviceMillis;
+
+    // names of the threads that ran handler code, the carrier thread's name for a virtual thread
+    private final Set<String> carrierThreads = ConcurrentHashMap.newKeySet();
+
+    public LoopbackServer(ExecutionMode mode, int platformThreads, int frameSize, long serviceMillis) throws IOException {
+        this.frameSize = frameSize;
+        this.serviceMillis = serviceMillis;
+        this.serverSocket = new ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress());
+        this.handlers = mode.newExecutor(platformThreads);
+        this.acceptor = new Thread(this::acceptConnections, "LoopbackServer-acceptor");
+        this.acceptor.start();
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    public Set<String> carrierThreads() {
+        return Set.copyOf(carrierThreads);
+    }
+
+    /**
+     * Accepts connections until the server socket is closed. A failure that isn't the socket being closed, running out of file descriptors for
+     * example, leaves the connections we already have to be served, but accept() would fail again straight away until one of them closes, so the
+     * acceptor backs off, doubling its sleep up to MAX_ACCEPT_BACKOFF_MILLIS, and only reports the first failure of a run and how long the run was.
+     */
+    private void acceptConnections() {
+        long backoffMillis = 0;
+        int failures = 0;
+        while(!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                if(failures > 0)
+                    System.err.printf("LoopbackServer accepting connections again after %,d failures.%n", failures);
+                backoffMillis = 0;
+                failures = 0;
+                handlers.execute(() -> handle(socket));
+            } catch(IOException e) {
+                if(serverSocket.isClosed())
+                    return;
+                if(failures++ == 0)
+                    System.err.printf("LoopbackServer failed to accept a connection, backing off: %s.%n", e);
+                backoffMillis = Math.min(Math.max(1, backoffMillis * 2), MAX_ACCEPT_BACKOFF_MILLIS);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch(InterruptedException interrupted) {
+                    return; // close() wakes us up
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try(socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            byte[] frame = new byte[frameSize];
+
+            while(ExecutionMode.block(() -> readFrame(in, frame))) {
+                if(serviceMillis > 0)
+                    ExecutionMode.block(() -> { Thread.sleep(serviceMillis); return null; });
+                carrierThreads.add(carrierName(Thread.currentThread()));
+                ExecutionMode.block(() -> { out.write(frame); return null; });
+            }
+        } catch(Exception e) {
+            if(!serverSocket.isClosed())
+                System.err.printf("LoopbackServer connection failed: %s.%n", e);
+        }
+    }
+
+    /**
+     * Reads exactly one frame, or returns false if the client closed the connection before sending another one.
+     */
+    static boolean readFrame(InputStream in, byte[] frame) throws IOException {
+        int read = 0;
+        while(read < frame.length) {
+            int n = in.read(frame, read, frame.length - read);
+            if(n < 0) {
+                if(read == 0)
+                    return false;
+                throw new IOException("connection closed half way through a frame");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    /**
+     * A virtual thread prints as VirtualThread[#21]/runnable@ForkJoinPool-1-worker-3, where the part after the @ is the carrier it is currently mounted on.
+     * Thread.isVirtual() isn't available on JDK 17, so toString() it is.
+     */
+    static String carrierName(Thread thread) {
+        String description = thread.toString();
+        int at = description.lastIndexOf('@');
+        return description.startsWith("VirtualThread") && at >= 0 ? description.substring(at + 1) : thread.getName();
+    }
+
+    /**
+     * Stops accepting connections, interrupts the handlers and waits up to 10 seconds for them to finish. An interrupt doesn't stop the server from
+     * being closed, only the wait for the handlers, and the caller is interrupted again after.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        acceptor.interrupt(); // in case it's backing off
+        boolean interrupted = false;
+        while(true) {
+            try {
+                acceptor.join(); // quick, accept() throws as soon as the socket is closed
+                break;
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        handlers.shutdownNow();
+        try {
+            handlers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            interrupted = true;
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -2,6 +2,10 @@ package loom;
 
 import loom.prerequisites.ForkJoinPoolUsage;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 public class ProjectLoom {
 
     /**
@@ -22,7 +26,43 @@ public class ProjectLoom {
         ForkJoinPoolUsage.ForkJoinPoolUsage();
     }
 
-    public static void main(String[] args) {
-        new ProjectLoom();
+    /**
+     * What Loom actually buys on a blocking workload. Runs LoadGenerator against a LoopbackServer on each ExecutionMode in turn, with the given number
+     * of concurrent connections each making a number of requests to a server that blocks for serviceMillis before answering.
+     *
+     * With a fixed pool of platform threads only that many connections can be served at once, the rest wait their turn. With virtual threads every
+     * connection gets its own thread, and only a handful of carrier threads are needed to run them all.
+     */
+    public static void blockingIo(int connections, int requestsPerConnection, long serviceMillis, List<ExecutionMode> modes) throws IOException, InterruptedException {
+        int platformThreads = 1_000;
+        int frameSize = 64;
+
+        for(ExecutionMode mode : modes) {
+            if(!mode.isAvailable()) {
+                System.out.printf("%-9s skipped, not available on %s.%n", mode, Runtime.version());
+                continue;
+            }
+            System.out.println(new LoadGenerator(mode, platformThreads, frameSize, serviceMillis).run(connections, requestsPerConnection));
+        }
+    }
+
+    /**
+     * With no arguments, runs the ForkJoinPool examples. Otherwise: connections [requestsPerConnection] [serviceMillis] [mode,mode,...]
+     * for example 100000 10 20 VIRTUAL,PLATFORM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length == 0) {
+            new ProjectLoom();
+            return;
+        }
+
+        int connections = Integer.parseInt(args[0]);
+        int requestsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long serviceMillis = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        List<ExecutionMode> modes = args.length > 3
+                ? Arrays.stream(args[3].split(",")).map(ExecutionMode::valueOf).toList()
+                : List.of(ExecutionMode.values());
+
+        blockingIo(connections, requestsPerConnection, serviceMillis, modes);
     }
 }
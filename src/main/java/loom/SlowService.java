@@ -0,0 +1,124 @@
+package loom;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fake downstream service with a long tail: most calls take fastMillis or so, but a slowFraction of them, picked at random, take slowMillis, as
+ * if they'd hit a GC pause or the back of a queue. Calls block in Thread.sleep(), so they can be cancelled, and the service keeps count of how many
+ * were made, how many were cancelled halfway, and how many are still in flight, which should be none once every scope that made them is closed.
+ *
+ * main() shows what fanning out to it does to tail latency, and what hedging does about it. A request fanned out to a number of shards is as slow
+ * as the slowest of them, so with 2% of calls slow, a request to 4 shards is slow about 8% of the time, and its 99th percentile is a slow call.
+ * Hedging each shard's call at the 95th percentile of the service's latency brings that back down, for a few percent more calls.
+ */
+public class SlowService {
+
+    private final long fastMillis;
+    private final long slowMillis;
+    private final double slowFraction;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public SlowService(long fastMillis, long slowMillis, double slowFraction) {
+        this.fastMillis = fastMillis;
+        this.slowMillis = slowMillis;
+        this.slowFraction = slowFraction;
+    }
+
+    /**
+     * Answers key * 2 after a while, fastMillis give or take a millisecond, or slowMillis.
+     */
+    public int call(int key) throws InterruptedException {
+        calls.increment();
+        inFlight.incrementAndGet();
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(random.nextDouble() < slowFraction ? slowMillis : Math.max(0, fastMillis - 1 + random.nextInt(3)));
+            return key * 2;
+        } catch(InterruptedException e) {
+            cancelled.increment();
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long cancelled() {
+        return cancelled.sum();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * One request, fanned out to every shard, each call hedged, all within the timeout.
+     */
+    static int fanOut(SlowService service, HedgedRequests hedging, int shards, Duration timeout) throws Exception {
+        try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful(timeout)) {
+            for(int shard = 0; shard < shards; shard++) {
+                int key = shard;
+                scope.fork(() -> hedging.call(() -> service.call(key)));
+            }
+            return scope.join().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    /**
+     * Fans requests out from a number of concurrent clients, without hedging and then with it, and prints the latencies of whole requests.
+     */
+    private static void tailLatency(int clients, int requestsPerClient, int shards) throws Exception {
+        SlowService service = new SlowService(2, 50, 0.02);
+        LatencyHistogram serviceLatencies = new LatencyHistogram(); // warmed up by the unhedged run, for the hedged one to read from
+        int expected = shards * (shards - 1); // the sum of key * 2 over every shard
+
+        for(int maxAttempts : new int[] { 1, 2 }) {
+            HedgedRequests hedging = new HedgedRequests(serviceLatencies, 0.95, maxAttempts);
+            LatencyHistogram requestLatencies = new LatencyHistogram();
+            long callsBefore = service.calls(), cancelledBefore = service.cancelled();
+            long start = System.nanoTime();
+
+            try(StructuredScope<Object, List<Object>> scope = StructuredScope.allSuccessful(Duration.ofMinutes(1))) {
+                for(int c = 0; c < clients; c++)
+                    scope.fork(() -> {
+                        for(int r = 0; r < requestsPerClient; r++) {
+                            long sent = System.nanoTime();
+                            if(fanOut(service, hedging, shards, Duration.ofSeconds(1)) != expected)
+                                throw new AssertionError("wrong answer");
+                            requestLatencies.record(System.nanoTime() - sent);
+                        }
+                        return null;
+                    });
+                scope.join();
+            }
+
+            long calls = service.calls() - callsBefore;
+            System.out.printf("%-11s requests=%,d p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms service calls=%,d (+%.1f%%, %,d cancelled) in %.2fs%n",
+                    maxAttempts == 1 ? "not hedged" : "hedged", requestLatencies.count(), requestLatencies.percentile(0.5) / 1e6,
+                    requestLatencies.percentile(0.9) / 1e6, requestLatencies.percentile(0.99) / 1e6, requestLatencies.percentile(0.999) / 1e6, calls,
+                    100.0 * hedging.hedges() / hedging.calls(), service.cancelled() - cancelledBefore, (System.nanoTime() - start) / 1e9);
+        }
+        if(service.inFlight() != 0)
+            throw new AssertionError(service.inFlight() + " calls left in flight");
+    }
+
+    /**
+     * [clients] [requestsPerClient] [shards], 8 clients making 250 requests each to 4 shards by default.
+     */
+    public static void main(String[] args) throws Exception {
+        System.out.println("subtasks run on " + (VirtualThreads.isSupported() ? "virtual threads" : "platform threads, virtual threads need a Loom enabled JDK"));
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 250;
+        int shards = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        tailLatency(clients, requestsPerClient, shards);
+    }
+}
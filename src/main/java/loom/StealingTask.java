@@ -0,0 +1,147 @@
+package loom;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The RecursiveTask / RecursiveAction adapter for WorkStealingExecutor: a task with the same compute(), fork(), join(), invoke() and invokeAll() as a
+ * ForkJoinTask, so a fork/join task written for ForkJoinPool runs in a WorkStealingExecutor by extending this instead (see WorkStealingExecutor.RangeSum
+ * next to WorkStealingExecutor.ForkJoinRangeSum). For a RecursiveAction, extend StealingTask of Void and return null.
+ *
+ * fork() pushes the task onto the current worker's deque, so it can only be called from a task already running in a WorkStealingExecutor. join() in a
+ * worker doesn't block: until the task is done, the worker pops and runs its own tasks, which is usually the joined task itself when nobody stole it,
+ * or steals other workers' tasks. Only threads outside the executor actually wait in join().
+ *
+ * An exception thrown by compute() is kept and rethrown by every join(), unchecked exceptions and errors as they are. A task that never ran because
+ * the executor was stopped (WorkStealingExecutor.shutdownNow()) is cancelled, and its join() throws a CancellationException, as a ForkJoinTask's does.
+ */
+public abstract class StealingTask<V> implements Runnable {
+
+    private static final int PENDING = 0, NORMAL = 1, EXCEPTIONAL = 2;
+
+    private volatile int status = PENDING;
+    private volatile boolean waiters; // a thread outside the executor is waiting on this task's monitor
+    private V result;
+    private Throwable exception;
+
+    protected abstract V compute();
+
+    /**
+     * Runs the task in the calling thread, recording its result or exception for join(). Called by the worker that popped or stole it.
+     */
+    @Override
+    public final void run() {
+        try {
+            result = compute();
+            status = NORMAL; // publishes result
+        } catch(Throwable t) {
+            exception = t;
+            status = EXCEPTIONAL;
+        }
+        if(waiters)
+            synchronized(this) {
+                notifyAll();
+            }
+    }
+
+    /**
+     * Pushes the task onto the current worker's deque, to be run by this worker later or stolen by another one first.
+     */
+    public final StealingTask<V> fork() {
+        if(!(Thread.currentThread() instanceof WorkStealingExecutor.Worker worker))
+            throw new IllegalStateException("fork() can only be called from a task running in a WorkStealingExecutor, use WorkStealingExecutor.invoke() to start one");
+        worker.push(this);
+        return this;
+    }
+
+    /**
+     * The result of compute(), once it's done.
+     */
+    public final V join() {
+        if(status == PENDING) {
+            if(Thread.currentThread() instanceof WorkStealingExecutor.Worker worker)
+                help(worker);
+            else
+                await();
+        }
+        return report();
+    }
+
+    /**
+     * Computes the task in the calling thread and returns its result, like ForkJoinTask.invoke().
+     */
+    public final V invoke() {
+        run();
+        return report();
+    }
+
+    /**
+     * Forks the second task, computes the first in this thread, then joins the second, like ForkJoinTask.invokeAll(first, second).
+     */
+    public static void invokeAll(StealingTask<?> first, StealingTask<?> second) {
+        second.fork();
+        first.invoke();
+        second.join();
+    }
+
+    public final boolean isDone() {
+        return status != PENDING;
+    }
+
+    /**
+     * Completes the task with a CancellationException, for shutdownNow() to call on the tasks it took off the queues, which nobody else can run.
+     */
+    final void cancel() {
+        if(status != PENDING)
+            return;
+        exception = new CancellationException("the executor was stopped before the task ran");
+        status = EXCEPTIONAL;
+        if(waiters)
+            synchronized(this) {
+                notifyAll();
+            }
+    }
+
+    private void help(WorkStealingExecutor.Worker worker) {
+        int idle = 0;
+        while(status == PENDING) {
+            if(worker.executor.isStopped()) // whoever stole the task may have stopped before running it, and shutdownNow() cancels it then
+                throw new CancellationException("the executor was stopped while the task was being joined");
+            Runnable task = worker.deque.pop();
+            if(task == null)
+                task = worker.steal();
+            if(task != null) {
+                idle = 0;
+                worker.runTask(task);
+            } else if(++idle < 64) // the thief is still computing the task, and there's nothing else to do
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    }
+
+    private void await() {
+        waiters = true;
+        boolean interrupted = false;
+        synchronized(this) {
+            while(status == PENDING)
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    interrupted = true; // join() isn't interruptible, the interrupt is kept for the caller
+                }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private V report() {
+        if(status == EXCEPTIONAL) {
+            if(exception instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if(exception instanceof Error error)
+                throw error;
+            throw new RuntimeException(exception);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,359 @@
+package loom;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Structured concurrency for blocking calls, after the StructuredTaskScope of JEP 428 (incubating in JDK 19, in preview since JDK 21), which JDK 17 doesn't
+ * have. The thread that opens a scope forks subtasks, each on a thread of its own, joins them, and closes the scope, normally with try-with-resources:
+ *
+ *     try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful(Duration.ofMillis(100))) {
+ *         for(int shard = 0; shard < shards; shard++)
+ *             scope.fork(() -> service.call(shard));
+ *         return scope.join();
+ *     }
+ *
+ * Subtasks run on virtual threads when VirtualThreads.isSupported(), one thread per subtask being exactly what they're meant to make cheap, and on
+ * new platform threads otherwise, which works the same, just with the cost of a platform thread per fork.
+ *
+ * - The policy decides when the outcome is known. allSuccessful() needs every subtask to succeed, and gives up on the first failure. firstSuccess()
+ *   needs any one of them to, and only gives up once they have all failed. Either way, as soon as the outcome is known, the scope shuts down:
+ *   subtasks still running are cancelled, and join() returns (or throws) straight away, without waiting for them.
+ * - Cancelling a subtask interrupts its thread, so it has to be blocked in, or check for, something interruptible. Its result, if it still produces
+ *   one, is thrown away.
+ * - A scope has a deadline, given as a timeout when it's opened. join() throws a TimeoutException once it has passed and shuts the scope down. A
+ *   scope opened by a subtask of another scope never outlives its parent's deadline, and a subtask can ask how long it has left with
+ *   remainingNanos(), to pass on to a downstream call (a socket timeout). Cancellation travels down the same way: a subtask that was cancelled is
+ *   interrupted in the middle of its own join(), and closing its scope cancels its own subtasks in turn.
+ * - close() shuts the scope down if it isn't already, and waits for the thread of every subtask to finish, so no thread a scope started outlives it.
+ *   A subtask that ignores interrupts holds up close(), as it should, rather than leaking.
+ *
+ * fork(), join() and awaitOutcome() can only be called by the thread that opened the scope. shutdown() can be called by any thread.
+ *
+ * @param <T> what a subtask returns
+ * @param <R> what join() returns, every result in fork order or the first one
+ */
+public abstract class StructuredScope<T, R> implements AutoCloseable {
+
+    private static final long MAX_TIMEOUT_NANOS = 1L << 62; // no timeout: about 146 years, far enough off for nanoTime() differences not to overflow
+    private static final ThreadLocal<StructuredScope<?, ?>> CURRENT = new ThreadLocal<>(); // the scope whose subtask the current thread is running
+    private static final AtomicInteger PLATFORM_THREADS = new AtomicInteger();
+
+    public enum State { RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final Thread owner = Thread.currentThread();
+    private final long deadline; // in System.nanoTime()
+    private final ThreadFactory threadFactory;
+    private final List<Subtask<T>> subtasks = new CopyOnWriteArrayList<>(); // shutdown() can be called from any thread
+    private final BlockingQueue<Subtask<T>> completed = new LinkedBlockingQueue<>(); // only ever taken by the owner
+    private final Subtask<T> wakeUp = new Subtask<>(this, null); // queued by shutdown(), so an owner waiting in join() notices
+    private int finished; // subtasks taken from completed, only touched by the owner
+    private volatile boolean shutdown;
+    private boolean closed;
+
+    private StructuredScope(Duration timeout, ThreadFactory threadFactory) {
+        long now = System.nanoTime();
+        long deadline = now + (timeout == null ? MAX_TIMEOUT_NANOS : Math.min(Math.max(0, timeout.toNanos()), MAX_TIMEOUT_NANOS));
+        StructuredScope<?, ?> parent = CURRENT.get();
+        if(parent != null && parent.deadline - deadline < 0)
+            deadline = parent.deadline;
+        this.deadline = deadline;
+        this.threadFactory = threadFactory != null ? threadFactory : defaultThreadFactory();
+    }
+
+    /**
+     * A scope that needs every subtask to succeed, and whose join() returns their results in fork order. Without a timeout, it only has its parent's
+     * deadline, if it has a parent.
+     */
+    public static <T> StructuredScope<T, List<T>> allSuccessful() {
+        return new AllSuccessful<>(null, null);
+    }
+
+    public static <T> StructuredScope<T, List<T>> allSuccessful(Duration timeout) {
+        return new AllSuccessful<>(timeout, null);
+    }
+
+    public static <T> StructuredScope<T, List<T>> allSuccessful(Duration timeout, ThreadFactory threadFactory) {
+        return new AllSuccessful<>(timeout, threadFactory);
+    }
+
+    /**
+     * A scope that needs any one subtask to succeed, and whose join() returns the result of the first that did.
+     */
+    public static <T> StructuredScope<T, T> firstSuccess() {
+        return new FirstSuccess<>(null, null);
+    }
+
+    public static <T> StructuredScope<T, T> firstSuccess(Duration timeout) {
+        return new FirstSuccess<>(timeout, null);
+    }
+
+    public static <T> StructuredScope<T, T> firstSuccess(Duration timeout, ThreadFactory threadFactory) {
+        return new FirstSuccess<>(timeout, threadFactory);
+    }
+
+    /**
+     * How long the subtask the current thread is running has left until its scope's deadline, 0 once it has passed, or Long.MAX_VALUE outside of
+     * any scope.
+     */
+    public static long remainingNanos() {
+        StructuredScope<?, ?> scope = CURRENT.get();
+        return scope == null ? Long.MAX_VALUE : scope.nanosUntilDeadline();
+    }
+
+    public final long nanosUntilDeadline() {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Starts the task on a new thread. Once the scope has shut down, the task isn't started and the subtask returned is already cancelled.
+     */
+    public final Subtask<T> fork(Callable<? extends T> task) {
+        checkOwner();
+        if(closed)
+            throw new IllegalStateException("the scope is closed");
+        Subtask<T> subtask = new Subtask<>(this, task);
+        if(shutdown) {
+            subtask.state = State.CANCELLED;
+            return subtask;
+        }
+        subtask.thread = threadFactory.newThread(subtask::run); // before it's added, shutdown() may interrupt it as soon as it is
+        subtasks.add(subtask);
+        subtask.thread.start();
+        if(shutdown) // shutdown() may have missed it, cancelling twice does no harm
+            subtask.cancel();
+        return subtask;
+    }
+
+    /**
+     * Waits for the outcome of the subtasks forked so far, and returns it.
+     *
+     * @throws ExecutionException when the policy failed, with the failure of a subtask as its cause
+     * @throws CancellationException when the scope was shut down before the policy succeeded or failed
+     * @throws TimeoutException when the deadline passed first, which shuts the scope down
+     * @throws InterruptedException when the owner was interrupted, cancelled by a scope of its own for instance, and the scope should be closed
+     */
+    public final R join() throws InterruptedException, ExecutionException, TimeoutException {
+        if(!awaitUntil(deadline)) {
+            shutdown();
+            throw new TimeoutException("deadline passed with " + (subtasks.size() - finished) + " of " + subtasks.size() + " subtasks still running");
+        }
+        return result();
+    }
+
+    /**
+     * Waits at most the given time (and never past the deadline) for the outcome to be known, so join() won't block, and says whether it is. Lets the
+     * owner do something else while it waits, like forking another subtask (see HedgedRequests).
+     */
+    public final boolean awaitOutcome(long timeout, TimeUnit unit) throws InterruptedException {
+        long until = System.nanoTime() + Math.min(Math.max(0, unit.toNanos(timeout)), MAX_TIMEOUT_NANOS);
+        return awaitUntil(until - deadline < 0 ? until : deadline);
+    }
+
+    /**
+     * Cancels every subtask still running, and wakes up the owner if it's waiting for them. Can be called from any thread, any number of times.
+     */
+    public final void shutdown() {
+        if(shutdown)
+            return;
+        shutdown = true;
+        for(Subtask<T> subtask : subtasks)
+            subtask.cancel();
+        completed.add(wakeUp);
+    }
+
+    public final boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Shuts the scope down and waits for every subtask's thread to finish. An interrupt doesn't stop the wait, the owner is interrupted again after.
+     */
+    @Override
+    public final void close() {
+        checkOwner();
+        if(closed)
+            return;
+        closed = true;
+        shutdown();
+        boolean interrupted = false;
+        for(Subtask<T> subtask : subtasks)
+            while(true) {
+                try {
+                    subtask.thread.join();
+                    break;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Called by the owner with every subtask that finished, in the order they did, until the outcome is known.
+     */
+    abstract void onCompletion(Subtask<T> subtask);
+
+    abstract R result() throws ExecutionException;
+
+    final List<Subtask<T>> subtasks() {
+        return subtasks;
+    }
+
+    private boolean awaitUntil(long until) throws InterruptedException {
+        checkOwner();
+        while(!shutdown && finished < subtasks.size()) {
+            long remaining = until - System.nanoTime();
+            if(remaining <= 0)
+                return false;
+            Subtask<T> subtask = completed.poll(remaining, TimeUnit.NANOSECONDS);
+            if(subtask != null && subtask != wakeUp) {
+                finished++;
+                onCompletion(subtask);
+            }
+        }
+        return true;
+    }
+
+    private void checkOwner() {
+        if(Thread.currentThread() != owner)
+            throw new IllegalStateException(Thread.currentThread() + " isn't the owner of the scope, " + owner + " is");
+    }
+
+    private static ThreadFactory defaultThreadFactory() {
+        if(VirtualThreads.isSupported())
+            return VirtualThreads.newThreadFactory();
+        return task -> {
+            Thread thread = new Thread(task, "StructuredScope-" + PLATFORM_THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A task forked in a scope, and once it finished, what came of it.
+     */
+    public static final class Subtask<T> {
+        private final StructuredScope<T, ?> scope;
+        private final Callable<? extends T> task;
+        private Thread thread;
+        private volatile boolean cancelled;
+        private volatile State state = State.RUNNING;
+        private T result; // both written before state, and only read after it
+        private Throwable failure;
+
+        private Subtask(StructuredScope<T, ?> scope, Callable<? extends T> task) {
+            this.scope = scope;
+            this.task = task;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        public T get() {
+            if(state != State.SUCCEEDED)
+                throw new IllegalStateException("the subtask didn't succeed, it's " + state);
+            return result;
+        }
+
+        public Throwable exception() {
+            if(state != State.FAILED)
+                throw new IllegalStateException("the subtask didn't fail, it's " + state);
+            return failure;
+        }
+
+        private void run() {
+            CURRENT.set(scope);
+            try {
+                if(!cancelled)
+                    result = task.call();
+            } catch(Throwable e) {
+                failure = e;
+            } finally {
+                // once cancelled, whatever the task did is thrown away, most likely an InterruptedException
+                state = cancelled ? State.CANCELLED : failure != null ? State.FAILED : State.SUCCEEDED;
+                scope.completed.add(this);
+            }
+        }
+
+        private void cancel() {
+            if(state != State.RUNNING)
+                return;
+            cancelled = true;
+            thread.interrupt();
+        }
+    }
+
+    private static final class AllSuccessful<T> extends StructuredScope<T, List<T>> {
+        private Throwable failure;
+
+        private AllSuccessful(Duration timeout, ThreadFactory threadFactory) {
+            super(timeout, threadFactory);
+        }
+
+        @Override
+        void onCompletion(Subtask<T> subtask) {
+            if(subtask.state() == State.FAILED && failure == null) {
+                failure = subtask.exception();
+                shutdown();
+            }
+        }
+
+        @Override
+        List<T> result() throws ExecutionException {
+            if(failure != null)
+                throw new ExecutionException(failure);
+            List<T> results = new ArrayList<>();
+            for(Subtask<T> subtask : subtasks()) {
+                if(subtask.state() != State.SUCCEEDED)
+                    throw new CancellationException("the scope was shut down before every subtask succeeded");
+                results.add(subtask.get());
+            }
+            return results;
+        }
+    }
+
+    private static final class FirstSuccess<T> extends StructuredScope<T, T> {
+        private Subtask<T> first;
+        private ExecutionException failure; // the first failure, with the others suppressed
+
+        private FirstSuccess(Duration timeout, ThreadFactory threadFactory) {
+            super(timeout, threadFactory);
+        }
+
+        @Override
+        void onCompletion(Subtask<T> subtask) {
+            if(subtask.state() == State.SUCCEEDED && first == null) {
+                first = subtask;
+                shutdown();
+            } else if(subtask.state() == State.FAILED) {
+                if(failure == null)
+                    failure = new ExecutionException(subtask.exception());
+                else
+                    failure.addSuppressed(subtask.exception());
+            }
+        }
+
+        @Override
+        T result() throws ExecutionException {
+            if(first != null)
+                return first.get();
+            if(failure != null && !isShutdown())
+                throw failure;
+            throw new CancellationException(subtasks().isEmpty() ? "no subtask was forked" : "the scope was shut down before any subtask succeeded");
+        }
+    }
+}
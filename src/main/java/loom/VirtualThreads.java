@@ -0,0 +1,87 @@
+package loom;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The project compiles against JDK 17, which doesn't have virtual threads yet. Executors.newVirtualThreadPerTaskExecutor() only arrives with a Loom
+ * build (JDK 19 onwards, behind --enable-preview until JDK 21), so it's looked up at runtime instead. Anything using this class should check
+ * isSupported() and fall back to platform threads, saying so, when it isn't.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+    private static final MethodHandle NEW_THREAD_FACTORY = findVirtualThreadFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * True when running on a JDK where virtual threads can actually be started (a Loom build with preview features enabled if need be).
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null && NEW_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), which starts a new virtual thread for every task submitted.
+     *
+     * @throws UnsupportedOperationException when virtual threads aren't available on this JDK
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if(!isSupported())
+            throw new UnsupportedOperationException("virtual threads need a Loom enabled JDK, running on " + Runtime.version());
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch(Throwable e) {
+            throw new IllegalStateException("could not create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().factory(), for code that starts its own threads rather than submitting tasks to an executor (see StructuredScope).
+     *
+     * @throws UnsupportedOperationException when virtual threads aren't available on this JDK
+     */
+    public static ThreadFactory newThreadFactory() {
+        if(!isSupported())
+            throw new UnsupportedOperationException("virtual threads need a Loom enabled JDK, running on " + Runtime.version());
+        try {
+            return (ThreadFactory) NEW_THREAD_FACTORY.invokeExact();
+        } catch(Throwable e) {
+            throw new IllegalStateException("could not create a virtual thread factory", e);
+        }
+    }
+
+    private static MethodHandle findVirtualThreadPerTaskExecutor() {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findStatic(java.util.concurrent.Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+
+            // on JDK 19 and 20 the method exists but throws UnsupportedOperationException unless --enable-preview was given, so try it out once
+            ((ExecutorService) handle.invokeExact()).shutdown();
+            return handle;
+        } catch(Throwable e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findVirtualThreadFactory() {
+        try {
+            // Thread.Builder doesn't exist in JDK 17, so both halves of Thread.ofVirtual().factory() are looked up by name
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandle newBuilder = MethodHandles.publicLookup().findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtual));
+            MethodHandle factory = MethodHandles.publicLookup().findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+            MethodHandle handle = MethodHandles.filterReturnValue(newBuilder, factory.asType(MethodType.methodType(ThreadFactory.class, ofVirtual)));
+
+            ThreadFactory unused = (ThreadFactory) handle.invokeExact(); // throws without --enable-preview on JDK 19 and 20, as above
+            return handle;
+        } catch(Throwable e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package loom;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An ExecutorService built the way ForkJoinPool is, but small enough to read and change: a fixed number of worker threads, each with its own
+ * ChaseLevDeque, stealing from each other when they run out. It's there to show which parts of ForkJoinPool's behaviour matter for the workloads in
+ * this project, and to try out the ones it doesn't let us configure, like how idle workers wait.
+ *
+ * - Tasks forked by a worker (StealingTask.fork()) go to the bottom of that worker's deque, and the worker pops them back LIFO.
+ * - Tasks submitted from outside go to one shared FIFO submission queue, which workers poll once their own deque is empty.
+ * - A worker with nothing of its own steals from the top of another worker's deque, starting at a random victim and trying each once, so thieves
+ *   don't all converge on the same worker.
+ * - A worker that finds nothing anywhere waits the way its IdleStrategy says: spinning, yielding, parking, or spinning a while before parking.
+ *
+ * StealingTask is the RecursiveTask / RecursiveAction style adapter: compute(), fork(), join() and invokeAll() mean the same as they do on a
+ * ForkJoinTask, so a task written for ForkJoinPool runs here by changing what it extends. A ForkJoinTask itself can't be run here, its fork() always
+ * goes to a ForkJoinPool. Plain Runnables and Callables can be submitted as with any ExecutorService. Workers are daemon threads, like ForkJoinPool's.
+ *
+ * There is nothing like ForkJoinPool's compensation for blocked workers (ManagedBlocker), so a task that blocks takes its worker out of the pool
+ * until it's done.
+ */
+public class WorkStealingExecutor extends AbstractExecutorService {
+
+    /**
+     * How a worker that found no task anywhere waits before looking again. Each strategy is how many consecutive empty scans to spend spinning
+     * (Thread.onSpinWait()), then up to how many to spend yielding, before parking until a task is pushed or submitted. Spinning wakes up soonest but
+     * keeps a core busy doing nothing, parking costs an unpark by whoever pushes the next task, and a thread switch on both sides.
+     */
+    public enum IdleStrategy {
+        SPIN(Integer.MAX_VALUE, Integer.MAX_VALUE),
+        YIELD(0, Integer.MAX_VALUE),
+        PARK(0, 0),
+        SPIN_THEN_PARK(64, 80);
+
+        private final int spins; // empty scans spent spinning
+        private final int yields; // empty scans spent spinning or yielding, parking after that
+
+        IdleStrategy(int spins, int yields) {
+            this.spins = spins;
+            this.yields = yields;
+        }
+
+        boolean parks() {
+            return yields != Integer.MAX_VALUE;
+        }
+    }
+
+    private static final int RUNNING = 0, SHUTDOWN = 1, STOP = 2;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100); // parked workers look again this often, should a wake-up ever be missed
+
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Runnable> submissions = new ConcurrentLinkedQueue<>();
+    private final IdleStrategy idleStrategy;
+    private final AtomicInteger parkedWorkers = new AtomicInteger();
+    private final AtomicInteger liveWorkers;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile int state = RUNNING;
+
+    /**
+     * As many workers as there are processors, spinning for a while before they park.
+     */
+    public WorkStealingExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), IdleStrategy.SPIN_THEN_PARK);
+    }
+
+    public WorkStealingExecutor(int parallelism, IdleStrategy idleStrategy) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive, was " + parallelism);
+        this.idleStrategy = Objects.requireNonNull(idleStrategy);
+        this.workers = new Worker[parallelism];
+        this.liveWorkers = new AtomicInteger(parallelism);
+        for(int i = 0; i < parallelism; i++)
+            workers[i] = new Worker(this, i);
+        for(Worker worker : workers)
+            worker.start();
+    }
+
+    static final class Worker extends Thread {
+        final WorkStealingExecutor executor;
+        final ChaseLevDeque<Runnable> deque = new ChaseLevDeque<>();
+        private final SplittableRandom random;
+        final AtomicBoolean parked = new AtomicBoolean();
+
+        Worker(WorkStealingExecutor executor, int index) {
+            super("work-stealing-worker-" + index);
+            this.executor = executor;
+            this.random = new SplittableRandom(index * 0x9e3779b97f4a7c15L);
+            setDaemon(true);
+        }
+
+        /**
+         * A task forked by a task running in this worker.
+         */
+        void push(Runnable task) {
+            deque.push(task);
+            executor.signalWork(true);
+        }
+
+        /**
+         * A task stolen from another worker, trying each once starting with a random one, or null if none had any.
+         */
+        Runnable steal() {
+            Worker[] victims = executor.workers;
+            int n = victims.length;
+            if(n == 1)
+                return null;
+            int start = random.nextInt(n);
+            for(int i = 0; i < n; i++) {
+                Worker victim = victims[(start + i) % n];
+                if(victim != this) {
+                    Runnable task = victim.deque.steal();
+                    if(task != null)
+                        return task;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int idleScans = 0;
+                while(executor.state != STOP) {
+                    Runnable task = deque.pop();
+                    if(task == null)
+                        task = executor.submissions.poll();
+                    if(task == null)
+                        task = steal();
+                    if(task != null) {
+                        idleScans = 0;
+                        runTask(task);
+                    } else if(executor.state != RUNNING && !executor.hasQueuedTasks())
+                        break;
+                    else
+                        executor.idle(this, idleScans++);
+                }
+            } finally {
+                if(executor.liveWorkers.decrementAndGet() == 0)
+                    executor.terminated.countDown();
+            }
+        }
+
+        void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch(Throwable t) {
+                // a StealingTask keeps its exception for join(), and submit() wraps tasks in a FutureTask that does the same, so only execute()'s
+                // Runnables get here. Reported like an uncaught exception, but the worker carries on, there are no replacement workers.
+                getUncaughtExceptionHandler().uncaughtException(this, t);
+            }
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Objects.requireNonNull(task);
+        if(state != RUNNING)
+            throw new RejectedExecutionException("executor has been shut down");
+        if(Thread.currentThread() instanceof Worker worker && worker.executor == this)
+            worker.push(task); // from one of our tasks, keep it local
+        else {
+            submissions.add(task);
+            signalWork(false);
+        }
+    }
+
+    /**
+     * Runs the task and waits for its result. From one of this executor's workers it's simply computed in place, like ForkJoinTask.invoke().
+     */
+    public <V> V invoke(StealingTask<V> task) {
+        if(Thread.currentThread() instanceof Worker worker && worker.executor == this)
+            return task.invoke();
+        execute(task);
+        return task.join();
+    }
+
+    /**
+     * Unparks one parked worker, if there is one, after a task has been pushed or submitted.
+     */
+    private void signalWork(boolean pushed) {
+        if(!idleStrategy.parks())
+            return;
+        // a worker announces it's about to park, then looks for tasks one last time, and we publish a task, then look for parked workers: the fence
+        // makes sure that at least one of us sees the other. Submissions don't need it, adding to a ConcurrentLinkedQueue is a CAS, a full fence already.
+        if(pushed)
+            VarHandle.fullFence();
+        if(parkedWorkers.get() == 0)
+            return;
+        for(Worker worker : workers)
+            if(worker.parked.get() && worker.parked.compareAndSet(true, false)) {
+                LockSupport.unpark(worker);
+                return;
+            }
+    }
+
+    private void idle(Worker worker, int idleScans) {
+        if(idleScans < idleStrategy.spins)
+            Thread.onSpinWait();
+        else if(idleScans < idleStrategy.yields)
+            Thread.yield();
+        else {
+            parkedWorkers.incrementAndGet();
+            worker.parked.set(true);
+            if(!hasQueuedTasks() && state == RUNNING)
+                LockSupport.parkNanos(this, PARK_NANOS);
+            worker.parked.set(false);
+            parkedWorkers.decrementAndGet();
+        }
+    }
+
+    private boolean hasQueuedTasks() {
+        if(!submissions.isEmpty())
+            return true;
+        for(Worker worker : workers)
+            if(!worker.deque.isEmpty())
+                return true;
+        return false;
+    }
+
+    private void wakeAll() {
+        for(Worker worker : workers)
+            LockSupport.unpark(worker);
+    }
+
+    /**
+     * Stops taking new tasks from outside, and lets the workers finish the tasks already queued, and anything those fork, before they exit.
+     */
+    @Override
+    public void shutdown() {
+        if(state == RUNNING)
+            state = SHUTDOWN;
+        wakeAll();
+    }
+
+    /**
+     * Stops the workers once they finish the task they are running, which are interrupted, and returns the tasks that never ran. Those that are
+     * StealingTasks are cancelled first, so whatever joins them gets a CancellationException rather than waiting for them forever, and a worker
+     * joining a task still stops helping (see StealingTask.join()).
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state = STOP;
+        for(Worker worker : workers)
+            worker.interrupt();
+        List<Runnable> neverRan = new ArrayList<>();
+        for(Runnable task; (task = submissions.poll()) != null; )
+            neverRan.add(task);
+        for(Worker worker : workers)
+            for(Runnable task; (task = worker.deque.steal()) != null || !worker.deque.isEmpty(); )
+                if(task != null)
+                    neverRan.add(task);
+        for(Runnable task : neverRan)
+            if(task instanceof StealingTask<?> stealingTask)
+                stealingTask.cancel();
+        return neverRan;
+    }
+
+    boolean isStopped() {
+        return state == STOP;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkStealingExecutor[parallelism=" + workers.length + ", " + idleStrategy + ", queued=" + submissions.size() + "]";
+    }
+
+    /**
+     * A fork/join sum as a StealingTask. It's RangeSummingRecursiveTask's compute() without the JFR events, the adaptive leaf size and the LeafKernel,
+     * so that next to ForkJoinRangeSum, its twin for ForkJoinPool, the only difference left is the scheduler.
+     */
+    static final class RangeSum extends StealingTask<Long> {
+        private final int[] array;
+        private final int from, to, leafSize;
+
+        RangeSum(int[] array, int from, int to, int leafSize) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from > leafSize) {
+                int mid = (from + to) >>> 1;
+                RangeSum left = new RangeSum(array, from, mid, leafSize);
+                RangeSum right = new RangeSum(array, mid, to, leafSize);
+                left.fork();
+                long rightSum = right.compute();
+                return left.join() + rightSum;
+            }
+            long sum = 0;
+            for(int i = from; i < to; i++)
+                sum += array[i];
+            return sum;
+        }
+    }
+
+    /**
+     * RangeSum as a RecursiveTask, line for line: the ForkJoinPool baseline to compare a WorkStealingExecutor with.
+     */
+    static final class ForkJoinRangeSum extends RecursiveTask<Long> {
+        private final int[] array;
+        private final int from, to, leafSize;
+
+        ForkJoinRangeSum(int[] array, int from, int to, int leafSize) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Long compute() {
+            if(to - from > leafSize) {
+                int mid = (from + to) >>> 1;
+                ForkJoinRangeSum left = new ForkJoinRangeSum(array, from, mid, leafSize);
+                ForkJoinRangeSum right = new ForkJoinRangeSum(array, mid, to, leafSize);
+                left.fork();
+                long rightSum = right.compute();
+                return left.join() + rightSum;
+            }
+            long sum = 0;
+            for(int i = from; i < to; i++)
+                sum += array[i];
+            return sum;
+        }
+    }
+
+    /**
+     * Times the sum in a WorkStealingExecutor with each idle strategy against the same sum in a ForkJoinPool, from fine grained leaves to coarse
+     * ones. WorkStealingExecutorTest checks the sums and the executor's shutdown, ChaseLevDequeTest the deque under concurrent steals.
+     */
+    public static void main(String[] args) throws Exception {
+        int[] array = new SplittableRandom(42).ints(20_000_000, -1_000, 1_000).toArray();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        for(IdleStrategy idleStrategy : IdleStrategy.values()) {
+            WorkStealingExecutor executor = new WorkStealingExecutor(parallelism, idleStrategy);
+            for(int leafSize : new int[] { 256, 65_536 }) {
+                long best = Long.MAX_VALUE, bestForkJoin = Long.MAX_VALUE;
+                for(int round = 0; round < 10; round++) {
+                    long start = System.nanoTime();
+                    executor.invoke(new RangeSum(array, 0, array.length, leafSize));
+                    best = Math.min(best, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    pool.invoke(new ForkJoinRangeSum(array, 0, array.length, leafSize));
+                    bestForkJoin = Math.min(bestForkJoin, System.nanoTime() - start);
+                }
+                System.out.printf("%-14s leaf size %,7d: WorkStealingExecutor %6.2f ms, ForkJoinPool %6.2f ms%n", idleStrategy, leafSize, best / 1e6, bestForkJoin / 1e6);
+            }
+            executor.shutdown();
+        }
+        pool.shutdown();
+    }
+}
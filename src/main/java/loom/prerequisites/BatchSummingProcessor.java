@@ -0,0 +1,352 @@
+package loom.prerequisites;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sums an unbounded stream of int batches as they arrive, each batch in parallel with a RangeSummingRecursiveTask in the given pool, and publishes a
+ * Total per batch: the batch's own sum, the running total since the start, and the totals of a sliding window over the last few batches.
+ * ListSummingRecursiveTask needs the whole array up front, this only ever holds on to a bounded number of batches, however long the stream runs.
+ *
+ * Backpressure is demand driven both ways, the way java.util.concurrent.Flow means it to be: the processor never asks upstream for more than
+ * maxBatchesInFlight batches that haven't been published yet, and it asks for another one each time it publishes one, which it only does when
+ * downstream has requested it. A producer faster than the pool, or a subscriber slower than both, just gets asked for less: batches in flight and
+ * totals waiting for demand are never more than maxBatchesInFlight together, so memory stays bounded whatever the producer's rate.
+ *
+ * Up to maxBatchesInFlight batches are summed at once, and may finish in any order, but Totals are published in the order the batches arrived, since
+ * the running total depends on it. An error from upstream, or one thrown while summing, cancels upstream and is passed on straight away, dropping the
+ * totals not yet published. A subscriber whose onNext() throws is treated as having cancelled, and gets what it threw back in onError(). Batches belong
+ * to the processor once passed to onNext(), the producer mustn't change them afterwards. One subscriber only.
+ */
+public class BatchSummingProcessor implements Flow.Processor<int[], BatchSummingProcessor.Total> {
+
+    /**
+     * What is known once a batch has been summed. batch counts from 0, the window covers the last windowBatches batches up to and including this one
+     * (fewer at the start of the stream).
+     */
+    public record Total(long batch, int batchSize, long batchSum, long runningCount, long runningSum, int windowBatches, long windowCount, long windowSum) {
+
+        public double windowMean() {
+            return windowCount == 0 ? 0 : (double) windowSum / windowCount;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int maxBatchesInFlight;
+    private final LeafKernel kernel;
+
+    private final Queue<Batch> batches = new ConcurrentLinkedQueue<>(); // in arrival order, summed or not
+    private final AtomicLong requested = new AtomicLong(); // by downstream since it subscribed, compared with published
+    private final AtomicInteger wip = new AtomicInteger(); // drain() is running when not 0, and has to run again when more than 1
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super Total> downstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    // only touched in drain(), which never runs in two threads at once
+    private final long[] windowSums;
+    private final int[] windowCounts;
+    private long windowSum, windowCount, runningSum, runningCount, published;
+    private boolean terminated;
+
+    /**
+     * Sums in the common pool, keeping up to 2 * parallelism batches in flight and totalling a window of the last 16 batches.
+     */
+    public BatchSummingProcessor() {
+        this(ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism(), 16, LeafKernel.SCALAR);
+    }
+
+    public BatchSummingProcessor(ForkJoinPool pool, int maxBatchesInFlight, int windowBatches, LeafKernel kernel) {
+        if(maxBatchesInFlight < 1)
+            throw new IllegalArgumentException("maxBatchesInFlight must be positive, was " + maxBatchesInFlight);
+        if(windowBatches < 1)
+            throw new IllegalArgumentException("windowBatches must be positive, was " + windowBatches);
+        this.pool = Objects.requireNonNull(pool);
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        this.kernel = Objects.requireNonNull(kernel);
+        this.windowSums = new long[windowBatches];
+        this.windowCounts = new int[windowBatches];
+    }
+
+    /**
+     * A batch being summed in the pool. It's a RecursiveAction so it runs as a pool task, and the RangeSummingRecursiveTask it invokes forks its
+     * subtasks into the same pool.
+     */
+    private final class Batch extends RecursiveAction {
+        private final int[] values;
+        private volatile boolean done;
+        private long sum;
+        private Throwable failure;
+
+        Batch(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                sum = new RangeSummingRecursiveTask(values, kernel).invoke();
+            } catch(Throwable t) {
+                failure = t;
+            }
+            done = true; // publishes sum and failure to drain()
+            drain();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Total> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if(!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("BatchSummingProcessor only supports one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0) {
+                    error = new IllegalArgumentException("request must be positive, was " + n); // rule 3.9 of the Reactive Streams spec
+                    cancelUpstream();
+                } else
+                    requested.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more); // capped, unbounded from there
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        downstream = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if(upstream != null) {
+            subscription.cancel(); // already subscribed to something
+            return;
+        }
+        upstream = subscription;
+        if(cancelled)
+            subscription.cancel();
+        else
+            subscription.request(maxBatchesInFlight);
+    }
+
+    @Override
+    public void onNext(int[] batch) {
+        Objects.requireNonNull(batch);
+        if(cancelled || upstreamDone)
+            return;
+        Batch task = new Batch(batch);
+        batches.add(task);
+        pool.execute(task);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = Objects.requireNonNull(throwable);
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if(subscription != null)
+            subscription.cancel();
+    }
+
+    /**
+     * Publishes whatever can be published: summed batches at the head of the queue for as long as there is demand, then the end of the stream. Any
+     * thread can call it, the wip counter makes sure only one is publishing at a time and that a call made while it is doesn't get lost.
+     */
+    private void drain() {
+        if(wip.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super Total> subscriber = downstream;
+            if(subscriber != null && !terminated) {
+                long freed = 0;
+                while(true) {
+                    if(cancelled) {
+                        batches.clear();
+                        break;
+                    }
+                    Throwable failure = error;
+                    Batch head = batches.peek();
+                    if(failure == null && head != null && head.done && head.failure != null) {
+                        failure = error = head.failure;
+                        cancelUpstream();
+                    }
+                    if(failure != null) {
+                        terminated = true;
+                        batches.clear();
+                        signalError(subscriber, failure);
+                        break;
+                    }
+                    if(head == null) {
+                        if(upstreamDone) {
+                            terminated = true;
+                            try {
+                                subscriber.onComplete();
+                            } catch(Throwable t) {
+                                // nothing left to tell it, and drain() has to get to the end to release wip
+                            }
+                        }
+                        break;
+                    }
+                    if(!head.done || published == requested.get())
+                        break;
+
+                    batches.poll();
+                    Total total = add(head.values.length, head.sum);
+                    try {
+                        subscriber.onNext(total);
+                    } catch(Throwable t) {
+                        // against rule 2.13 of the Reactive Streams spec. Treated as a cancellation, with the reason passed back to the subscriber, as
+                        // letting it out of drain() would leave wip set and the processor stuck for good
+                        cancelled = true;
+                        terminated = true;
+                        batches.clear();
+                        cancelUpstream();
+                        signalError(subscriber, t);
+                        break;
+                    }
+                    freed++;
+                }
+                if(freed > 0 && !cancelled && !upstreamDone)
+                    upstream.request(freed); // one more batch for every total published, so what's in flight stays at maxBatchesInFlight
+            }
+            missed = wip.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    private static void signalError(Flow.Subscriber<?> subscriber, Throwable failure) {
+        try {
+            subscriber.onError(failure);
+        } catch(Throwable t) {
+            // as for onComplete(), drain() has to get to the end
+        }
+    }
+
+    private Total add(int count, long sum) {
+        int slot = (int) (published % windowSums.length);
+        windowSum += sum - windowSums[slot]; // the slot holds the batch falling out of the window, or 0 before the window has filled up
+        windowCount += count - windowCounts[slot];
+        windowSums[slot] = sum;
+        windowCounts[slot] = count;
+        runningSum += sum;
+        runningCount += count;
+        published++;
+        return new Total(published - 1, count, sum, runningCount, runningSum, (int) Math.min(published, windowSums.length), windowCount, windowSum);
+    }
+
+    /**
+     * An endless stream of random batches, produced only when requested, and a subscriber that is deliberately slower than both the producer and the
+     * pool, printing how far ahead of it the producer got. BatchSummingProcessorTest checks the totals, the demand and the errors.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int batchSize = 1_000_000, maxBatchesInFlight = 4, windowBatches = 8, batchesWanted = 200;
+        AtomicLong produced = new AtomicLong();
+
+        Flow.Publisher<int[]> producer = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            private final SplittableRandom random = new SplittableRandom(42);
+            private volatile boolean stopped;
+
+            @Override
+            public void request(long n) {
+                for(long i = 0; i < n && !stopped; i++) {
+                    produced.incrementAndGet();
+                    subscriber.onNext(random.ints(batchSize, -1_000, 1_000).toArray());
+                }
+            }
+
+            @Override
+            public void cancel() {
+                stopped = true;
+            }
+        });
+
+        BatchSummingProcessor processor = new BatchSummingProcessor(ForkJoinPool.commonPool(), maxBatchesInFlight, windowBatches, LeafKernel.SCALAR);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicLong maxAhead = new AtomicLong();
+        processor.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private long received;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Total total) {
+                maxAhead.accumulateAndGet(produced.get() - received, Math::max);
+                if(received % 25 == 0)
+                    System.out.printf("batch %d: sum %,d, running sum %,d over %,d values, mean of the last %d batches %.3f, %d batches produced%n",
+                            total.batch(), total.batchSum(), total.runningSum(), total.runningCount(), total.windowBatches(), total.windowMean(), produced.get());
+                if(++received == batchesWanted) {
+                    subscription.cancel();
+                    finished.countDown();
+                    return;
+                }
+                try {
+                    Thread.sleep(2); // slower than the pool
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+                finished.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                finished.countDown();
+            }
+        });
+        producer.subscribe(processor);
+
+        if(!finished.await(1, TimeUnit.MINUTES))
+            System.out.println("no end of the stream after a minute, giving up");
+        System.out.printf("%d batches produced, at most %d produced ahead of the subscriber (limit %d)%n", produced.get(), maxAhead.get(),
+                maxBatchesInFlight + 1);
+    }
+}
@@ -0,0 +1,141 @@
+package loom.prerequisites;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A LogSink that gives every worker thread its own buffer, so logging from a leaf task never has to take the PrintStream lock that System.out.printf does.
+ *
+ * Unordered, each worker encodes its lines straight into its own byte buffer and hands the whole buffer to the channel once it is full, so the channel is
+ * only touched once per batch. Ordered, each worker just keeps the lines it logged along with their list positions, and on close() the buffers of all
+ * workers are merged by position and written out in batches, giving the same output as if the list had been logged sequentially.
+ *
+ * The channel isn't closed by the sink, it belongs to whoever created it (System.out for example). The sink can be used again after close(), for a
+ * second task on the same pool say: close() starts a new generation of buffers, and a worker still holding one from before registers a new one.
+ */
+public class ChannelLogSink implements LogSink {
+
+    static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+    private static final int MIN_BATCH_SIZE = 16; // room for any single encoded character plus a line separator
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel channel;
+    private final boolean ordered;
+    private final int batchSize;
+
+    // every buffer created by a worker is registered here once, so close() can find them all. Appending to a buffer never touches this queue.
+    private final Queue<WorkerBuffer> workerBuffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<WorkerBuffer> workerBuffer = ThreadLocal.withInitial(this::registerWorkerBuffer);
+    private volatile int generation; // bumped by close(), which forgets every registered buffer
+
+    public ChannelLogSink(WritableByteChannel channel, boolean ordered, int batchSize) {
+        if(batchSize < MIN_BATCH_SIZE)
+            throw new IllegalArgumentException("batch size must be at least " + MIN_BATCH_SIZE + " bytes, was " + batchSize);
+        this.channel = channel;
+        this.ordered = ordered;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void log(long position, CharSequence line) {
+        WorkerBuffer buffer = workerBuffer.get();
+        if(buffer.generation != generation) { // registered before the last close(), which no longer knows about it
+            buffer = registerWorkerBuffer();
+            workerBuffer.set(buffer);
+        }
+        if(ordered)
+            buffer.lines.add(new Line(position, line.toString()));
+        else
+            buffer.append(line);
+    }
+
+    /**
+     * Writes out whatever the workers still hold. The tasks logging to this sink must have been joined before calling this.
+     */
+    @Override
+    public void close() {
+        if(ordered) {
+            List<Line> lines = new ArrayList<>();
+            workerBuffers.forEach(buffer -> lines.addAll(buffer.lines));
+            lines.sort(Comparator.comparingLong(Line::position));
+
+            WorkerBuffer merged = new WorkerBuffer();
+            lines.forEach(line -> merged.append(line.text()));
+            merged.flush();
+        } else
+            workerBuffers.forEach(WorkerBuffer::flush);
+
+        workerBuffers.clear();
+        generation++; // only close() writes it, after the tasks have been joined
+    }
+
+    private WorkerBuffer registerWorkerBuffer() {
+        WorkerBuffer buffer = new WorkerBuffer();
+        workerBuffers.add(buffer);
+        return buffer;
+    }
+
+    private void write(ByteBuffer batch) {
+        // a whole batch goes out in one go, so batches from different workers never interleave
+        synchronized(channel) {
+            try {
+                while(batch.hasRemaining())
+                    channel.write(batch);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private record Line(long position, String text) {}
+
+    /**
+     * Only ever used by one thread at a time, so nothing in here needs to be thread safe.
+     */
+    private final class WorkerBuffer {
+        private final int generation = ChannelLogSink.this.generation;
+        private final List<Line> lines = new ArrayList<>(); // ordered mode, kept until close()
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private ByteBuffer bytes; // unordered mode, and the merge in close()
+
+        private void append(CharSequence line) {
+            if(bytes == null)
+                bytes = ByteBuffer.allocate(batchSize);
+
+            CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            while(true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                if(result.isOverflow())
+                    flush();
+                else if(result.isUnderflow())
+                    break;
+                else
+                    throw new IllegalArgumentException("cannot encode log line: " + result);
+            }
+            if(bytes.remaining() < LINE_SEPARATOR.length)
+                flush();
+            bytes.put(LINE_SEPARATOR);
+        }
+
+        private void flush() {
+            if(bytes == null)
+                return;
+            bytes.flip();
+            write(bytes);
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package loom.prerequisites;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * JDK Flight Recorder events for what the fork/join tasks in this package do once they've been handed to a pool, so a recording opened in JDK Mission
+ * Control shows where the splitting stopped, how long the leaves took, and how long workers sat in join() waiting for a half that someone else had
+ * stolen. Too many tiny leaves is over-splitting, long join waits with few running threads in the PoolHealth samples are idle workers.
+ *
+ * - Split: a task deciding to split, with the number of elements it split.
+ * - Leaf: a task processing its elements itself, with how many and for how long.
+ * - JoinWait: a task waiting in join() for a subtask another worker stole, and whether that subtask had already finished by the time join() was
+ *   called. Joining a subtask that wasn't stolen just runs it, that isn't a wait and isn't recorded.
+ * - PoolHealth: every second (or whatever period the recording asks for), the steal count, queued tasks and submissions, and the active and running
+ *   threads of every pool being monitored. The common pool always is, other pools can be added with monitor().
+ *
+ * Events only cost anything while a recording has them enabled: the tasks create them unconditionally, but an event that won't be committed doesn't
+ * escape and the JIT gets rid of it. The helpers here are how the tasks record them, see Main for running a demo under a recording.
+ */
+public final class ForkJoinEvents {
+
+    private static final Map<ForkJoinPool, String> MONITORED = new WeakHashMap<>(); // guarded by itself
+
+    static {
+        monitor(ForkJoinPool.commonPool(), "common");
+        FlightRecorder.addPeriodicEvent(PoolHealthEvent.class, ForkJoinEvents::samplePools);
+    }
+
+    private ForkJoinEvents() {
+    }
+
+    @Name("loom.ForkJoinSplit")
+    @Label("Split")
+    @Category({ "Loom", "Fork/Join" })
+    @StackTrace(false)
+    public static final class SplitEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Elements")
+        long size;
+    }
+
+    @Name("loom.ForkJoinLeaf")
+    @Label("Leaf")
+    @Description("A task processing its elements itself rather than splitting them further")
+    @Category({ "Loom", "Fork/Join" })
+    @StackTrace(false)
+    public static final class LeafEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Elements")
+        long size;
+    }
+
+    @Name("loom.ForkJoinJoinWait")
+    @Label("Join Wait")
+    @Description("A task waiting in join() for a subtask that another worker stole")
+    @Category({ "Loom", "Fork/Join" })
+    @StackTrace(false)
+    public static final class JoinWaitEvent extends Event {
+        @Label("Task")
+        String task;
+
+        @Label("Elements")
+        @Description("Elements of the subtask being joined")
+        long size;
+
+        @Label("Done Before Join")
+        @Description("Whether the subtask had already finished when join() was called, in which case there was nothing to wait for")
+        boolean doneBeforeJoin;
+    }
+
+    @Name("loom.ForkJoinPoolHealth")
+    @Label("Pool Health")
+    @Category({ "Loom", "Fork/Join" })
+    @Period("1 s")
+    @StackTrace(false)
+    public static final class PoolHealthEvent extends Event {
+        @Label("Pool")
+        String pool;
+
+        @Label("Parallelism")
+        int parallelism;
+
+        @Label("Pool Size")
+        int poolSize;
+
+        @Label("Active Threads")
+        @Description("Threads stealing or running tasks")
+        int activeThreads;
+
+        @Label("Running Threads")
+        @Description("Threads not blocked waiting to join a task or in other managed synchronization")
+        int runningThreads;
+
+        @Label("Queued Tasks")
+        long queuedTasks;
+
+        @Label("Queued Submissions")
+        int queuedSubmissions;
+
+        @Label("Steal Count")
+        long stealCount;
+    }
+
+    /**
+     * Adds a pool to the ones sampled by PoolHealthEvent, for as long as the pool is reachable.
+     */
+    public static void monitor(ForkJoinPool pool, String name) {
+        synchronized(MONITORED) {
+            MONITORED.put(pool, name);
+        }
+    }
+
+    private static void samplePools() {
+        synchronized(MONITORED) {
+            MONITORED.forEach((pool, name) -> {
+                PoolHealthEvent event = new PoolHealthEvent();
+                event.pool = name;
+                event.parallelism = pool.getParallelism();
+                event.poolSize = pool.getPoolSize();
+                event.activeThreads = pool.getActiveThreadCount();
+                event.runningThreads = pool.getRunningThreadCount();
+                event.queuedTasks = pool.getQueuedTaskCount();
+                event.queuedSubmissions = pool.getQueuedSubmissionCount();
+                event.stealCount = pool.getStealCount();
+                event.commit();
+            });
+        }
+    }
+
+    static void split(String task, long size) {
+        SplitEvent event = new SplitEvent();
+        if(event.shouldCommit()) {
+            event.task = task;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a leaf, to be passed to leafFinished() once the leaf is done.
+     */
+    static LeafEvent leafStarted() {
+        LeafEvent event = new LeafEvent();
+        event.begin();
+        return event;
+    }
+
+    static void leafFinished(LeafEvent event, String task, long size) {
+        event.end();
+        if(event.shouldCommit()) {
+            event.task = task;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    /**
+     * subtask.join(), timed when there is something to wait for. A subtask nobody stole is still at the top of this worker's deque, and join() would
+     * just pop it and run it here, so that's done without an event: only the joins of stolen subtasks are waits.
+     */
+    static <V> V join(ForkJoinTask<V> subtask, String task, long size) {
+        if(subtask.tryUnfork())
+            return subtask.invoke();
+
+        JoinWaitEvent event = new JoinWaitEvent();
+        boolean doneBeforeJoin = subtask.isDone();
+        event.begin();
+        V result = subtask.join();
+        event.end();
+        if(event.shouldCommit()) {
+            event.task = task;
+            event.size = size;
+            event.doneBeforeJoin = doneBeforeJoin;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * What ForkJoinTask.invokeAll(first, second) does, fork the second and run the first in this thread, but with the join of the second timed.
+     */
+    static void invokeAll(ForkJoinTask<?> first, long firstSize, ForkJoinTask<?> second, long secondSize, String task) {
+        split(task, firstSize + secondSize);
+        second.fork();
+        first.invoke();
+        join(second, task, secondSize);
+    }
+}
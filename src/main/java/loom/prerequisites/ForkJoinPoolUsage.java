@@ -50,11 +50,22 @@ public class ForkJoinPoolUsage {
 
         System.out.println("Result of the operation is " + sum);
 
+        // ListSummingRecursiveTask copies each half of its array into a new one when it splits, which is fine for 8 numbers but not for 100 million.
+        // RangeSummingRecursiveTask lets every subtask work on a range of the same array instead, sums into a long, and picks its own leaf size.
+        long rangeSum = pool.invoke(new RangeSummingRecursiveTask(array));
+        System.out.println("Result of the range operation is " + rangeSum);
+
         // The same can be accomplished with RecursiveAction, except it doesn't return a result:
         List<String> list = List.of("The", "Quick", "Brown", "Fox", "Jumped", "Over", "The", "Lazy", "Dog");
         System.out.println(list);
         ListLoggingRecursiveAction baseListLoggingRecursiveAction = new ListLoggingRecursiveAction("Base ListLoggingRecursiveAction", list);
         pool.invoke(baseListLoggingRecursiveAction);
 
+        // Each of the above leaves calls System.out from whichever worker ran it, so workers queue up on the PrintStream lock and the lines come out
+        // in whatever order the work stealing happened to run them. A buffered sink gives each worker its own buffer and, when ordered, puts the lines back in list order.
+        try(LogSink sink = LogSink.buffered(true)) {
+            pool.invoke(new ListLoggingRecursiveAction("Ordered ListLoggingRecursiveAction", list, sink));
+        }
+
     }
 }
@@ -0,0 +1,47 @@
+package loom.prerequisites;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decides when a range based task should stop splitting. Rather than a hard-coded LIST_LENGTH_THRESHOLD, the leaf size is derived from the length of the
+ * whole input and the parallelism of the pool running it, and splitting stops early when the current worker already has more queued tasks than
+ * anyone is likely to steal (the getSurplusQueuedTaskCount() heuristic described in the ForkJoinTask javadoc).
+ */
+final class Granularity {
+
+    static final int ADAPTIVE = -1; // leaf size marker, resolve from the pool at the first compute()
+
+    private static final int MIN_LEAF_SIZE = 1 << 13; // below this the cost of forking outweighs the work done in the leaf
+    private static final int LEAVES_PER_WORKER = 8; // enough spare leaves for idle workers to steal when the load is uneven
+    private static final int SURPLUS_THRESHOLD = 3; // more surplus tasks than this means nobody is stealing from us
+
+    private Granularity() {
+    }
+
+    /**
+     * Leaf size for an input of the given length, so that every worker of the pool gets roughly LEAVES_PER_WORKER leaves.
+     */
+    static int leafSize(long length, ForkJoinPool pool) {
+        int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        long perLeaf = length / ((long) parallelism * LEAVES_PER_WORKER);
+        return (int) Math.max(MIN_LEAF_SIZE, Math.min(perLeaf, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Resolves an ADAPTIVE leaf size against the pool the calling task is running in, leaving an explicit leaf size untouched.
+     */
+    static int resolve(int leafSize, long length) {
+        return leafSize == ADAPTIVE ? leafSize(length, ForkJoinTask.getPool()) : leafSize;
+    }
+
+    /**
+     * Must be called from inside compute(). A range is split if it is bigger than the leaf size and, for adaptive tasks, the current worker isn't
+     * already sitting on a backlog of tasks that other workers aren't stealing. An explicit leaf size is always honoured as is, so thresholds can be compared.
+     */
+    static boolean shouldSplit(long length, int leafSize, boolean adaptive) {
+        if(length <= leafSize)
+            return false;
+        return !adaptive || ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD;
+    }
+}
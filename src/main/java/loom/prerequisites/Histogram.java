@@ -0,0 +1,96 @@
+package loom.prerequisites;
+
+import java.util.Arrays;
+
+/**
+ * Counts of whole numbers falling into equal width buckets between lowest (inclusive) and highest (exclusive), plus how many values were below that
+ * range and how many were at or above it. Unlike loom.LatencyHistogram it has linear buckets over a range chosen up front, and it isn't thread safe:
+ * ParallelReducer gives every leaf a histogram of its own and merges them as the leaves are joined, so nothing is contended.
+ */
+public final class Histogram {
+
+    private final long lowest;
+    private final long highest;
+    private final long width;
+    private final long[] counts;
+    private long underflow; // values below lowest
+    private long overflow; // values at or above highest
+
+    public Histogram(long lowest, long highest, int buckets) {
+        if(highest <= lowest)
+            throw new IllegalArgumentException("highest must be greater than lowest, was " + lowest + " to " + highest);
+        if(buckets < 1)
+            throw new IllegalArgumentException("buckets must be positive, was " + buckets);
+        this.lowest = lowest;
+        this.highest = highest;
+        this.width = Long.divideUnsigned(highest - lowest - 1, buckets) + 1; // rounded up, so the buckets cover the whole range even when it doesn't divide evenly
+        this.counts = new long[(int) Math.min(buckets, Long.divideUnsigned(highest - lowest - 1, width) + 1)]; // and no bucket starts past highest
+    }
+
+    public void add(long value) {
+        if(value < lowest)
+            underflow++;
+        else if(value >= highest)
+            overflow++;
+        else {
+            long offset = value - lowest; // only negative when the range is wider than Long.MAX_VALUE, read it as unsigned then
+            counts[(int) (offset >= 0 ? offset / width : Long.divideUnsigned(offset, width))]++;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram with the same range and buckets to this one.
+     */
+    public Histogram merge(Histogram other) {
+        if(other.lowest != lowest || other.highest != highest || other.counts.length != counts.length)
+            throw new IllegalArgumentException("can't merge a histogram of " + other.describe() + " into one of " + describe());
+        for(int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        underflow += other.underflow;
+        overflow += other.overflow;
+        return this;
+    }
+
+    public int buckets() {
+        return counts.length;
+    }
+
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * The lowest value counted in the bucket, the next bucket's lower bound (or highest, for the last one) being the first value that isn't.
+     */
+    public long lowerBound(int bucket) {
+        return lowest + bucket * width;
+    }
+
+    public long underflow() {
+        return underflow;
+    }
+
+    public long overflow() {
+        return overflow;
+    }
+
+    public long total() {
+        return Arrays.stream(counts).sum() + underflow + overflow;
+    }
+
+    private String describe() {
+        return counts.length + " buckets from " + lowest + " to " + highest;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(describe()).append(": ");
+        if(underflow > 0)
+            builder.append("below ").append(underflow).append(", ");
+        for(int i = 0; i < counts.length; i++)
+            builder.append(lowerBound(i)).append('=').append(counts[i]).append(i < counts.length - 1 ? ", " : "");
+        if(overflow > 0)
+            builder.append(", above ").append(overflow);
+        return builder.toString();
+    }
+}
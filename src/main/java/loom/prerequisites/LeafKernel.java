@@ -0,0 +1,66 @@
+package loom.prerequisites;
+
+/**
+ * How a summing task adds up the elements of its leaf once it has stopped splitting. The counting methods are the same choice for tasks that filter
+ * rather than sum, like the ones behind fifteen.PersonTable.
+ */
+public enum LeafKernel {
+
+    /**
+     * A plain loop, which the JIT may or may not auto-vectorize.
+     */
+    SCALAR {
+        @Override
+        public long sum(int[] array, int from, int to) {
+            return ScalarKernels.sum(array, from, to);
+        }
+
+        @Override
+        public int countGreaterThan(int[] array, int from, int to, int threshold) {
+            return ScalarKernels.countGreaterThan(array, from, to, threshold);
+        }
+
+        @Override
+        public int countEqual(byte[] array, int from, int to, byte value) {
+            return ScalarKernels.countEqual(array, from, to, value);
+        }
+    },
+
+    /**
+     * Explicit SIMD through the Vector API, see VectorKernels.
+     */
+    VECTOR {
+        @Override
+        public long sum(int[] array, int from, int to) {
+            return VectorKernels.sum(array, from, to);
+        }
+
+        @Override
+        public int countGreaterThan(int[] array, int from, int to, int threshold) {
+            return VectorKernels.countGreaterThan(array, from, to, threshold);
+        }
+
+        @Override
+        public int countEqual(byte[] array, int from, int to, byte value) {
+            return VectorKernels.countEqual(array, from, to, value);
+        }
+
+        /**
+         * Only when the JVM was started with --add-modules jdk.incubator.vector, without it VectorKernels fails to load with a NoClassDefFoundError.
+         */
+        @Override
+        public boolean isAvailable() {
+            return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        }
+    };
+
+    public abstract long sum(int[] array, int from, int to);
+
+    public abstract int countGreaterThan(int[] array, int from, int to, int threshold);
+
+    public abstract int countEqual(byte[] array, int from, int to, byte value);
+
+    public boolean isAvailable() {
+        return true;
+    }
+}
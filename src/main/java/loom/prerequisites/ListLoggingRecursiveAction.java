@@ -1,25 +1,49 @@
 package loom.prerequisites;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
 
 /**
  * Logs items of a list in order. This class represents a RecursiveAction which accepts a list of strings, defining a method to divide the list if a threshold is exceeded
- * and a method to log the contents of a list.
+ * and a method to log the contents of a list. Any CharSequence will do, so words can be logged straight from a mapped file (SegmentLines.words()) without
+ * a String being made for any of them unless the sink actually formats the line.
  */
 public class ListLoggingRecursiveAction extends RecursiveAction {
 
-    private final String name; // random identifier for logger just to see that they are different
-    private final List<String> list;
+    private final String name; // name given to the base task, shared by all of its subtasks
+    private final long id; // identifier for logger just to see that they are different. The base task is 1 and the subtasks of task n are 2n and 2n + 1, as in a binary heap
+    private final List<? extends CharSequence> list;
+    private final int offset; // index of list.get(0) in the base task's list, used by the sink to log in list order
+    private final LogSink sink;
+    private final int threshold;
     private static final int LIST_LENGTH_THRESHOLD = 3;
 
-    public ListLoggingRecursiveAction(String name, List<String> list) {
+    public ListLoggingRecursiveAction(String name, List<? extends CharSequence> list) {
+        this(name, list, LogSink.console());
+    }
+
+    public ListLoggingRecursiveAction(String name, List<? extends CharSequence> list, LogSink sink) {
+        this(name, list, sink, LIST_LENGTH_THRESHOLD);
+    }
+
+    /**
+     * Splits until a subtask has at most threshold elements rather than LIST_LENGTH_THRESHOLD, so the effect of the threshold can be measured.
+     */
+    public ListLoggingRecursiveAction(String name, List<? extends CharSequence> list, LogSink sink, int threshold) {
+        this(name, 1, list, 0, sink, threshold);
+        if(threshold < 1)
+            throw new IllegalArgumentException("threshold must be positive, was " + threshold);
+    }
+
+    private ListLoggingRecursiveAction(String name, long id, List<? extends CharSequence> list, int offset, LogSink sink, int threshold) {
         this.name = name;
+        this.id = id;
         this.list = list;
+        this.offset = offset;
+        this.sink = sink;
+        this.threshold = threshold;
     }
 
     /**
@@ -28,54 +52,46 @@ public class ListLoggingRecursiveAction extends RecursiveAction {
     @Override
     protected void compute() {
         // divide up into subtasks each with a sublist of the original if exceeds threshold
-        if(list.size() > LIST_LENGTH_THRESHOLD)
-            ForkJoinTask.invokeAll(divideIntoSubtasksRecursively());
-        else
+        if(list.size() > threshold) {
+            // ForkJoinEvents.invokeAll does the same as ForkJoinTask#invokeAll for two tasks, it just also records the split and the join for JFR.
+            List<ListLoggingRecursiveAction> subtasks = divideIntoSubtasksRecursively();
+            ListLoggingRecursiveAction first = subtasks.get(0), second = subtasks.get(1);
+            ForkJoinEvents.invokeAll(first, first.list.size(), second, second.list.size(), "ListLoggingRecursiveAction");
+        } else
             processTask();
 
     }
 
     /**
-     * This method defines a way to split up a task into subtasks that will return a List<ListLoggingRecursiveAction> which will
-     * be called by ForkJoinTask.invokeAll()
+     * This method defines a way to split up a task into subtasks that will return a List<ListLoggingRecursiveAction> whose two subtasks will
+     * be run by ForkJoinEvents.invokeAll(), ForkJoinTask.invokeAll() plus the JFR events
      *
-     * Rather than using logic like the .divideIntoSubtasks() method below to create a specific amount of subtasks, let's just split the list in two, and let each instance deal with continued task dividing if it needs to.
+     * Rather than cutting the list into as many subtasks of at most threshold elements as it takes, all created up front by this task, let's just
+     * split the list in two, and let each instance deal with continued task dividing if it needs to.
      */
-    private List<ListLoggingRecursiveAction> divideIntoSubtasksRecursively() { // Correct way
-        // This will be continued to be called by ListLoggingRecursiveAction instances until their list size is < LIST_LENGTH_THRESHOLD
+    private List<ListLoggingRecursiveAction> divideIntoSubtasksRecursively() {
+        // This will be continued to be called by ListLoggingRecursiveAction instances until their list size is <= threshold
 
         int n = list.size() / 2;
 
-        List<String> sublist1 = list.subList(0, n);
-        List<String> sublist2 = list.subList(n, list.size());
+        List<? extends CharSequence> sublist1 = list.subList(0, n);
+        List<? extends CharSequence> sublist2 = list.subList(n, list.size());
 
+        // ids are just positions in the split tree, so they cost nothing to make and are the same on every run (unlike UUID.randomUUID())
         return List.of(
-                new ListLoggingRecursiveAction(UUID.randomUUID().toString(), sublist1),
-                new ListLoggingRecursiveAction(UUID.randomUUID().toString(), sublist2)
+                new ListLoggingRecursiveAction(name, 2 * id, sublist1, offset, sink, threshold),
+                new ListLoggingRecursiveAction(name, 2 * id + 1, sublist2, offset + n, sink, threshold)
         );
     }
 
-    /**
-     * The non-recursive way, which will only ever create the exact amount of subtasks needed once
-     */
-    private List<ListLoggingRecursiveAction> divideIntoSubtasks() { // Not so correct way
-        List<ListLoggingRecursiveAction> subtasks = new ArrayList<>();
-        List<List<String>> partitions = new ArrayList<>();
-
-        for(int i = 0; i < list.size(); i += LIST_LENGTH_THRESHOLD) {
-            partitions.add(list.subList(i, Math.min(i + LIST_LENGTH_THRESHOLD, list.size())));
-        }
-
-        // for every partition of the original list, let's create a new ListLoggingRecursiveAction that will handle it's designated list of length <= 3
-        partitions.forEach(partition -> subtasks.add(new ListLoggingRecursiveAction("", partition)));
-        return subtasks;
-    }
-
     /**
      * The list size will be less than the threshold, so now we can complete the task
      */
     private void processTask() {
         // log list contents
-        System.out.printf("ListLoggingRecursiveAction[%s] says %s.%n", name, list);
+        ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+        if(sink.isEnabled())
+            sink.log(offset, String.format("ListLoggingRecursiveAction[%s#%d] says %s.", name, id, list));
+        ForkJoinEvents.leafFinished(leaf, "ListLoggingRecursiveAction", list.size());
     }
 }
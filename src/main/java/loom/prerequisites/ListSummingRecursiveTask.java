@@ -1,9 +1,7 @@
 package loom.prerequisites;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
 
@@ -13,29 +11,66 @@ import java.util.concurrent.RecursiveTask;
  */
 public class ListSummingRecursiveTask extends RecursiveTask<Integer> {
 
-    private final String name; // random identifier for logger just to see that they are different
+    private final String name; // name given to the base task, shared by all of its subtasks
+    private final long id; // identifier for logger just to see that they are different. The base task is 1 and the subtasks of task n are 2n and 2n + 1
     private final int[] array;
+    private final int offset; // index of array[0] in the base task's array, used by the sink to log in array order
+    private final LogSink sink;
+    private final int threshold;
+    private final LeafKernel kernel;
     private static final int LIST_LENGTH_THRESHOLD = 3;
 
     public ListSummingRecursiveTask(String name, int[] array) {
+        this(name, array, LogSink.console());
+    }
+
+    public ListSummingRecursiveTask(String name, int[] array, LogSink sink) {
+        this(name, array, sink, LIST_LENGTH_THRESHOLD);
+    }
+
+    /**
+     * Splits until a subtask has at most threshold elements rather than LIST_LENGTH_THRESHOLD, so the effect of the threshold can be measured.
+     */
+    public ListSummingRecursiveTask(String name, int[] array, LogSink sink, int threshold) {
+        this(name, array, sink, threshold, LeafKernel.SCALAR);
+    }
+
+    /**
+     * As above, with the leaves summed by the given kernel rather than the plain loop.
+     */
+    public ListSummingRecursiveTask(String name, int[] array, LogSink sink, int threshold, LeafKernel kernel) {
+        this(name, 1, array, 0, sink, threshold, kernel);
+        if(threshold < 1)
+            throw new IllegalArgumentException("threshold must be positive, was " + threshold);
+    }
+
+    private ListSummingRecursiveTask(String name, long id, int[] array, int offset, LogSink sink, int threshold, LeafKernel kernel) {
         this.name = name;
+        this.id = id;
         this.array = array;
+        this.offset = offset;
+        this.sink = sink;
+        this.threshold = threshold;
+        this.kernel = kernel;
     }
 
     @Override
     protected Integer compute() {
         // divide up into subtasks each with a sublist of the original if exceeds threshold
-        if(array.length > LIST_LENGTH_THRESHOLD) {
+        if(array.length > threshold) {
             // ForkJoinTask#invokeAll is a convenience method to submit multiple ForkJoinTask instances at once with convenient method parameters.
             // fork() and join() can also be used separately to accomplish the same thing to submit a task(fork) and then execute it(join). In a RecursiveAction, join returns null
-            Collection<ListSummingRecursiveTask> listSummingRecursiveTasks = ForkJoinTask.invokeAll(divideIntoSubtasksRecursively()); // collection of future objects returned after subtasks submitted to common pool
+            // ForkJoinEvents.invokeAll does the same as ForkJoinTask#invokeAll for two tasks, it just also records the split and the join for JFR.
+            List<ListSummingRecursiveTask> listSummingRecursiveTasks = divideIntoSubtasksRecursively();
+            ListSummingRecursiveTask first = listSummingRecursiveTasks.get(0), second = listSummingRecursiveTasks.get(1);
+            ForkJoinEvents.invokeAll(first, first.array.length, second, second.array.length, "ListSummingRecursiveTask");
             return listSummingRecursiveTasks.stream().mapToInt(ForkJoinTask::join).sum(); // ForkJoinTask#join will return the result of the computation when Future#isDone is true, then all task results are summed and returned.
         } else
             return processTask();
     }
 
     private List<ListSummingRecursiveTask> divideIntoSubtasksRecursively() {
-        // This will be continued to be called by ListSummingRecursiveTask instances until their list size is < LIST_LENGTH_THRESHOLD
+        // This will be continued to be called by ListSummingRecursiveTask instances until their list size is <= threshold
 
         int n = array.length / 2;
 
@@ -43,14 +78,18 @@ public class ListSummingRecursiveTask extends RecursiveTask<Integer> {
         int[] subArray2 = Arrays.copyOfRange(array, n, array.length);
 
         return List.of(
-                new ListSummingRecursiveTask(UUID.randomUUID().toString(), subArray1),
-                new ListSummingRecursiveTask(UUID.randomUUID().toString(), subArray2)
+                new ListSummingRecursiveTask(name, 2 * id, subArray1, offset, sink, threshold, kernel),
+                new ListSummingRecursiveTask(name, 2 * id + 1, subArray2, offset + n, sink, threshold, kernel)
         );
     }
 
     private Integer processTask() {
-        // log list contents
-        System.out.printf("ListSummingRecursiveTask[%s] is summing up %s.%n", name, Arrays.toString(array));
-        return Arrays.stream(array).sum();
+        // log list contents, as part of the leaf like in ListLoggingRecursiveAction
+        ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+        if(sink.isEnabled())
+            sink.log(offset, String.format("ListSummingRecursiveTask[%s#%d] is summing up %s.", name, id, Arrays.toString(array)));
+        int sum = (int) kernel.sum(array, 0, array.length); // the kernels sum into a long, narrowing wraps around exactly like an int sum would
+        ForkJoinEvents.leafFinished(leaf, "ListSummingRecursiveTask", array.length);
+        return sum;
     }
 }
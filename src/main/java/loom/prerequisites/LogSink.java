@@ -0,0 +1,68 @@
+package loom.prerequisites;
+
+import java.nio.channels.Channels;
+
+/**
+ * Where ListLoggingRecursiveAction and ListSummingRecursiveTask send what they have to say. Each line is logged together with its position in the original
+ * list (the index of the first element the leaf task was handed), so a sink can put lines back into list order no matter which worker ran them first.
+ *
+ * A sink should be closed once the task that uses it has been joined, so anything still buffered gets written out.
+ */
+public interface LogSink extends AutoCloseable {
+
+    void log(long position, CharSequence line);
+
+    @Override
+    void close();
+
+    /**
+     * Tasks check this before building a line, so a sink that throws everything away doesn't cost a String.format() per leaf.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * What the tasks have always done, print straight to System.out from whichever worker ran the leaf.
+     */
+    static LogSink console() {
+        return new LogSink() {
+            @Override
+            public void log(long position, CharSequence line) {
+                System.out.println(line);
+            }
+
+            @Override
+            public void close() {
+                System.out.flush();
+            }
+        };
+    }
+
+    /**
+     * Swallows everything, for when only the result of a task matters (benchmarks for example).
+     */
+    static LogSink discarding() {
+        return new LogSink() {
+            @Override
+            public void log(long position, CharSequence line) {
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Buffers each worker's lines separately and writes them to System.out in large batches, in list order if ordered is true.
+     */
+    static LogSink buffered(boolean ordered) {
+        return new ChannelLogSink(Channels.newChannel(System.out), ordered, ChannelLogSink.DEFAULT_BATCH_SIZE);
+    }
+}
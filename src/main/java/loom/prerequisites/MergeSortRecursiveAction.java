@@ -0,0 +1,240 @@
+package loom.prerequisites;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts an int or long array in parallel with a fork/join merge sort. ListSummingRecursiveTask copies both halves of its array at every split, this
+ * allocates one buffer the size of the array up front and never copies a range just to split it: the two halves of a range are sorted into one of
+ * the two arrays and merged into the other, alternating between them level by level (ping-pong), so that the top level ends up merging into the
+ * original array. Leaves are sorted with Arrays.sort(), and copied over to the buffer when that's where their level needs them.
+ *
+ * The last merges cover most of the array and would leave all but one worker idle, so merges are split too: the middle element of the longer run is
+ * looked up in the shorter one with a binary search, which splits both runs into two independent merges that can go to different workers.
+ *
+ * Leaf sizes work as in RangeSummingRecursiveTask: adaptive by default, from the length of the array and the parallelism of the pool, or fixed.
+ */
+public class MergeSortRecursiveAction extends RecursiveAction {
+
+    private final int[] ints; // exactly one of ints and longs is set, along with its buffer
+    private final long[] longs;
+    private int[] intBuffer;
+    private long[] longBuffer;
+    private final int leafSize;
+    private final boolean adaptive;
+
+    /**
+     * Sorts the whole array, picking the leaf size adaptively.
+     */
+    public MergeSortRecursiveAction(int[] array) {
+        this(Objects.requireNonNull(array), null, Granularity.ADAPTIVE, true);
+    }
+
+    /**
+     * Sorts the whole array, splitting until a sort or merge has at most leafSize elements.
+     */
+    public MergeSortRecursiveAction(int[] array, int leafSize) {
+        this(Objects.requireNonNull(array), null, checkLeafSize(leafSize), false);
+    }
+
+    public MergeSortRecursiveAction(long[] array) {
+        this(null, Objects.requireNonNull(array), Granularity.ADAPTIVE, true);
+    }
+
+    public MergeSortRecursiveAction(long[] array, int leafSize) {
+        this(null, Objects.requireNonNull(array), checkLeafSize(leafSize), false);
+    }
+
+    private MergeSortRecursiveAction(int[] ints, long[] longs, int leafSize, boolean adaptive) {
+        this.ints = ints;
+        this.longs = longs;
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    protected void compute() {
+        int length = ints != null ? ints.length : longs.length;
+        int resolvedLeafSize = Granularity.resolve(leafSize, length);
+        if(length <= resolvedLeafSize) { // no buffer needed
+            if(ints != null)
+                Arrays.sort(ints);
+            else
+                Arrays.sort(longs);
+            return;
+        }
+        if(ints != null)
+            intBuffer = new int[length];
+        else
+            longBuffer = new long[length];
+        new Sort(0, length, false, resolvedLeafSize).invoke();
+        intBuffer = null;
+        longBuffer = null;
+    }
+
+    /**
+     * Sorts array[from..to) into the array, or into the buffer when intoBuffer is set, leaving the other one as it was.
+     */
+    private final class Sort extends RecursiveAction {
+        private final int from, to;
+        private final boolean intoBuffer;
+        private final int leafSize;
+
+        Sort(int from, int to, boolean intoBuffer, int leafSize) {
+            this.from = from;
+            this.to = to;
+            this.intoBuffer = intoBuffer;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if(Granularity.shouldSplit(to - from, leafSize, adaptive)) {
+                int mid = (from + to) >>> 1;
+                // both halves go to the other array, to be merged from there into this one
+                Sort left = new Sort(from, mid, !intoBuffer, leafSize);
+                Sort right = new Sort(mid, to, !intoBuffer, leafSize);
+                ForkJoinEvents.split("MergeSortRecursiveAction.sort", to - from);
+                left.fork();
+                right.compute();
+                ForkJoinEvents.join(left, "MergeSortRecursiveAction.sort", mid - from);
+                new Merge(from, mid, mid, to, from, !intoBuffer, leafSize).compute();
+            } else {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                if(ints != null) {
+                    Arrays.sort(ints, from, to);
+                    if(intoBuffer)
+                        System.arraycopy(ints, from, intBuffer, from, to - from);
+                } else {
+                    Arrays.sort(longs, from, to);
+                    if(intoBuffer)
+                        System.arraycopy(longs, from, longBuffer, from, to - from);
+                }
+                ForkJoinEvents.leafFinished(leaf, "MergeSortRecursiveAction.sort", to - from);
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted runs [aFrom..aTo) and [bFrom..bTo) of the buffer (or of the array, when fromBuffer isn't set) into the other one from index
+     * at. Ranges are always the same in both arrays, so a merge never overwrites anything another task still needs.
+     */
+    private final class Merge extends RecursiveAction {
+        private final int aFrom, aTo, bFrom, bTo, at;
+        private final boolean fromBuffer;
+        private final int leafSize;
+
+        Merge(int aFrom, int aTo, int bFrom, int bTo, int at, boolean fromBuffer, int leafSize) {
+            this.aFrom = aFrom;
+            this.aTo = aTo;
+            this.bFrom = bFrom;
+            this.bTo = bTo;
+            this.at = at;
+            this.fromBuffer = fromBuffer;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            int length = (aTo - aFrom) + (bTo - bFrom);
+            // a run of one can't be split any further, and an empty run leaves nothing to merge
+            if(!Granularity.shouldSplit(length, leafSize, adaptive) || Math.max(aTo - aFrom, bTo - bFrom) < 2 || aTo == aFrom || bTo == bFrom) {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                if(ints != null)
+                    merge(fromBuffer ? intBuffer : ints, fromBuffer ? ints : intBuffer);
+                else
+                    merge(fromBuffer ? longBuffer : longs, fromBuffer ? longs : longBuffer);
+                ForkJoinEvents.leafFinished(leaf, "MergeSortRecursiveAction.merge", length);
+                return;
+            }
+
+            // split the longer run in the middle and the shorter one where that middle element would go, primitives have no stability to keep
+            boolean aLonger = aTo - aFrom >= bTo - bFrom;
+            int longFrom = aLonger ? aFrom : bFrom, longTo = aLonger ? aTo : bTo;
+            int shortFrom = aLonger ? bFrom : aFrom, shortTo = aLonger ? bTo : aTo;
+            int longMid = (longFrom + longTo) >>> 1;
+            int shortMid = ints != null
+                    ? lowerBound(fromBuffer ? intBuffer : ints, shortFrom, shortTo, (fromBuffer ? intBuffer : ints)[longMid])
+                    : lowerBound(fromBuffer ? longBuffer : longs, shortFrom, shortTo, (fromBuffer ? longBuffer : longs)[longMid]);
+            int split = at + (longMid - longFrom) + (shortMid - shortFrom);
+
+            Merge first = new Merge(longFrom, longMid, shortFrom, shortMid, at, fromBuffer, leafSize);
+            Merge second = new Merge(longMid, longTo, shortMid, shortTo, split, fromBuffer, leafSize);
+            ForkJoinEvents.split("MergeSortRecursiveAction.merge", length);
+            first.fork();
+            second.compute();
+            ForkJoinEvents.join(first, "MergeSortRecursiveAction.merge", split - at);
+        }
+
+        private void merge(int[] source, int[] target) {
+            int a = aFrom, b = bFrom, t = at;
+            while(a < aTo && b < bTo)
+                target[t++] = source[b] < source[a] ? source[b++] : source[a++];
+            System.arraycopy(source, a, target, t, aTo - a);
+            System.arraycopy(source, b, target, t + (aTo - a), bTo - b);
+        }
+
+        private void merge(long[] source, long[] target) {
+            int a = aFrom, b = bFrom, t = at;
+            while(a < aTo && b < bTo)
+                target[t++] = source[b] < source[a] ? source[b++] : source[a++];
+            System.arraycopy(source, a, target, t, aTo - a);
+            System.arraycopy(source, b, target, t + (aTo - a), bTo - b);
+        }
+    }
+
+    /**
+     * The first index in [from..to) whose element isn't less than key, to if there is none.
+     */
+    private static int lowerBound(int[] array, int from, int to, int key) {
+        while(from < to) {
+            int mid = (from + to) >>> 1;
+            if(array[mid] < key)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private static int lowerBound(long[] array, int from, int to, long key) {
+        while(from < to) {
+            int mid = (from + to) >>> 1;
+            if(array[mid] < key)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+
+    /**
+     * Times the sort against Arrays.parallelSort. MergeSortRecursiveActionTest checks its results against Arrays.sort.
+     */
+    public static void main(String[] args) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SplittableRandom random = new SplittableRandom(42);
+
+        int[] array = random.ints(20_000_000).toArray();
+        for(int round = 0; round < 5; round++) {
+            int[] mergeSorted = array.clone(), parallelSorted = array.clone();
+            long start = System.nanoTime();
+            pool.invoke(new MergeSortRecursiveAction(mergeSorted));
+            long mergeNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Arrays.parallelSort(parallelSorted);
+            long parallelSortNanos = System.nanoTime() - start;
+            System.out.printf("sort of %,d ints: MergeSortRecursiveAction %.1f ms, Arrays.parallelSort %.1f ms%n", array.length, mergeNanos / 1e6,
+                    parallelSortNanos / 1e6);
+        }
+    }
+}
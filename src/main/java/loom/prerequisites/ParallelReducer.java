@@ -0,0 +1,770 @@
+package loom.prerequisites;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+
+/**
+ * Reduces an int[], long[], double[] or a Spliterator in parallel with any associative operation that has an identity, a monoid: ListSummingRecursiveTask
+ * and RangeSummingRecursiveTask generalised to whatever is being computed. The splitting is shared by every kind of reduction, and works just like
+ * RangeSummingRecursiveTask's: the leaf size is worked out from the size of the input and the pool (see Granularity) unless one is given, subtasks are
+ * views of the input rather than copies, and the events in ForkJoinEvents are recorded for all of them.
+ *
+ * There are two kinds of reduction:
+ *
+ * - IntMonoid, LongMonoid and DoubleMonoid combine primitives into a primitive. The tasks hold their result in a primitive field and the leaves loop over
+ *   the array into a local, so nothing is boxed anywhere, unlike a RecursiveTask of Integer. Ints can also be reduced with a LongMonoid, LongMonoid.SUM
+ *   being how to sum ints without overflowing.
+ * - IntReduction, LongReduction, DoubleReduction and Reduction accumulate elements into a mutable container (a Histogram, a DistinctSketch, anything)
+ *   and merge the containers of two halves, much like a Collector. identity() has to return a new, empty container every time it's called, every leaf
+ *   gets one of its own.
+ *
+ * Either way, combine() must be associative, as the leaves are combined in an order that depends on how the work was split, but it needn't be
+ * commutative: the result of the first half of the input is always the first argument. Sums of doubles aren't quite associative, so a double sum can
+ * differ from a sequential one in the last bits and from one run to the next, as splitting adapts to the load of the pool.
+ */
+public final class ParallelReducer {
+
+    private final ForkJoinPool pool;
+    private final int leafSize;
+    private final boolean adaptive;
+
+    public interface IntMonoid {
+        IntMonoid MIN = of(Integer.MAX_VALUE, Math::min);
+        IntMonoid MAX = of(Integer.MIN_VALUE, Math::max);
+
+        int identity();
+
+        int combine(int first, int second);
+
+        static IntMonoid of(int identity, IntBinaryOperator combine) {
+            Objects.requireNonNull(combine);
+            return new IntMonoid() {
+                @Override
+                public int identity() {
+                    return identity;
+                }
+
+                @Override
+                public int combine(int first, int second) {
+                    return combine.applyAsInt(first, second);
+                }
+            };
+        }
+    }
+
+    public interface LongMonoid {
+        LongMonoid SUM = of(0, Long::sum);
+        LongMonoid MIN = of(Long.MAX_VALUE, Math::min);
+        LongMonoid MAX = of(Long.MIN_VALUE, Math::max);
+
+        long identity();
+
+        long combine(long first, long second);
+
+        static LongMonoid of(long identity, LongBinaryOperator combine) {
+            Objects.requireNonNull(combine);
+            return new LongMonoid() {
+                @Override
+                public long identity() {
+                    return identity;
+                }
+
+                @Override
+                public long combine(long first, long second) {
+                    return combine.applyAsLong(first, second);
+                }
+            };
+        }
+    }
+
+    public interface DoubleMonoid {
+        DoubleMonoid SUM = of(0, Double::sum);
+        DoubleMonoid MIN = of(Double.POSITIVE_INFINITY, Math::min);
+        DoubleMonoid MAX = of(Double.NEGATIVE_INFINITY, Math::max);
+
+        double identity();
+
+        double combine(double first, double second);
+
+        static DoubleMonoid of(double identity, DoubleBinaryOperator combine) {
+            Objects.requireNonNull(combine);
+            return new DoubleMonoid() {
+                @Override
+                public double identity() {
+                    return identity;
+                }
+
+                @Override
+                public double combine(double first, double second) {
+                    return combine.applyAsDouble(first, second);
+                }
+            };
+        }
+    }
+
+    /**
+     * A monoid over containers: identity() is a new empty container, combine() merges the second into the first (or into a new one) and returns it.
+     */
+    public interface Monoid<A> {
+        A identity();
+
+        A combine(A first, A second);
+    }
+
+    public interface IntReduction<A> extends Monoid<A> {
+        void accept(A container, int value);
+    }
+
+    public interface LongReduction<A> extends Monoid<A> {
+        void accept(A container, long value);
+    }
+
+    public interface DoubleReduction<A> extends Monoid<A> {
+        void accept(A container, double value);
+    }
+
+    public interface Reduction<T, A> extends Monoid<A> {
+        void accept(A container, T value);
+    }
+
+    /**
+     * Reduces in the common pool, picking the leaf size adaptively.
+     */
+    public ParallelReducer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reduces in the given pool, picking the leaf size adaptively.
+     */
+    public ParallelReducer(ForkJoinPool pool) {
+        this(pool, Granularity.ADAPTIVE, true);
+    }
+
+    /**
+     * Reduces in the given pool, splitting until a subtask has at most leafSize elements.
+     */
+    public ParallelReducer(ForkJoinPool pool, int leafSize) {
+        this(pool, checkLeafSize(leafSize), false);
+    }
+
+    private ParallelReducer(ForkJoinPool pool, int leafSize, boolean adaptive) {
+        this.pool = Objects.requireNonNull(pool);
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+    }
+
+    public int reduce(int[] array, IntMonoid monoid) {
+        return invoke(new IntTask(this, array, Objects.requireNonNull(monoid))).result;
+    }
+
+    /**
+     * Reduces ints widened to longs, to sum them (LongMonoid.SUM) without the overflow an int sum would have.
+     */
+    public long reduce(int[] array, LongMonoid monoid) {
+        return invoke(new IntToLongTask(this, array, Objects.requireNonNull(monoid))).result;
+    }
+
+    public long reduce(long[] array, LongMonoid monoid) {
+        return invoke(new LongTask(this, array, Objects.requireNonNull(monoid))).result;
+    }
+
+    public double reduce(double[] array, DoubleMonoid monoid) {
+        return invoke(new DoubleTask(this, array, Objects.requireNonNull(monoid))).result;
+    }
+
+    public <A> A reduce(int[] array, IntReduction<A> reduction) {
+        return reduce(Arrays.spliterator(array), reduction);
+    }
+
+    public <A> A reduce(long[] array, LongReduction<A> reduction) {
+        return reduce(Arrays.spliterator(array), reduction);
+    }
+
+    public <A> A reduce(double[] array, DoubleReduction<A> reduction) {
+        return reduce(Arrays.spliterator(array), reduction);
+    }
+
+    /**
+     * Reduces what the spliterator covers, splitting it with trySplit(). How evenly that splits is up to the spliterator: one that doesn't know its size
+     * is split in leaves of the smallest size, and one that can't be split at all is reduced in a single leaf.
+     */
+    public <A> A reduce(Spliterator.OfInt spliterator, IntReduction<A> reduction) {
+        Objects.requireNonNull(reduction);
+        return invoke(new SpliteratorTask<>(this, spliterator, reduction, (s, container) -> s.forEachRemaining((IntConsumer) value -> reduction.accept(container, value)))).result;
+    }
+
+    public <A> A reduce(Spliterator.OfLong spliterator, LongReduction<A> reduction) {
+        Objects.requireNonNull(reduction);
+        return invoke(new SpliteratorTask<>(this, spliterator, reduction, (s, container) -> s.forEachRemaining((LongConsumer) value -> reduction.accept(container, value)))).result;
+    }
+
+    public <A> A reduce(Spliterator.OfDouble spliterator, DoubleReduction<A> reduction) {
+        Objects.requireNonNull(reduction);
+        return invoke(new SpliteratorTask<>(this, spliterator, reduction, (s, container) -> s.forEachRemaining((DoubleConsumer) value -> reduction.accept(container, value)))).result;
+    }
+
+    public <T, A> A reduce(Spliterator<T> spliterator, Reduction<? super T, A> reduction) {
+        Objects.requireNonNull(reduction);
+        return invoke(new SpliteratorTask<>(this, spliterator, reduction, (s, container) -> s.forEachRemaining(value -> reduction.accept(container, value)))).result;
+    }
+
+    // a primitive monoid over a spliterator accumulates into a one element array, so a leaf's running result lives in the array rather than in a boxed value
+
+    public int reduce(Spliterator.OfInt spliterator, IntMonoid monoid) {
+        return reduce(spliterator, new IntReduction<int[]>() {
+            @Override
+            public int[] identity() {
+                return new int[] { monoid.identity() };
+            }
+
+            @Override
+            public void accept(int[] container, int value) {
+                container[0] = monoid.combine(container[0], value);
+            }
+
+            @Override
+            public int[] combine(int[] first, int[] second) {
+                first[0] = monoid.combine(first[0], second[0]);
+                return first;
+            }
+        })[0];
+    }
+
+    public long reduce(Spliterator.OfLong spliterator, LongMonoid monoid) {
+        return reduce(spliterator, new LongReduction<long[]>() {
+            @Override
+            public long[] identity() {
+                return new long[] { monoid.identity() };
+            }
+
+            @Override
+            public void accept(long[] container, long value) {
+                container[0] = monoid.combine(container[0], value);
+            }
+
+            @Override
+            public long[] combine(long[] first, long[] second) {
+                first[0] = monoid.combine(first[0], second[0]);
+                return first;
+            }
+        })[0];
+    }
+
+    public double reduce(Spliterator.OfDouble spliterator, DoubleMonoid monoid) {
+        return reduce(spliterator, new DoubleReduction<double[]>() {
+            @Override
+            public double[] identity() {
+                return new double[] { monoid.identity() };
+            }
+
+            @Override
+            public void accept(double[] container, double value) {
+                container[0] = monoid.combine(container[0], value);
+            }
+
+            @Override
+            public double[] combine(double[] first, double[] second) {
+                first[0] = monoid.combine(first[0], second[0]);
+                return first;
+            }
+        })[0];
+    }
+
+    // ready-made reductions
+
+    public long sum(int[] array) {
+        return reduce(array, LongMonoid.SUM);
+    }
+
+    public long sum(long[] array) {
+        return reduce(array, LongMonoid.SUM);
+    }
+
+    public double sum(double[] array) {
+        return reduce(array, DoubleMonoid.SUM);
+    }
+
+    public OptionalInt min(int[] array) {
+        return array.length == 0 ? OptionalInt.empty() : OptionalInt.of(reduce(array, IntMonoid.MIN));
+    }
+
+    public OptionalInt max(int[] array) {
+        return array.length == 0 ? OptionalInt.empty() : OptionalInt.of(reduce(array, IntMonoid.MAX));
+    }
+
+    public OptionalLong min(long[] array) {
+        return array.length == 0 ? OptionalLong.empty() : OptionalLong.of(reduce(array, LongMonoid.MIN));
+    }
+
+    public OptionalLong max(long[] array) {
+        return array.length == 0 ? OptionalLong.empty() : OptionalLong.of(reduce(array, LongMonoid.MAX));
+    }
+
+    public OptionalDouble min(double[] array) {
+        return array.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(reduce(array, DoubleMonoid.MIN));
+    }
+
+    public OptionalDouble max(double[] array) {
+        return array.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(reduce(array, DoubleMonoid.MAX));
+    }
+
+    /**
+     * Counts the values into the given number of equal width buckets between lowest (inclusive) and highest (exclusive).
+     */
+    public Histogram histogram(int[] array, long lowest, long highest, int buckets) {
+        return reduce(array, intHistogram(lowest, highest, buckets));
+    }
+
+    public Histogram histogram(long[] array, long lowest, long highest, int buckets) {
+        return reduce(array, longHistogram(lowest, highest, buckets));
+    }
+
+    /**
+     * An estimate of the number of distinct values, within a percent or so (see DistinctSketch), using a fixed 16 KB per leaf however many there are.
+     */
+    public long countDistinct(int[] array) {
+        return reduce(array, intDistinct(DistinctSketch.DEFAULT_PRECISION)).estimate();
+    }
+
+    public long countDistinct(long[] array) {
+        return reduce(array, longDistinct(DistinctSketch.DEFAULT_PRECISION)).estimate();
+    }
+
+    public long countDistinct(double[] array) {
+        return reduce(array, doubleDistinct(DistinctSketch.DEFAULT_PRECISION)).estimate();
+    }
+
+    public static IntReduction<Histogram> intHistogram(long lowest, long highest, int buckets) {
+        new Histogram(lowest, highest, buckets); // fail here rather than in every leaf
+        return new IntReduction<>() {
+            @Override
+            public Histogram identity() {
+                return new Histogram(lowest, highest, buckets);
+            }
+
+            @Override
+            public void accept(Histogram histogram, int value) {
+                histogram.add(value);
+            }
+
+            @Override
+            public Histogram combine(Histogram first, Histogram second) {
+                return first.merge(second);
+            }
+        };
+    }
+
+    public static LongReduction<Histogram> longHistogram(long lowest, long highest, int buckets) {
+        new Histogram(lowest, highest, buckets);
+        return new LongReduction<>() {
+            @Override
+            public Histogram identity() {
+                return new Histogram(lowest, highest, buckets);
+            }
+
+            @Override
+            public void accept(Histogram histogram, long value) {
+                histogram.add(value);
+            }
+
+            @Override
+            public Histogram combine(Histogram first, Histogram second) {
+                return first.merge(second);
+            }
+        };
+    }
+
+    public static IntReduction<DistinctSketch> intDistinct(int precision) {
+        new DistinctSketch(precision);
+        return new IntReduction<>() {
+            @Override
+            public DistinctSketch identity() {
+                return new DistinctSketch(precision);
+            }
+
+            @Override
+            public void accept(DistinctSketch sketch, int value) {
+                sketch.add(value);
+            }
+
+            @Override
+            public DistinctSketch combine(DistinctSketch first, DistinctSketch second) {
+                return first.merge(second);
+            }
+        };
+    }
+
+    public static LongReduction<DistinctSketch> longDistinct(int precision) {
+        new DistinctSketch(precision);
+        return new LongReduction<>() {
+            @Override
+            public DistinctSketch identity() {
+                return new DistinctSketch(precision);
+            }
+
+            @Override
+            public void accept(DistinctSketch sketch, long value) {
+                sketch.add(value);
+            }
+
+            @Override
+            public DistinctSketch combine(DistinctSketch first, DistinctSketch second) {
+                return first.merge(second);
+            }
+        };
+    }
+
+    public static DoubleReduction<DistinctSketch> doubleDistinct(int precision) {
+        new DistinctSketch(precision);
+        return new DoubleReduction<>() {
+            @Override
+            public DistinctSketch identity() {
+                return new DistinctSketch(precision);
+            }
+
+            @Override
+            public void accept(DistinctSketch sketch, double value) {
+                sketch.add(value);
+            }
+
+            @Override
+            public DistinctSketch combine(DistinctSketch first, DistinctSketch second) {
+                return first.merge(second);
+            }
+        };
+    }
+
+    private <T extends ReduceTask<T>> T invoke(T task) {
+        pool.invoke(task);
+        return task;
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+
+    /**
+     * The splitting every reduction shares. A task that decides to split hands the first part of its input to a new subtask, forks it, and carries on
+     * with the second part itself, which may split again. Once the second part is done it joins the first and combines the two results, first part
+     * first. Subclasses only say how big they are, how to split off their first part, how to reduce a leaf, and how to combine results.
+     */
+    private abstract static class ReduceTask<T extends ReduceTask<T>> extends RecursiveAction {
+
+        private final String name; // for the events, one name per kind of task
+        private int leafSize; // resolved by the root task, and handed down from there
+        private final boolean adaptive;
+
+        ReduceTask(String name, ParallelReducer reducer) {
+            this.name = name;
+            this.leafSize = reducer.leafSize;
+            this.adaptive = reducer.adaptive;
+        }
+
+        ReduceTask(ReduceTask<T> parent) {
+            this.name = parent.name;
+            this.leafSize = parent.leafSize;
+            this.adaptive = parent.adaptive;
+        }
+
+        /**
+         * Elements left to reduce, Long.MAX_VALUE if unknown.
+         */
+        abstract long size();
+
+        /**
+         * Returns a new task for the first part of this task's input, leaving this task with the rest, or null if the input can't be split.
+         */
+        abstract T split();
+
+        abstract void leaf();
+
+        /**
+         * Sets this task's result to its first part's result combined with its own.
+         */
+        abstract void combineFirst(T first);
+
+        @Override
+        protected final void compute() {
+            long size = size();
+            leafSize = Granularity.resolve(leafSize, size == Long.MAX_VALUE ? 0 : size); // nothing to go on for an unknown size, so the smallest leaves
+            T first;
+            if(Granularity.shouldSplit(size, leafSize, adaptive) && (first = split()) != null) {
+                long firstSize = first.size();
+                ForkJoinEvents.split(name, size);
+                first.fork();
+                compute();
+                ForkJoinEvents.join(first, name, firstSize);
+                combineFirst(first);
+            } else {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                leaf();
+                ForkJoinEvents.leafFinished(leaf, name, size);
+            }
+        }
+    }
+
+    private abstract static class RangeTask<T extends RangeTask<T>> extends ReduceTask<T> {
+
+        int from; // inclusive, moves up as first parts are split off
+        final int to; // exclusive
+
+        RangeTask(String name, ParallelReducer reducer, int length) {
+            super(name, reducer);
+            this.from = 0;
+            this.to = length;
+        }
+
+        RangeTask(T parent, int from, int to) {
+            super(parent);
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract T subtask(int from, int to);
+
+        @Override
+        final long size() {
+            return to - from;
+        }
+
+        @Override
+        final T split() {
+            int mid = (from + to) >>> 1;
+            T first = subtask(from, mid);
+            from = mid;
+            return first;
+        }
+    }
+
+    private static final class IntTask extends RangeTask<IntTask> {
+        private final int[] array;
+        private final IntMonoid monoid;
+        int result;
+
+        IntTask(ParallelReducer reducer, int[] array, IntMonoid monoid) {
+            super("ParallelReducer.int", reducer, array.length);
+            this.array = array;
+            this.monoid = monoid;
+            this.result = monoid.identity();
+        }
+
+        private IntTask(IntTask parent, int from, int to) {
+            super(parent, from, to);
+            this.array = parent.array;
+            this.monoid = parent.monoid;
+        }
+
+        @Override
+        IntTask subtask(int from, int to) {
+            return new IntTask(this, from, to);
+        }
+
+        @Override
+        void leaf() {
+            int result = monoid.identity();
+            for(int i = from; i < to; i++)
+                result = monoid.combine(result, array[i]);
+            this.result = result;
+        }
+
+        @Override
+        void combineFirst(IntTask first) {
+            result = monoid.combine(first.result, result);
+        }
+    }
+
+    private static final class IntToLongTask extends RangeTask<IntToLongTask> {
+        private final int[] array;
+        private final LongMonoid monoid;
+        long result;
+
+        IntToLongTask(ParallelReducer reducer, int[] array, LongMonoid monoid) {
+            super("ParallelReducer.intToLong", reducer, array.length);
+            this.array = array;
+            this.monoid = monoid;
+            this.result = monoid.identity();
+        }
+
+        private IntToLongTask(IntToLongTask parent, int from, int to) {
+            super(parent, from, to);
+            this.array = parent.array;
+            this.monoid = parent.monoid;
+        }
+
+        @Override
+        IntToLongTask subtask(int from, int to) {
+            return new IntToLongTask(this, from, to);
+        }
+
+        @Override
+        void leaf() {
+            long result = monoid.identity();
+            for(int i = from; i < to; i++)
+                result = monoid.combine(result, array[i]);
+            this.result = result;
+        }
+
+        @Override
+        void combineFirst(IntToLongTask first) {
+            result = monoid.combine(first.result, result);
+        }
+    }
+
+    private static final class LongTask extends RangeTask<LongTask> {
+        private final long[] array;
+        private final LongMonoid monoid;
+        long result;
+
+        LongTask(ParallelReducer reducer, long[] array, LongMonoid monoid) {
+            super("ParallelReducer.long", reducer, array.length);
+            this.array = array;
+            this.monoid = monoid;
+            this.result = monoid.identity();
+        }
+
+        private LongTask(LongTask parent, int from, int to) {
+            super(parent, from, to);
+            this.array = parent.array;
+            this.monoid = parent.monoid;
+        }
+
+        @Override
+        LongTask subtask(int from, int to) {
+            return new LongTask(this, from, to);
+        }
+
+        @Override
+        void leaf() {
+            long result = monoid.identity();
+            for(int i = from; i < to; i++)
+                result = monoid.combine(result, array[i]);
+            this.result = result;
+        }
+
+        @Override
+        void combineFirst(LongTask first) {
+            result = monoid.combine(first.result, result);
+        }
+    }
+
+    private static final class DoubleTask extends RangeTask<DoubleTask> {
+        private final double[] array;
+        private final DoubleMonoid monoid;
+        double result;
+
+        DoubleTask(ParallelReducer reducer, double[] array, DoubleMonoid monoid) {
+            super("ParallelReducer.double", reducer, array.length);
+            this.array = array;
+            this.monoid = monoid;
+            this.result = monoid.identity();
+        }
+
+        private DoubleTask(DoubleTask parent, int from, int to) {
+            super(parent, from, to);
+            this.array = parent.array;
+            this.monoid = parent.monoid;
+        }
+
+        @Override
+        DoubleTask subtask(int from, int to) {
+            return new DoubleTask(this, from, to);
+        }
+
+        @Override
+        void leaf() {
+            double result = monoid.identity();
+            for(int i = from; i < to; i++)
+                result = monoid.combine(result, array[i]);
+            this.result = result;
+        }
+
+        @Override
+        void combineFirst(DoubleTask first) {
+            result = monoid.combine(first.result, result);
+        }
+    }
+
+    /**
+     * Any spliterator into any container, the drain being the forEachRemaining() of the right primitive consumer for the kind of spliterator.
+     */
+    private static final class SpliteratorTask<S extends Spliterator<?>, A> extends ReduceTask<SpliteratorTask<S, A>> {
+        private final S spliterator;
+        private final Monoid<A> monoid;
+        private final BiConsumer<S, A> drain;
+        A result;
+
+        SpliteratorTask(ParallelReducer reducer, S spliterator, Monoid<A> monoid, BiConsumer<S, A> drain) {
+            super("ParallelReducer.spliterator", reducer);
+            this.spliterator = Objects.requireNonNull(spliterator);
+            this.monoid = monoid;
+            this.drain = drain;
+        }
+
+        private SpliteratorTask(SpliteratorTask<S, A> parent, S spliterator) {
+            super(parent);
+            this.spliterator = spliterator;
+            this.monoid = parent.monoid;
+            this.drain = parent.drain;
+        }
+
+        @Override
+        long size() {
+            return spliterator.estimateSize();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        SpliteratorTask<S, A> split() {
+            S first = (S) spliterator.trySplit(); // the trySplit() of every primitive spliterator returns one of its own kind
+            return first == null ? null : new SpliteratorTask<>(this, first);
+        }
+
+        @Override
+        void leaf() {
+            A container = monoid.identity();
+            drain.accept(spliterator, container);
+            result = container;
+        }
+
+        @Override
+        void combineFirst(SpliteratorTask<S, A> first) {
+            result = monoid.combine(first.result, result);
+        }
+    }
+
+    /**
+     * Times summing ints against a parallel stream. ParallelReducerTest checks every kind of reduction.
+     */
+    public static void main(String[] args) {
+        int[] ints = new SplittableRandom(42).ints(20_000_000, -1_000_000, 1_000_000).toArray();
+        ParallelReducer reducer = new ParallelReducer();
+
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long sum = reducer.sum(ints);
+            long reducerNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            long streamSum = Arrays.stream(ints).parallel().asLongStream().sum();
+            long streamNanos = System.nanoTime() - start;
+            System.out.printf("sum of %,d ints: ParallelReducer %.1f ms, parallel stream %.1f ms%s%n", ints.length, reducerNanos / 1e6, streamNanos / 1e6,
+                    sum == streamSum ? "" : " MISMATCH");
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package loom.prerequisites;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replaces every element of an int or long array with the sum of the elements up to it, in place and in parallel: a prefix sum, or scan. Where
+ * RangeSummingRecursiveTask reduces the array to one number, this keeps every partial sum, which is what parallel filtering, compaction and radix sort
+ * are built on (the scan of the 0/1 "keep" flags is where each kept element goes).
+ *
+ * A leaf can't start adding up its elements before it knows the sum of everything to its left, so it takes two passes over the same split tree:
+ *
+ * - The up-sweep splits the array exactly like RangeSummingRecursiveTask and sums every leaf, leaving each node of the tree with the sum of its range.
+ * - The down-sweep walks the same tree from the root, handing each left child the offset its parent got and each right child that offset plus the sum
+ *   of its left sibling, so every leaf ends up with the sum of everything before it and scans its range from there.
+ *
+ * Both passes read the array and only the second writes it, which is twice the reading of a sequential loop: with few cores a plain loop can win,
+ * see PrefixSumBenchmark. INCLUSIVE makes array[i] the sum of array[0..i], exactly like Arrays.parallelPrefix(array, Integer::sum). EXCLUSIVE makes it
+ * the sum of array[0..i - 1], array[0] becoming 0. Sums wrap around on overflow, just like adding them up in a loop would.
+ */
+public class PrefixSumRecursiveAction extends RecursiveAction {
+
+    public enum Scan {
+        INCLUSIVE,
+        EXCLUSIVE
+    }
+
+    private final int[] ints; // exactly one of ints and longs is set
+    private final long[] longs;
+    private final Scan scan;
+    private final int leafSize;
+    private final boolean adaptive;
+
+    /**
+     * Scans the whole array, picking the leaf size adaptively.
+     */
+    public PrefixSumRecursiveAction(int[] array, Scan scan) {
+        this(array, null, scan, Granularity.ADAPTIVE, true);
+    }
+
+    /**
+     * Scans the whole array, splitting until a subtask has at most leafSize elements.
+     */
+    public PrefixSumRecursiveAction(int[] array, Scan scan, int leafSize) {
+        this(array, null, scan, checkLeafSize(leafSize), false);
+    }
+
+    public PrefixSumRecursiveAction(long[] array, Scan scan) {
+        this(null, array, scan, Granularity.ADAPTIVE, true);
+    }
+
+    public PrefixSumRecursiveAction(long[] array, Scan scan, int leafSize) {
+        this(null, array, scan, checkLeafSize(leafSize), false);
+    }
+
+    private PrefixSumRecursiveAction(int[] ints, long[] longs, Scan scan, int leafSize, boolean adaptive) {
+        if(ints == null && longs == null)
+            throw new NullPointerException("array");
+        this.ints = ints;
+        this.longs = longs;
+        this.scan = Objects.requireNonNull(scan);
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    protected void compute() {
+        int length = ints != null ? ints.length : longs.length;
+        UpSweep root = new UpSweep(0, length, Granularity.resolve(leafSize, length));
+        root.invoke();
+        new DownSweep(root, 0).invoke();
+    }
+
+    /**
+     * A node of the split tree, holding the sum of its range once it's done. The children are kept for the down-sweep, null for a leaf.
+     */
+    private final class UpSweep extends RecursiveAction {
+        private final int from; // inclusive
+        private final int to; // exclusive
+        private final int leafSize;
+        private UpSweep left, right;
+        private long sum; // of an int array too, only the low 32 bits are used then, which are what an int sum would have wrapped around to
+
+        UpSweep(int from, int to, int leafSize) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if(Granularity.shouldSplit(to - from, leafSize, adaptive)) {
+                int mid = (from + to) >>> 1;
+                left = new UpSweep(from, mid, leafSize);
+                right = new UpSweep(mid, to, leafSize);
+
+                ForkJoinEvents.split("PrefixSumRecursiveAction.up", to - from);
+                left.fork();
+                right.compute();
+                ForkJoinEvents.join(left, "PrefixSumRecursiveAction.up", mid - from);
+                sum = left.sum + right.sum;
+            } else {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                sum = ints != null ? sum(ints, from, to) : sum(longs, from, to);
+                ForkJoinEvents.leafFinished(leaf, "PrefixSumRecursiveAction.up", to - from);
+            }
+        }
+    }
+
+    /**
+     * Scans the range of a node of the up-sweep's tree, offset being the sum of everything before it.
+     */
+    private final class DownSweep extends RecursiveAction {
+        private final UpSweep node;
+        private final long offset;
+
+        DownSweep(UpSweep node, long offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if(node.left != null) {
+                DownSweep left = new DownSweep(node.left, offset);
+                DownSweep right = new DownSweep(node.right, offset + node.left.sum);
+
+                ForkJoinEvents.split("PrefixSumRecursiveAction.down", node.to - node.from);
+                left.fork();
+                right.compute();
+                ForkJoinEvents.join(left, "PrefixSumRecursiveAction.down", node.left.to - node.left.from);
+            } else {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                if(ints != null)
+                    scan(ints, node.from, node.to, (int) offset);
+                else
+                    scan(longs, node.from, node.to, offset);
+                ForkJoinEvents.leafFinished(leaf, "PrefixSumRecursiveAction.down", node.to - node.from);
+            }
+        }
+    }
+
+    private static long sum(int[] array, int from, int to) {
+        long sum = 0;
+        for(int i = from; i < to; i++)
+            sum += array[i];
+        return sum;
+    }
+
+    private static long sum(long[] array, int from, int to) {
+        long sum = 0;
+        for(int i = from; i < to; i++)
+            sum += array[i];
+        return sum;
+    }
+
+    private void scan(int[] array, int from, int to, int sum) {
+        if(scan == Scan.INCLUSIVE)
+            for(int i = from; i < to; i++) {
+                sum += array[i];
+                array[i] = sum;
+            }
+        else
+            for(int i = from; i < to; i++) {
+                int value = array[i];
+                array[i] = sum;
+                sum += value;
+            }
+    }
+
+    private void scan(long[] array, int from, int to, long sum) {
+        if(scan == Scan.INCLUSIVE)
+            for(int i = from; i < to; i++) {
+                sum += array[i];
+                array[i] = sum;
+            }
+        else
+            for(int i = from; i < to; i++) {
+                long value = array[i];
+                array[i] = sum;
+                sum += value;
+            }
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+
+    /**
+     * Times the scan against Arrays.parallelPrefix and a plain loop. PrefixSumRecursiveActionTest checks its results against a plain loop.
+     */
+    public static void main(String[] args) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SplittableRandom random = new SplittableRandom(42);
+
+        int[] array = random.ints(50_000_000, -1000, 1000).toArray();
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            pool.invoke(new PrefixSumRecursiveAction(array, Scan.INCLUSIVE));
+            long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Arrays.parallelPrefix(array, Integer::sum);
+            long parallelPrefixNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int i = 1; i < array.length; i++)
+                array[i] += array[i - 1];
+            long loopNanos = System.nanoTime() - start;
+            System.out.printf("scan of %,d ints: PrefixSumRecursiveAction %.1f ms, Arrays.parallelPrefix %.1f ms, loop %.1f ms%n", array.length,
+                    scanNanos / 1e6, parallelPrefixNanos / 1e6, loopNanos / 1e6);
+        }
+    }
+}
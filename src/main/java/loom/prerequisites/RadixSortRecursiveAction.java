@@ -0,0 +1,247 @@
+package loom.prerequisites;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts an int or long array in parallel with a least significant digit first radix sort, a byte at a time: 4 passes for ints, 8 for longs, each
+ * moving every element once from one array to the other. Unlike MergeSortRecursiveAction it never compares two elements, so the time it takes
+ * depends on the size of the keys rather than on how they're ordered.
+ *
+ * The array is cut into blocks, a few per worker. Each pass runs in three steps:
+ *
+ * - every block counts the digits of its own elements into a histogram of its own, in parallel, with no counter shared between workers;
+ * - one thread turns the histograms into where each block's elements of each digit start in the other array: digit by digit, and within a digit block
+ *   by block, which keeps the sort stable, as LSD radix sort needs it to be;
+ * - every block moves its elements to those positions, in parallel, no two blocks ever writing to the same element.
+ *
+ * A pass where every element has the same digit would move everything to the same place, so it's skipped: sorting keys that only span a small range,
+ * or longs that fit in an int, only costs the passes for the digits that actually differ. The top digit has its sign bit flipped, so negative
+ * numbers sort before positive ones. Arrays of at most one leaf are sorted with Arrays.sort() instead.
+ */
+public class RadixSortRecursiveAction extends RecursiveAction {
+
+    private static final int DIGIT_BITS = 8;
+    private static final int DIGITS = 1 << DIGIT_BITS;
+    private static final int BLOCKS_PER_WORKER = 4;
+
+    private final int[] ints; // exactly one of ints and longs is set
+    private final long[] longs;
+    private final int leafSize;
+
+    /**
+     * Sorts the whole array, picking the block size from the length of the array and the parallelism of the pool.
+     */
+    public RadixSortRecursiveAction(int[] array) {
+        this(Objects.requireNonNull(array), null, Granularity.ADAPTIVE);
+    }
+
+    /**
+     * Sorts the whole array in blocks of at least leafSize elements.
+     */
+    public RadixSortRecursiveAction(int[] array, int leafSize) {
+        this(Objects.requireNonNull(array), null, checkLeafSize(leafSize));
+    }
+
+    public RadixSortRecursiveAction(long[] array) {
+        this(null, Objects.requireNonNull(array), Granularity.ADAPTIVE);
+    }
+
+    public RadixSortRecursiveAction(long[] array, int leafSize) {
+        this(null, Objects.requireNonNull(array), checkLeafSize(leafSize));
+    }
+
+    private RadixSortRecursiveAction(int[] ints, long[] longs, int leafSize) {
+        this.ints = ints;
+        this.longs = longs;
+        this.leafSize = leafSize;
+    }
+
+    @Override
+    protected void compute() {
+        int length = ints != null ? ints.length : longs.length;
+        int resolvedLeafSize = Granularity.resolve(leafSize, length);
+        if(length <= resolvedLeafSize) {
+            if(ints != null)
+                Arrays.sort(ints);
+            else
+                Arrays.sort(longs);
+            return;
+        }
+
+        ForkJoinPool pool = getPool();
+        int parallelism = pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        int blocks = (int) Math.max(1, Math.min((long) parallelism * BLOCKS_PER_WORKER, length / resolvedLeafSize));
+        if(ints != null)
+            sort(ints, new int[length], blocks);
+        else
+            sort(longs, new long[length], blocks);
+    }
+
+    private static void sort(int[] array, int[] buffer, int blocks) {
+        int length = array.length;
+        int[][] offsets = new int[blocks][DIGITS]; // per block, its histogram then where each of its digits goes
+        int[] source = array, target = buffer;
+        for(int shift = 0; shift < Integer.SIZE; shift += DIGIT_BITS) {
+            int digitShift = shift;
+            int signFlip = shift == Integer.SIZE - DIGIT_BITS ? DIGITS >>> 1 : 0; // the top digit's sign bit, so negatives come first
+            int[] from = source, to = target;
+
+            forEachBlock(blocks, "RadixSortRecursiveAction.count", block -> {
+                int[] counts = offsets[block];
+                Arrays.fill(counts, 0);
+                for(int i = blockStart(block, blocks, length), end = blockStart(block + 1, blocks, length); i < end; i++)
+                    counts[((from[i] >>> digitShift) & (DIGITS - 1)) ^ signFlip]++;
+            });
+            if(!toOffsets(offsets, length))
+                continue; // every element has the same digit here, nothing would move
+
+            forEachBlock(blocks, "RadixSortRecursiveAction.move", block -> {
+                int[] next = offsets[block];
+                for(int i = blockStart(block, blocks, length), end = blockStart(block + 1, blocks, length); i < end; i++) {
+                    int value = from[i];
+                    to[next[((value >>> digitShift) & (DIGITS - 1)) ^ signFlip]++] = value;
+                }
+            });
+            source = to;
+            target = from;
+        }
+        if(source != array)
+            System.arraycopy(source, 0, array, 0, length);
+    }
+
+    private static void sort(long[] array, long[] buffer, int blocks) {
+        int length = array.length;
+        int[][] offsets = new int[blocks][DIGITS];
+        long[] source = array, target = buffer;
+        for(int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS) {
+            int digitShift = shift;
+            int signFlip = shift == Long.SIZE - DIGIT_BITS ? DIGITS >>> 1 : 0;
+            long[] from = source, to = target;
+
+            forEachBlock(blocks, "RadixSortRecursiveAction.count", block -> {
+                int[] counts = offsets[block];
+                Arrays.fill(counts, 0);
+                for(int i = blockStart(block, blocks, length), end = blockStart(block + 1, blocks, length); i < end; i++)
+                    counts[((int) (from[i] >>> digitShift) & (DIGITS - 1)) ^ signFlip]++;
+            });
+            if(!toOffsets(offsets, length))
+                continue;
+
+            forEachBlock(blocks, "RadixSortRecursiveAction.move", block -> {
+                int[] next = offsets[block];
+                for(int i = blockStart(block, blocks, length), end = blockStart(block + 1, blocks, length); i < end; i++) {
+                    long value = from[i];
+                    to[next[((int) (value >>> digitShift) & (DIGITS - 1)) ^ signFlip]++] = value;
+                }
+            });
+            source = to;
+            target = from;
+        }
+        if(source != array)
+            System.arraycopy(source, 0, array, 0, length);
+    }
+
+    /**
+     * Turns the per block histograms into per block starting positions, digit major and block minor. Returns false, leaving the histograms as they
+     * are, when a single digit has every element.
+     */
+    private static boolean toOffsets(int[][] offsets, int length) {
+        for(int digit = 0; digit < DIGITS; digit++) {
+            long count = 0;
+            for(int[] block : offsets)
+                count += block[digit];
+            if(count == length)
+                return false;
+            if(count != 0)
+                break;
+        }
+        int next = 0;
+        for(int digit = 0; digit < DIGITS; digit++)
+            for(int[] block : offsets) {
+                int count = block[digit];
+                block[digit] = next;
+                next += count;
+            }
+        return true;
+    }
+
+    private static int blockStart(int block, int blocks, int length) {
+        return (int) ((long) block * length / blocks);
+    }
+
+    private interface BlockAction {
+        void run(int block);
+    }
+
+    /**
+     * Runs the action for every block in parallel, splitting the range of blocks in halves like the other tasks in this package split their arrays.
+     */
+    private static void forEachBlock(int blocks, String name, BlockAction action) {
+        new Blocks(0, blocks, name, action).invoke();
+    }
+
+    private static final class Blocks extends RecursiveAction {
+        private final int from, to;
+        private final String name;
+        private final BlockAction action;
+
+        Blocks(int from, int to, String name, BlockAction action) {
+            this.from = from;
+            this.to = to;
+            this.name = name;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Blocks left = new Blocks(from, mid, name, action);
+                ForkJoinEvents.split(name, to - from);
+                left.fork();
+                new Blocks(mid, to, name, action).compute();
+                ForkJoinEvents.join(left, name, mid - from);
+            } else {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                action.run(from);
+                ForkJoinEvents.leafFinished(leaf, name, 1);
+            }
+        }
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+
+    /**
+     * Times the sort against Arrays.parallelSort, for keys over the full range and keys that only need two passes. RadixSortRecursiveActionTest
+     * checks its results against Arrays.sort.
+     */
+    public static void main(String[] args) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for(int bound : new int[] { Integer.MAX_VALUE, 1 << 16 }) {
+            int[] array = random.ints(20_000_000, 0, bound).toArray();
+            for(int round = 0; round < 3; round++) {
+                int[] radixSorted = array.clone(), parallelSorted = array.clone();
+                long start = System.nanoTime();
+                ForkJoinTask<Void> sort = pool.submit(new RadixSortRecursiveAction(radixSorted));
+                sort.join();
+                long radixNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                Arrays.parallelSort(parallelSorted);
+                long parallelSortNanos = System.nanoTime() - start;
+                System.out.printf("sort of %,d ints below %,d: RadixSortRecursiveAction %.1f ms, Arrays.parallelSort %.1f ms%n", array.length, bound,
+                        radixNanos / 1e6, parallelSortNanos / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package loom.prerequisites;
+
+import java.util.Objects;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums all numbers in an int array and returns the result as a long. Unlike ListSummingRecursiveTask, subtasks never copy the array, each one is only a
+ * (array, from, to) view of the same shared array, and the point at which a subtask stops splitting is worked out from the size of the input and the
+ * pool instead of a fixed threshold. ListSummingRecursiveTask is kept as it is so the two can be compared.
+ */
+public class RangeSummingRecursiveTask extends RecursiveTask<Long> {
+
+    private final int[] array;
+    private final int from; // inclusive
+    private final int to; // exclusive
+    private final int leafSize;
+    private final boolean adaptive;
+    private final LeafKernel kernel;
+
+    /**
+     * Sums the whole array, picking the leaf size adaptively.
+     */
+    public RangeSummingRecursiveTask(int[] array) {
+        this(array, LeafKernel.SCALAR);
+    }
+
+    /**
+     * Sums the whole array, picking the leaf size adaptively and summing each leaf with the given kernel.
+     */
+    public RangeSummingRecursiveTask(int[] array, LeafKernel kernel) {
+        this(array, 0, array.length, Granularity.ADAPTIVE, true, kernel);
+    }
+
+    /**
+     * Sums the whole array, splitting until a subtask has at most leafSize elements. Useful to compare fixed thresholds against the adaptive one.
+     */
+    public RangeSummingRecursiveTask(int[] array, int leafSize) {
+        this(array, leafSize, LeafKernel.SCALAR);
+    }
+
+    /**
+     * Sums only array[from] to array[to - 1], picking the leaf size adaptively. For arrays that are only partly filled, like the columns of a table.
+     */
+    public RangeSummingRecursiveTask(int[] array, int from, int to, LeafKernel kernel) {
+        this(array, Objects.checkFromToIndex(from, to, array.length), to, Granularity.ADAPTIVE, true, kernel);
+    }
+
+    public RangeSummingRecursiveTask(int[] array, int leafSize, LeafKernel kernel) {
+        this(array, 0, array.length, checkLeafSize(leafSize), false, kernel);
+    }
+
+    private RangeSummingRecursiveTask(int[] array, int from, int to, int leafSize, boolean adaptive, LeafKernel kernel) {
+        this.array = array;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+        this.kernel = kernel;
+    }
+
+    @Override
+    protected Long compute() {
+        // the root resolves the leaf size once it knows which pool it is running in, and hands it down to every subtask
+        int resolvedLeafSize = Granularity.resolve(leafSize, to - from);
+
+        if(Granularity.shouldSplit(to - from, resolvedLeafSize, adaptive)) {
+            int mid = (from + to) >>> 1;
+            RangeSummingRecursiveTask left = new RangeSummingRecursiveTask(array, from, mid, resolvedLeafSize, adaptive, kernel);
+            RangeSummingRecursiveTask right = new RangeSummingRecursiveTask(array, mid, to, resolvedLeafSize, adaptive, kernel);
+
+            // fork one half and compute the other in this thread, rather than forking both and leaving this worker with nothing to do but wait.
+            ForkJoinEvents.split("RangeSummingRecursiveTask", to - from);
+            left.fork();
+            long rightSum = right.compute();
+            return ForkJoinEvents.join(left, "RangeSummingRecursiveTask", mid - from) + rightSum;
+        } else
+            return processTask();
+    }
+
+    private long processTask() {
+        ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+        long sum = kernel.sum(array, from, to); // the kernels sum into a long, so large arrays don't silently overflow like an int sum would
+        ForkJoinEvents.leafFinished(leaf, "RangeSummingRecursiveTask", to - from);
+        return sum;
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+}
@@ -0,0 +1,152 @@
+package loom.prerequisites;
+
+/**
+ * Plain loop versions of the reductions in VectorKernels, over the range [from, to) of an array. They are what LeafKernel.SCALAR runs, what the
+ * vector kernels fall back to for the elements left over after the last full vector, and what the vector kernels are checked against.
+ *
+ * Sums of ints are accumulated in a long so they don't overflow. min() and max() of an empty range return the identity of the operation
+ * (MAX_VALUE for min, MIN_VALUE for max, infinities for floating point).
+ */
+public final class ScalarKernels {
+
+    private ScalarKernels() {
+    }
+
+    // byte
+
+    public static int countEqual(byte[] a, int from, int to, byte value) {
+        int count = 0;
+        for(int i = from; i < to; i++)
+            if(a[i] == value)
+                count++;
+        return count;
+    }
+
+    // int
+
+    public static long sum(int[] a, int from, int to) {
+        long sum = 0;
+        for(int i = from; i < to; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    public static int min(int[] a, int from, int to) {
+        int min = Integer.MAX_VALUE;
+        for(int i = from; i < to; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+
+    public static int max(int[] a, int from, int to) {
+        int max = Integer.MIN_VALUE;
+        for(int i = from; i < to; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+
+    public static long dot(int[] a, int[] b, int from, int to) {
+        long dot = 0;
+        for(int i = from; i < to; i++)
+            dot += (long) a[i] * b[i];
+        return dot;
+    }
+
+    public static int countGreaterThan(int[] a, int from, int to, int threshold) {
+        int count = 0;
+        for(int i = from; i < to; i++)
+            if(a[i] > threshold)
+                count++;
+        return count;
+    }
+
+    // long
+
+    public static long sum(long[] a, int from, int to) {
+        long sum = 0;
+        for(int i = from; i < to; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    public static long min(long[] a, int from, int to) {
+        long min = Long.MAX_VALUE;
+        for(int i = from; i < to; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+
+    public static long max(long[] a, int from, int to) {
+        long max = Long.MIN_VALUE;
+        for(int i = from; i < to; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+
+    public static long dot(long[] a, long[] b, int from, int to) {
+        long dot = 0;
+        for(int i = from; i < to; i++)
+            dot += a[i] * b[i];
+        return dot;
+    }
+
+    // float
+
+    public static float sum(float[] a, int from, int to) {
+        float sum = 0;
+        for(int i = from; i < to; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    public static float min(float[] a, int from, int to) {
+        float min = Float.POSITIVE_INFINITY;
+        for(int i = from; i < to; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+
+    public static float max(float[] a, int from, int to) {
+        float max = Float.NEGATIVE_INFINITY;
+        for(int i = from; i < to; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+
+    public static float dot(float[] a, float[] b, int from, int to) {
+        float dot = 0;
+        for(int i = from; i < to; i++)
+            dot = Math.fma(a[i], b[i], dot);
+        return dot;
+    }
+
+    // double
+
+    public static double sum(double[] a, int from, int to) {
+        double sum = 0;
+        for(int i = from; i < to; i++)
+            sum += a[i];
+        return sum;
+    }
+
+    public static double min(double[] a, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = from; i < to; i++)
+            min = Math.min(min, a[i]);
+        return min;
+    }
+
+    public static double max(double[] a, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i = from; i < to; i++)
+            max = Math.max(max, a[i]);
+        return max;
+    }
+
+    public static double dot(double[] a, double[] b, int from, int to) {
+        double dot = 0;
+        for(int i = from; i < to; i++)
+            dot = Math.fma(a[i], b[i], dot);
+        return dot;
+    }
+}
@@ -0,0 +1,21 @@
+package loom.prerequisites;
+
+import java.nio.ByteOrder;
+
+/**
+ * The element types a binary file of numbers can hold, always stored little-endian whatever the platform, so files can be moved between machines.
+ * Code that reads or writes them switches on the type once per range and runs a loop per type, rather than going through a method per element.
+ */
+public enum SegmentElementType {
+
+    INT(Integer.BYTES),
+    LONG(Long.BYTES);
+
+    public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public final int bytes;
+
+    SegmentElementType(int bytes) {
+        this.bytes = bytes;
+    }
+}
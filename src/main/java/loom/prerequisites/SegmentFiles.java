@@ -0,0 +1,161 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Writes and maps the binary files of little-endian ints or longs that SegmentSummingRecursiveTask sums, and the newline-delimited text files that
+ * SegmentIntParsingRecursiveTask and SegmentWordCountingRecursiveTask parse.
+ */
+public final class SegmentFiles {
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private SegmentFiles() {
+    }
+
+    /**
+     * Writes count random elements of the given type to path (replacing anything already there) and returns their sum, so a reduction over the file
+     * can be checked. The same seed always produces the same file. Ints are drawn from [-1000, 1000) so the sum of even a huge file is easy to eyeball,
+     * longs from the whole long range.
+     */
+    public static long write(Path path, SegmentElementType type, long count, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE - WRITE_BUFFER_SIZE % type.bytes).order(SegmentElementType.ORDER);
+        long sum = 0;
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(long i = 0; i < count; i++) {
+                long value = type == SegmentElementType.INT ? random.nextInt(-1_000, 1_000) : random.nextLong();
+                sum += value;
+
+                if(type == SegmentElementType.INT)
+                    buffer.putInt((int) value);
+                else
+                    buffer.putLong(value);
+
+                if(!buffer.hasRemaining())
+                    drain(buffer, channel);
+            }
+            drain(buffer, channel);
+        }
+        return sum;
+    }
+
+    /**
+     * Writes count random ints as decimal text, one per line, to path (replacing anything already there) and returns their sum. Ints are drawn from the
+     * whole int range, so lines are 11 bytes long on average and every sign and length of number turns up.
+     */
+    public static long writeIntLines(Path path, long count, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        byte[] digits = new byte[Integer.SIZE];
+        long sum = 0;
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(long i = 0; i < count; i++) {
+                int value = random.nextInt();
+                sum += value;
+
+                // digits backwards from the end of the scratch array, negated so Integer.MIN_VALUE needs no special case
+                int at = digits.length;
+                digits[--at] = '\n';
+                int negated = value > 0 ? -value : value;
+                do {
+                    digits[--at] = (byte) ('0' - negated % 10);
+                    negated /= 10;
+                } while(negated != 0);
+                if(value < 0)
+                    digits[--at] = '-';
+
+                if(buffer.remaining() < digits.length - at)
+                    drain(buffer, channel);
+                buffer.put(digits, at, digits.length - at);
+            }
+            drain(buffer, channel);
+        }
+        return sum;
+    }
+
+    /**
+     * Writes count words, one to twelve to a line, to path (replacing anything already there). Words are drawn uniformly from a vocabulary of that
+     * many made up lowercase ASCII words, so a file holds about min(count, vocabulary) distinct ones.
+     */
+    public static void writeWordLines(Path path, long count, int vocabulary, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        byte[] word = new byte[16];
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int wordsLeftOnLine = random.nextInt(1, 13);
+            for(long i = 0; i < count; i++) {
+                // word n of the vocabulary is n written in base 26 with the letters a to z, at least three of them
+                int length = 0;
+                for(int n = random.nextInt(vocabulary); n > 0 || length < 3; n /= 26)
+                    word[length++] = (byte) ('a' + n % 26);
+                boolean endOfLine = --wordsLeftOnLine == 0 || i == count - 1;
+                word[length++] = (byte) (endOfLine ? '\n' : ' ');
+                if(endOfLine)
+                    wordsLeftOnLine = random.nextInt(1, 13);
+
+                if(buffer.remaining() < length)
+                    drain(buffer, channel);
+                buffer.put(word, 0, length);
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    /**
+     * Maps the whole file read only into a segment that belongs to the given scope. The scope should be shared if the segment is going to be read by a
+     * fork/join task.
+     */
+    public static MemorySegment map(Path path, ResourceScope scope) throws IOException {
+        return MemorySegment.mapFile(path, 0, Files.size(path), FileChannel.MapMode.READ_ONLY, scope);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * path [INT|LONG] [count] - writes a file of count elements (default 500 million ints, 2GB) if it doesn't exist yet, maps it and sums it in
+     * parallel, e.g. with -Xmx256m to show that the data never goes near the heap.
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : "numbers.bin");
+        SegmentElementType type = args.length > 1 ? SegmentElementType.valueOf(args[1]) : SegmentElementType.INT;
+        long count = args.length > 2 ? Long.parseLong(args[2]) : 500_000_000L;
+
+        if(Files.notExists(path)) {
+            long start = System.nanoTime();
+            long expected = write(path, type, count, 42);
+            System.out.printf("Wrote %,d %s elements to %s in %.1fs, they add up to %d.%n", count, type, path, (System.nanoTime() - start) / 1e9, expected);
+        }
+
+        try(ResourceScope scope = ResourceScope.newSharedScope()) {
+            MemorySegment segment = map(path, scope);
+            long start = System.nanoTime();
+            long sum = ForkJoinPool.commonPool().invoke(new SegmentSummingRecursiveTask(segment, type));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Summed %,d bytes of %s in %.2fs (%.2f GB/s) with a %s heap: %d.%n",
+                    segment.byteSize(), type, seconds, segment.byteSize() / seconds / 1e9, humanReadable(Runtime.getRuntime().maxMemory()), sum);
+        }
+    }
+
+    private static String humanReadable(long bytes) {
+        return bytes >= 1L << 30 ? String.format("%.1fGB", bytes / (double) (1L << 30)) : String.format("%dMB", bytes >> 20);
+    }
+}
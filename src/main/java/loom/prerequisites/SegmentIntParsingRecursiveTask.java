@@ -0,0 +1,150 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses the decimal ints of a text file held in a MemorySegment, typically mapped with SegmentFiles.map(), into an int array, in parallel. The numbers
+ * are separated by whitespace, usually one per line, as written by SegmentFiles.writeIntLines(). The result is a plain int[] column, ready for
+ * RangeSummingRecursiveTask or anything else that works on arrays.
+ *
+ * The segment is split like SegmentSummingRecursiveTask splits it, in halves down to an adaptive leaf size (in bytes here), except the split point is
+ * moved forward to the start of the next line (see SegmentLines), so no number is ever cut in two. Each leaf parses its bytes straight into an int
+ * array of its own, without a String or a Scanner in sight, and the root copies the leaves' arrays into the result in file order. The segment has to
+ * belong to a shared ResourceScope, as leaves run on other threads.
+ *
+ * Anything that isn't an optional '-' followed by digits, or a number outside the int range, throws a NumberFormatException giving the byte offset.
+ */
+public class SegmentIntParsingRecursiveTask extends RecursiveTask<int[]> {
+
+    private final MemorySegment segment;
+    private final int leafSize; // in bytes
+    private final boolean adaptive;
+
+    /**
+     * Parses the whole segment, picking the leaf size adaptively.
+     */
+    public SegmentIntParsingRecursiveTask(MemorySegment segment) {
+        this(segment, Granularity.ADAPTIVE, true);
+    }
+
+    /**
+     * Parses the whole segment, splitting until a chunk has at most leafSize bytes (or no newline left to split at).
+     */
+    public SegmentIntParsingRecursiveTask(MemorySegment segment, int leafSize) {
+        this(segment, checkLeafSize(leafSize), false);
+    }
+
+    private SegmentIntParsingRecursiveTask(MemorySegment segment, int leafSize, boolean adaptive) {
+        this.segment = segment;
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    protected int[] compute() {
+        long length = segment.byteSize();
+        List<Parsed> chunks = new Chunk(0, length, Granularity.resolve(leafSize, length), adaptive).compute();
+
+        long count = 0;
+        for(Parsed chunk : chunks)
+            count += chunk.count();
+        if(count > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException(count + " numbers don't fit in an int array");
+        int[] values = new int[(int) count];
+        int at = 0;
+        for(Parsed chunk : chunks) {
+            System.arraycopy(chunk.values(), 0, values, at, chunk.count());
+            at += chunk.count();
+        }
+        return values;
+    }
+
+    private record Parsed(int[] values, int count) {}
+
+    /**
+     * Parses segment[from..to), which starts at the beginning of a line, into the arrays of its leaves, in file order.
+     */
+    private final class Chunk extends RecursiveTask<List<Parsed>> {
+        private final long from, to;
+        private final int leafSize;
+        private final boolean adaptive;
+
+        Chunk(long from, long to, int leafSize, boolean adaptive) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.adaptive = adaptive;
+        }
+
+        @Override
+        protected List<Parsed> compute() {
+            long mid = Granularity.shouldSplit(to - from, leafSize, adaptive) ? SegmentLines.split(segment, from, to) : -1;
+            if(mid < 0) {
+                ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+                List<Parsed> parsed = new ArrayList<>(1);
+                parsed.add(parse());
+                ForkJoinEvents.leafFinished(leaf, "SegmentIntParsingRecursiveTask", to - from);
+                return parsed;
+            }
+
+            Chunk left = new Chunk(from, mid, leafSize, adaptive);
+            ForkJoinEvents.split("SegmentIntParsingRecursiveTask", to - from);
+            left.fork();
+            List<Parsed> right = new Chunk(mid, to, leafSize, adaptive).compute();
+            List<Parsed> parsed = ForkJoinEvents.join(left, "SegmentIntParsingRecursiveTask", mid - from);
+            parsed.addAll(right);
+            return parsed;
+        }
+
+        private Parsed parse() {
+            int[] values = new int[(int) Math.min((to - from) / 8 + 16, Integer.MAX_VALUE - 8)]; // a guess, grown as needed
+            int count = 0;
+            SegmentLines.Blocks blocks = new SegmentLines.Blocks(segment, from, to);
+            while(blocks.next()) {
+                byte[] bytes = blocks.bytes();
+                int length = blocks.length();
+                int i = 0;
+                while(i < length) {
+                    byte b = bytes[i];
+                    if(SegmentLines.isWhitespace(b)) {
+                        i++;
+                        continue;
+                    }
+
+                    int start = i;
+                    boolean negative = b == '-';
+                    if(negative)
+                        i++;
+                    long value = 0;
+                    int digitsFrom = i;
+                    while(i < length && (b = bytes[i]) >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        if(value > (long) Integer.MAX_VALUE + 1)
+                            throw new NumberFormatException("number out of int range at byte " + (blocks.offset() + start));
+                        i++;
+                    }
+                    if(i == digitsFrom || (i < length && !SegmentLines.isWhitespace(b)))
+                        throw new NumberFormatException("not an int at byte " + (blocks.offset() + start));
+                    if(!negative && value > Integer.MAX_VALUE)
+                        throw new NumberFormatException("number out of int range at byte " + (blocks.offset() + start));
+
+                    if(count == values.length)
+                        values = Arrays.copyOf(values, values.length * 2);
+                    values[count++] = (int) (negative ? -value : value);
+                }
+            }
+            return new Parsed(values, count);
+        }
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+}
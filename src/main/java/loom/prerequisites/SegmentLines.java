@@ -0,0 +1,190 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * What the tasks parsing newline-delimited text out of a MemorySegment share: where to split a range of bytes so both halves start at the beginning
+ * of a line, and what counts as whitespace. Lines are only ever split at a '\n' byte, which in UTF-8 can't be part of any other character, so a chunk
+ * never starts halfway through a line, a number or a word, whatever the file holds.
+ */
+final class SegmentLines {
+
+    static final byte NEWLINE = '\n';
+
+    private SegmentLines() {
+    }
+
+    /**
+     * The start of the first line beginning in the second half of segment[from..to), that is the byte after the first newline at or after the middle,
+     * or -1 when there's no newline there and the range can't be split without cutting a line in two.
+     */
+    static long split(MemorySegment segment, long from, long to) {
+        long mid = nextLine(segment, from + (to - from) / 2, to);
+        return mid < to ? mid : -1; // a newline as the last byte would leave the second half empty
+    }
+
+    /**
+     * The byte after the first newline at or after from, or to when there's none before it.
+     */
+    static long nextLine(MemorySegment segment, long from, long to) {
+        for(long offset = from; offset < to; offset++)
+            if(MemoryAccess.getByteAtOffset(segment, offset) == NEWLINE)
+                return offset + 1;
+        return to;
+    }
+
+    /**
+     * Space, tab, carriage return and newline, so files written on Windows parse the same.
+     */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == NEWLINE || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Copies a range of a segment, which starts at the beginning of a line, onto the heap a block of whole lines at a time, for a leaf to parse from
+     * a byte array rather than through MemoryAccess, which checks bounds and that the segment's scope is still alive on every single read. The copy
+     * itself is one bulk copy per block, and a block of lines stays in cache while it's parsed. A block is only cut short of a newline at the end of
+     * the range, and grows when a single line doesn't fit in it.
+     */
+    static final class Blocks {
+        private static final int BLOCK_SIZE = 1 << 16;
+
+        private final MemorySegment segment;
+        private final long to;
+        private long position;
+        private byte[] bytes = new byte[BLOCK_SIZE];
+        private MemorySegment heap = MemorySegment.ofArray(bytes);
+        private int length;
+        private long offset;
+
+        Blocks(MemorySegment segment, long from, long to) {
+            this.segment = segment;
+            this.position = from;
+            this.to = to;
+        }
+
+        /**
+         * Loads the next block, returning false once the whole range has been read.
+         */
+        boolean next() {
+            if(position >= to)
+                return false;
+            while(true) {
+                int copied = (int) Math.min(bytes.length, to - position);
+                heap.asSlice(0, copied).copyFrom(segment.asSlice(position, copied));
+                int end = copied;
+                if(position + copied < to) {
+                    while(end > 0 && bytes[end - 1] != NEWLINE)
+                        end--;
+                    if(end == 0) { // a line longer than the block, try again with a block twice the size
+                        bytes = new byte[bytes.length * 2];
+                        heap = MemorySegment.ofArray(bytes);
+                        continue;
+                    }
+                }
+                offset = position;
+                length = end;
+                position += end;
+                return true;
+            }
+        }
+
+        /**
+         * The current block, valid until the next call to next().
+         */
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        /**
+         * The offset in the segment of bytes()[0], for error messages.
+         */
+        long offset() {
+            return offset;
+        }
+    }
+
+    /**
+     * The words of segment[from..to) (runs of bytes between whitespace) as a list of CharSequences, for handing part of a file to tasks that take a
+     * list, like ListLoggingRecursiveAction. Text is read as UTF-8. A word that is all ASCII, one byte per char, is a view onto the segment, and
+     * nothing is copied until its toString() is called; any other word is decoded into a String up front, as its chars can't be found by offset.
+     * Every word gets a small object though, so this is for a page of a file rather than the whole of it.
+     */
+    static List<CharSequence> words(MemorySegment segment, long from, long to) {
+        List<long[]> words = new ArrayList<>(); // offset, length, and 1 if the word is all ASCII
+        long start = -1;
+        boolean ascii = true;
+        for(long offset = from; offset <= to; offset++) {
+            byte b = offset == to ? NEWLINE : MemoryAccess.getByteAtOffset(segment, offset);
+            boolean space = isWhitespace(b);
+            if(!space && start < 0) {
+                start = offset;
+                ascii = true;
+            } else if(space && start >= 0) {
+                words.add(new long[] { start, offset - start, ascii ? 1 : 0 });
+                start = -1;
+            }
+            if(b < 0) // the high bit set, part of a multi-byte char
+                ascii = false;
+        }
+        return new WordList(segment, words);
+    }
+
+    private static final class WordList extends AbstractList<CharSequence> implements RandomAccess {
+        private final MemorySegment segment;
+        private final List<long[]> words;
+
+        WordList(MemorySegment segment, List<long[]> words) {
+            this.segment = segment;
+            this.words = words;
+        }
+
+        @Override
+        public CharSequence get(int index) {
+            long[] word = words.get(index);
+            if(word[2] == 0)
+                return new String(segment.asSlice(word[0], word[1]).toByteArray(), StandardCharsets.UTF_8);
+            return new Word(segment, word[0], (int) word[1]);
+        }
+
+        @Override
+        public int size() {
+            return words.size();
+        }
+    }
+
+    /**
+     * A word of ASCII bytes, each of which is a char.
+     */
+    private record Word(MemorySegment segment, long offset, int length) implements CharSequence {
+        @Override
+        public char charAt(int index) {
+            if(index < 0 || index >= length)
+                throw new IndexOutOfBoundsException(index);
+            return (char) MemoryAccess.getByteAtOffset(segment, offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if(start < 0 || start > end || end > length)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") out of " + length);
+            return new Word(segment, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(segment.asSlice(offset, length).toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+}
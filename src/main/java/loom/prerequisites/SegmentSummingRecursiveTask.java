@@ -0,0 +1,72 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums the little-endian ints or longs held in a MemorySegment, using the Foreign Memory API (JEP 412, still incubating in JDK 17, so
+ * --add-modules jdk.incubator.foreign is needed). Typically the segment is a file mapped with MemorySegment.mapFile(), so the data never has to be
+ * copied onto the heap and a file much bigger than -Xmx can be summed in parallel, the OS paging it in as the workers get to it.
+ *
+ * Works just like RangeSummingRecursiveTask, except the range is a pair of byte offsets into the segment rather than indexes into an array. Subtasks
+ * run on other threads, so the segment has to belong to a shared ResourceScope (ResourceScope.newSharedScope()), a confined one can only be touched by the
+ * thread that created it. Long sums wrap around on overflow, just like adding up longs in a loop would.
+ */
+public class SegmentSummingRecursiveTask extends RecursiveTask<Long> {
+
+    private final MemorySegment segment;
+    private final SegmentElementType type;
+    private final long from; // byte offset, inclusive
+    private final long to; // byte offset, exclusive
+    private final int leafSize; // in elements
+
+    /**
+     * Sums every element of the segment, picking the leaf size adaptively.
+     */
+    public SegmentSummingRecursiveTask(MemorySegment segment, SegmentElementType type) {
+        this(segment, type, 0, segment.byteSize() - segment.byteSize() % type.bytes, Granularity.ADAPTIVE);
+    }
+
+    private SegmentSummingRecursiveTask(MemorySegment segment, SegmentElementType type, long from, long to, int leafSize) {
+        this.segment = segment;
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+    }
+
+    @Override
+    protected Long compute() {
+        long elements = (to - from) / type.bytes;
+        int resolvedLeafSize = Granularity.resolve(leafSize, elements);
+
+        if(Granularity.shouldSplit(elements, resolvedLeafSize, true)) {
+            long mid = from + (elements / 2) * type.bytes; // split on an element boundary
+            SegmentSummingRecursiveTask left = new SegmentSummingRecursiveTask(segment, type, from, mid, resolvedLeafSize);
+            SegmentSummingRecursiveTask right = new SegmentSummingRecursiveTask(segment, type, mid, to, resolvedLeafSize);
+
+            left.fork();
+            long rightSum = right.compute();
+            return left.join() + rightSum;
+        } else
+            return processTask();
+    }
+
+    private long processTask() {
+        // one loop per element type, so the type is checked once per leaf rather than once per element
+        long sum = 0;
+        switch(type) {
+            case INT -> {
+                for(long offset = from; offset < to; offset += Integer.BYTES)
+                    sum += MemoryAccess.getIntAtOffset(segment, offset, SegmentElementType.ORDER);
+            }
+            case LONG -> {
+                for(long offset = from; offset < to; offset += Long.BYTES)
+                    sum += MemoryAccess.getLongAtOffset(segment, offset, SegmentElementType.ORDER);
+            }
+        }
+        return sum;
+    }
+}
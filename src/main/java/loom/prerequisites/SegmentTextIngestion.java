@@ -0,0 +1,79 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The fork/join examples with their input read from newline-delimited text files rather than written out as literals: a file of numbers is mapped,
+ * parsed into an int column by SegmentIntParsingRecursiveTask and summed by RangeSummingRecursiveTask, and a file of words is mapped and counted by
+ * SegmentWordCountingRecursiveTask, with the first line of it handed to ListLoggingRecursiveAction. Every stage reports how many GB of the file it
+ * got through per second.
+ *
+ * Needs --add-modules jdk.incubator.foreign, like SegmentFiles.
+ */
+public final class SegmentTextIngestion {
+
+    private static final int VOCABULARY = 100_000;
+
+    private SegmentTextIngestion() {
+    }
+
+    /**
+     * [numbers path] [words path] [count] - writes a file of count numbers and one of count words (default 100 million each, about 1.1GB and 0.6GB)
+     * if they don't exist yet, then maps, parses and processes both.
+     */
+    public static void main(String[] args) throws IOException {
+        Path numbersPath = Path.of(args.length > 0 ? args[0] : "numbers.txt");
+        Path wordsPath = Path.of(args.length > 1 ? args[1] : "words.txt");
+        long count = args.length > 2 ? Long.parseLong(args[2]) : 100_000_000L;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        Long expectedSum = null;
+        if(Files.notExists(numbersPath)) {
+            long start = System.nanoTime();
+            expectedSum = SegmentFiles.writeIntLines(numbersPath, count, 42);
+            System.out.printf("Wrote %,d numbers to %s in %.1fs, they add up to %d.%n", count, numbersPath, (System.nanoTime() - start) / 1e9, expectedSum);
+        }
+        if(Files.notExists(wordsPath)) {
+            long start = System.nanoTime();
+            SegmentFiles.writeWordLines(wordsPath, count, VOCABULARY, 42);
+            System.out.printf("Wrote %,d words to %s in %.1fs.%n", count, wordsPath, (System.nanoTime() - start) / 1e9);
+        }
+
+        try(ResourceScope scope = ResourceScope.newSharedScope()) {
+            MemorySegment segment = SegmentFiles.map(numbersPath, scope);
+            long start = System.nanoTime();
+            int[] numbers = pool.invoke(new SegmentIntParsingRecursiveTask(segment));
+            long parsed = System.nanoTime();
+            long sum = pool.invoke(new RangeSummingRecursiveTask(numbers));
+            long summed = System.nanoTime();
+            System.out.printf("Parsed %,d numbers out of %,d bytes in %.2fs (%.2f GB/s), summed them in %.2fs, %.2f GB/s overall: %d%s.%n",
+                    numbers.length, segment.byteSize(), (parsed - start) / 1e9, gigabytesPerSecond(segment, parsed - start), (summed - parsed) / 1e9,
+                    gigabytesPerSecond(segment, summed - start), sum, expectedSum == null ? "" : expectedSum == sum ? ", as written" : ", NOT " + expectedSum);
+        }
+
+        try(ResourceScope scope = ResourceScope.newSharedScope()) {
+            MemorySegment segment = SegmentFiles.map(wordsPath, scope);
+            long start = System.nanoTime();
+            SegmentWordCountingRecursiveTask.WordCounts counts = pool.invoke(new SegmentWordCountingRecursiveTask(segment));
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Counted %,d lines, %,d words and about %,d distinct words out of %,d bytes in %.2fs (%.2f GB/s).%n",
+                    counts.lines(), counts.words(), counts.distinct().estimate(), counts.bytes(), nanos / 1e9, gigabytesPerSecond(segment, nanos));
+
+            List<CharSequence> words = SegmentLines.words(segment, 0, SegmentLines.nextLine(segment, 0, segment.byteSize()));
+            try(LogSink sink = LogSink.buffered(true)) {
+                pool.invoke(new ListLoggingRecursiveAction("First line of " + wordsPath, words, sink));
+            }
+        }
+    }
+
+    private static double gigabytesPerSecond(MemorySegment segment, long nanos) {
+        return segment.byteSize() / (nanos / 1e9) / 1e9;
+    }
+}
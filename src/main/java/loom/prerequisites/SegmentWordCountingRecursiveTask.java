@@ -0,0 +1,112 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the lines, words and distinct words of a text file held in a MemorySegment, in parallel, what wc -lw does plus a DistinctSketch. Words are
+ * runs of bytes between whitespace, as written by SegmentFiles.writeWordLines(), and are hashed straight from the segment's bytes, so however many
+ * words a file holds, not one of them becomes a String. Bytes are compared as they are, so words in any encoding that keeps ASCII whitespace as is,
+ * UTF-8 included, count right.
+ *
+ * Splits like SegmentIntParsingRecursiveTask, at the start of a line, and merges the counts of the two halves, DistinctSketch being a monoid like
+ * the ones ParallelReducer combines. The segment has to belong to a shared ResourceScope.
+ */
+public class SegmentWordCountingRecursiveTask extends RecursiveTask<SegmentWordCountingRecursiveTask.WordCounts> {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * lines counts newlines, so a last line without one isn't counted, like wc -l. distinct is an estimate, see DistinctSketch.
+     */
+    public record WordCounts(long bytes, long lines, long words, DistinctSketch distinct) {
+        private WordCounts merge(WordCounts other) {
+            return new WordCounts(bytes + other.bytes, lines + other.lines, words + other.words, distinct.merge(other.distinct));
+        }
+    }
+
+    private final MemorySegment segment;
+    private final long from; // byte offset, inclusive, the start of a line
+    private final long to; // byte offset, exclusive
+    private final int leafSize; // in bytes
+    private final boolean adaptive;
+
+    /**
+     * Counts the whole segment, picking the leaf size adaptively.
+     */
+    public SegmentWordCountingRecursiveTask(MemorySegment segment) {
+        this(segment, 0, segment.byteSize(), Granularity.ADAPTIVE, true);
+    }
+
+    /**
+     * Counts the whole segment, splitting until a chunk has at most leafSize bytes (or no newline left to split at).
+     */
+    public SegmentWordCountingRecursiveTask(MemorySegment segment, int leafSize) {
+        this(segment, 0, segment.byteSize(), checkLeafSize(leafSize), false);
+    }
+
+    private SegmentWordCountingRecursiveTask(MemorySegment segment, long from, long to, int leafSize, boolean adaptive) {
+        this.segment = segment;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    protected WordCounts compute() {
+        int resolvedLeafSize = Granularity.resolve(leafSize, to - from);
+        long mid = Granularity.shouldSplit(to - from, resolvedLeafSize, adaptive) ? SegmentLines.split(segment, from, to) : -1;
+        if(mid < 0)
+            return processTask();
+
+        SegmentWordCountingRecursiveTask left = new SegmentWordCountingRecursiveTask(segment, from, mid, resolvedLeafSize, adaptive);
+        SegmentWordCountingRecursiveTask right = new SegmentWordCountingRecursiveTask(segment, mid, to, resolvedLeafSize, adaptive);
+        ForkJoinEvents.split("SegmentWordCountingRecursiveTask", to - from);
+        left.fork();
+        WordCounts rightCounts = right.compute();
+        return ForkJoinEvents.join(left, "SegmentWordCountingRecursiveTask", mid - from).merge(rightCounts);
+    }
+
+    private WordCounts processTask() {
+        ForkJoinEvents.LeafEvent leaf = ForkJoinEvents.leafStarted();
+        DistinctSketch distinct = new DistinctSketch();
+        long lines = 0, words = 0;
+        long hash = FNV_OFFSET_BASIS;
+        boolean inWord = false;
+        SegmentLines.Blocks blocks = new SegmentLines.Blocks(segment, from, to);
+        while(blocks.next()) {
+            byte[] bytes = blocks.bytes();
+            for(int i = 0, length = blocks.length(); i < length; i++) {
+                byte b = bytes[i];
+                if(SegmentLines.isWhitespace(b)) {
+                    if(b == SegmentLines.NEWLINE)
+                        lines++;
+                    if(inWord) {
+                        distinct.add(hash); // FNV-1a isn't mixed well enough for the sketch on its own, add() mixes it again
+                        words++;
+                        hash = FNV_OFFSET_BASIS;
+                        inWord = false;
+                    }
+                } else {
+                    hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+                    inWord = true;
+                }
+            }
+        }
+        if(inWord) { // the last word of a file that doesn't end with a newline, chunks always end with one otherwise
+            distinct.add(hash);
+            words++;
+        }
+        ForkJoinEvents.leafFinished(leaf, "SegmentWordCountingRecursiveTask", to - from);
+        return new WordCounts(to - from, lines, words, distinct);
+    }
+
+    private static int checkLeafSize(int leafSize) {
+        if(leafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive, was " + leafSize);
+        return leafSize;
+    }
+}
@@ -0,0 +1,206 @@
+package loom.prerequisites;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the reductions in ScalarKernels, using the Vector API (JEP 338, 414, 417 - still incubating, so --add-modules jdk.incubator.vector
+ * is needed to compile and run this).
+ *
+ * Every kernel works a whole vector at a time for as long as there are enough elements left in the range, then hands the last few elements (fewer
+ * than one vector's worth) to the matching ScalarKernels method.
+ *
+ * The vector shape is chosen when the class is loaded. It's the preferred shape of the CPU we're running on (256 bits on AVX2, 512 on AVX-512 and so
+ * on) unless the vector.bits system property asks for a particular size, e.g. -Dvector.bits=128 to see how narrower vectors compare.
+ *
+ * Floating point sums and dot products add up the elements in a different order to the scalar loop, so their results can differ in the last few bits.
+ * VectorKernelsTest checks every kernel against its ScalarKernels counterpart, allowing for that.
+ */
+public final class VectorKernels {
+
+    public static final VectorShape SHAPE = shape();
+
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class, SHAPE);
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, SHAPE);
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, SHAPE);
+    private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class, SHAPE);
+    private static final VectorSpecies<Double> DOUBLES = VectorSpecies.of(double.class, SHAPE);
+
+    private VectorKernels() {
+    }
+
+    private static VectorShape shape() {
+        String bits = System.getProperty("vector.bits");
+        return bits == null ? VectorShape.preferredShape() : VectorShape.forBitSize(Integer.parseInt(bits));
+    }
+
+    // byte
+
+    public static int countEqual(byte[] a, int from, int to, byte value) {
+        int count = 0;
+        int i = from;
+        for(int bound = from + BYTES.loopBound(to - from); i < bound; i += BYTES.length())
+            count += ByteVector.fromArray(BYTES, a, i).eq(value).trueCount();
+        return count + ScalarKernels.countEqual(a, i, to, value);
+    }
+
+    // int
+
+    public static long sum(int[] a, int from, int to) {
+        // an int vector is widened into two long vectors of the same size, the low lanes then the high lanes, so the running sum can't overflow
+        LongVector low = LongVector.zero(LONGS);
+        LongVector high = LongVector.zero(LONGS);
+        int i = from;
+        for(int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, a, i);
+            low = low.add((LongVector) v.convertShape(VectorOperators.I2L, LONGS, 0));
+            high = high.add((LongVector) v.convertShape(VectorOperators.I2L, LONGS, 1));
+        }
+        return low.add(high).reduceLanes(VectorOperators.ADD) + ScalarKernels.sum(a, i, to);
+    }
+
+    public static int min(int[] a, int from, int to) {
+        IntVector min = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        int i = from;
+        for(int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length())
+            min = min.min(IntVector.fromArray(INTS, a, i));
+        return Math.min(min.reduceLanes(VectorOperators.MIN), ScalarKernels.min(a, i, to));
+    }
+
+    public static int max(int[] a, int from, int to) {
+        IntVector max = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        int i = from;
+        for(int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length())
+            max = max.max(IntVector.fromArray(INTS, a, i));
+        return Math.max(max.reduceLanes(VectorOperators.MAX), ScalarKernels.max(a, i, to));
+    }
+
+    public static long dot(int[] a, int[] b, int from, int to) {
+        LongVector low = LongVector.zero(LONGS);
+        LongVector high = LongVector.zero(LONGS);
+        int i = from;
+        for(int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector va = IntVector.fromArray(INTS, a, i);
+            IntVector vb = IntVector.fromArray(INTS, b, i);
+            low = low.add(((LongVector) va.convertShape(VectorOperators.I2L, LONGS, 0)).mul((LongVector) vb.convertShape(VectorOperators.I2L, LONGS, 0)));
+            high = high.add(((LongVector) va.convertShape(VectorOperators.I2L, LONGS, 1)).mul((LongVector) vb.convertShape(VectorOperators.I2L, LONGS, 1)));
+        }
+        return low.add(high).reduceLanes(VectorOperators.ADD) + ScalarKernels.dot(a, b, i, to);
+    }
+
+    public static int countGreaterThan(int[] a, int from, int to, int threshold) {
+        int count = 0;
+        int i = from;
+        for(int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length())
+            count += IntVector.fromArray(INTS, a, i).compare(VectorOperators.GT, threshold).trueCount();
+        return count + ScalarKernels.countGreaterThan(a, i, to, threshold);
+    }
+
+    // long
+
+    public static long sum(long[] a, int from, int to) {
+        LongVector sum = LongVector.zero(LONGS);
+        int i = from;
+        for(int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length())
+            sum = sum.add(LongVector.fromArray(LONGS, a, i));
+        return sum.reduceLanes(VectorOperators.ADD) + ScalarKernels.sum(a, i, to);
+    }
+
+    public static long min(long[] a, int from, int to) {
+        LongVector min = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        int i = from;
+        for(int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length())
+            min = min.min(LongVector.fromArray(LONGS, a, i));
+        return Math.min(min.reduceLanes(VectorOperators.MIN), ScalarKernels.min(a, i, to));
+    }
+
+    public static long max(long[] a, int from, int to) {
+        LongVector max = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        int i = from;
+        for(int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length())
+            max = max.max(LongVector.fromArray(LONGS, a, i));
+        return Math.max(max.reduceLanes(VectorOperators.MAX), ScalarKernels.max(a, i, to));
+    }
+
+    public static long dot(long[] a, long[] b, int from, int to) {
+        LongVector dot = LongVector.zero(LONGS);
+        int i = from;
+        for(int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length())
+            dot = dot.add(LongVector.fromArray(LONGS, a, i).mul(LongVector.fromArray(LONGS, b, i)));
+        return dot.reduceLanes(VectorOperators.ADD) + ScalarKernels.dot(a, b, i, to);
+    }
+
+    // float
+
+    public static float sum(float[] a, int from, int to) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = from;
+        for(int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length())
+            sum = sum.add(FloatVector.fromArray(FLOATS, a, i));
+        return sum.reduceLanes(VectorOperators.ADD) + ScalarKernels.sum(a, i, to);
+    }
+
+    public static float min(float[] a, int from, int to) {
+        FloatVector min = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        int i = from;
+        for(int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length())
+            min = min.min(FloatVector.fromArray(FLOATS, a, i));
+        return Math.min(min.reduceLanes(VectorOperators.MIN), ScalarKernels.min(a, i, to));
+    }
+
+    public static float max(float[] a, int from, int to) {
+        FloatVector max = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+        int i = from;
+        for(int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length())
+            max = max.max(FloatVector.fromArray(FLOATS, a, i));
+        return Math.max(max.reduceLanes(VectorOperators.MAX), ScalarKernels.max(a, i, to));
+    }
+
+    public static float dot(float[] a, float[] b, int from, int to) {
+        FloatVector dot = FloatVector.zero(FLOATS);
+        int i = from;
+        for(int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length())
+            dot = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), dot);
+        return dot.reduceLanes(VectorOperators.ADD) + ScalarKernels.dot(a, b, i, to);
+    }
+
+    // double
+
+    public static double sum(double[] a, int from, int to) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = from;
+        for(int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length())
+            sum = sum.add(DoubleVector.fromArray(DOUBLES, a, i));
+        return sum.reduceLanes(VectorOperators.ADD) + ScalarKernels.sum(a, i, to);
+    }
+
+    public static double min(double[] a, int from, int to) {
+        DoubleVector min = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        int i = from;
+        for(int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length())
+            min = min.min(DoubleVector.fromArray(DOUBLES, a, i));
+        return Math.min(min.reduceLanes(VectorOperators.MIN), ScalarKernels.min(a, i, to));
+    }
+
+    public static double max(double[] a, int from, int to) {
+        DoubleVector max = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        int i = from;
+        for(int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length())
+            max = max.max(DoubleVector.fromArray(DOUBLES, a, i));
+        return Math.max(max.reduceLanes(VectorOperators.MAX), ScalarKernels.max(a, i, to));
+    }
+
+    public static double dot(double[] a, double[] b, int from, int to) {
+        DoubleVector dot = DoubleVector.zero(DOUBLES);
+        int i = from;
+        for(int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length())
+            dot = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, i), dot);
+        return dot.reduceLanes(VectorOperators.ADD) + ScalarKernels.dot(a, b, i, to);
+    }
+}
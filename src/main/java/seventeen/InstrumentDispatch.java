@@ -0,0 +1,79 @@
+package seventeen;
+
+import seventeen.InstrumentHierarchy.*;
+
+/**
+ * Five ways of running type specific code over the sealed hierarchy in InstrumentHierarchy:
+ *
+ * - A pattern switch (JEP 406), which is what JEP406.jep406() does.
+ * - The same cases as a TypeDispatcher, which caches the case of each class in a ClassValue. Exhaustive without a default, as the pattern switch is.
+ * - A chain of instanceof checks (JEP 394), which is what JEP394.jep394() does.
+ * - A visitor, the classic double dispatch through accept().
+ * - A plain virtual method overridden by every class.
+ *
+ * Each way of dispatching returns the same code for the same class, so they can be compared like for like (see DispatchBenchmark).
+ */
+public class InstrumentDispatch {
+
+    private static final Visitor CODE_VISITOR = new Visitor() {
+        @Override
+        public int visitGuitar(Guitar guitar) {
+            return 1;
+        }
+
+        @Override
+        public int visitSaxophone(Saxophone saxophone) {
+            return 2;
+        }
+
+        @Override
+        public int visitAltoSaxophone(AltoSaxophone altoSaxophone) {
+            return 3;
+        }
+
+        @Override
+        public int visitYamahaAltoSaxophone(YamahaAltoSaxophone yamahaAltoSaxophone) {
+            return 4;
+        }
+    };
+
+    private static final TypeDispatcher<Instrument, Integer> TYPE_DISPATCHER = TypeDispatcher.<Instrument, Integer>builder(Instrument.class)
+            .on(YamahaAltoSaxophone.class, yamahaSax -> 4)
+            .on(AltoSaxophone.class, altoSax -> 3)
+            .on(Saxophone.class, sax -> 2)
+            .on(Guitar.class, guitar -> 1)
+            .build();
+
+    public static int patternSwitch(Instrument instrument) {
+        return switch(instrument) { // subtype ordering, and complete without a default as the hierarchy is sealed
+            case YamahaAltoSaxophone yamahaSax -> 4;
+            case AltoSaxophone altoSax -> 3;
+            case Saxophone sax -> 2;
+            case Guitar guitar -> 1;
+        };
+    }
+
+    public static int typeDispatcher(Instrument instrument) {
+        return TYPE_DISPATCHER.dispatch(instrument);
+    }
+
+    public static int instanceofChain(Instrument instrument) {
+        if(instrument instanceof YamahaAltoSaxophone)
+            return 4;
+        else if(instrument instanceof AltoSaxophone)
+            return 3;
+        else if(instrument instanceof Saxophone)
+            return 2;
+        else if(instrument instanceof Guitar)
+            return 1;
+        throw new IllegalArgumentException("unknown instrument " + instrument);
+    }
+
+    public static int visitor(Instrument instrument) {
+        return instrument.accept(CODE_VISITOR);
+    }
+
+    public static int virtualCall(Instrument instrument) {
+        return instrument.code();
+    }
+}
@@ -0,0 +1,72 @@
+package seventeen;
+
+/**
+ * A sealed hierarchy the same shape as JEP409.Instrument: a final Guitar, and a sealed Saxophone with a non-sealed AltoSaxophone under it and a
+ * YamahaAltoSaxophone under that.
+ *
+ * It's a copy rather than JEP409.Instrument itself, because a visitor and a virtual method both need methods on the classes, and the JEP409 classes are
+ * kept as plain as the notes they illustrate. It is also kept apart from the pattern switch in InstrumentDispatch, so these classes don't need preview
+ * features enabled to be loaded on JDK 17.
+ */
+public class InstrumentHierarchy {
+
+    public interface Visitor {
+        int visitGuitar(Guitar guitar);
+        int visitSaxophone(Saxophone saxophone);
+        int visitAltoSaxophone(AltoSaxophone altoSaxophone);
+        int visitYamahaAltoSaxophone(YamahaAltoSaxophone yamahaAltoSaxophone);
+    }
+
+    public static abstract sealed class Instrument permits Guitar, Saxophone {
+        public abstract int code();
+        public abstract int accept(Visitor visitor);
+    }
+
+    public static final class Guitar extends Instrument {
+        @Override
+        public int code() {
+            return 1;
+        }
+
+        @Override
+        public int accept(Visitor visitor) {
+            return visitor.visitGuitar(this);
+        }
+    }
+
+    public static sealed class Saxophone extends Instrument permits AltoSaxophone {
+        @Override
+        public int code() {
+            return 2;
+        }
+
+        @Override
+        public int accept(Visitor visitor) {
+            return visitor.visitSaxophone(this);
+        }
+    }
+
+    public static non-sealed class AltoSaxophone extends Saxophone {
+        @Override
+        public int code() {
+            return 3;
+        }
+
+        @Override
+        public int accept(Visitor visitor) {
+            return visitor.visitAltoSaxophone(this);
+        }
+    }
+
+    public static class YamahaAltoSaxophone extends AltoSaxophone {
+        @Override
+        public int code() {
+            return 4;
+        }
+
+        @Override
+        public int accept(Visitor visitor) {
+            return visitor.visitYamahaAltoSaxophone(this);
+        }
+    }
+}
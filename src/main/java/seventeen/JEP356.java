@@ -3,6 +3,7 @@ package seventeen;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.random.RandomGenerator;
 import java.util.random.RandomGeneratorFactory;
 
@@ -57,9 +58,23 @@ public class JEP356 {
 
         generator1.splits(5).forEach(sg -> executorService.submit(() -> stringList.add(String.format("Random number up to 100: %s.", sg.nextInt(100)))));
 
+        // The pool has to be waited on before reading the list, otherwise any task that hasn't run yet is simply missing from it.
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         stringList.forEach(System.out::println);
 
         // Using splittable in this way means that multiple generator instances will produce unique values.
 
+        // For bulk generation, boxing every number into a String in a synchronized list doesn't scale. ParallelRandomFill splits a generator per fork/join
+        // chunk instead, and each chunk writes straight into its own part of a primitive array. The same seed and length always produce the same array.
+        int[] numbers = new int[1_000_000];
+        new ParallelRandomFill("L128X256MixRandom", 42).fill(numbers, 0, 100);
+        System.out.printf("First random numbers up to 100 of %d: %s.%n", numbers.length, Arrays.toString(Arrays.copyOf(numbers, 5)));
+
     }
 }
@@ -0,0 +1,102 @@
+package seventeen;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import seventeen.JEP409.*;
+
+/**
+ * The first switch of JEP406.jep406(), over an Object, grown to sixteen cases: the kind of switch over an open type that javac can only compile to a
+ * sequence of instanceof checks, so that an object matching the last case, or none, pays for all sixteen. The same cases built as a TypeDispatcher
+ * go through a ClassValue lookup instead of the type tests, which isn't the same as being faster: the lookup and the call through a handler the JIT
+ * can't inline aren't free either, and main() had the TypeDispatcher at about 71 ns an object against 42 ns for the pattern switch, on a random mix of
+ * every case. Which wins at which case is for TypeDispatcherBenchmark to say.
+ *
+ * Both return the same code for the same object (ObjectDispatchTest checks they do), so they can be compared like for like. The pattern switch is in
+ * here rather than in the benchmark for the same reason as InstrumentDispatch's, it needs --enable-preview on JDK 17.
+ */
+public class ObjectDispatch {
+
+    private static final TypeDispatcher<Object, Integer> TYPE_DISPATCHER = TypeDispatcher.<Object, Integer>builder(Object.class)
+            .onNull(() -> -1)
+            .on(String.class, s -> 1)
+            .on(Gender.class, gender -> 2)
+            .on(int[].class, arr -> 3)
+            .on(OnlyChild.class, child -> 4)
+            .on(Integer.class, i -> 5)
+            .on(Long.class, l -> 6)
+            .on(Double.class, d -> 7)
+            .on(Character.class, c -> 8)
+            .on(Boolean.class, b -> 9)
+            .on(long[].class, arr -> 10)
+            .on(StringBuilder.class, builder -> 11)
+            .on(ArrayList.class, list -> 12)
+            .on(HashMap.class, map -> 13)
+            .on(Optional.class, optional -> 14)
+            .on(BigInteger.class, big -> 15)
+            .on(LocalDate.class, date -> 16)
+            .orElse(obj -> 0)
+            .build();
+
+    public static int patternSwitch(Object obj) {
+        return switch(obj) {
+            case null -> -1;
+            case String s -> 1;
+            case Gender gender -> 2;
+            case int[] arr -> 3;
+            case OnlyChild child -> 4;
+            case Integer i -> 5;
+            case Long l -> 6;
+            case Double d -> 7;
+            case Character c -> 8;
+            case Boolean b -> 9;
+            case long[] arr -> 10;
+            case StringBuilder builder -> 11;
+            case ArrayList<?> list -> 12;
+            case HashMap<?, ?> map -> 13;
+            case Optional<?> optional -> 14;
+            case BigInteger big -> 15;
+            case LocalDate date -> 16;
+            default -> 0;
+        };
+    }
+
+    public static int typeDispatcher(Object obj) {
+        return TYPE_DISPATCHER.dispatch(obj);
+    }
+
+    /**
+     * One object for every case, default included, in case order (null aside, which the benchmark leaves out as it never reaches a type test).
+     */
+    public static final Supplier<?>[] OBJECTS = {
+            () -> "Hello World", () -> Gender.FEMALE, () -> new int[] { 1 }, () -> new OnlyChild("Anna"), () -> 42, () -> 42L, () -> 4.2, () -> 'c',
+            () -> true, () -> new long[] { 1 }, () -> new StringBuilder("sb"), () -> new ArrayList<>(), () -> new HashMap<>(), () -> Optional.of(1),
+            () -> BigInteger.TEN, () -> LocalDate.EPOCH, () -> new Object(),
+    };
+
+    /**
+     * Times both over objects of every class in random order, a rough measurement next to TypeDispatcherBenchmark's.
+     */
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(42);
+        Object[] objects = new Object[1 << 20];
+        for(int i = 0; i < objects.length; i++)
+            objects[i] = OBJECTS[random.nextInt(OBJECTS.length)].get();
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime(), switchSum = 0, dispatcherSum = 0;
+            for(Object obj : objects)
+                switchSum += patternSwitch(obj);
+            long switched = System.nanoTime();
+            for(Object obj : objects)
+                dispatcherSum += typeDispatcher(obj);
+            long dispatched = System.nanoTime();
+            System.out.printf("%d objects: pattern switch %.1f ns, TypeDispatcher %.1f ns per object (codes add up to %d and %d)%n", objects.length,
+                    (switched - start) / (double) objects.length, (dispatched - switched) / (double) objects.length, switchSum, dispatcherSum);
+        }
+    }
+}
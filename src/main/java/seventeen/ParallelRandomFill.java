@@ -0,0 +1,131 @@
+package seventeen;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import loom.prerequisites.SegmentElementType;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Fills primitive arrays (or a MemorySegment) with random numbers in parallel, using a SplittableGenerator (JEP 356) split once per fork/join chunk.
+ *
+ * Every fill starts from a new generator created from the algorithm and seed. A task bigger than CHUNK_SIZE splits a new generator off its own before
+ * forking, gives it to its right half, and keeps using its own for the left half. The chunks and the order of the splits only depend on the length of
+ * what's being filled, never on which worker runs what or when, so the same seed, algorithm and length always produce exactly the same numbers.
+ *
+ * Each chunk writes straight into its own part of the array with its own generator, so there are no locks, no shared state and no boxing anywhere.
+ */
+public class ParallelRandomFill {
+
+    private static final int CHUNK_SIZE = 1 << 14; // fixed rather than adaptive, as the chunks decide which generator produces which element
+
+    private final RandomGeneratorFactory<RandomGenerator> factory;
+    private final long seed;
+    private final ForkJoinPool pool;
+
+    public ParallelRandomFill(String algorithm, long seed) {
+        this(algorithm, seed, ForkJoinPool.commonPool());
+    }
+
+    public ParallelRandomFill(String algorithm, long seed, ForkJoinPool pool) {
+        this.factory = RandomGeneratorFactory.of(algorithm);
+        if(!factory.isSplittable())
+            throw new IllegalArgumentException(algorithm + " isn't a SplittableGenerator");
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    public void fill(int[] array) {
+        fill(array.length, (generator, from, to) -> {
+            for(int i = (int) from; i < to; i++)
+                array[i] = generator.nextInt();
+        });
+    }
+
+    /**
+     * Fills the array with ints in [origin, bound).
+     */
+    public void fill(int[] array, int origin, int bound) {
+        fill(array.length, (generator, from, to) -> {
+            for(int i = (int) from; i < to; i++)
+                array[i] = generator.nextInt(origin, bound);
+        });
+    }
+
+    public void fill(long[] array) {
+        fill(array.length, (generator, from, to) -> {
+            for(int i = (int) from; i < to; i++)
+                array[i] = generator.nextLong();
+        });
+    }
+
+    /**
+     * Fills the array with doubles in [0, 1).
+     */
+    public void fill(double[] array) {
+        fill(array.length, (generator, from, to) -> {
+            for(int i = (int) from; i < to; i++)
+                array[i] = generator.nextDouble();
+        });
+    }
+
+    /**
+     * Fills every whole element of the segment with little-endian ints or longs. The segment must belong to a shared ResourceScope, as it is written
+     * to by several workers.
+     */
+    public void fill(MemorySegment segment, SegmentElementType type) {
+        fill(segment.byteSize() / type.bytes, switch(type) {
+            case INT -> (generator, from, to) -> {
+                for(long i = from; i < to; i++)
+                    MemoryAccess.setIntAtOffset(segment, i * Integer.BYTES, SegmentElementType.ORDER, generator.nextInt());
+            };
+            case LONG -> (generator, from, to) -> {
+                for(long i = from; i < to; i++)
+                    MemoryAccess.setLongAtOffset(segment, i * Long.BYTES, SegmentElementType.ORDER, generator.nextLong());
+            };
+        });
+    }
+
+    private void fill(long length, Chunk chunk) {
+        SplittableGenerator root = (SplittableGenerator) factory.create(seed);
+        pool.invoke(new FillTask(root, 0, length, chunk));
+    }
+
+    /**
+     * Fills the elements [from, to) of whatever is being filled, drawing only from the given generator.
+     */
+    @FunctionalInterface
+    private interface Chunk {
+        void fill(RandomGenerator generator, long from, long to);
+    }
+
+    private static class FillTask extends RecursiveAction {
+        private final SplittableGenerator generator;
+        private final long from;
+        private final long to;
+        private final Chunk chunk;
+
+        private FillTask(SplittableGenerator generator, long from, long to, Chunk chunk) {
+            this.generator = generator;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > CHUNK_SIZE) {
+                long mid = (from + to) >>> 1;
+                // split here, before anything is forked, so the split always happens at the same point in this generator's sequence
+                SplittableGenerator split = generator.split();
+                ForkJoinTask.invokeAll(new FillTask(generator, from, mid, chunk), new FillTask(split, mid, to, chunk));
+            } else
+                chunk.fill(generator, from, to);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package seventeen;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A switch over the type of an object, like the pattern switch of JEP 406, built at runtime from a list of cases. javac compiles a pattern switch to
+ * a sequence of type tests, tried one after the other until one matches, so the last case of a switch with twenty costs twenty instanceof checks. This
+ * tries them all once per class instead: the first time it sees an object of a given runtime class, it works out which cases that class can match,
+ * and caches the answer in a ClassValue. From then on an object of that class goes straight to its case, whatever its position in the list and however
+ * open the hierarchy (Object, an interface, a non-sealed class), which is exactly where a pattern switch has to fall back on default. That saves type
+ * tests, not necessarily time: a ClassValue lookup and a call through a handler that isn't inlined cost more than a few instanceof checks, see
+ * ObjectDispatch and TypeDispatcherBenchmark for how the two compare.
+ *
+ * Cases follow the rules of JEP 406 as it stands in JDK 17:
+ *
+ * - Cases are tried in order, and a case whose type is a subtype of an earlier unguarded case is dominated, it could never match, so build() rejects
+ *   it just like javac rejects case Guitar g after case Instrument i. A guarded case (case String s && s.length() > 5) dominates nothing.
+ * - Guards can't be cached as they depend on the object, so a class whose first matching case is guarded keeps the list of cases it can match, up to
+ *   and including the first unguarded one, and tries the guards in order. A class with no guarded case in the way gets a single case.
+ * - null only matches a case null (onNull()) or, failing that, a total pattern, an unguarded case for the selector type or one of its supertypes (which
+ *   is what JDK 17 does, later JDKs only ever give null to case null). With neither, dispatching null throws a NullPointerException, as the switch would.
+ * - Without a default (orElse()), the cases have to be exhaustive: a total pattern, or cases covering every permitted subclass of a sealed abstract
+ *   class or sealed interface. An object no case matches anyway, a subclass compiled after the switch, throws an IncompatibleClassChangeError, as a
+ *   pattern switch does in JDK 17.
+ *
+ * Enum constants and other constant labels aren't supported, a case handles a type. Instances are immutable and thread safe if the handlers are.
+ *
+ * @param <T> the type of the selector
+ * @param <R> what every case returns
+ */
+public final class TypeDispatcher<T, R> {
+
+    private final Class<T> selectorType;
+    private final List<Case<R>> cases;
+    private final Case<R> nullCase; // null when null throws
+    private final Function<Object, ? extends R> defaultHandler; // null without a default
+    private final ClassValue<Case<R>[]> table = new ClassValue<>() {
+        @Override
+        protected Case<R>[] computeValue(Class<?> type) {
+            return casesFor(type);
+        }
+    };
+
+    private TypeDispatcher(Builder<T, R> builder) {
+        this.selectorType = builder.selectorType;
+        this.cases = List.copyOf(builder.cases);
+        this.defaultHandler = builder.defaultHandler;
+        this.nullCase = builder.nullHandler != null
+                ? new Case<>(Object.class, null, ignored -> builder.nullHandler.get())
+                : cases.stream().filter(c -> c.guard == null && c.type.isAssignableFrom(selectorType)).findFirst().orElse(null);
+    }
+
+    public static <T, R> Builder<T, R> builder(Class<T> selectorType) {
+        return new Builder<>(Objects.requireNonNull(selectorType));
+    }
+
+    /**
+     * Runs the case value matches, see the class comment for which one that is.
+     */
+    public R dispatch(T value) {
+        if(value == null) {
+            if(nullCase == null)
+                throw new NullPointerException("no case null or total pattern for a null " + selectorType.getName());
+            return nullCase.handler.apply(null);
+        }
+        for(Case<R> c : table.get(value.getClass()))
+            if(c.guard == null || c.guard.test(value))
+                return c.handler.apply(value);
+        if(defaultHandler != null)
+            return defaultHandler.apply(value);
+        throw new IncompatibleClassChangeError("no case matches " + value.getClass().getName());
+    }
+
+    /**
+     * The cases an object of the given class could match, in order, up to the first unguarded one, after which nothing else can be reached.
+     */
+    @SuppressWarnings("unchecked")
+    private Case<R>[] casesFor(Class<?> type) {
+        List<Case<R>> matching = new ArrayList<>();
+        for(Case<R> c : cases)
+            if(c.type.isAssignableFrom(type)) {
+                matching.add(c);
+                if(c.guard == null)
+                    break;
+            }
+        return (Case<R>[]) matching.toArray(new Case<?>[0]);
+    }
+
+    private record Case<R>(Class<?> type, Predicate<Object> guard, Function<Object, ? extends R> handler) {
+        @Override
+        public String toString() {
+            return "case " + type.getSimpleName() + (guard != null ? " && <guard>" : "");
+        }
+    }
+
+    public static final class Builder<T, R> {
+        private final Class<T> selectorType;
+        private final List<Case<R>> cases = new ArrayList<>();
+        private Supplier<? extends R> nullHandler;
+        private Function<Object, ? extends R> defaultHandler;
+
+        private Builder(Class<T> selectorType) {
+            this.selectorType = selectorType;
+        }
+
+        /**
+         * case S s -> handler.apply(s)
+         */
+        public <S> Builder<T, R> on(Class<S> type, Function<? super S, ? extends R> handler) {
+            return add(type, null, handler);
+        }
+
+        /**
+         * case S s && guard.test(s) -> handler.apply(s)
+         */
+        public <S> Builder<T, R> on(Class<S> type, Predicate<? super S> guard, Function<? super S, ? extends R> handler) {
+            return add(type, Objects.requireNonNull(guard), handler);
+        }
+
+        /**
+         * case null -> handler.get(), which takes null away from a total pattern.
+         */
+        public Builder<T, R> onNull(Supplier<? extends R> handler) {
+            if(nullHandler != null)
+                throw new IllegalStateException("duplicate case null");
+            nullHandler = Objects.requireNonNull(handler);
+            return this;
+        }
+
+        /**
+         * default -> handler.apply(value), for whatever no case matches. Only makes sense when there's no total pattern, which would dominate it.
+         */
+        public Builder<T, R> orElse(Function<? super T, ? extends R> handler) {
+            if(defaultHandler != null)
+                throw new IllegalStateException("duplicate default");
+            defaultHandler = eraseHandler(handler);
+            return this;
+        }
+
+        public TypeDispatcher<T, R> build() {
+            boolean total = cases.stream().anyMatch(c -> c.guard == null && c.type.isAssignableFrom(selectorType));
+            if(total && defaultHandler != null)
+                throw new IllegalStateException("default is dominated by a total pattern for " + selectorType.getName());
+            if(defaultHandler == null && !covers(selectorType))
+                throw new IllegalStateException("the cases don't cover every " + selectorType.getName() + ", add a default");
+            return new TypeDispatcher<>(this);
+        }
+
+        private <S> Builder<T, R> add(Class<S> type, Predicate<? super S> guard, Function<? super S, ? extends R> handler) {
+            Objects.requireNonNull(type);
+            Objects.requireNonNull(handler);
+            if(type.isPrimitive())
+                throw new IllegalArgumentException("a type pattern can't be primitive, was " + type);
+            boolean related = type.isAssignableFrom(selectorType) || selectorType.isAssignableFrom(type);
+            if(!related && (!type.isInterface() && !selectorType.isInterface() || isFinal(type) || isFinal(selectorType)))
+                throw new IllegalArgumentException(selectorType.getName() + " can never be a " + type.getName()); // as javac says for a cast
+            for(Case<R> earlier : cases)
+                if(earlier.guard == null && earlier.type.isAssignableFrom(type))
+                    throw new IllegalArgumentException("case " + type.getSimpleName() + " is dominated by the earlier " + earlier);
+            cases.add(new Case<>(type, guard != null ? eraseGuard(guard) : null, eraseHandler(handler)));
+            return this;
+        }
+
+        /**
+         * Whether every object of the given type matches an unguarded case, as javac works out the exhaustiveness of a switch over a sealed type.
+         */
+        private boolean covers(Class<?> type) {
+            for(Case<R> c : cases)
+                if(c.guard == null && c.type.isAssignableFrom(type))
+                    return true;
+            if(!type.isSealed() || !(type.isInterface() || Modifier.isAbstract(type.getModifiers())))
+                return false; // a concrete sealed class can have instances of its own
+            for(Class<?> permitted : type.getPermittedSubclasses())
+                if(!covers(permitted))
+                    return false;
+            return true;
+        }
+
+        private static boolean isFinal(Class<?> type) {
+            return Modifier.isFinal(type.getModifiers());
+        }
+
+        // cases are only ever run with an object of their type, checked by the ClassValue, so the casts are safe
+        @SuppressWarnings("unchecked")
+        private static <S, V> Function<Object, V> eraseHandler(Function<? super S, ? extends V> handler) {
+            return (Function<Object, V>) handler;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <S> Predicate<Object> eraseGuard(Predicate<? super S> guard) {
+            return (Predicate<Object>) guard;
+        }
+    }
+}
@@ -10,6 +10,7 @@ public class JDK16 {
      *
      * JEP 380: Unix-Domain Socket Channel - A Unix-Domain socket is an IPC mechanism that allows bidirectional data exchange between processes running on the same machine,
      * as opposed to over a network (IP, TCP/IP sockets). Unix-Domain socket support added to the socket and server-socket channel in java.nio.channels package.
+     * See JobCoordinator, which uses them to spread a fork/join reduction over several worker JVMs, and compares them with TCP over loopback.
      *
      * JEP 389: Foreign Linker API (Incubator) - Yay! Java access to native code. In conjunction with the Foreign-Memory API (JEP 393), will simplify interaction with native libraries.
      * JEP 393: Foreign-Memory Access API (Third Incubator) - In third incubation, this API allows Java programs to safely and efficiently access foreign memory outside the Java heap.
@@ -0,0 +1,315 @@
+package sixteen;
+
+import loom.prerequisites.ListSummingRecursiveTask;
+import loom.prerequisites.LogSink;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the summing of one big int[] over several worker JVMs on the same machine (see JobWorker), so a CPU bound reduction can use more processes
+ * and more heaps than one JVM has, without any network in between. The array is cut into chunks, chunks are batched into job frames as big as the
+ * buffers allow, and each worker connection is kept busy with up to WINDOW job frames in flight, so a worker never waits for its next batch while the
+ * coordinator is reading its last result.
+ *
+ * ListSummingRecursiveTask returns an int, so chunks are capped at MAX_CHUNK_SIZE elements and the demo fills the array with values below
+ * MAX_ELEMENT, which keeps every partial sum well within an int. The partial sums are added up as longs by the coordinator.
+ *
+ * main() runs the same job over each transport (UNIX and TCP by default) and compares them with summing in process.
+ *
+ * Usage: JobCoordinator [workers] [elements] [chunkSize] [transports...]
+ */
+public class JobCoordinator implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    // as many ints as fit in a job frame of one chunk, just under 1 << 20
+    static final int MAX_CHUNK_SIZE = (BUFFER_SIZE - JobTransport.FRAME_HEADER - Integer.BYTES - JobTransport.CHUNK_HEADER) / Integer.BYTES;
+    static final int MAX_ELEMENT = 1 << 10;
+    private static final int WINDOW = 2;
+    private static final int THRESHOLD = 1 << 13; // leaf size of the ListSummingRecursiveTasks, in and out of process
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000; // a worker JVM that hasn't connected by then never will
+    private static final long CONNECT_POLL_MILLIS = 100; // how often the workers are checked on while waiting for them to connect
+    private static final long EXIT_GRACE_MILLIS = 500; // how long a worker is given to finish dying once its connection has failed
+
+    private final JobTransport transport;
+    private final Class<?> workerClass; // JobWorker, or a stand-in that misbehaves in a test
+    private final ServerSocketChannel server;
+    private final List<Process> workers = new ArrayList<>();
+    private final Path workerOutput; // a directory with each worker's stdout and stderr, worker-<i>.log
+    private final List<SocketChannel> connections = new ArrayList<>();
+    private final ExecutorService senders;
+    private volatile boolean failed; // the failure has been reported, so close() kills the workers rather than telling them to stop
+
+    public record Result(JobTransport transport, int workers, long sum, long bytes, long nanos) {
+        public double gigabytesPerSecond() {
+            return bytes / (double) nanos;
+        }
+    }
+
+    /**
+     * Starts the worker JVMs and waits for all of them to connect, for CONNECT_TIMEOUT_MILLIS at most. A worker that exits before it connects (it
+     * couldn't start, or failed to connect) fails the whole coordinator straight away, with the worker's exit code and output.
+     */
+    public JobCoordinator(JobTransport transport, int workerCount) throws IOException {
+        this(transport, workerCount, JobWorker.class, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    JobCoordinator(JobTransport transport, int workerCount, Class<?> workerClass, long connectTimeoutMillis) throws IOException {
+        this.transport = transport;
+        this.workerClass = workerClass;
+        this.server = transport.listen();
+        this.senders = Executors.newFixedThreadPool(workerCount);
+        this.workerOutput = Files.createTempDirectory("job-workers");
+        try {
+            String address = transport.address(server.getLocalAddress());
+            for(int i = 0; i < workerCount; i++)
+                workers.add(startWorker(address, workerOutput.resolve("worker-" + i + ".log")));
+            acceptWorkers(workerCount, connectTimeoutMillis);
+        } catch(IOException | RuntimeException e) {
+            failed = true;
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Accepts connections until every worker has one, checking every CONNECT_POLL_MILLIS that none of the workers has died in the meantime. There's
+     * no telling which worker a connection came from, but before the job has even started, no worker should exit at all.
+     */
+    private void acceptWorkers(int workerCount, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        server.configureBlocking(false);
+        try(Selector selector = Selector.open()) {
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            while(connections.size() < workerCount) {
+                for(int i = 0; i < workers.size(); i++)
+                    if(!workers.get(i).isAlive())
+                        throw new IOException(String.format("worker %d exited with %d before %d of %d workers had connected, its output:%n%s", i,
+                                workers.get(i).exitValue(), connections.size(), workerCount, workerOutput(i)));
+                if(System.nanoTime() - deadline > 0)
+                    throw new IOException(String.format("only %d of %d workers connected within %d ms", connections.size(), workerCount, timeoutMillis));
+
+                selector.select(CONNECT_POLL_MILLIS);
+                selector.selectedKeys().clear();
+                for(SocketChannel connection; (connection = server.accept()) != null; )
+                    connections.add(connection); // in blocking mode, whatever the mode of the server channel
+            }
+        }
+    }
+
+    private String workerOutput(int worker) {
+        try {
+            return Files.readString(workerOutput.resolve("worker-" + worker + ".log"));
+        } catch(IOException e) {
+            return "(unreadable: " + e + ")";
+        }
+    }
+
+    /**
+     * The worker gets the same class path, and the same preview and incubator module flags, as this JVM. Its output goes to a file rather than to
+     * ours, so it can be reported with the reason it failed.
+     */
+    private Process startWorker(String address, Path output) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments())
+            if(argument.equals("--enable-preview") || argument.startsWith("--add-modules"))
+                command.add(argument);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), workerClass.getName(),
+                transport.name(), address, String.valueOf(BUFFER_SIZE), String.valueOf(THRESHOLD)));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output.toFile()).start();
+    }
+
+    /**
+     * Sums the array across all the workers. A worker that dies part way through fails the sum with an IOException, giving the exit code and output
+     * of every worker that has exited, rather than leaving its chunks unsummed. The coordinator can't be used again after that, only closed.
+     */
+    public Result sum(int[] array, int chunkSize) throws Exception {
+        if(failed)
+            throw new IllegalStateException("a worker failed during an earlier job, the coordinator can only be closed");
+        if(chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE)
+            throw new IllegalArgumentException("chunk size must be between 1 and " + MAX_CHUNK_SIZE + ", was " + chunkSize);
+        int chunks = (array.length + chunkSize - 1) / chunkSize;
+        long[] partials = new long[chunks];
+        AtomicInteger nextChunk = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Future<Void>> connectionsDone = new ArrayList<>();
+        for(SocketChannel connection : connections)
+            connectionsDone.add(senders.submit(() -> {
+                drive(connection, array, chunkSize, chunks, nextChunk, partials);
+                return null;
+            }));
+        for(Future<Void> done : connectionsDone) {
+            try {
+                done.get();
+            } catch(ExecutionException e) {
+                failed = true;
+                throw jobFailed(e.getCause());
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        long sum = 0;
+        for(long partial : partials)
+            sum += partial;
+        return new Result(transport, workers.size(), sum, (long) array.length * Integer.BYTES, nanos);
+    }
+
+    /**
+     * There's no telling which worker was on the end of a connection that failed, but a worker that died should be gone by the time the connection
+     * closed, give or take a moment, and nothing else makes a worker exit before close().
+     */
+    private IOException jobFailed(Throwable cause) throws InterruptedException {
+        StringBuilder exited = new StringBuilder();
+        for(int i = 0; i < workers.size(); i++)
+            if(workers.get(i).waitFor(EXIT_GRACE_MILLIS, TimeUnit.MILLISECONDS))
+                exited.append(String.format("%nworker %d exited with %d, its output:%n%s", i, workers.get(i).exitValue(), workerOutput(i)));
+        return new IOException("a worker connection failed during the job (" + cause + ")" + (exited.length() > 0 ? exited : ", no worker has exited"), cause);
+    }
+
+    /**
+     * Keeps one worker busy: sends job frames until WINDOW of them are in flight or the chunks run out, then reads a result frame, and so on.
+     */
+    private static void drive(SocketChannel connection, int[] array, int chunkSize, int chunks, AtomicInteger nextChunk, long[] partials) throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        int chunksPerFrame = (BUFFER_SIZE - JobTransport.FRAME_HEADER - Integer.BYTES) / (JobTransport.CHUNK_HEADER + chunkSize * Integer.BYTES);
+        int inFlight = 0;
+
+        while(true) {
+            while(inFlight < WINDOW) {
+                int first = nextChunk.getAndAdd(chunksPerFrame);
+                if(first >= chunks)
+                    break;
+                int last = Math.min(first + chunksPerFrame, chunks);
+
+                JobTransport.startFrame(out);
+                out.putInt(last - first);
+                for(int id = first; id < last; id++) {
+                    int from = id * chunkSize;
+                    int length = Math.min(chunkSize, array.length - from);
+                    out.putLong(id).putInt(length);
+                    out.asIntBuffer().put(array, from, length); // bulk copy into the direct buffer
+                    out.position(out.position() + length * Integer.BYTES);
+                }
+                JobTransport.writeFrame(connection, out);
+                inFlight++;
+            }
+            if(inFlight == 0)
+                return;
+
+            JobTransport.readFrame(connection, in);
+            for(int results = in.getInt(); results > 0; results--)
+                partials[(int) in.getLong()] = in.getLong();
+            inFlight--;
+        }
+    }
+
+    /**
+     * Tells the workers to exit and waits for them to do so.
+     */
+    @Override
+    public void close() throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(JobTransport.FRAME_HEADER + Integer.BYTES);
+        for(SocketChannel connection : connections) {
+            try(connection) {
+                if(failed)
+                    continue;
+                JobTransport.startFrame(out);
+                out.putInt(0);
+                JobTransport.writeFrame(connection, out);
+            } catch(IOException e) {
+                System.err.printf("JobCoordinator couldn't stop a worker: %s.%n", e);
+            }
+        }
+        for(int i = 0; i < workers.size(); i++) {
+            Process worker = workers.get(i);
+            try {
+                if(failed) // a worker that never connected, or that lost its connection, won't ever get the stop frame
+                    worker.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+                else if(!worker.waitFor(10, TimeUnit.SECONDS))
+                    worker.destroyForcibly();
+                else if(worker.exitValue() != 0)
+                    System.err.printf("JobCoordinator's worker %d exited with %d, its output:%n%s", i, worker.exitValue(), workerOutput(i));
+            } catch(InterruptedException e) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        senders.shutdown();
+        for(int i = 0; i < workers.size(); i++)
+            Files.deleteIfExists(workerOutput.resolve("worker-" + i + ".log")); // destroyForcibly() may not have taken effect yet, Linux doesn't mind
+        Files.deleteIfExists(workerOutput);
+
+        // closing a Unix-domain server channel leaves its socket file behind, remove it and its temporary directory now rather than on exit
+        if(server.getLocalAddress() instanceof UnixDomainSocketAddress address) {
+            Files.deleteIfExists(address.getPath());
+            Files.deleteIfExists(address.getPath().toAbsolutePath().getParent());
+        }
+        server.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, Runtime.getRuntime().availableProcessors() / 4);
+        int elements = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 27;
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 18;
+        List<JobTransport> transports = new ArrayList<>();
+        for(int i = 3; i < args.length; i++)
+            transports.add(JobTransport.valueOf(args[i]));
+        if(transports.isEmpty())
+            transports.addAll(List.of(JobTransport.values()));
+
+        int[] array = new int[elements];
+        SplittableRandom random = new SplittableRandom(42);
+        for(int i = 0; i < elements; i++)
+            array[i] = random.nextInt(MAX_ELEMENT);
+        System.out.printf("Summing %,d ints (%.0f MB) in chunks of %,d over %d worker JVMs.%n", elements, elements * 4 / 1e6, chunkSize, workerCount);
+
+        long expected = 0;
+        long inProcessNanos = Long.MAX_VALUE;
+        for(int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for(int from = 0; from < elements; from += chunkSize) {
+                int[] chunk = Arrays.copyOfRange(array, from, Math.min(from + chunkSize, elements));
+                sum += ForkJoinPool.commonPool().invoke(new ListSummingRecursiveTask("JobCoordinator", chunk, LogSink.discarding(), THRESHOLD));
+            }
+            inProcessNanos = Math.min(inProcessNanos, System.nanoTime() - start);
+            expected = sum;
+        }
+        System.out.printf("%-10s %,d in %.1f ms (%.2f GB/s)%n", "in process", expected, inProcessNanos / 1e6, elements * 4.0 / inProcessNanos);
+
+        for(JobTransport transport : transports) {
+            try(JobCoordinator coordinator = new JobCoordinator(transport, workerCount)) {
+                Result best = null;
+                for(int round = 0; round < 3; round++) { // the first rounds warm up the workers' JITs
+                    Result result = coordinator.sum(array, chunkSize);
+                    if(best == null || result.nanos() < best.nanos())
+                        best = result;
+                }
+                System.out.printf("%-10s %,d in %.1f ms (%.2f GB/s)%s%n", transport, best.sum(), best.nanos() / 1e6, best.gigabytesPerSecond(),
+                        best.sum() == expected ? "" : " MISMATCH, expected " + expected);
+            }
+        }
+    }
+}
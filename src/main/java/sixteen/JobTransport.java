@@ -0,0 +1,121 @@
+package sixteen;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * How JobCoordinator and its JobWorkers talk to each other: over a Unix-domain socket (JEP 380) or over TCP on the loopback interface, to compare the two.
+ * Both are plain blocking SocketChannels, the only differences are the protocol family and the address.
+ *
+ * Everything sent either way is a frame: a four byte length followed by that many bytes. A job frame carries a batch of chunks to sum,
+ *
+ *   int chunks, then for each chunk: long id, int length, int[length] elements
+ *
+ * and the worker answers each job frame with a result frame holding one partial sum per chunk,
+ *
+ *   int results, then for each result: long id, long sum
+ *
+ * A job frame with no chunks tells the worker to exit. Frames are always built in and read into a direct buffer, so the channel can hand them to the
+ * socket without another copy, and a whole batch of chunks goes out in a single write.
+ */
+public enum JobTransport {
+
+    UNIX {
+        @Override
+        ServerSocketChannel listen() throws IOException {
+            Path socket = Files.createTempDirectory("jobs").resolve("coordinator.socket");
+            socket.toFile().deleteOnExit(); // the socket file outlives the channel, it has to be removed
+            socket.getParent().toFile().deleteOnExit();
+            return ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(UnixDomainSocketAddress.of(socket));
+        }
+
+        @Override
+        SocketChannel connect(String address) throws IOException {
+            return SocketChannel.open(UnixDomainSocketAddress.of(address));
+        }
+
+        @Override
+        String address(SocketAddress address) {
+            return ((UnixDomainSocketAddress) address).getPath().toString();
+        }
+    },
+
+    TCP {
+        @Override
+        ServerSocketChannel listen() throws IOException {
+            return ServerSocketChannel.open(StandardProtocolFamily.INET).bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        }
+
+        @Override
+        SocketChannel connect(String address) throws IOException {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // result frames are small, don't let Nagle hold them back
+            return channel;
+        }
+
+        @Override
+        String address(SocketAddress address) {
+            return String.valueOf(((InetSocketAddress) address).getPort());
+        }
+    };
+
+    static final int FRAME_HEADER = Integer.BYTES;
+    static final int CHUNK_HEADER = Long.BYTES + Integer.BYTES;
+    static final int RESULT_SIZE = Long.BYTES + Long.BYTES;
+
+    abstract ServerSocketChannel listen() throws IOException;
+
+    abstract SocketChannel connect(String address) throws IOException;
+
+    /**
+     * The address of a listening channel as a string a worker can be given on its command line: a path for UNIX, a port for TCP.
+     */
+    abstract String address(SocketAddress address);
+
+    /**
+     * Clears the buffer and leaves room for the frame length, which writeFrame() fills in.
+     */
+    static void startFrame(ByteBuffer buffer) {
+        buffer.clear().position(FRAME_HEADER);
+    }
+
+    static void writeFrame(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.putInt(0, buffer.position() - FRAME_HEADER).flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Reads exactly one frame into the buffer and leaves the buffer positioned at its first byte after the length. Never reads past the end of the
+     * frame, so a frame that was sent right behind it stays in the socket for the next call.
+     */
+    static ByteBuffer readFrame(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(FRAME_HEADER);
+        readFully(channel, buffer);
+        int length = buffer.getInt(0);
+        if(length < 0 || length > buffer.capacity() - FRAME_HEADER)
+            throw new IOException("frame of " + length + " bytes doesn't fit in a " + buffer.capacity() + " byte buffer");
+        buffer.limit(FRAME_HEADER + length);
+        readFully(channel, buffer);
+        return buffer.flip().position(FRAME_HEADER);
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining())
+            if(channel.read(buffer) < 0)
+                throw new EOFException("connection closed half way through a frame");
+    }
+}
@@ -0,0 +1,54 @@
+package sixteen;
+
+import loom.prerequisites.ListSummingRecursiveTask;
+import loom.prerequisites.LogSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The worker side of JobCoordinator, run in its own JVM: connects back to the coordinator, then sums every chunk of every job frame it receives with a
+ * ListSummingRecursiveTask on its own ForkJoinPool and answers with a result frame, until it gets a job frame with no chunks in it.
+ *
+ * Usage: JobWorker transport address bufferSize threshold
+ */
+public class JobWorker {
+
+    public static void main(String[] args) throws IOException {
+        JobTransport transport = JobTransport.valueOf(args[0]);
+        String address = args[1];
+        int bufferSize = Integer.parseInt(args[2]);
+        int threshold = Integer.parseInt(args[3]);
+
+        ByteBuffer in = ByteBuffer.allocateDirect(bufferSize);
+        ByteBuffer out = ByteBuffer.allocateDirect(bufferSize);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int[] chunk = new int[0]; // reused while the chunk length stays the same, which it does for all but the last chunk of a job
+
+        try(SocketChannel channel = transport.connect(address)) {
+            while(true) {
+                JobTransport.readFrame(channel, in);
+                int chunks = in.getInt();
+                if(chunks == 0)
+                    return;
+
+                JobTransport.startFrame(out);
+                out.putInt(chunks);
+                for(int i = 0; i < chunks; i++) {
+                    long id = in.getLong();
+                    int length = in.getInt();
+                    if(chunk.length != length)
+                        chunk = new int[length];
+                    in.asIntBuffer().get(chunk); // bulk copy out of the direct buffer
+                    in.position(in.position() + length * Integer.BYTES);
+
+                    int sum = pool.invoke(new ListSummingRecursiveTask("JobWorker", chunk, LogSink.discarding(), threshold));
+                    out.putLong(id).putLong(sum);
+                }
+                JobTransport.writeFrame(channel, out);
+            }
+        }
+    }
+}
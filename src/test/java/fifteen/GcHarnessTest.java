@@ -0,0 +1,75 @@
+package fifteen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Matcher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GcHarness.PAUSE against lines taken from real JDK 17 -Xlog:gc,gc+phases:file=...:uptime logs, one of every kind of pause each collector logged.
+ */
+class GcHarnessTest {
+
+    private static void assertPause(String line, String gcId, String name, String millis) {
+        Matcher matcher = GcHarness.PAUSE.matcher(line);
+        assertTrue(matcher.find(), () -> "no pause found in " + line);
+        assertEquals(gcId, matcher.group(1), line);
+        assertEquals(name, matcher.group(2), line);
+        assertEquals(millis, matcher.group(3), line);
+    }
+
+    @Test
+    void g1() {
+        assertPause("[0.055s] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 3M->3M(64M) 2.602ms", "0", "Pause Young", "2.602");
+        assertPause("[0.089s] GC(7) Pause Young (Concurrent Start) (G1 Evacuation Pause) 38M->36M(64M) 4.595ms", "7", "Pause Young", "4.595");
+        assertPause("[0.108s] GC(11) Pause Young (Normal) (G1 Preventive Collection) 55M->54M(64M) 2.707ms", "11", "Pause Young", "2.707");
+        assertPause("[0.108s] GC(9) Pause Remark 54M->32M(64M) 0.245ms", "9", "Pause Remark", "0.245");
+        assertPause("[0.112s] GC(9) Pause Cleanup 38M->38M(64M) 0.029ms", "9", "Pause Cleanup", "0.029");
+        assertPause("[0.115s] GC(13) Pause Young (Prepare Mixed) (G1 Evacuation Pause) 44M->44M(64M) 1.778ms", "13", "Pause Young", "1.778");
+        assertPause("[0.117s] GC(14) Pause Young (Mixed) (G1 Evacuation Pause) 50M->49M(64M) 1.656ms", "14", "Pause Young", "1.656");
+        assertPause("[0.226s] GC(64) Pause Full (G1 Compaction Pause) 62M->10M(40M) 2.791ms", "64", "Pause Full", "2.791");
+        assertPause("[1.552s] GC(676) Pause Full (System.gc()) 15M->10M(40M) 2.078ms", "676", "Pause Full", "2.078");
+    }
+
+    @Test
+    void parallel() {
+        assertPause("[0.079s] GC(0) Pause Young (Allocation Failure) 16M->10M(61M) 7.485ms", "0", "Pause Young", "7.485");
+        assertPause("[0.124s] GC(5) Pause Full (Ergonomics) 41M->10M(45M) 6.723ms", "5", "Pause Full", "6.723");
+        assertPause("[1.565s] GC(712) Pause Young (System.gc()) 32M->32M(57M) 1.674ms", "712", "Pause Young", "1.674");
+        assertPause("[1.570s] GC(713) Pause Full (System.gc()) 32M->10M(57M) 5.677ms", "713", "Pause Full", "5.677");
+    }
+
+    @Test
+    void z() {
+        assertPause("[0.119s] GC(0) Pause Mark Start 0.010ms", "0", "Pause Mark Start", "0.010");
+        assertPause("[0.122s] GC(0) Pause Mark End 0.013ms", "0", "Pause Mark End", "0.013");
+        assertPause("[0.129s] GC(0) Pause Relocate Start 0.010ms", "0", "Pause Relocate Start", "0.010");
+        assertFalse(GcHarness.PAUSE.matcher("[0.122s] GC(0) Concurrent Mark 2.831ms").find());
+        assertFalse(GcHarness.PAUSE.matcher("[0.133s] GC(0) Garbage Collection (Allocation Stall) 64M(100%)->44M(69%)").find());
+    }
+
+    @Test
+    void shenandoah() {
+        assertPause("[0.159s] GC(0) Pause Init Mark (unload classes) 0.013ms", "0", "Pause Init Mark", "0.013");
+        assertPause("[0.162s] GC(0) Pause Final Mark (unload classes) 0.036ms", "0", "Pause Final Mark", "0.036");
+        assertPause("[0.165s] GC(0) Pause Init Update Refs 0.009ms", "0", "Pause Init Update Refs", "0.009");
+        assertPause("[0.166s] GC(0) Pause Final Update Refs 0.012ms", "0", "Pause Final Update Refs", "0.012");
+        assertPause("[0.179s] GC(1) Pause Final Roots 0.003ms", "1", "Pause Final Roots", "0.003");
+        assertPause("[1.503s] GC(10) Pause Degenerated GC (Outside of Cycle) 60M->10M(64M) 2.420ms", "10", "Pause Degenerated GC", "2.420");
+    }
+
+    @Test
+    void everyPauseOfACycleIsCounted() {
+        double[] pauses = GcHarness.pauses(List.of(
+                "[0.119s] GC(0) Pause Mark Start 0.010ms",
+                "[0.122s] GC(0) Concurrent Mark 2.831ms",
+                "[0.122s] GC(0) Pause Mark End 0.013ms",
+                "[0.129s] GC(0) Pause Relocate Start 0.011ms"));
+        assertArrayEquals(new double[] { 0.010, 0.011, 0.013 }, pauses);
+    }
+}
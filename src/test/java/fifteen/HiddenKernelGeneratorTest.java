@@ -0,0 +1,124 @@
+package fifteen;
+
+import fifteen.HiddenKernelGenerator.DoubleKernel;
+import fifteen.HiddenKernelGenerator.IntKernel;
+import fifteen.HiddenKernelGenerator.LongKernel;
+import fifteen.HiddenKernelGenerator.Operation;
+import loom.prerequisites.ScalarKernels;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every generated kernel against its scalar counterpart, ScalarKernels where there is one and a plain loop for the rest, on ranges that are shorter
+ * than the unroll factor, aren't a multiple of it and don't start at 0, so the tail loop runs as well as the unrolled one. Integer results must match
+ * exactly, double ones to within a relative error that allows for the different order of additions across accumulators.
+ */
+class HiddenKernelGeneratorTest {
+
+    private static final HiddenKernelGenerator GENERATOR = new HiddenKernelGenerator(); // shared, each kernel is compiled once
+    private static final int[] LENGTHS = { 0, 1, 2, 7, 63, 64, 65, 1_000, 100_003 };
+
+    static List<Arguments> kernels() {
+        List<Arguments> kernels = new ArrayList<>();
+        for(Operation operation : Operation.values())
+            for(int unroll : new int[] { 1, 3, 8, 64 })
+                kernels.add(Arguments.of(operation, unroll));
+        return kernels;
+    }
+
+    @ParameterizedTest(name = "{0} x{1}")
+    @MethodSource("kernels")
+    void intKernelsMatchScalarKernels(Operation operation, int unroll) {
+        IntKernel kernel = GENERATOR.intKernel(operation, unroll);
+        for(int length : LENGTHS) {
+            SplittableRandom random = new SplittableRandom(length);
+            int[] a = random.ints(length).toArray(); // the whole int range, so sums and a[i] * p0 overflow an int
+            int from = length > 2 ? random.nextInt(3) : 0, to = length;
+            int threshold = random.nextInt();
+            long expected = switch(operation) {
+                case SUM -> ScalarKernels.sum(a, from, to);
+                case MASKED_COUNT -> ScalarKernels.countGreaterThan(a, from, to, threshold);
+                case MAP_REDUCE -> {
+                    long sum = 0;
+                    for(int i = from; i < to; i++)
+                        sum += a[i] * 3_000_000_000L + 7;
+                    yield sum;
+                }
+            };
+            long p0 = operation == Operation.MAP_REDUCE ? 3_000_000_000L : threshold;
+            assertEquals(expected, kernel.apply(a, from, to, p0, 7), length + " elements from " + from);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} x{1}")
+    @MethodSource("kernels")
+    void longKernelsMatchScalarKernels(Operation operation, int unroll) {
+        LongKernel kernel = GENERATOR.longKernel(operation, unroll);
+        for(int length : LENGTHS) {
+            SplittableRandom random = new SplittableRandom(length);
+            long[] a = random.longs(length).toArray(); // sums wrap around, the same way in any order
+            int from = length > 2 ? random.nextInt(3) : 0, to = length;
+            long p0 = random.nextLong(), p1 = random.nextLong();
+            long expected = switch(operation) {
+                case SUM -> ScalarKernels.sum(a, from, to);
+                case MASKED_COUNT, MAP_REDUCE -> {
+                    long sum = 0;
+                    for(int i = from; i < to; i++)
+                        sum += operation == Operation.MASKED_COUNT ? (a[i] > p0 ? 1 : 0) : a[i] * p0 + p1;
+                    yield sum;
+                }
+            };
+            assertEquals(expected, kernel.apply(a, from, to, p0, p1), length + " elements from " + from);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} x{1}")
+    @MethodSource("kernels")
+    void doubleKernelsMatchScalarKernels(Operation operation, int unroll) {
+        DoubleKernel kernel = GENERATOR.doubleKernel(operation, unroll);
+        for(int length : LENGTHS) {
+            SplittableRandom random = new SplittableRandom(length);
+            double[] a = random.doubles(length, -1_000, 1_000).toArray();
+            int from = length > 2 ? random.nextInt(3) : 0, to = length;
+            double p0 = random.nextDouble(-1, 1), p1 = random.nextDouble(-1, 1);
+            double expected = switch(operation) {
+                case SUM -> ScalarKernels.sum(a, from, to);
+                case MASKED_COUNT, MAP_REDUCE -> {
+                    double sum = 0;
+                    for(int i = from; i < to; i++)
+                        sum += operation == Operation.MASKED_COUNT ? (a[i] > p0 ? 1 : 0) : a[i] * p0 + p1;
+                    yield sum;
+                }
+            };
+            double actual = kernel.apply(a, from, to, p0, p1);
+            assertEquals(expected, actual, Math.max(1e-9, Math.abs(expected) * 1e-9), length + " elements from " + from);
+        }
+    }
+
+    @Test
+    void kernelsAreHiddenAndCached() {
+        HiddenKernelGenerator generator = new HiddenKernelGenerator();
+        IntKernel kernel = generator.intKernel(Operation.SUM, 4);
+        assertTrue(kernel.getClass().isHidden(), kernel.getClass().getName());
+        assertSame(kernel, generator.intKernel(Operation.SUM, 4));
+        generator.longKernel(Operation.SUM, 4);
+        assertEquals(2, generator.size());
+        generator.clear();
+        assertEquals(0, generator.size());
+        assertTrue(kernel != generator.intKernel(Operation.SUM, 4), "a new kernel after clear()");
+
+        assertThrows(IllegalArgumentException.class, () -> generator.intKernel(Operation.SUM, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.doubleKernel(Operation.SUM, 65));
+    }
+}
@@ -0,0 +1,83 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import loom.prerequisites.LeafKernel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Every filter and aggregation of a PersonTable, with each kernel, against a plain loop over the rows. The table is a few leaves long and doesn't end
+ * on a multiple of 64 rows, so leaves share no word of a filter's BitSet and the last word is only partly filled.
+ */
+class PersonTableTest {
+
+    private static final String[] NAMES = { "Dylan", "Alice", "Bob", "Chen", "Priya", "Olga", "Kofi", "Maria" };
+    private static final int ROWS = 100_003;
+
+    @ParameterizedTest
+    @EnumSource(LeafKernel.class)
+    void filtersAndAggregationsMatchALoop(LeafKernel kernel) {
+        assumeTrue(kernel.isAvailable(), kernel + " needs --add-modules jdk.incubator.vector");
+        PersonTable table = new PersonTable(ForkJoinPool.commonPool(), kernel);
+        SplittableRandom random = new SplittableRandom(42);
+        for(int i = 0; i < ROWS; i++)
+            table.append(NAMES[random.nextInt(NAMES.length)], random.nextInt(100), Gender.values()[random.nextInt(2)]);
+
+        BitSet over40 = new BitSet(), female = new BitSet();
+        long sum = 0;
+        for(int row = 0; row < table.size(); row++) {
+            over40.set(row, table.age(row) > 40);
+            female.set(row, table.gender(row) == Gender.FEMALE);
+            sum += table.age(row);
+        }
+        long expectedSum = sum;
+
+        assertAll(
+                () -> assertEquals(ROWS, table.size()),
+                () -> assertEquals(NAMES.length, table.distinctNames()),
+                () -> assertEquals(over40.cardinality(), table.countAgeGreaterThan(40)),
+                () -> assertEquals(female.cardinality(), table.countGender(Gender.FEMALE)),
+                () -> assertEquals(ROWS - female.cardinality(), table.countGender(Gender.MALE)),
+                () -> assertEquals(expectedSum, table.sumAges()),
+                () -> assertEquals((double) expectedSum / ROWS, table.averageAge(), 1e-9),
+                () -> assertEquals(over40, table.ageGreaterThan(40)),
+                () -> assertEquals(female, table.genderIs(Gender.FEMALE)),
+                () -> assertEquals(0, table.countAgeGreaterThan(Integer.MAX_VALUE)),
+                () -> assertEquals(ROWS, table.ageGreaterThan(-1).cardinality()));
+    }
+
+    @Test
+    void rowsReadBackAsPeople() {
+        PersonTable table = new PersonTable();
+        table.append("Dylan", 30, Gender.MALE);
+        int row = table.append("Alice", 41, Gender.FEMALE);
+        table.append("Dylan", 52, Gender.FEMALE);
+
+        assertEquals(1, row);
+        assertEquals(new JEP384.Person("Alice", 41, Gender.FEMALE), table.get(1));
+        assertEquals("Dylan", table.name(2));
+        assertEquals(2, table.distinctNames());
+        assertThrows(IllegalArgumentException.class, () -> table.append("Alien", -1, Gender.MALE));
+        assertEquals(3, table.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(3));
+    }
+
+    @Test
+    void emptyTable() {
+        PersonTable table = new PersonTable();
+        assertEquals(0, table.sumAges());
+        assertEquals(0, table.countGender(Gender.FEMALE));
+        assertEquals(new BitSet(), table.ageGreaterThan(0));
+        assertEquals(Double.NaN, table.averageAge());
+    }
+}
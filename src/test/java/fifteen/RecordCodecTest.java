@@ -0,0 +1,199 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+import fifteen.RecordCodec.ChannelReader;
+import fifteen.RecordCodec.ChannelWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import seventeen.JEP409.OnlyChild;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Records of every supported component type written and read back equal, through heap and direct buffers of both byte orders and through channels
+ * with buffers small enough to split records across refills, plus the records a codec refuses and the frames a reader refuses.
+ */
+class RecordCodecTest {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    record Primitives(boolean z, byte b, short s, char c, int i, long j, float f, double d) {}
+
+    record Nested(Person person, OnlyChild child, String note, Gender gender, Primitives primitives) {}
+
+    record Unsupported(List<String> list) {}
+
+    record ContainsItself(ContainsItself next) {}
+
+    record ContainsB(ContainsA a) {}
+
+    record ContainsA(ContainsB b) {}
+
+    private static final Primitives[] PRIMITIVES = {
+            new Primitives(false, (byte) 0, (short) 0, '\0', 0, 0, 0f, 0d),
+            new Primitives(true, Byte.MIN_VALUE, Short.MIN_VALUE, Character.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, -0f, -0d),
+            new Primitives(true, Byte.MAX_VALUE, Short.MAX_VALUE, Character.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Float.MAX_VALUE, Double.MAX_VALUE),
+            new Primitives(false, (byte) -1, (short) -1, '\u00e9', -1, -1, Float.NaN, Double.NaN),
+            new Primitives(true, (byte) 1, (short) 1, '\ud83d', 1, 1, Float.MIN_VALUE, Double.NEGATIVE_INFINITY),
+    };
+
+    private static final String[] NAMES = { "Dylan", "", "Zo\u00eb", "\u0141ukasz", "\u540d\u524d", "\ud83d\ude00 emoji", "x".repeat(300) };
+
+    private static List<Nested> nested() {
+        List<Nested> nested = new ArrayList<>();
+        for(int i = 0; i < 50; i++)
+            nested.add(new Nested(new Person(NAMES[i % NAMES.length], i, Gender.values()[i % 2]), new OnlyChild(i % 3 == 0 ? null : NAMES[i % 4]),
+                    i % 5 == 0 ? null : "note " + i, Gender.values()[(i + 1) % 2], PRIMITIVES[i % PRIMITIVES.length]));
+        return nested;
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void everyComponentTypeSurvivesTheRoundTrip(boolean direct) {
+        RecordCodec<Nested> codec = RecordCodec.of(Nested.class, LOOKUP);
+        for(ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            ByteBuffer buffer = (direct ? ByteBuffer.allocateDirect(1 << 16) : ByteBuffer.allocate(1 << 16)).order(order);
+            for(Nested record : nested())
+                codec.write(record, buffer);
+            buffer.flip();
+            for(Nested record : nested())
+                assertEquals(record, codec.read(buffer), order.toString());
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+    /**
+     * Floats and doubles go through as raw bits, so NaN and -0.0 come back as they went in, which equals() on the record checks with
+     * Float.compare().
+     */
+    @Test
+    void primitivesKeepTheirBits() {
+        RecordCodec<Primitives> codec = RecordCodec.of(Primitives.class, LOOKUP);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for(Primitives record : PRIMITIVES)
+            codec.write(record, buffer);
+        buffer.flip();
+        for(Primitives record : PRIMITIVES) {
+            Primitives read = codec.read(buffer);
+            assertEquals(record, read);
+            assertEquals(Double.doubleToRawLongBits(record.d()), Double.doubleToRawLongBits(read.d()));
+        }
+    }
+
+    /**
+     * Person overrides name() and checks its age in the constructor: the encoding holds the field, not what name() returns, and decoding goes through
+     * the constructor, so an age made negative in the bytes is refused.
+     */
+    @Test
+    void fieldsOutConstructorIn() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class, LOOKUP);
+        assertSame(codec, RecordCodec.of(Person.class, LOOKUP));
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.write(new Person("Kim", 30, Gender.FEMALE), buffer);
+        assertEquals(4 + 4 + 3 + 4 + 1, buffer.position()); // frame, name length, name, age, gender
+        buffer.flip();
+        Person read = codec.read(buffer);
+        assertEquals(new Person("Kim", 30, Gender.FEMALE), read);
+        assertEquals("name -> Kim", read.name());
+
+        buffer.putInt(11, -1).rewind();
+        assertThrows(IllegalArgumentException.class, () -> codec.read(buffer));
+    }
+
+    @Test
+    void unpairedSurrogatesBecomeQuestionMarks() {
+        RecordCodec<OnlyChild> codec = RecordCodec.of(OnlyChild.class, LOOKUP);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.write(new OnlyChild("a\ud800b\udc00"), buffer);
+        buffer.flip();
+        assertEquals(new OnlyChild("a?b?"), codec.read(buffer));
+    }
+
+    @Test
+    void recordsTheCodecRefuses() {
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(Unsupported.class, LOOKUP));
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(ContainsItself.class, LOOKUP));
+        assertThrows(IllegalArgumentException.class, () -> RecordCodec.of(ContainsA.class, LOOKUP));
+
+        RecordCodec<Nested> codec = RecordCodec.of(Nested.class, LOOKUP);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertThrows(NullPointerException.class, () -> codec.write(new Nested(null, new OnlyChild(""), "", Gender.MALE, PRIMITIVES[0]), buffer));
+        assertThrows(NullPointerException.class, () -> codec.write(new Nested(new Person("", 0, null), new OnlyChild(""), "", Gender.MALE,
+                PRIMITIVES[0]), buffer));
+    }
+
+    @Test
+    void aRecordThatDoesNotFitLeavesTheBufferAsItWas() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class, LOOKUP);
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        buffer.put((byte) 7);
+        assertThrows(BufferOverflowException.class, () -> codec.write(new Person("a long enough name", 1, Gender.MALE), buffer));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    void aFrameOfTheWrongLengthIsCorrupt() {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class, LOOKUP);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.write(new Person("Kim", 30, Gender.FEMALE), buffer);
+        buffer.flip();
+        buffer.putInt(0, buffer.getInt(0) + 1);
+        assertThrows(IllegalStateException.class, () -> codec.read(buffer));
+    }
+
+    /**
+     * Buffers barely bigger than the biggest record, so almost every read() has to compact and refill, and a write() has to flush.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 400, 401, 500, 1 << 16 })
+    void channelsRoundTrip(int bufferSize) throws IOException {
+        RecordCodec<Nested> codec = RecordCodec.of(Nested.class, LOOKUP);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ChannelWriter<Nested> writer = codec.writer(Channels.newChannel(bytes), bufferSize)) {
+            for(Nested record : nested())
+                writer.write(record);
+            assertEquals(nested().size(), writer.count());
+        }
+
+        ChannelReader<Nested> reader = codec.reader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), bufferSize);
+        List<Nested> read = new ArrayList<>();
+        for(Nested record; (record = reader.read()) != null; )
+            read.add(record);
+        assertEquals(nested(), read);
+        assertNull(reader.read());
+    }
+
+    @Test
+    void channelErrors() throws IOException {
+        RecordCodec<Person> codec = RecordCodec.of(Person.class, LOOKUP);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ChannelWriter<Person> writer = codec.writer(Channels.newChannel(bytes), 32)) {
+            writer.write(new Person("Kim", 30, Gender.FEMALE));
+            assertThrows(IOException.class, () -> writer.write(new Person("x".repeat(100), 30, Gender.FEMALE)));
+        }
+        byte[] written = bytes.toByteArray();
+        assertEquals(16, written.length);
+
+        assertThrows(EOFException.class, () -> codec.reader(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(written, 2))), 32).read());
+        assertThrows(EOFException.class, () -> codec.reader(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(written, 10))), 32).read());
+        assertThrows(IOException.class, () -> codec.reader(Channels.newChannel(new ByteArrayInputStream(written)), 8).read());
+    }
+}
@@ -0,0 +1,182 @@
+package fifteen;
+
+import fifteen.JEP384.Gender;
+import fifteen.JEP384.Person;
+import fifteen.TextTemplate.Escaping;
+import fifteen.TextTemplate.Renderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Every way of rendering against String.replace() on the template, with values that need escaping, chars outside ASCII (two and three byte ones, a
+ * surrogate pair and an unpaired surrogate) and numbers at the ends of the long range, plus the errors of compiling, binding and writing.
+ */
+class TextTemplateTest {
+
+    private static final String ROW = """
+            <tr><td>{{name}}</td><td>{{age}}</td><td>{{gender}}</td><td>{{name}}</td></tr>
+            """;
+    private static final String[] NAMES = { "Dylan", "Alice & Bob", "<script>'\"", "Zo\u00eb", "\u540d\u524d", "\ud83d\ude00", "lone \uD800 surrogate", "" };
+
+    private static final Renderer<Person> RENDERER = TextTemplate.compile(ROW, Escaping.HTML).<Person>bind()
+            .slot("name", (person, out) -> out.text(person.name()))
+            .slot("age", (person, out) -> out.number(person.age()))
+            .slot("gender", (person, out) -> out.raw(person.gender().name()))
+            .build();
+
+    private static List<Person> people(int count) {
+        List<Person> people = new ArrayList<>(count);
+        for(int i = 0; i < count; i++)
+            people.add(new Person(NAMES[i % NAMES.length], i % 120, Gender.values()[i % 2]));
+        return people;
+    }
+
+    private static String replaced(Person person) {
+        String name = person.name().replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;").replace("'", "&#39;");
+        return ROW.replace("{{name}}", name).replace("{{age}}", String.valueOf(person.age())).replace("{{gender}}", person.gender().name());
+    }
+
+    private static String replaced(List<Person> people) {
+        StringBuilder expected = new StringBuilder();
+        for(Person person : people)
+            expected.append(replaced(person));
+        return expected.toString();
+    }
+
+    @Test
+    void everyRowRendersLikeStringReplace() throws IOException {
+        for(Person person : people(NAMES.length * 2)) {
+            String expected = replaced(person);
+
+            StringWriter writer = new StringWriter();
+            RENDERER.render(person, writer);
+            assertEquals(expected, writer.toString());
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            RENDERER.render(person, stream);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), stream.toByteArray(), person.name());
+
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            RENDERER.render(person, buffer);
+            assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), Arrays.copyOf(buffer.array(), buffer.position()), person.name());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 255, 256, 257, 10_000 }) // around the size of a chunk, and enough chunks to fill the parallel window
+    void renderAllRendersLikeStringReplace(int count) throws IOException {
+        List<Person> people = people(count);
+        String expected = replaced(people);
+
+        StringWriter writer = new StringWriter();
+        RENDERER.renderAll(people, writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        RENDERER.renderAll(people, sequential);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), sequential.toByteArray());
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        RENDERER.renderAll(people, parallel, ForkJoinPool.commonPool());
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), parallel.toByteArray());
+    }
+
+    @Test
+    void numbersAndEscaping() throws IOException {
+        Renderer<Long> numbers = TextTemplate.compile("{{n}}", Escaping.NONE).<Long>bind().slot("n", (n, out) -> out.number(n)).build();
+        for(long n : new long[] { 0, 9, 10, -1, 1_000_000_007, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            StringWriter writer = new StringWriter();
+            numbers.render(n, writer);
+            assertEquals(Long.toString(n), writer.toString());
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            numbers.render(n, stream);
+            assertEquals(Long.toString(n), stream.toString(StandardCharsets.UTF_8));
+        }
+
+        Renderer<String> json = TextTemplate.compile("{\"value\": \"{{v}}\", \"raw\": {{r}}}", Escaping.JSON).<String>bind()
+                .slot("v", (v, out) -> out.text(v))
+                .slot("r", (v, out) -> out.raw("\"<&>\""))
+                .build();
+        StringWriter writer = new StringWriter();
+        json.render("a\"b\\c\nd\te\u0001 <&>", writer);
+        assertEquals("{\"value\": \"a\\\"b\\\\c\\nd\\te\\u0001 <&>\", \"raw\": \"<&>\"}", writer.toString());
+
+        Renderer<String> none = TextTemplate.compile("<{{v}}>", Escaping.NONE).<String>bind().slot("v", (v, out) -> out.text(v)).build();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        none.render("<&>", stream);
+        none.render(null, stream);
+        assertEquals("<<&>><>", stream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void longLiteralsGoStraightToTheWriter() throws IOException {
+        String literal = "x".repeat(20_000);
+        Renderer<String> renderer = TextTemplate.compile(literal + "{{v}}" + literal, Escaping.HTML).<String>bind()
+                .slot("v", (v, out) -> out.text(v))
+                .build();
+        StringWriter writer = new StringWriter();
+        renderer.renderAll(List.of("<", ">"), writer);
+        assertEquals(literal + "&lt;" + literal + literal + "&gt;" + literal, writer.toString());
+    }
+
+    @Test
+    void aRowTooBigForTheBufferLeavesItAsItWas() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) 1);
+        assertThrows(BufferOverflowException.class, () -> RENDERER.render(new Person("Dylan", 30, Gender.MALE), buffer));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    void compileAndBindErrors() {
+        assertThrows(IllegalArgumentException.class, () -> TextTemplate.compile("{{name", Escaping.NONE));
+        assertThrows(IllegalArgumentException.class, () -> TextTemplate.compile("{{ }}", Escaping.NONE));
+        assertEquals(List.of("name", "age", "gender", "name"), TextTemplate.compile(ROW, Escaping.HTML).slotNames());
+
+        TextTemplate template = TextTemplate.compile("{{a}} {{b}}", Escaping.NONE);
+        assertThrows(IllegalArgumentException.class, () -> template.<String>bind().slot("c", (v, out) -> out.text(v)));
+        assertThrows(IllegalStateException.class, () -> template.<String>bind().slot("a", (v, out) -> out.text(v)).build());
+    }
+
+    /**
+     * The last flush is where a short render first reaches the Writer, its failure has to come out as the IOException render() declares.
+     */
+    @Test
+    void writerFailuresAreIOExceptions() {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Person person = new Person("Dylan", 30, Gender.MALE);
+        assertEquals("disk full", assertThrows(IOException.class, () -> RENDERER.render(person, failing)).getMessage());
+        assertEquals("disk full", assertThrows(IOException.class, () -> RENDERER.renderAll(List.of(person), failing)).getMessage());
+        assertEquals("disk full", assertThrows(IOException.class, () -> RENDERER.renderAll(people(1_000), failing)).getMessage());
+    }
+}
@@ -0,0 +1,95 @@
+package loom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The deque on its own: LIFO for the owner, FIFO for thieves, growing past its initial capacity, and the race it exists for, one owner pushing and
+ * popping while thieves steal, in which every element has to be taken exactly once, never lost and never twice.
+ */
+class ChaseLevDequeTest {
+
+    @Test
+    void ownerPopsLastInThievesStealFirstIn() {
+        ChaseLevDeque<Integer> deque = new ChaseLevDeque<>();
+        assertNull(deque.pop());
+        assertNull(deque.steal());
+        for(int i = 0; i < 1000; i++) // past the initial capacity, so the array grows a few times
+            deque.push(i);
+        assertEquals(1000, deque.size());
+
+        assertEquals(0, deque.steal());
+        assertEquals(999, deque.pop());
+        assertEquals(1, deque.steal());
+        assertEquals(998, deque.pop());
+        for(int i = 997; i >= 2; i--)
+            assertEquals(i, deque.pop());
+        assertTrue(deque.isEmpty());
+        assertNull(deque.pop());
+        assertNull(deque.steal());
+
+        deque.push(42); // the indexes keep growing after the deque emptied
+        assertEquals(42, deque.steal());
+        assertNull(deque.pop());
+    }
+
+    /**
+     * The owner pushes every element and pops some back, as a worker does running its own tasks, while the thieves steal all they can. Pops are
+     * spread out (every popEvery pushes) so that the deque is often down to its last element, where the owner and a thief race for the same one.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 64 })
+    void everyElementIsTakenExactlyOnce(int popEvery) throws InterruptedException {
+        int elements = 200_000, thieves = 3;
+        ChaseLevDeque<Integer> deque = new ChaseLevDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(elements);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch ownerDone = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < thieves; t++)
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch(InterruptedException e) {
+                    return;
+                }
+                while(ownerDone.getCount() > 0 || !deque.isEmpty()) {
+                    Integer element = deque.steal();
+                    if(element != null)
+                        taken.incrementAndGet(element);
+                }
+            }));
+        threads.forEach(Thread::start);
+
+        start.countDown();
+        for(int i = 0; i < elements; i++) {
+            deque.push(i);
+            if(i % popEvery == 0) {
+                Integer element = deque.pop();
+                if(element != null)
+                    taken.incrementAndGet(element);
+            }
+        }
+        for(Integer element; (element = deque.pop()) != null || !deque.isEmpty(); )
+            if(element != null)
+                taken.incrementAndGet(element);
+        ownerDone.countDown();
+        for(Thread thread : threads)
+            thread.join(30_000);
+
+        for(int i = 0; i < elements; i++)
+            assertEquals(1, taken.get(i), "times element " + i + " was taken");
+        assertTrue(deque.isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+package loom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * When a call makes another attempt, and when it doesn't: after the delay once the histogram has enough latencies to read it from, straight away
+ * after a failure whether it has or not, and never past maxAttempts or the timeout.
+ */
+class HedgedRequestsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * A histogram whose 95th percentile is about the given latency.
+     */
+    private static LatencyHistogram latencies(long millis) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        for(int i = 0; i < HedgedRequests.MIN_SAMPLES; i++)
+            latencies.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        return latencies;
+    }
+
+    /**
+     * A request whose attempts, counted from 1, do what the given attempt says.
+     */
+    private static Callable<Integer> attempts(AtomicInteger attempts, Attempt attempt) {
+        return () -> attempt.call(attempts.incrementAndGet());
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        Integer call(int attempt) throws Exception;
+    }
+
+    @Test
+    void aSlowAttemptIsHedgedAfterTheDelay() {
+        HedgedRequests hedging = new HedgedRequests(latencies(10), 0.95, 2);
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        int answer = assertTimeoutPreemptively(TIMEOUT, () -> hedging.call(attempts(attempts, attempt -> {
+            if(attempt == 1)
+                Thread.sleep(TIMEOUT.toMillis()); // cancelled once the hedge answers
+            return attempt;
+        })));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(2, answer);
+        assertEquals(1, hedging.hedges());
+        assertTrue(millis >= 9 && millis < 5_000, millis + " ms");
+    }
+
+    @Test
+    void aQuickAnswerIsNotHedged() {
+        HedgedRequests hedging = new HedgedRequests(latencies(1_000), 0.95, 3); // long enough for a thread to start on a busy machine
+        AtomicInteger attempts = new AtomicInteger();
+        assertEquals(1, assertTimeoutPreemptively(TIMEOUT, () -> hedging.call(attempts(attempts, attempt -> attempt))));
+        assertEquals(0, hedging.hedges());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void noHedgingUntilThereAreEnoughLatencies() {
+        HedgedRequests hedging = new HedgedRequests(new LatencyHistogram(), 0.95, 2);
+        assertEquals(Long.MAX_VALUE, hedging.hedgeDelayNanos());
+        AtomicInteger attempts = new AtomicInteger();
+        assertEquals(1, assertTimeoutPreemptively(TIMEOUT, () -> hedging.call(attempts(attempts, attempt -> {
+            Thread.sleep(100);
+            return attempt;
+        }))));
+        assertEquals(0, hedging.hedges());
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * The first attempt fails long before the delay, which is infinite here: the second is made at once rather than the call failing with an
+     * attempt to spare.
+     */
+    @Test
+    void aFailedAttemptIsRetriedWithoutWaitingForTheDelay() {
+        HedgedRequests hedging = new HedgedRequests(new LatencyHistogram(), 0.95, 2);
+        AtomicInteger attempts = new AtomicInteger();
+        int answer = assertTimeoutPreemptively(TIMEOUT, () -> hedging.call(attempts(attempts, attempt -> {
+            if(attempt == 1)
+                throw new IOException("replica down");
+            return attempt;
+        })));
+        assertEquals(2, answer);
+        assertEquals(1, hedging.hedges());
+    }
+
+    @Test
+    void everyAttemptFailing() {
+        HedgedRequests hedging = new HedgedRequests(latencies(10), 0.95, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        ExecutionException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(ExecutionException.class,
+                () -> hedging.call(attempts(attempts, attempt -> { throw new IOException("attempt " + attempt); }))));
+        assertEquals(3, attempts.get());
+        assertEquals("attempt 1", thrown.getCause().getMessage());
+        assertEquals(2, thrown.getSuppressed().length);
+        assertEquals(2, hedging.hedges());
+    }
+
+    @Test
+    void oneAttemptIsNoHedging() {
+        HedgedRequests hedging = new HedgedRequests(latencies(10), 0.95, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(ExecutionException.class,
+                () -> hedging.call(attempts(attempts, attempt -> { throw new IOException("attempt " + attempt); }))));
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedging.hedges());
+    }
+
+    @Test
+    void theTimeoutBoundsEveryAttempt() {
+        HedgedRequests hedging = new HedgedRequests(latencies(10), 0.95, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(TimeoutException.class, () -> hedging.call(attempts(attempts, attempt -> {
+            Thread.sleep(TIMEOUT.toMillis());
+            return attempt;
+        }), Duration.ofMillis(100))));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis >= 99 && millis < 5_000, millis + " ms");
+        assertTrue(attempts.get() >= 2 && attempts.get() <= 3, attempts.get() + " attempts"); // the third may not make it in a busy 100ms
+        assertEquals(1, hedging.calls());
+    }
+
+    @Test
+    void argumentsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new HedgedRequests(new LatencyHistogram(), 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new HedgedRequests(new LatencyHistogram(), 1.5, 2));
+        assertThrows(IllegalArgumentException.class, () -> new HedgedRequests(new LatencyHistogram(), 0.95, 0));
+    }
+}
@@ -0,0 +1,221 @@
+package loom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Both policies, the deadline, a nested scope's deadline and cancellation travelling into it, and forking after a shutdown, against a SlowService
+ * whose calls take a second unless they're cancelled. Every test checks that the calls it expects cancelled were, and that none is left in flight
+ * once its scope is closed; the preemptive timeouts fail a test whose cancelled calls ran to the end instead.
+ */
+class StructuredScopeTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final SlowService slow = new SlowService(1_000, 1_000, 0);
+
+    @Test
+    void allSuccessfulReturnsEveryResultInForkOrder() {
+        SlowService fast = new SlowService(1, 20, 0.5);
+        List<Integer> results = assertTimeoutPreemptively(TIMEOUT, () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful()) {
+                for(int i = 0; i < 10; i++) {
+                    int key = i;
+                    scope.fork(() -> fast.call(key));
+                }
+                return scope.join();
+            }
+        });
+        assertEquals(List.of(0, 2, 4, 6, 8, 10, 12, 14, 16, 18), results);
+        assertEquals(0, fast.inFlight());
+    }
+
+    @Test
+    void aFailureCancelsTheOthersAndIsTheCause() {
+        StructuredScope.Subtask<Integer> call = assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful()) {
+                StructuredScope.Subtask<Integer> first = scope.fork(() -> slow.call(1));
+                scope.fork(() -> {
+                    Thread.sleep(20); // long enough for the first call to have started
+                    throw new IOException("shard down");
+                });
+                ExecutionException thrown = assertThrows(ExecutionException.class, scope::join);
+                assertEquals("shard down", thrown.getCause().getMessage());
+                return first;
+            }
+        });
+        assertEquals(StructuredScope.State.CANCELLED, call.state());
+        assertEquals(0, slow.inFlight());
+        assertEquals(1, slow.cancelled());
+    }
+
+    @Test
+    void firstSuccessSkipsFailuresAndCancelsTheSlow() {
+        int answer = assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, Integer> scope = StructuredScope.firstSuccess()) {
+                scope.fork(() -> { throw new IOException("replica down"); });
+                scope.fork(() -> slow.call(1));
+                scope.fork(() -> new SlowService(20, 20, 0).call(21));
+                return scope.join();
+            }
+        });
+        assertEquals(42, answer);
+        assertEquals(0, slow.inFlight());
+        assertEquals(1, slow.cancelled());
+    }
+
+    @Test
+    void firstSuccessFailsOnceEverySubtaskHas() {
+        ExecutionException thrown = assertTimeoutPreemptively(TIMEOUT, () -> {
+            try(StructuredScope<Integer, Integer> scope = StructuredScope.firstSuccess()) {
+                scope.fork(() -> { throw new IOException("replica down"); });
+                scope.fork(() -> {
+                    Thread.sleep(20);
+                    throw new IOException("other replica down");
+                });
+                return assertThrows(ExecutionException.class, scope::join);
+            }
+        });
+        assertEquals("replica down", thrown.getCause().getMessage());
+        assertEquals(1, thrown.getSuppressed().length);
+        assertEquals("other replica down", thrown.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void theDeadlineCancelsEverything() {
+        long start = System.nanoTime();
+        assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful(Duration.ofMillis(50))) {
+                for(int i = 0; i < 3; i++)
+                    scope.fork(() -> slow.call(1));
+                assertThrows(TimeoutException.class, scope::join);
+                assertTrue(scope.isShutdown());
+            }
+        });
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, slow.inFlight());
+        assertEquals(3, slow.cancelled());
+    }
+
+    /**
+     * A scope opened by a subtask asks for ten seconds and gets what's left of its parent's 50ms. The two deadlines are the same instant, so either
+     * join() can notice first: the outer one with a TimeoutException of its own, or the inner one, which fails the subtask with one.
+     */
+    @Test
+    void aNestedScopeNeverOutlivesItsParentsDeadline() {
+        long[] innerNanos = new long[1];
+        Exception thrown = assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful(Duration.ofMillis(50))) {
+                scope.fork(() -> {
+                    try(StructuredScope<Integer, Integer> inner = StructuredScope.firstSuccess(Duration.ofSeconds(10))) {
+                        innerNanos[0] = inner.nanosUntilDeadline();
+                        inner.fork(() -> slow.call(1));
+                        return inner.join();
+                    }
+                });
+                return assertThrows(Exception.class, scope::join);
+            }
+        });
+        assertTrue(thrown instanceof TimeoutException || thrown.getCause() instanceof TimeoutException, thrown.toString());
+        assertTrue(innerNanos[0] > 0 && innerNanos[0] <= TimeUnit.MILLISECONDS.toNanos(50), innerNanos[0] + " ns");
+        assertEquals(0, slow.inFlight());
+        assertEquals(1, slow.cancelled());
+    }
+
+    /**
+     * Shutting the outer scope down interrupts its subtask in the middle of its inner join(), and closing the inner scope cancels the inner call in
+     * turn.
+     */
+    @Test
+    void cancellationTravelsIntoANestedScope() {
+        CountDownLatch started = new CountDownLatch(1);
+        long[] remainingNanos = new long[1];
+        StructuredScope.Subtask<Integer> nested = assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful()) {
+                StructuredScope.Subtask<Integer> subtask = scope.fork(() -> {
+                    remainingNanos[0] = StructuredScope.remainingNanos();
+                    try(StructuredScope<Integer, Integer> inner = StructuredScope.firstSuccess()) {
+                        inner.fork(() -> {
+                            started.countDown();
+                            return slow.call(1);
+                        });
+                        return inner.join();
+                    }
+                });
+                started.await();
+                Thread.sleep(20); // long enough for the inner call to have started
+                scope.shutdown();
+                assertThrows(CancellationException.class, scope::join);
+                return subtask;
+            }
+        });
+        assertTrue(remainingNanos[0] > TimeUnit.DAYS.toNanos(365), "no deadline, " + remainingNanos[0] + " ns");
+        assertEquals(StructuredScope.State.CANCELLED, nested.state());
+        assertEquals(0, slow.inFlight());
+        assertEquals(1, slow.cancelled());
+        assertEquals(Long.MAX_VALUE, StructuredScope.remainingNanos(), "outside of any scope");
+    }
+
+    @Test
+    void forkingAfterAShutdownStartsNothing() {
+        assertTimeoutPreemptively(Duration.ofMillis(900), () -> {
+            try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful()) {
+                scope.fork(() -> slow.call(1));
+                scope.shutdown();
+                scope.shutdown(); // any number of times
+                StructuredScope.Subtask<Integer> late = scope.fork(() -> slow.call(1));
+                assertEquals(StructuredScope.State.CANCELLED, late.state());
+                assertThrows(CancellationException.class, scope::join);
+            }
+        });
+        assertTrue(slow.calls() <= 1, "the late fork never ran");
+        assertEquals(0, slow.inFlight());
+    }
+
+    @Test
+    void awaitOutcomeReturnsOnceTheOutcomeIsKnown() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try(StructuredScope<Integer, Integer> scope = StructuredScope.firstSuccess()) {
+                scope.fork(() -> slow.call(1));
+                assertFalse(scope.awaitOutcome(20, TimeUnit.MILLISECONDS), "still running");
+                scope.fork(() -> { throw new IOException("replica down"); });
+                assertFalse(scope.awaitOutcome(20, TimeUnit.MILLISECONDS), "one failed, the other may still answer");
+                scope.fork(() -> 7);
+                assertTrue(scope.awaitOutcome(1, TimeUnit.MINUTES));
+                assertEquals(7, scope.join());
+            }
+        });
+        assertEquals(0, slow.inFlight());
+    }
+
+    @Test
+    void onlyTheOwnerForks() throws Exception {
+        try(StructuredScope<Integer, List<Integer>> scope = StructuredScope.allSuccessful()) {
+            Throwable[] thrown = new Throwable[1];
+            Thread other = new Thread(() -> {
+                try {
+                    scope.fork(() -> 1);
+                } catch(Throwable t) {
+                    thrown[0] = t;
+                }
+            });
+            other.start();
+            other.join();
+            assertTrue(thrown[0] instanceof IllegalStateException, String.valueOf(thrown[0]));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package loom;
+
+import loom.WorkStealingExecutor.ForkJoinRangeSum;
+import loom.WorkStealingExecutor.IdleStrategy;
+import loom.WorkStealingExecutor.RangeSum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The executor with every idle strategy: fork/join sums, plain tasks from outside, exceptions and results coming back out, and the two ways of shutting
+ * down. shutdown() lets everything queued run, shutdownNow() cancels what's queued, and nothing joining a task is left waiting after either.
+ */
+class WorkStealingExecutorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int[] ARRAY = new SplittableRandom(42).ints(1_000_003, -1_000, 1_000).toArray();
+    private static final long SUM = Arrays.stream(ARRAY).asLongStream().sum();
+
+    @ParameterizedTest
+    @EnumSource(IdleStrategy.class)
+    void sumsMatchASequentialSum(IdleStrategy idleStrategy) throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(3, idleStrategy);
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            for(int leafSize : new int[] { 1, 16, 1000, 65_536, ARRAY.length })
+                assertEquals(SUM, executor.invoke(new RangeSum(ARRAY, 0, ARRAY.length, leafSize)), "leaf size " + leafSize);
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void theForkJoinPoolTwinSumsTheSame() {
+        for(int leafSize : new int[] { 1, 16, 65_536 })
+            assertEquals(SUM, ForkJoinPool.commonPool().invoke(new ForkJoinRangeSum(ARRAY, 0, ARRAY.length, leafSize)), "leaf size " + leafSize);
+    }
+
+    @ParameterizedTest
+    @EnumSource(IdleStrategy.class)
+    void shutdownRunsEverythingQueued(IdleStrategy idleStrategy) throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(2, idleStrategy);
+        AtomicInteger ran = new AtomicInteger();
+        for(int i = 0; i < 10_000; i++)
+            executor.execute(ran::incrementAndGet);
+        executor.shutdown();
+
+        assertTrue(executor.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(ran::incrementAndGet));
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        assertEquals(10_000, ran.get());
+    }
+
+    @Test
+    void exceptionsAndResultsComeBackOut() throws Exception {
+        WorkStealingExecutor executor = new WorkStealingExecutor(2, IdleStrategy.SPIN_THEN_PARK);
+        StealingTask<Void> failing = new StealingTask<>() {
+            @Override
+            protected Void compute() {
+                throw new IllegalStateException("expected");
+            }
+        };
+        assertEquals("expected", assertThrows(IllegalStateException.class, () -> executor.invoke(failing)).getMessage());
+        assertEquals("expected", assertThrows(IllegalStateException.class, failing::join).getMessage()); // and again, it's kept
+        assertEquals("done", executor.submit(() -> "done").get(10, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> new RangeSum(ARRAY, 0, 10, 1).fork()); // not from a worker
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * One worker, kept busy, so that everything submitted after stays queued: shutdownNow() hands those back cancelled, and a thread already joining
+     * one of them gets its CancellationException rather than waiting forever.
+     */
+    @Test
+    void shutdownNowCancelsQueuedTasks() throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(1, IdleStrategy.PARK);
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.execute(() -> {
+            busy.countDown();
+            try {
+                new CountDownLatch(1).await(); // until shutdownNow() interrupts it
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        busy.await();
+
+        List<RangeSum> queued = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            RangeSum task = new RangeSum(ARRAY, 0, ARRAY.length, 1000);
+            executor.execute(task);
+            queued.add(task);
+        }
+        AtomicInteger cancelledJoins = new AtomicInteger();
+        Thread joiner = new Thread(() -> {
+            try {
+                queued.get(0).join();
+            } catch(CancellationException e) {
+                cancelledJoins.incrementAndGet();
+            }
+        });
+        joiner.start();
+
+        List<Runnable> neverRan = executor.shutdownNow();
+        assertEquals(queued, neverRan);
+        for(RangeSum task : queued) {
+            assertTrue(task.isDone());
+            assertThrows(CancellationException.class, task::join);
+        }
+        joiner.join(TIMEOUT.toMillis());
+        assertEquals(1, cancelledJoins.get());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A task running in the only worker forks children and joins them. The first child it runs blocks until shutdownNow() interrupts it, by which time
+     * the other children are cancelled and taken off the deque: the worker's join() has to stop helping and give up, and the thread outside joining
+     * the root task has to get an answer.
+     */
+    @Test
+    void joinsReturnAfterShutdownNow() throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(1, IdleStrategy.SPIN_THEN_PARK);
+        CountDownLatch blocked = new CountDownLatch(1);
+        int children = 8;
+        StealingTask<Integer> root = new StealingTask<>() {
+            @Override
+            protected Integer compute() {
+                List<StealingTask<Integer>> forked = new ArrayList<>();
+                for(int i = 0; i < children; i++) {
+                    boolean blocks = i == children - 1; // popped first
+                    forked.add(new StealingTask<Integer>() {
+                        @Override
+                        protected Integer compute() {
+                            if(blocks) {
+                                blocked.countDown();
+                                try {
+                                    new CountDownLatch(1).await();
+                                } catch(InterruptedException e) {
+                                    throw new IllegalStateException("interrupted by shutdownNow()");
+                                }
+                            }
+                            return 1;
+                        }
+                    }.fork());
+                }
+                int sum = 0;
+                for(StealingTask<Integer> child : forked)
+                    sum += child.join();
+                return sum;
+            }
+        };
+        executor.execute(root);
+        blocked.await();
+
+        List<Runnable> neverRan = executor.shutdownNow();
+        assertEquals(children - 1, neverRan.size());
+        assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(CancellationException.class, root::join, "the root joins a cancelled child first"));
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,269 @@
+package loom.prerequisites;
+
+import loom.prerequisites.BatchSummingProcessor.Total;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * The processor driven by hand from both ends, so that what upstream is asked for and what downstream is sent can be checked after every step: totals
+ * against sums computed here, in arrival order even when later batches finish first, demand passed on one batch per total taken, and errors from
+ * upstream, from downstream's request() and from downstream's onNext() ending the stream rather than hanging it. Every wait is bounded.
+ */
+class BatchSummingProcessorTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Upstream's side: counts what the processor requests, and whether it cancelled.
+     */
+    private static final class Upstream implements Flow.Subscription {
+        final AtomicLong requested = new AtomicLong();
+        volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Downstream's side: keeps every total and how the stream ended, requesting only when told to.
+     */
+    private static class Downstream implements Flow.Subscriber<Total> {
+        final List<Total> totals = new CopyOnWriteArrayList<>();
+        final CountDownLatch ended = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Total total) {
+            totals.add(total);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            ended.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            ended.countDown();
+        }
+
+        void awaitEnd() throws InterruptedException {
+            assertTrue(ended.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "the stream never ended");
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while(!condition.getAsBoolean()) {
+            if(System.nanoTime() > deadline)
+                fail("timed out waiting for " + what);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Batches of very different sizes, so that small ones finish while big ones before them are still being summed: totals still come out in the
+     * order the batches went in, with the running total and the window of each computed from the batches before it.
+     */
+    @Test
+    void totalsMatchIndependentSumsInArrivalOrder() throws InterruptedException {
+        int maxBatchesInFlight = 6, windowBatches = 5, batchCount = 60;
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, maxBatchesInFlight, windowBatches, LeafKernel.SCALAR);
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(Long.MAX_VALUE);
+
+        SplittableRandom random = new SplittableRandom(42);
+        List<int[]> batches = new ArrayList<>();
+        for(int i = 0; i < batchCount; i++)
+            batches.add(random.ints(i % 3 == 0 ? 2_000_000 : random.nextInt(0, 100), -1_000, 1_000).toArray());
+        for(int i = 0; i < batchCount; i++) {
+            int sent = i;
+            await(() -> upstream.requested.get() > sent, "demand for batch " + sent);
+            processor.onNext(batches.get(i));
+        }
+        processor.onComplete();
+        downstream.awaitEnd();
+
+        assertTrue(downstream.completed);
+        assertNull(downstream.error);
+        assertEquals(batchCount, downstream.totals.size());
+        long runningSum = 0, runningCount = 0;
+        for(int i = 0; i < batchCount; i++) {
+            Total total = downstream.totals.get(i);
+            long batchSum = Arrays.stream(batches.get(i)).asLongStream().sum();
+            runningSum += batchSum;
+            runningCount += batches.get(i).length;
+            long windowSum = 0, windowCount = 0;
+            for(int w = Math.max(0, i - windowBatches + 1); w <= i; w++) {
+                windowSum += Arrays.stream(batches.get(w)).asLongStream().sum();
+                windowCount += batches.get(w).length;
+            }
+            assertEquals(new Total(i, batches.get(i).length, batchSum, runningCount, runningSum, Math.min(i + 1, windowBatches), windowCount, windowSum),
+                    total);
+        }
+    }
+
+    /**
+     * Upstream is asked for maxBatchesInFlight batches and nothing more until downstream takes a total, then for one more per total taken. Without
+     * demand from downstream, summed batches wait, and so does upstream.
+     */
+    @Test
+    void demandIsPassedOnOneBatchPerTotalTaken() throws InterruptedException {
+        int maxBatchesInFlight = 3;
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, maxBatchesInFlight, 4, LeafKernel.SCALAR);
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        assertEquals(maxBatchesInFlight, upstream.requested.get());
+
+        for(int i = 0; i < maxBatchesInFlight; i++)
+            processor.onNext(new int[] { i, i });
+        Thread.sleep(50); // long enough for the batches to be summed, they aren't published without demand all the same
+        assertEquals(0, downstream.totals.size());
+        assertEquals(maxBatchesInFlight, upstream.requested.get());
+
+        downstream.subscription.request(2);
+        await(() -> upstream.requested.get() == maxBatchesInFlight + 2, "upstream to be asked for 2 more batches");
+        assertEquals(2, downstream.totals.size());
+
+        processor.onNext(new int[] { 3 });
+        processor.onNext(new int[] { 4 });
+        downstream.subscription.request(10);
+        await(() -> downstream.totals.size() == 5, "the other 3 totals");
+        await(() -> upstream.requested.get() == maxBatchesInFlight + 5, "upstream to be asked for 3 more batches");
+        assertEquals(List.of(0L, 2L, 4L, 3L, 4L), downstream.totals.stream().map(Total::batchSum).toList());
+
+        processor.onComplete();
+        downstream.awaitEnd();
+        assertTrue(downstream.completed);
+        assertEquals(maxBatchesInFlight + 5, upstream.requested.get()); // nothing requested on the way out
+    }
+
+    @Test
+    void cancellingStopsTotalsAndUpstream() throws InterruptedException {
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, 2, 4, LeafKernel.SCALAR);
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        processor.onNext(new int[] { 1 });
+        downstream.subscription.cancel();
+        processor.onNext(new int[] { 2 });
+        downstream.subscription.request(5);
+        Thread.sleep(50);
+
+        assertTrue(upstream.cancelled);
+        assertEquals(0, downstream.totals.size());
+        assertEquals(1, downstream.ended.getCount()); // cancelled, so neither completed nor failed
+    }
+
+    @Test
+    void upstreamErrorsArePassedOn() throws InterruptedException {
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, 2, 4, LeafKernel.SCALAR);
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(new Upstream());
+        downstream.subscription.request(1);
+        IOException failure = new IOException("producer down");
+        processor.onError(failure);
+        downstream.awaitEnd();
+        assertSame(failure, downstream.error);
+    }
+
+    @Test
+    void aNonPositiveRequestIsAnError() throws InterruptedException {
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, 2, 4, LeafKernel.SCALAR);
+        Upstream upstream = new Upstream();
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(0);
+        downstream.awaitEnd();
+        assertTrue(downstream.error instanceof IllegalArgumentException, String.valueOf(downstream.error));
+        assertTrue(upstream.cancelled);
+    }
+
+    /**
+     * A subscriber that throws from onNext() is treated as having cancelled: upstream is cancelled and the subscriber gets its own exception back, rather
+     * than the exception escaping into the pool and leaving the processor stuck with totals nobody will ever be sent.
+     */
+    @Test
+    void aSubscriberThrowingFromOnNextEndsTheStream() throws InterruptedException {
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, 2, 4, LeafKernel.SCALAR);
+        Upstream upstream = new Upstream();
+        IllegalStateException thrown = new IllegalStateException("wrong total");
+        Downstream downstream = new Downstream() {
+            @Override
+            public void onNext(Total total) {
+                super.onNext(total);
+                throw thrown;
+            }
+        };
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(5);
+        processor.onNext(new int[] { 1 });
+        processor.onNext(new int[] { 2 });
+        downstream.awaitEnd();
+
+        assertSame(thrown, downstream.error);
+        assertTrue(upstream.cancelled);
+        assertEquals(1, downstream.totals.size());
+    }
+
+    @Test
+    void aSecondSubscriberIsRefused() throws InterruptedException {
+        BatchSummingProcessor processor = new BatchSummingProcessor(pool, 2, 4, LeafKernel.SCALAR);
+        processor.subscribe(new Downstream());
+        Downstream second = new Downstream();
+        processor.subscribe(second);
+        second.awaitEnd();
+        assertTrue(second.error instanceof IllegalStateException, String.valueOf(second.error));
+    }
+}
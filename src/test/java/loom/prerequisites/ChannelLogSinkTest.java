@@ -0,0 +1,41 @@
+package loom.prerequisites;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChannelLogSinkTest {
+
+    /**
+     * The same sink closed after one task and used again for another on the same pool: the workers' buffers from the first round are gone, the lines
+     * of the second round have to end up in new ones.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void usedAgainAfterClose(boolean ordered) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelLogSink sink = new ChannelLogSink(Channels.newChannel(out), ordered, 64);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(int round = 0; round < 2; round++) {
+                int first = round * 1_000;
+                pool.submit(() -> IntStream.range(first, first + 1_000).parallel().forEach(i -> sink.log(i, "line " + i))).join();
+                sink.close();
+
+                List<String> lines = out.toString().lines().toList();
+                assertEquals(first + 1_000, lines.size(), "lines written after round " + round);
+                if(ordered)
+                    assertEquals(IntStream.range(0, first + 1_000).mapToObj(i -> "line " + i).toList(), lines);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package loom.prerequisites;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sorts against Arrays.sort, on the inputs that stress the split merges: the binary search that splits the shorter run has to land right when the
+ * middle element of the longer one is smaller or bigger than everything in it (sorted and reversed input), equal to a long stretch of it
+ * (duplicates), and Integer.MIN_VALUE or MAX_VALUE. Leaves of one and two elements leave every merge to the split merges, and odd array lengths
+ * give runs of different lengths. Everything runs in a pool of four so that the merges are split and stolen on any machine.
+ */
+class MergeSortRecursiveActionTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    enum Input {
+        RANDOM,
+        SORTED,
+        REVERSED,
+        ALL_EQUAL,
+        FEW_DISTINCT,
+        ORGAN_PIPE, // up then down, two sorted runs that end up merged into each other
+        EXTREMES; // only MIN_VALUE, MAX_VALUE, 0 and -1
+
+        private static final long[] EXTREME_VALUES = { Long.MIN_VALUE, Long.MAX_VALUE, 0, -1 };
+
+        long[] longs(int length) {
+            SplittableRandom random = new SplittableRandom(length);
+            long[] array = new long[length];
+            for(int i = 0; i < length; i++)
+                array[i] = switch(this) {
+                    case RANDOM -> random.nextLong();
+                    case SORTED -> i * 3L - length;
+                    case REVERSED -> length - i * 3L;
+                    case ALL_EQUAL -> 7;
+                    case FEW_DISTINCT -> random.nextInt(3);
+                    case ORGAN_PIPE -> Math.min(i, length - i);
+                    case EXTREMES -> EXTREME_VALUES[random.nextInt(EXTREME_VALUES.length)];
+                };
+            return array;
+        }
+
+        int[] ints(int length) {
+            long[] longs = longs(length);
+            int[] array = new int[length];
+            for(int i = 0; i < length; i++)
+                array[i] = this == EXTREMES ? (int) (longs[i] >> 32) : (int) longs[i]; // MIN_VALUE, MAX_VALUE, 0 and -1 again
+            return array;
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Input.class)
+    void smallLeaves(Input input) {
+        for(int length : new int[] { 0, 1, 2, 3, 4, 5, 17, 100, 1_001 })
+            for(int leafSize : new int[] { 1, 2, 3, 7, 64 }) {
+                int[] ints = input.ints(length), intsExpected = ints.clone();
+                Arrays.sort(intsExpected);
+                pool.invoke(new MergeSortRecursiveAction(ints, leafSize));
+                assertArrayEquals(intsExpected, ints, length + " ints, leaf size " + leafSize);
+
+                long[] longs = input.longs(length), longsExpected = longs.clone();
+                Arrays.sort(longsExpected);
+                pool.invoke(new MergeSortRecursiveAction(longs, leafSize));
+                assertArrayEquals(longsExpected, longs, length + " longs, leaf size " + leafSize);
+            }
+    }
+
+    /**
+     * Big enough for the adaptive leaf size to split, and for the top merges to be split many times over.
+     */
+    @ParameterizedTest
+    @EnumSource(Input.class)
+    void adaptiveLeavesOnABigArray(Input input) {
+        int[] ints = input.ints(1_000_003), intsExpected = ints.clone();
+        Arrays.sort(intsExpected);
+        pool.invoke(new MergeSortRecursiveAction(ints));
+        assertArrayEquals(intsExpected, ints);
+
+        long[] longs = input.longs(1_000_003), longsExpected = longs.clone();
+        Arrays.sort(longsExpected);
+        pool.invoke(new MergeSortRecursiveAction(longs));
+        assertArrayEquals(longsExpected, longs);
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MergeSortRecursiveAction(new int[1], 0));
+        assertThrows(NullPointerException.class, () -> new MergeSortRecursiveAction((long[]) null));
+    }
+}
@@ -0,0 +1,83 @@
+package loom.prerequisites;
+
+import loom.prerequisites.ParallelReducer.IntMonoid;
+import loom.prerequisites.ParallelReducer.LongMonoid;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every kind of reduction against the same reduction done sequentially with streams.
+ */
+class ParallelReducerTest {
+
+    private static final int[] INTS = new SplittableRandom(42).ints(2_000_000, -1_000_000, 1_000_000).toArray();
+    private static final long[] LONGS = Arrays.stream(INTS).asLongStream().map(i -> i * 1_000_003L).toArray();
+    private static final double[] DOUBLES = Arrays.stream(INTS).asDoubleStream().map(i -> i / 7.0).toArray();
+
+    private final ParallelReducer reducer = new ParallelReducer();
+
+    @Test
+    void primitiveMonoids() {
+        assertEquals(Arrays.stream(INTS).asLongStream().sum(), reducer.sum(INTS), "int sum");
+        assertEquals(Arrays.stream(INTS).min(), reducer.min(INTS), "int min");
+        assertEquals(Arrays.stream(INTS).max(), reducer.max(INTS), "int max");
+        assertEquals(Arrays.stream(LONGS).sum(), reducer.sum(LONGS), "long sum");
+        assertEquals(Arrays.stream(LONGS).min(), reducer.min(LONGS), "long min");
+        assertEquals(Arrays.stream(DOUBLES).max(), reducer.max(DOUBLES), "double max");
+        assertEquals(OptionalInt.empty(), reducer.min(new int[0]), "empty min");
+        double doubleSum = Arrays.stream(DOUBLES).sum();
+        assertEquals(doubleSum, reducer.sum(DOUBLES), Math.abs(doubleSum) * 1e-9, "double sum");
+    }
+
+    @Test
+    void fixedLeafSize() {
+        assertEquals(Arrays.stream(INTS).asLongStream().sum(), new ParallelReducer(ForkJoinPool.commonPool(), 1000).sum(INTS));
+    }
+
+    /**
+     * Only correct if the result of the first half always comes first.
+     */
+    @Test
+    void notCommutative() {
+        IntMonoid firstNegative = IntMonoid.of(0, (first, second) -> first != 0 ? first : second < 0 ? second : 0);
+        assertEquals(Arrays.stream(INTS).filter(i -> i < 0).findFirst().getAsInt(), reducer.reduce(INTS, firstNegative));
+    }
+
+    @Test
+    void spliterators() {
+        assertEquals(Arrays.stream(INTS).asLongStream().sum(), reducer.reduce(Arrays.spliterator(LONGS), LongMonoid.SUM) / 1_000_003L, "sized");
+        assertEquals(4_999_950_000L, reducer.reduce(LongStream.range(0, 100_000).filter(i -> true).spliterator(), LongMonoid.SUM), "unsized");
+    }
+
+    @Test
+    void histogram() {
+        Histogram histogram = reducer.histogram(INTS, -500_000, 500_000, 10);
+        long[] expected = new long[10];
+        long outside = 0;
+        for(int i : INTS)
+            if(i < -500_000 || i >= 500_000)
+                outside++;
+            else
+                expected[(i + 500_000) / 100_000]++;
+
+        assertEquals(outside, histogram.underflow() + histogram.overflow(), "outside the range");
+        assertEquals(INTS.length, histogram.total(), "total");
+        for(int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], histogram.count(i), "bucket " + i);
+    }
+
+    @Test
+    void countDistinct() {
+        long distinct = Arrays.stream(INTS).distinct().count();
+        double tolerance = distinct * 3 * new DistinctSketch().standardError(); // within 3 standard errors
+        assertEquals(distinct, reducer.countDistinct(INTS), tolerance, "ints");
+        assertEquals(distinct, reducer.countDistinct(Arrays.stream(INTS).asDoubleStream().toArray()), tolerance, "doubles");
+    }
+}
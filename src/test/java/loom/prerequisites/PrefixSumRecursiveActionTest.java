@@ -0,0 +1,129 @@
+package loom.prerequisites;
+
+import loom.prerequisites.PrefixSumRecursiveAction.Scan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Scans against a plain loop. A leaf only gets its offset from the down-sweep, so what can go wrong is at the edges of the split tree: every leaf size
+ * on arrays a few elements long, every small leaf size on an array that doesn't split evenly, and an exclusive scan, which shifts every leaf's
+ * values by one element across its left border. Int sums wrap around exactly like the loop's, and the adaptive leaf size gets one big array, run in
+ * a pool of four so that it splits on any machine.
+ */
+class PrefixSumRecursiveActionTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    private static int[] scanned(int[] array, Scan scan) {
+        int[] expected = new int[array.length];
+        int sum = 0;
+        for(int i = 0; i < array.length; i++) {
+            if(scan == Scan.EXCLUSIVE)
+                expected[i] = sum;
+            sum += array[i];
+            if(scan == Scan.INCLUSIVE)
+                expected[i] = sum;
+        }
+        return expected;
+    }
+
+    private static long[] scanned(long[] array, Scan scan) {
+        long[] expected = new long[array.length];
+        long sum = 0;
+        for(int i = 0; i < array.length; i++) {
+            if(scan == Scan.EXCLUSIVE)
+                expected[i] = sum;
+            sum += array[i];
+            if(scan == Scan.INCLUSIVE)
+                expected[i] = sum;
+        }
+        return expected;
+    }
+
+    @Test
+    void smallArraysAtEveryLeafSize() {
+        assertArrayEquals(new int[] { 1, 3, 6, 10 }, scanned(new int[] { 1, 2, 3, 4 }, Scan.INCLUSIVE));
+        assertArrayEquals(new int[] { 0, 1, 3, 6 }, scanned(new int[] { 1, 2, 3, 4 }, Scan.EXCLUSIVE));
+        for(Scan scan : Scan.values())
+            for(int length = 0; length <= 9; length++)
+                for(int leafSize = 1; leafSize <= length + 1; leafSize++) {
+                    int[] array = new int[length];
+                    for(int i = 0; i < length; i++)
+                        array[i] = i + 1;
+                    int[] expected = scanned(array, scan);
+                    pool.invoke(new PrefixSumRecursiveAction(array, scan, leafSize));
+                    assertArrayEquals(expected, array, scan + " scan of " + length + ", leaf size " + leafSize);
+                }
+    }
+
+    /**
+     * 1,001 elements split into leaves of every size up to 40, most of which leave a short leaf at the end, with values big enough for the int sums
+     * to wrap around many times.
+     */
+    @ParameterizedTest
+    @EnumSource(Scan.class)
+    void unevenLeaves(Scan scan) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] ints = random.ints(1_001, -1_000_000_000, 1_000_000_000).toArray();
+        long[] longs = random.longs(1_001).toArray();
+        for(int leafSize = 1; leafSize <= 40; leafSize++) {
+            int[] intsScanned = ints.clone();
+            pool.invoke(new PrefixSumRecursiveAction(intsScanned, scan, leafSize));
+            assertArrayEquals(scanned(ints, scan), intsScanned, "leaf size " + leafSize);
+            long[] longsScanned = longs.clone();
+            pool.invoke(new PrefixSumRecursiveAction(longsScanned, scan, leafSize));
+            assertArrayEquals(scanned(longs, scan), longsScanned, "leaf size " + leafSize);
+        }
+    }
+
+    @Test
+    void sumsWrapAroundLikeALoop() {
+        int[] array = new int[100];
+        Arrays.fill(array, Integer.MAX_VALUE);
+        pool.invoke(new PrefixSumRecursiveAction(array, Scan.INCLUSIVE, 3));
+        assertEquals(Integer.MAX_VALUE, array[0]);
+        assertEquals(-2, array[1]);
+        assertEquals(Integer.MAX_VALUE * 100, array[99]);
+
+        long[] longs = { Long.MAX_VALUE, 1, Long.MIN_VALUE, -1 };
+        pool.invoke(new PrefixSumRecursiveAction(longs, Scan.EXCLUSIVE, 1));
+        assertArrayEquals(new long[] { 0, Long.MAX_VALUE, Long.MIN_VALUE, 0 }, longs);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Scan.class)
+    void adaptiveLeavesOnABigArray(Scan scan) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] ints = random.ints(2_000_003).toArray();
+        int[] intsExpected = scanned(ints, scan);
+        pool.invoke(new PrefixSumRecursiveAction(ints, scan));
+        assertArrayEquals(intsExpected, ints);
+
+        long[] longs = random.longs(2_000_003).toArray();
+        long[] longsExpected = scanned(longs, scan);
+        pool.invoke(new PrefixSumRecursiveAction(longs, scan));
+        assertArrayEquals(longsExpected, longs);
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new PrefixSumRecursiveAction(new int[1], Scan.INCLUSIVE, 0));
+        assertThrows(NullPointerException.class, () -> new PrefixSumRecursiveAction((long[]) null, Scan.INCLUSIVE));
+        assertThrows(NullPointerException.class, () -> new PrefixSumRecursiveAction(new int[1], null));
+    }
+}
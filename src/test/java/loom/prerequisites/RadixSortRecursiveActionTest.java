@@ -0,0 +1,116 @@
+package loom.prerequisites;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sorts against Arrays.sort, on the keys a byte-wise LSD radix sort can get wrong: negatives, which only sort before positives because the top byte
+ * has its sign bit flipped; equal keys, up to every key being the same, which skips every pass; and byte columns that are the same in every key,
+ * whose passes are skipped too, so that the result can end up in either array depending on how many passes did run. Everything runs in a pool of
+ * four with small blocks, so every pass has many blocks whose histograms have to be stitched together in order.
+ */
+class RadixSortRecursiveActionTest {
+
+    private static final int LENGTH = 10_007;
+    private static final long[] EXTREMES = { Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, 1 };
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    private void assertSorts(long[] longs, String keys) {
+        for(int leafSize : new int[] { 1, 7, 1000 }) {
+            long[] sorted = longs.clone(), expected = longs.clone();
+            Arrays.sort(expected);
+            pool.invoke(new RadixSortRecursiveAction(sorted, leafSize));
+            assertArrayEquals(expected, sorted, keys + " as longs, leaf size " + leafSize);
+
+            int[] ints = Arrays.stream(longs).mapToInt(key -> (int) key).toArray(), intsExpected = ints.clone();
+            Arrays.sort(intsExpected);
+            pool.invoke(new RadixSortRecursiveAction(ints, leafSize));
+            assertArrayEquals(intsExpected, ints, keys + " as ints, leaf size " + leafSize);
+        }
+    }
+
+    private static long[] keys(LongUnaryOperator key) {
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[LENGTH];
+        for(int i = 0; i < LENGTH; i++)
+            keys[i] = key.applyAsLong(random.nextLong());
+        return keys;
+    }
+
+    @Test
+    void negatives() {
+        assertSorts(keys(random -> random), "the full range");
+        assertSorts(keys(random -> random % 1000), "around zero");
+        assertSorts(keys(random -> random | Long.MIN_VALUE), "all negative");
+        assertSorts(keys(random -> (random & 3) - 2), "-2 to 1");
+        assertSorts(keys(random -> EXTREMES[Math.floorMod(random, EXTREMES.length)]), "the extremes");
+    }
+
+    @Test
+    void equalKeys() {
+        assertSorts(keys(random -> 7), "all 7");
+        assertSorts(keys(random -> -1), "all -1");
+        assertSorts(keys(random -> 0), "all 0");
+        assertSorts(keys(random -> random & 1), "0 and 1");
+        assertSorts(keys(random -> random < 0 ? Long.MIN_VALUE : Long.MAX_VALUE), "the two extremes");
+    }
+
+    /**
+     * Keys that only differ in the byte at the given position, so that every other pass is skipped. For the top byte of an int or a long, that leaves
+     * a single pass, the one that flips the sign bit; as ints, the keys that only differ above bit 31 are all equal.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 2, 3, 4, 7 })
+    void onlyOneByteDiffers(int position) {
+        long mask = 0xFFL << (8 * position);
+        assertSorts(keys(random -> 0x0123_4567_89AB_CDEFL & ~mask | random & mask), "only byte " + position + " differs");
+    }
+
+    @Test
+    void bytesThatDifferBetweenBytesThatDont() {
+        assertSorts(keys(random -> random & 0x00FF_00FF_00FF_00FFL), "even bytes");
+        assertSorts(keys(random -> random & 0xFF00_FF00_FF00_FF00L), "odd bytes");
+        assertSorts(keys(random -> random & 0xFF00_0000_0000_00FFL), "the top and bottom bytes");
+        assertSorts(keys(random -> (int) random), "longs that fit in an int");
+    }
+
+    @Test
+    void arraysOfALeafOrLess() {
+        for(int length = 0; length <= 4; length++) {
+            long[] longs = new SplittableRandom(length).longs(length).toArray(), expected = longs.clone();
+            Arrays.sort(expected);
+            pool.invoke(new RadixSortRecursiveAction(longs, 4));
+            assertArrayEquals(expected, longs);
+        }
+    }
+
+    @Test
+    void adaptiveBlocksOnABigArray() {
+        int[] ints = new SplittableRandom(42).ints(2_000_003).toArray(), expected = ints.clone();
+        Arrays.sort(expected);
+        pool.invoke(new RadixSortRecursiveAction(ints));
+        assertArrayEquals(expected, ints);
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new RadixSortRecursiveAction(new long[1], 0));
+        assertThrows(NullPointerException.class, () -> new RadixSortRecursiveAction((int[]) null));
+    }
+}
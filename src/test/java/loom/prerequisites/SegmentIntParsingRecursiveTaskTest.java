@@ -0,0 +1,114 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The parser against Integer.parseInt() on the same text: the ends of the int range and one past them, Windows line endings, a last line without a
+ * newline, an empty file, and numbers that aren't, at every leaf size down to one byte so that every line boundary is a split point somewhere.
+ */
+class SegmentIntParsingRecursiveTaskTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    private static MemorySegment segment(String text) {
+        return MemorySegment.ofArray(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int[] parseInts(String text) {
+        return Arrays.stream(text.split("[ \t\r\n]+")).filter(number -> !number.isEmpty()).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private int[] parse(String text, int leafSize) {
+        return pool.invoke(new SegmentIntParsingRecursiveTask(segment(text), leafSize));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 7, 64, 1 << 20 })
+    void edgesOfTheIntRange(int leafSize) {
+        String text = "0\n-0\n2147483647\n-2147483648\n-1\n1\n007\n";
+        int[] expected = { 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, -1, 1, 7 };
+        assertArrayEquals(expected, parse(text, leafSize));
+        assertArrayEquals(expected, parse(text.replace("\n", "\r\n"), leafSize));
+        assertArrayEquals(expected, parse(text.strip(), leafSize));
+        assertArrayEquals(expected, parse(text.replace("\n", " \t "), leafSize)); // all on one line, which can't be split
+    }
+
+    @Test
+    void emptyAndBlankInputs() {
+        assertEquals(0, pool.invoke(new SegmentIntParsingRecursiveTask(MemorySegment.ofArray(new byte[0]))).length);
+        assertEquals(0, parse("\n\r\n \n\t\n", 1).length);
+        assertArrayEquals(new int[] { 5 }, parse("\n\n  5  \n\n", 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "2147483648", "-2147483649", "99999999999999999999", "-", "12x", "x12", "1-2", "--1", "1.5", "+1" })
+    void notAnInt(String number) {
+        String text = "1\n2\n" + number + "\n3\n";
+        NumberFormatException thrown = assertThrows(NumberFormatException.class, () -> parse(text, 1 << 20));
+        String message = (thrown.getCause() != null ? thrown.getCause() : thrown).getMessage(); // rethrown from a worker, as a copy of the original
+        assertTrue(message.endsWith("at byte 4"), message);
+        assertThrows(NumberFormatException.class, () -> parse(text, 1));
+        assertThrows(NumberFormatException.class, () -> parse(number, 1 << 20)); // and without a newline after it
+    }
+
+    /**
+     * Random numbers separated by random runs of whitespace, parsed with leaf sizes from a byte (a split at every line) to the whole input, and with
+     * lines long enough that a leaf's copy has to grow to hold one.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 5, 100, 4096, 1 << 20 })
+    void splitsNeverCutANumber(int leafSize) {
+        SplittableRandom random = new SplittableRandom(leafSize);
+        StringBuilder text = new StringBuilder();
+        String[] separators = { "\n", "\r\n", " ", "\t", "  \n\n" };
+        for(int i = 0; i < 50_000; i++) {
+            text.append(random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(-1000, 1000));
+            text.append(i % 20_000 == 19_999 ? "\n" : separators[random.nextInt(separators.length)]);
+        }
+        text.append(" ".repeat(70_000)).append("42"); // a line longer than a leaf's first block
+        assertArrayEquals(parseInts(text.toString()), parse(text.toString(), leafSize));
+    }
+
+    @Test
+    void aMappedFileParsesToWhatWasWritten(@TempDir Path directory) throws IOException {
+        Path numbers = directory.resolve("numbers.txt");
+        long sum = SegmentFiles.writeIntLines(numbers, 200_000, 42);
+        Path empty = Files.createFile(directory.resolve("empty.txt"));
+        try(ResourceScope scope = ResourceScope.newSharedScope()) {
+            int[] parsed = pool.invoke(new SegmentIntParsingRecursiveTask(SegmentFiles.map(numbers, scope)));
+            assertEquals(200_000, parsed.length);
+            assertEquals(sum, Arrays.stream(parsed).asLongStream().sum());
+            assertArrayEquals(parseInts(Files.readString(numbers)), parsed);
+            assertEquals(0, pool.invoke(new SegmentIntParsingRecursiveTask(SegmentFiles.map(empty, scope))).length);
+        }
+    }
+
+    @Test
+    void theLeafSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentIntParsingRecursiveTask(segment("1"), 0));
+    }
+}
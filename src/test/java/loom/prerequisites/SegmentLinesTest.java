@@ -0,0 +1,88 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Split points always at the start of a line, blocks of whole lines, and words read back as UTF-8 whether they are views onto the segment or not.
+ */
+class SegmentLinesTest {
+
+    private static MemorySegment segment(String text) {
+        return MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void splitsAtTheLineAfterTheMiddle() {
+        MemorySegment segment = segment("aaaa\nbb\ncccccc\n");
+        assertEquals(8, SegmentLines.split(segment, 0, segment.byteSize())); // the middle is in "bb"
+        assertEquals(5, SegmentLines.split(segment, 0, 8));
+        assertEquals(-1, SegmentLines.split(segment, 8, segment.byteSize())); // only a newline as the last byte
+        assertEquals(-1, SegmentLines.split(segment("no newline at all"), 0, 17));
+        assertEquals(-1, SegmentLines.split(segment(""), 0, 0));
+
+        assertEquals(5, SegmentLines.nextLine(segment, 0, segment.byteSize()));
+        assertEquals(5, SegmentLines.nextLine(segment, 4, segment.byteSize()));
+        assertEquals(7, SegmentLines.nextLine(segment, 5, 7)); // none before to
+    }
+
+    @Test
+    void blocksAreWholeLines() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 20_000; i++)
+            text.append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+        text.append("y".repeat(200_000)).append("\nlast line, no newline");
+        MemorySegment segment = segment(text.toString());
+
+        StringBuilder read = new StringBuilder();
+        List<Long> offsets = new ArrayList<>();
+        SegmentLines.Blocks blocks = new SegmentLines.Blocks(segment, 0, segment.byteSize());
+        while(blocks.next()) {
+            assertEquals(read.length(), blocks.offset());
+            offsets.add(blocks.offset());
+            read.append(new String(blocks.bytes(), 0, blocks.length(), StandardCharsets.US_ASCII));
+            if(read.length() < text.length())
+                assertEquals('\n', read.charAt(read.length() - 1), "a block ends with a newline unless it's the last");
+        }
+        assertEquals(text.toString(), read.toString());
+        assertTrue(offsets.size() > 2);
+    }
+
+    @Test
+    void wordsAreUtf8() {
+        String text = "  caf\u00e9 plain\tna\u00efve\r\n\u540d\u524d \ud83d\ude00 x\n\nend";
+        List<CharSequence> words = SegmentLines.words(segment(text), 0, text.getBytes(StandardCharsets.UTF_8).length);
+
+        List<String> strings = new ArrayList<>();
+        for(CharSequence word : words)
+            strings.add(word.toString());
+        assertEquals(List.of("caf\u00e9", "plain", "na\u00efve", "\u540d\u524d", "\ud83d\ude00", "x", "end"), strings);
+
+        CharSequence plain = words.get(1);
+        assertEquals(5, plain.length());
+        assertEquals('l', plain.charAt(1));
+        assertEquals("lai", plain.subSequence(1, 4).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> plain.charAt(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> plain.subSequence(3, 6));
+        assertEquals(4, words.get(0).length()); // chars, not bytes
+        assertEquals('\u00e9', words.get(0).charAt(3));
+        assertEquals(2, words.get(4).length());
+    }
+
+    @Test
+    void wordsOfPartOfASegment() {
+        MemorySegment segment = segment("skip this\nkeep these words\nnot this");
+        long from = SegmentLines.nextLine(segment, 0, segment.byteSize());
+        long to = SegmentLines.nextLine(segment, from, segment.byteSize());
+        assertEquals(List.of("keep", "these", "words"), SegmentLines.words(segment, from, to).stream().map(CharSequence::toString).toList());
+        assertEquals(List.of(), SegmentLines.words(segment, 0, 0));
+    }
+}
@@ -0,0 +1,92 @@
+package loom.prerequisites;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import loom.prerequisites.SegmentWordCountingRecursiveTask.WordCounts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Lines, words and distinct words against counts worked out from the String, with Windows line endings, without a last newline, empty and blank, in
+ * UTF-8, and at every leaf size down to one byte so that every line boundary is a split point somewhere.
+ */
+class SegmentWordCountingRecursiveTaskTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    private WordCounts count(String text, int leafSize) {
+        return pool.invoke(new SegmentWordCountingRecursiveTask(MemorySegment.ofArray(text.getBytes(StandardCharsets.UTF_8)), leafSize));
+    }
+
+    private static void assertCounts(String text, WordCounts counts) {
+        String[] words = Arrays.stream(text.split("[ \t\r\n]+")).filter(word -> !word.isEmpty()).toArray(String[]::new);
+        long distinct = Arrays.stream(words).distinct().count();
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, counts.bytes());
+        assertEquals(text.chars().filter(c -> c == '\n').count(), counts.lines());
+        assertEquals(words.length, counts.words());
+        assertEquals(distinct, counts.distinct().estimate(), Math.max(1, distinct * 0.03), "distinct words"); // well within the sketch's error
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 5, 1 << 20 })
+    void smallTexts(int leafSize) {
+        for(String text : new String[] {
+                "", "\n", " \t \r\n", "one", "one\n", "one two\nthree\n", "one two\r\nthree\r\n", "one two\nthree", "  lead  and  trail  \n\n",
+                "a a a a\na a\n", "caf\u00e9 cafe\n\u540d\u524d \ud83d\ude00\n" }) {
+            assertCounts(text, count(text, leafSize));
+        }
+    }
+
+    /**
+     * Words of every length on lines of every length, some of them long enough that a leaf's copy has to grow to hold one, counted whole and split
+     * at every line.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 7, 100, 4096, 1 << 20 })
+    void splitsNeverCutAWord(int leafSize) {
+        SplittableRandom random = new SplittableRandom(leafSize);
+        StringBuilder text = new StringBuilder();
+        String[] separators = { "\n", "\r\n", " ", "\t", " \n\n" };
+        for(int i = 0; i < 30_000; i++) {
+            text.append("w").append(random.nextInt(2_000));
+            text.append(separators[random.nextInt(separators.length)]);
+        }
+        text.append("x".repeat(70_000)).append(' ').append("w1");
+        assertCounts(text.toString(), count(text.toString(), leafSize));
+    }
+
+    @Test
+    void aMappedFileCountsLikeItsString(@TempDir Path directory) throws IOException {
+        Path words = directory.resolve("words.txt");
+        SegmentFiles.writeWordLines(words, 100_000, 5_000, 42);
+        Path empty = Files.createFile(directory.resolve("empty.txt"));
+        try(ResourceScope scope = ResourceScope.newSharedScope()) {
+            assertCounts(Files.readString(words), pool.invoke(new SegmentWordCountingRecursiveTask(SegmentFiles.map(words, scope))));
+            assertCounts("", pool.invoke(new SegmentWordCountingRecursiveTask(SegmentFiles.map(empty, scope))));
+        }
+    }
+
+    @Test
+    void theLeafSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentWordCountingRecursiveTask(MemorySegment.ofArray(new byte[1]), -1));
+    }
+}
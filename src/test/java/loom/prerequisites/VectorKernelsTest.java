@@ -0,0 +1,65 @@
+package loom.prerequisites;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every vector kernel against its scalar counterpart, on ranges whose lengths aren't multiples of the vector length so the scalar tail gets exercised
+ * too, and that don't all start at 0. Integer results must match exactly, floating point ones to within a relative error that allows for the different
+ * order of additions. min and max pick an element, so they match exactly whatever the type.
+ */
+class VectorKernelsTest {
+
+    @ParameterizedTest(name = "{0} elements")
+    @ValueSource(ints = { 0, 1, 3, 7, 8, 15, 16, 17, 31, 33, 63, 65, 1_000, 1_023, 100_003 })
+    void vectorKernelsMatchScalarKernels(int length) {
+        SplittableRandom random = new SplittableRandom(42 + length);
+        int from = length > 2 ? random.nextInt(3) : 0; // an unaligned start as well as a partial tail
+        int to = length;
+
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+            bytes[i] = (byte) random.nextInt(3);
+        int[] ints = random.ints(length).toArray();
+        int[] otherInts = random.ints(length).toArray();
+        long[] longs = random.longs(length, -1_000_000_000L, 1_000_000_000L).toArray();
+        long[] otherLongs = random.longs(length, -1_000_000_000L, 1_000_000_000L).toArray();
+        double[] doubles = random.doubles(length, -1_000, 1_000).toArray();
+        double[] otherDoubles = random.doubles(length, -1_000, 1_000).toArray();
+        float[] floats = new float[length];
+        float[] otherFloats = new float[length];
+        for(int i = 0; i < length; i++) {
+            floats[i] = (float) doubles[i];
+            otherFloats[i] = (float) otherDoubles[i];
+        }
+
+        assertAll(VectorKernels.SHAPE + ", " + length + " elements from " + from,
+                () -> assertEquals(ScalarKernels.sum(ints, from, to), VectorKernels.sum(ints, from, to), "int sum"),
+                () -> assertEquals(ScalarKernels.min(ints, from, to), VectorKernels.min(ints, from, to), "int min"),
+                () -> assertEquals(ScalarKernels.max(ints, from, to), VectorKernels.max(ints, from, to), "int max"),
+                () -> assertEquals(ScalarKernels.countGreaterThan(ints, from, to, 0), VectorKernels.countGreaterThan(ints, from, to, 0), "int count >"),
+                () -> assertEquals(ScalarKernels.countEqual(bytes, from, to, (byte) 1), VectorKernels.countEqual(bytes, from, to, (byte) 1), "byte count =="),
+                () -> assertEquals(ScalarKernels.dot(ints, otherInts, from, to), VectorKernels.dot(ints, otherInts, from, to), "int dot"),
+                () -> assertEquals(ScalarKernels.sum(longs, from, to), VectorKernels.sum(longs, from, to), "long sum"),
+                () -> assertEquals(ScalarKernels.min(longs, from, to), VectorKernels.min(longs, from, to), "long min"),
+                () -> assertEquals(ScalarKernels.max(longs, from, to), VectorKernels.max(longs, from, to), "long max"),
+                () -> assertEquals(ScalarKernels.dot(longs, otherLongs, from, to), VectorKernels.dot(longs, otherLongs, from, to), "long dot"),
+                () -> assertClose(ScalarKernels.sum(floats, from, to), VectorKernels.sum(floats, from, to), 1e-3, "float sum"),
+                () -> assertEquals(ScalarKernels.min(floats, from, to), VectorKernels.min(floats, from, to), "float min"),
+                () -> assertEquals(ScalarKernels.max(floats, from, to), VectorKernels.max(floats, from, to), "float max"),
+                () -> assertClose(ScalarKernels.dot(floats, otherFloats, from, to), VectorKernels.dot(floats, otherFloats, from, to), 1e-3, "float dot"),
+                () -> assertClose(ScalarKernels.sum(doubles, from, to), VectorKernels.sum(doubles, from, to), 1e-9, "double sum"),
+                () -> assertEquals(ScalarKernels.min(doubles, from, to), VectorKernels.min(doubles, from, to), "double min"),
+                () -> assertEquals(ScalarKernels.max(doubles, from, to), VectorKernels.max(doubles, from, to), "double max"),
+                () -> assertClose(ScalarKernels.dot(doubles, otherDoubles, from, to), VectorKernels.dot(doubles, otherDoubles, from, to), 1e-9, "double dot"));
+    }
+
+    private static void assertClose(double scalar, double vector, double relativeError, String kernel) {
+        assertEquals(scalar, vector, relativeError * Math.max(1, Math.abs(scalar)), kernel);
+    }
+}
@@ -0,0 +1,32 @@
+package seventeen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The pattern switch and the TypeDispatcher built from the same cases give the same code for an object of every case, default and null included, so
+ * that benchmarking one against the other compares like with like.
+ */
+class ObjectDispatchTest {
+
+    @Test
+    void theSwitchAndTheDispatcherAgreeOnEveryCase() {
+        assertEquals(-1, ObjectDispatch.patternSwitch(null));
+        assertEquals(-1, ObjectDispatch.typeDispatcher(null));
+
+        Set<Integer> codes = new HashSet<>();
+        for(Supplier<?> supplier : ObjectDispatch.OBJECTS) {
+            Object obj = supplier.get();
+            int code = ObjectDispatch.patternSwitch(obj);
+            assertEquals(code, ObjectDispatch.typeDispatcher(obj), obj.getClass().getName());
+            codes.add(code);
+        }
+        assertEquals(17, codes.size(), "OBJECTS has one object for each of the sixteen cases and default");
+        assertEquals(0, ObjectDispatch.typeDispatcher(new Object()));
+    }
+}
@@ -0,0 +1,97 @@
+package seventeen;
+
+import org.junit.jupiter.api.Test;
+import seventeen.InstrumentHierarchy.AltoSaxophone;
+import seventeen.InstrumentHierarchy.Guitar;
+import seventeen.InstrumentHierarchy.Instrument;
+import seventeen.InstrumentHierarchy.Saxophone;
+import seventeen.InstrumentHierarchy.YamahaAltoSaxophone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The rules of JEP 406 in JDK 17, as the class comment lists them: dominance, guards, null, exhaustiveness over a sealed hierarchy, and cases that
+ * can't match the selector type at all.
+ */
+class TypeDispatcherTest {
+
+    @Test
+    void aCaseAfterOneOfItsSupertypesIsDominated() {
+        // case Guitar after case Instrument can never match
+        assertThrows(IllegalArgumentException.class, () -> TypeDispatcher.builder(Object.class).on(CharSequence.class, c -> 1).on(String.class, s -> 2));
+        assertThrows(IllegalArgumentException.class, () -> TypeDispatcher.builder(Object.class).on(String.class, s -> 1).on(String.class, s -> 2));
+    }
+
+    @Test
+    void aGuardedCaseDominatesNothing() {
+        TypeDispatcher<Object, String> guarded = TypeDispatcher.<Object, String>builder(Object.class)
+                .on(String.class, s -> s.length() > 5, s -> "long string")
+                .on(String.class, s -> "string")
+                .on(CharSequence.class, c -> c.length() > 5, c -> "long chars")
+                .orElse(obj -> "default")
+                .build();
+        for(int round = 0; round < 2; round++) { // the second time round, from the cache
+            assertEquals("long string", guarded.dispatch("Hello World"));
+            assertEquals("string", guarded.dispatch("Hello"));
+            assertEquals("long chars", guarded.dispatch(new StringBuilder("Hello World")));
+            assertEquals("default", guarded.dispatch(new StringBuilder("Hello")));
+            assertEquals("default", guarded.dispatch(42));
+        }
+    }
+
+    @Test
+    void nullMatchesCaseNullThenATotalPattern() {
+        TypeDispatcher<Object, String> noNull = TypeDispatcher.<Object, String>builder(Object.class)
+                .on(String.class, s -> "string")
+                .orElse(obj -> "default")
+                .build();
+        assertThrows(NullPointerException.class, () -> noNull.dispatch(null)); // no case null, no total pattern, default doesn't take null
+
+        // a total pattern matches null in JDK 17, unless there's a case null
+        TypeDispatcher<CharSequence, String> total = TypeDispatcher.<CharSequence, String>builder(CharSequence.class)
+                .on(String.class, s -> "string")
+                .on(CharSequence.class, c -> "total " + c)
+                .build();
+        assertEquals("total null", total.dispatch(null));
+        assertEquals("total Hello", total.dispatch(new StringBuilder("Hello")));
+
+        TypeDispatcher<CharSequence, String> caseNull = TypeDispatcher.<CharSequence, String>builder(CharSequence.class)
+                .onNull(() -> "null")
+                .on(CharSequence.class, c -> "total " + c)
+                .build();
+        assertEquals("null", caseNull.dispatch(null));
+    }
+
+    @Test
+    void defaultAfterATotalPatternIsDominated() {
+        assertThrows(IllegalStateException.class, () -> TypeDispatcher.<CharSequence, String>builder(CharSequence.class)
+                .on(CharSequence.class, c -> "total").orElse(c -> "default").build());
+    }
+
+    /**
+     * The sealed Instrument hierarchy is covered without a default as long as every permitted subclass is, and Saxophone, which isn't abstract, can have
+     * instances of its own that its subclasses' cases don't cover.
+     */
+    @Test
+    void withoutADefaultTheCasesMustBeExhaustive() {
+        TypeDispatcher<Instrument, Integer> covered = TypeDispatcher.<Instrument, Integer>builder(Instrument.class)
+                .on(AltoSaxophone.class, sax -> 1)
+                .on(Saxophone.class, sax -> 2)
+                .on(Guitar.class, guitar -> 3)
+                .build();
+        assertEquals(1, covered.dispatch(new YamahaAltoSaxophone()));
+        assertEquals(2, covered.dispatch(new Saxophone()));
+        assertEquals(3, covered.dispatch(new Guitar()));
+        assertEquals(3, InstrumentDispatch.typeDispatcher(new AltoSaxophone()));
+
+        assertThrows(IllegalStateException.class, () -> TypeDispatcher.<Instrument, Integer>builder(Instrument.class).on(Guitar.class, guitar -> 1).build());
+        assertThrows(IllegalStateException.class, () -> TypeDispatcher.<Instrument, Integer>builder(Instrument.class)
+                .on(AltoSaxophone.class, sax -> 1).on(Guitar.class, guitar -> 3).build());
+    }
+
+    @Test
+    void aCaseTheSelectorCanNeverBeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TypeDispatcher.builder(String.class).on(Integer.class, i -> 1)); // a String is never an Integer
+    }
+}
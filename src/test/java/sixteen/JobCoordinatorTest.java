@@ -0,0 +1,113 @@
+package sixteen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Real worker JVMs summing over both transports, and stand-ins for JobWorker that go wrong at each stage: one that exits before it connects, one that
+ * never connects and one that dies after its first job frame. Each has to fail the coordinator with the worker's exit code and output, quickly, and
+ * leave nothing running behind it.
+ */
+class JobCoordinatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private static int[] array(int length) {
+        return new SplittableRandom(42).ints(length, 0, JobCoordinator.MAX_ELEMENT).toArray();
+    }
+
+    @ParameterizedTest
+    @EnumSource(JobTransport.class)
+    void sumsLikeALoop(JobTransport transport) {
+        int[] array = array(3_000_017);
+        long expected = Arrays.stream(array).asLongStream().sum();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try(JobCoordinator coordinator = new JobCoordinator(transport, 2)) {
+                for(int chunkSize : new int[] { 1 << 18, 1000, JobCoordinator.MAX_CHUNK_SIZE }) {
+                    JobCoordinator.Result result = coordinator.sum(array, chunkSize);
+                    assertEquals(expected, result.sum(), "chunk size " + chunkSize);
+                    assertEquals(2, result.workers());
+                }
+                assertThrows(IllegalArgumentException.class, () -> coordinator.sum(array, 0));
+            }
+        });
+    }
+
+    public static final class ExitsAtOnce {
+        public static void main(String[] args) {
+            System.out.println("can't start");
+            System.exit(3);
+        }
+    }
+
+    public static final class NeverConnects {
+        public static void main(String[] args) throws InterruptedException {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Connects and reads its first job frame like JobWorker, then exits without answering.
+     */
+    public static final class DiesMidJob {
+        public static void main(String[] args) throws IOException {
+            JobTransport transport = JobTransport.valueOf(args[0]);
+            ByteBuffer in = ByteBuffer.allocateDirect(Integer.parseInt(args[2]));
+            try(SocketChannel channel = transport.connect(args[1])) {
+                JobTransport.readFrame(channel, in);
+                System.out.println("dying with a job of " + in.getInt() + " chunks");
+                System.exit(4);
+            }
+        }
+    }
+
+    @Test
+    void aWorkerThatExitsBeforeConnectingFailsTheStart() {
+        IOException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IOException.class,
+                () -> new JobCoordinator(JobTransport.UNIX, 2, ExitsAtOnce.class, TIMEOUT.toMillis())));
+        assertTrue(thrown.getMessage().contains("exited with 3 before 0 of 2 workers had connected"), thrown.getMessage());
+        assertTrue(thrown.getMessage().contains("can't start"), thrown.getMessage());
+    }
+
+    /**
+     * Fails once the connect timeout has passed, without waiting the ten seconds close() gives a worker to exit on its own: a worker that never
+     * connected never gets told to.
+     */
+    @Test
+    void aWorkerThatNeverConnectsTimesOut() {
+        long start = System.nanoTime();
+        IOException thrown = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IOException.class,
+                () -> new JobCoordinator(JobTransport.TCP, 1, NeverConnects.class, 1_000)));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals("only 0 of 1 workers connected within 1000 ms", thrown.getMessage());
+        assertTrue(millis >= 1_000 && millis < 8_000, millis + " ms");
+    }
+
+    @ParameterizedTest
+    @EnumSource(JobTransport.class)
+    void aWorkerThatDiesMidJobFailsTheSum(JobTransport transport) {
+        int[] array = array(4_000_000); // several job frames, the worker dies after the first
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            try(JobCoordinator coordinator = new JobCoordinator(transport, 1, DiesMidJob.class, TIMEOUT.toMillis())) {
+                IOException thrown = assertThrows(IOException.class, () -> coordinator.sum(array, 1 << 18));
+                assertTrue(thrown.getMessage().contains("worker 0 exited with 4"), thrown.getMessage());
+                assertTrue(thrown.getMessage().contains("dying with a job of 3 chunks"), thrown.getMessage());
+                assertTrue(thrown.getCause() instanceof IOException, String.valueOf(thrown.getCause()));
+                assertThrows(IllegalStateException.class, () -> coordinator.sum(array, 1 << 18));
+            }
+        });
+    }
+}